@@ -26,11 +26,7 @@ import javax.tools.ToolProvider;
 import org.apache.drill.shaded.guava.com.google.common.base.Stopwatch;
 import org.lealone.common.exceptions.DbException;
 import org.lealone.db.Constants;
-import org.lealone.db.Database;
-import org.lealone.db.LealoneDatabase;
-import org.lealone.db.schema.Schema;
 import org.lealone.db.session.ServerSession;
-import org.lealone.db.table.Table;
 import org.lealone.hansql.common.AutoCloseables;
 import org.lealone.hansql.common.concurrent.ExtendedLatch;
 import org.lealone.hansql.common.config.DrillConfig;
@@ -41,10 +37,9 @@ import org.lealone.hansql.common.scanner.persistence.ScanResult;
 import org.lealone.hansql.common.util.DrillVersionInfo;
 import org.lealone.hansql.engine.server.HanSQLServer;
 import org.lealone.hansql.engine.sql.HanSQLEngine;
-import org.lealone.hansql.engine.storage.LealoneScanSpec;
+import org.lealone.hansql.engine.storage.LealoneSchemaTree;
 import org.lealone.hansql.engine.storage.LealoneStoragePlugin;
 import org.lealone.hansql.engine.storage.LealoneStoragePluginConfig;
-import org.lealone.hansql.engine.storage.LealoneTable;
 import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.SqlExecutor;
 import org.lealone.hansql.exec.context.BootStrapContext;
@@ -69,7 +64,6 @@ import org.lealone.hansql.exec.store.sys.PersistentStoreProvider;
 import org.lealone.hansql.exec.store.sys.store.provider.CachingPersistentStoreProvider;
 import org.lealone.hansql.exec.store.sys.store.provider.InMemoryStoreProvider;
 import org.lealone.hansql.exec.store.sys.store.provider.LocalPersistentStoreProvider;
-import org.lealone.hansql.optimizer.schema.CalciteSchema;
 import org.lealone.hansql.optimizer.schema.SchemaPlus;
 import org.lealone.hansql.optimizer.sql.SqlNode;
 import org.lealone.hansql.optimizer.sql.parser.SqlParseException;
@@ -339,58 +333,36 @@ public class HanEngine implements AutoCloseable {
         return dContext.getOptionManager();
     }
 
+    /**
+     * The schemas of the database come from the schema tree cached by the storage plugin,
+     * only the root schema of the Drill storage plugins is created for each query.
+     */
     public SchemaPlus getRootSchema(ServerSession session, String sql, boolean useDefaultSchema, boolean isOlap) {
         if (isOlap) {
-            LealoneStoragePlugin lsp;
-            try {
-                lsp = (LealoneStoragePlugin) getStoragePluginRegistry().getPlugin(LealoneStoragePluginConfig.NAME);
-            } catch (ExecutionSetupException e) {
-                throw DbException.throwInternalError();
-            }
-            SchemaPlus parent = CalciteSchema.createRootSchema(false, true, "").plus();
-            SchemaPlus defaultSchema = CalciteSchema.createRootSchema(false, true, Constants.SCHEMA_MAIN).plus();
-            String dbName = session.getDatabase().getShortName();
-            Database db = LealoneDatabase.getInstance().getDatabase(dbName);
-            for (Schema schema : db.getAllSchemas()) {
-                final String schemaName = schema.getName();
-                final SchemaPlus subSchema;
-                if (schemaName.equalsIgnoreCase(Constants.SCHEMA_MAIN)) {
-                    subSchema = defaultSchema;
-                } else {
-                    subSchema = CalciteSchema.createRootSchema(false, true, schemaName).plus();
-                }
-                for (Table table : schema.getAllTablesAndViews()) {
-                    LealoneTable t = new LealoneTable(table, lsp,
-                            new LealoneScanSpec(dbName, schemaName, table.getName()));
-                    subSchema.add(table.getName().toUpperCase(), t);
-                    subSchema.add(table.getName().toLowerCase(), t);
-                }
-                parent.add(schemaName, subSchema);
-            }
+            LealoneSchemaTree tree = getLealoneStoragePlugin().getSchemaTree(session.getDatabase());
             if (session.getCurrentSchemaName().equalsIgnoreCase(Constants.SCHEMA_MAIN))
-                return defaultSchema;
-            return parent;
+                return tree.getMainSchema();
+            return tree.getRootSchema();
         }
         SchemaTreeProvider schemaTreeProvider = new SchemaTreeProvider(getDrillbitContext());
         SchemaPlus rootSchema = schemaTreeProvider.createRootSchema(getOptionManager());
-        if (useDefaultSchema && (isOlap || sql.contains(LealoneStoragePluginConfig.NAME))) {
-            LealoneStoragePlugin lsp;
-            try {
-                lsp = (LealoneStoragePlugin) getStoragePluginRegistry().getPlugin(LealoneStoragePluginConfig.NAME);
-            } catch (ExecutionSetupException e) {
-                throw DbException.throwInternalError();
-            }
-
-            SchemaPlus defaultSchema = CalciteSchema.createRootSchema(false, true, Constants.SCHEMA_MAIN).plus();
-            String dbName = session.getDatabase().getShortName();
-            SchemaPlus schema = CalciteSchema.createRootSchema(defaultSchema, false, true, dbName).plus();
-            lsp.registerSchema(schema, dbName, defaultSchema);
+        if (useDefaultSchema && sql.contains(LealoneStoragePluginConfig.NAME)) {
+            SchemaPlus defaultSchema = getLealoneStoragePlugin().getSchemaTree(session.getDatabase())
+                    .getMainSchema();
             rootSchema.add(LealoneStoragePluginConfig.NAME, defaultSchema);
             rootSchema.add("", defaultSchema);
         }
         return rootSchema;
     }
 
+    private LealoneStoragePlugin getLealoneStoragePlugin() {
+        try {
+            return (LealoneStoragePlugin) getStoragePluginRegistry().getPlugin(LealoneStoragePluginConfig.NAME);
+        } catch (ExecutionSetupException e) {
+            throw DbException.throwInternalError();
+        }
+    }
+
     public static HanEngine getInstance() {
         return ((HanSQLServer) ProtocolServerEngineManager.getInstance().getEngine(HanSQLEngine.NAME)
                 .getProtocolServer()).getHanEngine();
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
+import org.lealone.db.index.IndexColumn;
+import org.lealone.db.result.SearchRow;
+import org.lealone.db.result.SortOrder;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Column;
+import org.lealone.db.table.Table;
+import org.lealone.db.value.DataType;
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueNull;
+import org.lealone.hansql.engine.server.HanClientConnection;
+import org.lealone.hansql.engine.storage.LealoneGroupScan;
+import org.lealone.hansql.exec.ops.OptimizerRulesContext;
+import org.lealone.hansql.exec.ops.QueryContext;
+import org.lealone.hansql.exec.physical.base.GroupScan;
+import org.lealone.hansql.exec.physical.base.ScanStats;
+import org.lealone.hansql.exec.planner.common.CountToDirectScanUtils;
+import org.lealone.hansql.exec.planner.logical.DrillAggregateRel;
+import org.lealone.hansql.exec.planner.logical.DrillProjectRel;
+import org.lealone.hansql.exec.planner.logical.DrillScanRel;
+import org.lealone.hansql.exec.planner.logical.RelOptHelper;
+import org.lealone.hansql.exec.planner.physical.DirectScanPrel;
+import org.lealone.hansql.exec.planner.physical.DrillDistributionTrait;
+import org.lealone.hansql.exec.planner.physical.Prel;
+import org.lealone.hansql.exec.planner.physical.ProjectPrel;
+import org.lealone.hansql.exec.session.UserClientConnection;
+import org.lealone.hansql.exec.store.StoragePluginOptimizerRule;
+import org.lealone.hansql.exec.store.direct.DirectGroupScan;
+import org.lealone.hansql.exec.store.pojo.DynamicPojoRecordReader;
+import org.lealone.hansql.optimizer.plan.RelOptRuleCall;
+import org.lealone.hansql.optimizer.plan.RelOptRuleOperand;
+import org.lealone.hansql.optimizer.rel.core.AggregateCall;
+import org.lealone.hansql.optimizer.rel.type.RelDataType;
+import org.lealone.hansql.optimizer.rel.type.RelDataTypeFactory;
+import org.lealone.hansql.optimizer.rex.RexBuilder;
+import org.lealone.hansql.optimizer.rex.RexInputRef;
+import org.lealone.hansql.optimizer.rex.RexNode;
+import org.lealone.hansql.optimizer.sql.SqlKind;
+import org.lealone.hansql.optimizer.sql.type.SqlTypeName;
+
+/**
+ * Answers <b>" select count(*), min(c1), max(c2) from table "</b> without scanning the table:
+ * <pre>
+ *    Project(count, min, max)
+ *         \
+ *    DirectGroupScan ( DynamicPojoRecordReader ( rowCount, first c1, last c2 ))
+ * </pre>
+ * COUNT(*) and the COUNT of a NOT NULL column come from the row count of the Lealone table,
+ * MIN and MAX from the first or last entry of an index whose first column is the aggregated column.
+ * The rule is only applied when every aggregate call can be answered this way.
+ */
+public abstract class LealoneAggregateToDirectScan extends StoragePluginOptimizerRule {
+    static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneAggregateToDirectScan.class);
+
+    public static StoragePluginOptimizerRule getAggOnScan(OptimizerRulesContext optimizerContext) {
+        return new LealoneAggregateToDirectScan(
+                RelOptHelper.some(DrillAggregateRel.class, RelOptHelper.any(DrillScanRel.class)),
+                "LealoneAggregateToDirectScan:Agg_On_Scan", optimizerContext) {
+
+            @Override
+            public void onMatch(RelOptRuleCall call) {
+                doOnMatch(call, call.rel(0), null, call.rel(1));
+            }
+
+            @Override
+            public boolean matches(RelOptRuleCall call) {
+                final DrillScanRel scan = call.rel(1);
+                return isLealoneTableScan(scan) && super.matches(call);
+            }
+        };
+    }
+
+    public static StoragePluginOptimizerRule getAggOnProjOnScan(OptimizerRulesContext optimizerContext) {
+        return new LealoneAggregateToDirectScan(
+                RelOptHelper.some(DrillAggregateRel.class,
+                        RelOptHelper.some(DrillProjectRel.class, RelOptHelper.any(DrillScanRel.class))),
+                "LealoneAggregateToDirectScan:Agg_On_Proj_On_Scan", optimizerContext) {
+
+            @Override
+            public void onMatch(RelOptRuleCall call) {
+                doOnMatch(call, call.rel(0), call.rel(1), call.rel(2));
+            }
+
+            @Override
+            public boolean matches(RelOptRuleCall call) {
+                final DrillScanRel scan = call.rel(2);
+                return isLealoneTableScan(scan) && super.matches(call);
+            }
+        };
+    }
+
+    protected final OptimizerRulesContext optimizerContext;
+
+    private LealoneAggregateToDirectScan(RelOptRuleOperand operand, String description,
+            OptimizerRulesContext optimizerContext) {
+        super(operand, description);
+        this.optimizerContext = optimizerContext;
+    }
+
+    private static boolean isLealoneTableScan(DrillScanRel scan) {
+        // a scan restricted to key ranges does not read the whole table
+        return scan.getGroupScan() instanceof LealoneGroupScan
+                && !((LealoneGroupScan) scan.getGroupScan()).getLealoneScanSpec().hasRanges();
+    }
+
+    protected void doOnMatch(RelOptRuleCall call, DrillAggregateRel agg, DrillProjectRel project,
+            DrillScanRel scan) {
+        if (agg.getGroupCount() != 0 || agg.containsDistinctCall()) {
+            return;
+        }
+
+        final Table table = ((LealoneGroupScan) scan.getGroupScan()).getTable();
+        if (table == null || !table.canGetRowCount()) {
+            return;
+        }
+        final ServerSession session = getSession(table);
+        final RelDataTypeFactory typeFactory = agg.getCluster().getTypeFactory();
+        final LinkedHashMap<String, Class<?>> schema = new LinkedHashMap<>();
+        final List<RelDataType> fieldTypes = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        long rowCount = -1;
+
+        for (int i = 0; i < agg.getAggCallList().size(); i++) {
+            final AggregateCall aggCall = agg.getAggCallList().get(i);
+            final SqlKind kind = aggCall.getAggregation().getKind();
+            final String name = kind.lowerName + i + "$"
+                    + (aggCall.getName() == null ? aggCall.toString() : aggCall.getName());
+
+            if (kind == SqlKind.COUNT) {
+                if (!CountToDirectScanUtils.containsStarOrNotNullInput(aggCall, agg)) {
+                    return;
+                }
+                if (rowCount < 0) {
+                    rowCount = table.getRowCount(session);
+                }
+                schema.put(name, long.class);
+                fieldTypes.add(typeFactory.createSqlType(SqlTypeName.BIGINT));
+                values.add(rowCount);
+            } else if ((kind == SqlKind.MIN || kind == SqlKind.MAX) && aggCall.getArgList().size() == 1) {
+                final Column column = getColumn(table, scan, project, aggCall.getArgList().get(0));
+                // a case insensitive index does not order the values the way the engine compares them
+                if (column == null || column.getType() == Value.STRING_IGNORECASE) {
+                    return;
+                }
+                final int jdbcType = DataType.convertTypeToSQLType(column.getType());
+                final Class<?> clazz = getValueClass(jdbcType);
+                final Value value = clazz == null ? null : findFirstOrLast(session, table, column, kind == SqlKind.MIN);
+                if (value == null) {
+                    return;
+                }
+                schema.put(name, clazz);
+                fieldTypes.add(typeFactory.createTypeWithNullability(typeFactory.createSqlType(getSqlTypeName(clazz)),
+                        true));
+                values.add(value == ValueNull.INSTANCE ? null : getObject(value, clazz));
+            } else {
+                return;
+            }
+        }
+
+        final RelDataType scanRowType = typeFactory.createStructType(fieldTypes, new ArrayList<>(schema.keySet()));
+        final List<List<Object>> records = new ArrayList<>(1);
+        records.add(values);
+        final DynamicPojoRecordReader<Object> reader = new DynamicPojoRecordReader<>(schema, records);
+        final ScanStats scanStats = new ScanStats(ScanStats.GroupScanProperty.EXACT_ROW_COUNT, 1, 1,
+                scanRowType.getFieldCount());
+        final GroupScan directScan = new DirectGroupScan(reader, scanStats);
+
+        final DirectScanPrel newScan = DirectScanPrel.create(scan,
+                scan.getTraitSet().plus(Prel.DRILL_PHYSICAL).plus(DrillDistributionTrait.SINGLETON), directScan,
+                scanRowType);
+
+        // the values are read with the types of the pojo writers, cast them back to the types of the aggregate
+        final RexBuilder rexBuilder = agg.getCluster().getRexBuilder();
+        final List<RexNode> expressions = new ArrayList<>(scanRowType.getFieldCount());
+        for (int i = 0; i < scanRowType.getFieldCount(); i++) {
+            RexNode expr = RexInputRef.of(i, scanRowType);
+            RelDataType type = agg.getRowType().getFieldList().get(i).getType();
+            if (type.getSqlTypeName() != expr.getType().getSqlTypeName()) {
+                expr = rexBuilder.makeCast(type, expr);
+            }
+            expressions.add(expr);
+        }
+        final ProjectPrel newProject = new ProjectPrel(agg.getCluster(),
+                agg.getTraitSet().plus(Prel.DRILL_PHYSICAL).plus(DrillDistributionTrait.SINGLETON), newScan,
+                expressions, agg.getRowType());
+
+        // the row count and the first or last values only hold for this query, the plan must not be cached
+        if (optimizerContext instanceof QueryContext) {
+            ((QueryContext) optimizerContext).setContextInformationUsed();
+        }
+        call.transformTo(newProject);
+    }
+
+    /**
+     * @return the session of the connection that runs the query, the values must be read with the snapshot
+     *         of its transaction, or the system session when the query has no Lealone connection
+     */
+    private ServerSession getSession(Table table) {
+        ServerSession session = null;
+        if (optimizerContext instanceof QueryContext) {
+            UserClientConnection conn = ((QueryContext) optimizerContext).getConnection();
+            if (conn instanceof HanClientConnection) {
+                session = ((HanClientConnection) conn).getServerSession();
+            }
+        }
+        return session != null ? session : table.getDatabase().getSystemSession();
+    }
+
+    /**
+     * @return the column of the table behind the field of the scan or the project, or null for an expression
+     */
+    static Column getColumn(Table table, DrillScanRel scan, DrillProjectRel project, int index) {
+        if (project != null) {
+            RexNode expr = project.getProjects().get(index);
+            if (!(expr instanceof RexInputRef)) {
+                return null;
+            }
+            index = ((RexInputRef) expr).getIndex();
+        }
+        String name = scan.getRowType().getFieldNames().get(index);
+        return table.doesColumnExist(name) ? table.getColumn(name) : null;
+    }
+
+    /**
+     * Reads the smallest or the largest non-null value of the column from an index that starts with it.
+     *
+     * @return the value, ValueNull when the table has no such value, or null when no index can answer it
+     */
+    private static Value findFirstOrLast(ServerSession session, Table table, Column column, boolean min) {
+        for (Index index : table.getIndexes()) {
+            IndexColumn[] indexColumns = index.getIndexColumns();
+            if (indexColumns == null || indexColumns.length == 0 || indexColumns[0].column != column
+                    || !index.canGetFirstOrLast()) {
+                continue;
+            }
+            boolean descending = (indexColumns[0].sortType & SortOrder.DESCENDING) != 0;
+            Cursor cursor = index.findFirstOrLast(session, min != descending);
+            if (!cursor.next()) {
+                return ValueNull.INSTANCE; // empty table
+            }
+            SearchRow row = cursor.getSearchRow();
+            Value value = row == null ? null : row.getValue(column.getColumnId());
+            if (value == null || value == ValueNull.INSTANCE) {
+                // the nulls of the index may sort at this end, scan the table instead
+                return null;
+            }
+            return value;
+        }
+        return null;
+    }
+
+    private static Class<?> getValueClass(int jdbcType) {
+        switch (jdbcType) {
+        case java.sql.Types.BOOLEAN:
+        case java.sql.Types.BIT:
+            return Boolean.class;
+        case java.sql.Types.TINYINT:
+        case java.sql.Types.SMALLINT:
+        case java.sql.Types.INTEGER:
+            return Integer.class;
+        case java.sql.Types.BIGINT:
+            return Long.class;
+        case java.sql.Types.REAL:
+        case java.sql.Types.FLOAT:
+        case java.sql.Types.DOUBLE:
+            return Double.class;
+        case java.sql.Types.CHAR:
+        case java.sql.Types.VARCHAR:
+        case java.sql.Types.NCHAR:
+        case java.sql.Types.NVARCHAR:
+            return String.class;
+        default:
+            return null;
+        }
+    }
+
+    private static SqlTypeName getSqlTypeName(Class<?> clazz) {
+        if (clazz == Boolean.class)
+            return SqlTypeName.BOOLEAN;
+        else if (clazz == Integer.class)
+            return SqlTypeName.INTEGER;
+        else if (clazz == Long.class)
+            return SqlTypeName.BIGINT;
+        else if (clazz == Double.class)
+            return SqlTypeName.DOUBLE;
+        else
+            return SqlTypeName.VARCHAR;
+    }
+
+    private static Object getObject(Value value, Class<?> clazz) {
+        if (clazz == Boolean.class)
+            return value.getBoolean();
+        else if (clazz == Integer.class)
+            return value.getInt();
+        else if (clazz == Long.class)
+            return value.getLong();
+        else if (clazz == Double.class)
+            return value.getDouble();
+        else
+            return value.getString();
+    }
+}
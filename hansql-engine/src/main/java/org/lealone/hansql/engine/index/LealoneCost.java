@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import org.lealone.hansql.exec.physical.base.GroupScan;
+import org.lealone.hansql.exec.planner.cost.DrillCostBase;
+import org.lealone.hansql.exec.planner.cost.PluginCost;
+import org.lealone.hansql.exec.planner.index.Statistics;
+
+/**
+ * Disk cost parameters of Lealone tables and indexes, a random page read
+ * (e.g. the lookup of a row of the primary table by an index entry) costs more than a sequential one.
+ */
+public class LealoneCost implements PluginCost {
+
+    public static final LealoneCost INSTANCE = new LealoneCost();
+
+    private static final int PAGE_SIZE = 16 * 1024;
+    private static final int SEQUENTIAL_PAGE_READ_COST = DrillCostBase.BYTE_DISK_READ_COST * PAGE_SIZE;
+    private static final int RANDOM_PAGE_READ_COST = 8 * SEQUENTIAL_PAGE_READ_COST;
+
+    private LealoneCost() {
+    }
+
+    @Override
+    public int getAverageColumnSize(GroupScan scan) {
+        return (int) Statistics.AVG_COLUMN_SIZE;
+    }
+
+    @Override
+    public int getBlockSize(GroupScan scan) {
+        return PAGE_SIZE;
+    }
+
+    @Override
+    public int getSequentialBlockReadCost(GroupScan scan) {
+        return SEQUENTIAL_PAGE_READ_COST;
+    }
+
+    @Override
+    public int getRandomBlockReadCost(GroupScan scan) {
+        return RANDOM_PAGE_READ_COST;
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.lealone.common.exceptions.DbException;
+import org.lealone.db.index.Index;
+import org.lealone.db.index.IndexColumn;
+import org.lealone.db.result.SortOrder;
+import org.lealone.db.table.Column;
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueString;
+import org.lealone.hansql.common.expression.BooleanOperator;
+import org.lealone.hansql.common.expression.CastExpression;
+import org.lealone.hansql.common.expression.FunctionCall;
+import org.lealone.hansql.common.expression.LogicalExpression;
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.common.expression.ValueExpressions.BooleanExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.DateExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.Decimal18Expression;
+import org.lealone.hansql.common.expression.ValueExpressions.Decimal28Expression;
+import org.lealone.hansql.common.expression.ValueExpressions.Decimal38Expression;
+import org.lealone.hansql.common.expression.ValueExpressions.Decimal9Expression;
+import org.lealone.hansql.common.expression.ValueExpressions.DoubleExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.FloatExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.IntExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.LongExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.QuotedString;
+import org.lealone.hansql.common.expression.ValueExpressions.TimeExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.TimeStampExpression;
+import org.lealone.hansql.common.expression.ValueExpressions.VarDecimalExpression;
+import org.lealone.hansql.common.expression.visitors.AbstractExprVisitor;
+import org.lealone.hansql.engine.storage.LealoneIndexRanges;
+import org.lealone.hansql.engine.storage.LealoneScanRange;
+import org.lealone.hansql.exec.planner.QueryParameters;
+
+/**
+ * Builds key ranges on a Lealone index out of the conjuncts of a filter condition. Currently we look only for
+ * comparisons between a column and a constant or a dynamic parameter (=, <, <=, >, >=), IN-lists (an OR of
+ * equalities on one column) and LIKE with a constant prefix, on the leading columns of an index.
+ * Conjuncts that could not be converted exactly must be kept in a residual filter.
+ * <p>
+ * For an index merge scan the key ranges of more than one index are built, either for the conjuncts on the columns
+ * of different indexes (an intersection of their row keys), or for the disjuncts of an OR on the columns
+ * of different indexes (a union of their row keys).
+ */
+public class LealoneFilterBuilder {
+
+    // upper limit on the number of key ranges generated from IN-lists
+    private static final int MAX_RANGES = 1024;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final List<LogicalExpression> conjuncts;
+    private final List<ColumnCondition> conditions = new ArrayList<>();
+    // the conditions already turned into the key ranges of another index of an intersection
+    private final Set<ColumnCondition> usedConditions = new HashSet<>();
+
+    private Index index;
+    private List<LealoneScanRange> ranges;
+    private List<ColumnCondition> indexConditions;
+    private final Set<Integer> convertedConjuncts = new LinkedHashSet<>();
+
+    // the indexes after the first one of an index merge scan
+    private final List<LealoneIndexRanges> mergedRanges = new ArrayList<>();
+    private final List<Index> mergedIndexes = new ArrayList<>();
+    private boolean union;
+
+    /**
+     * @param conjuncts the conjuncts of the filter condition, already converted to Drill expressions
+     */
+    public LealoneFilterBuilder(List<LogicalExpression> conjuncts) {
+        this.conjuncts = conjuncts;
+        ConditionParser parser = new ConditionParser();
+        for (int i = 0, size = conjuncts.size(); i < size; i++) {
+            ColumnCondition c = conjuncts.get(i).accept(parser, null);
+            if (c != null) {
+                c.conjunct = i;
+                conditions.add(c);
+            }
+        }
+    }
+
+    /**
+     * Picks the index whose leading columns are best covered by the conditions.
+     *
+     * @return true if at least one condition could be turned into key ranges
+     */
+    public boolean build(Collection<Index> indexes) {
+        int bestScore = 0;
+        for (Index idx : indexes) {
+            List<ColumnCondition> used = new ArrayList<>();
+            Set<ColumnCondition> exact = new HashSet<>();
+            List<LealoneScanRange> r = buildRanges(idx, used, exact);
+            if (r == null) {
+                continue;
+            }
+            int score = getScore(used);
+            // prefer unique indexes, they return at most one row per equality key
+            if (score > bestScore || score == bestScore && idx.getIndexType().isUnique()
+                    && !index.getIndexType().isUnique()) {
+                bestScore = score;
+                index = idx;
+                ranges = r;
+                indexConditions = used;
+                convertedConjuncts.clear();
+                for (ColumnCondition c : exact) {
+                    convertedConjuncts.add(c.conjunct);
+                }
+            }
+        }
+        return index != null;
+    }
+
+    /**
+     * Like {@link #build(Collection)}, then adds the indexes that cover the conditions not used by the indexes
+     * picked so far, the scan reads the rows whose row keys are in the key ranges of all of them.
+     * The conditions of the added indexes stay in the filter, the scan falls back to the key ranges of
+     * the first index when the indexes have too many row keys to merge.
+     *
+     * @return true if the conditions could be turned into the key ranges of at least two indexes
+     */
+    public boolean buildIntersection(Collection<Index> indexes, int maxIndexes) {
+        if (!build(indexes)) {
+            return false;
+        }
+        List<Index> candidates = new ArrayList<>(indexes);
+        candidates.remove(index);
+        usedConditions.addAll(indexConditions);
+        while (mergedIndexes.size() + 1 < maxIndexes) {
+            Index best = null;
+            List<LealoneScanRange> bestRanges = null;
+            List<ColumnCondition> bestUsed = null;
+            int bestScore = 0;
+            for (Index idx : candidates) {
+                List<ColumnCondition> used = new ArrayList<>();
+                Set<ColumnCondition> exact = new HashSet<>();
+                List<LealoneScanRange> r = buildRanges(idx, used, exact);
+                if (r == null) {
+                    continue;
+                }
+                int score = getScore(used);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = idx;
+                    bestRanges = r;
+                    bestUsed = used;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            candidates.remove(best);
+            mergedIndexes.add(best);
+            mergedRanges.add(new LealoneIndexRanges(best.getName(), bestRanges));
+            usedConditions.addAll(bestUsed);
+        }
+        return !mergedIndexes.isEmpty();
+    }
+
+    /**
+     * Turns the first OR conjunct whose disjuncts each have key ranges on some index into a union of the
+     * row keys of those key ranges. All the conjuncts are left to the residual filter, the scan falls back to
+     * a full table scan when the indexes have too many row keys to merge.
+     *
+     * @return true if an OR conjunct could be turned into the key ranges of at least two indexes
+     */
+    public boolean buildUnion(Collection<Index> indexes, int maxIndexes) {
+        for (int i = 0, size = conjuncts.size(); i < size; i++) {
+            LogicalExpression conjunct = conjuncts.get(i);
+            if (isConditionOf(i) || !(conjunct instanceof FunctionCall)
+                    || !"booleanor".equalsIgnoreCase(((FunctionCall) conjunct).getName())) {
+                continue;
+            }
+            List<LogicalExpression> disjuncts = ((FunctionCall) conjunct).args;
+            if (disjuncts.size() > maxIndexes) {
+                continue;
+            }
+            List<LealoneFilterBuilder> builders = new ArrayList<>(disjuncts.size());
+            for (LogicalExpression disjunct : disjuncts) {
+                List<LogicalExpression> subConjuncts;
+                if (disjunct instanceof FunctionCall
+                        && "booleanand".equalsIgnoreCase(((FunctionCall) disjunct).getName())) {
+                    subConjuncts = ((FunctionCall) disjunct).args;
+                } else {
+                    subConjuncts = Collections.singletonList(disjunct);
+                }
+                LealoneFilterBuilder builder = new LealoneFilterBuilder(subConjuncts);
+                if (!builder.build(indexes)) {
+                    builders = null;
+                    break;
+                }
+                builders.add(builder);
+            }
+            if (builders == null) {
+                continue;
+            }
+            index = builders.get(0).getIndex();
+            ranges = builders.get(0).getRanges();
+            for (LealoneFilterBuilder builder : builders.subList(1, builders.size())) {
+                mergedIndexes.add(builder.getIndex());
+                mergedRanges.add(new LealoneIndexRanges(builder.getIndex().getName(), builder.getRanges()));
+            }
+            union = true;
+            convertedConjuncts.clear();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isConditionOf(int conjunct) {
+        for (ColumnCondition c : conditions) {
+            if (c.conjunct == conjunct) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the indexes after the first one of an index merge scan, their key ranges are in
+     * {@link #getMergedRanges()}.
+     */
+    public List<Index> getMergedIndexes() {
+        return mergedIndexes;
+    }
+
+    public List<LealoneIndexRanges> getMergedRanges() {
+        return mergedRanges;
+    }
+
+    public boolean isUnion() {
+        return union;
+    }
+
+    public List<LealoneScanRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns true if the given conjunct is fully expressed by the key ranges and can be removed from the filter.
+     */
+    public boolean isConverted(int conjunct) {
+        return convertedConjuncts.contains(conjunct);
+    }
+
+    private static int getScore(List<ColumnCondition> used) {
+        int score = 0;
+        for (ColumnCondition c : used) {
+            score += c.isEquality() ? 2 : 1;
+        }
+        return score;
+    }
+
+    /**
+     * Builds the key ranges of one candidate index.
+     *
+     * @param used gets the conditions turned into the key ranges
+     * @param exact gets the conditions fully expressed by the key ranges of this index, they can be removed
+     *            from the filter
+     * @return the key ranges, or null if no condition is on the leading columns of the index
+     */
+    private List<LealoneScanRange> buildRanges(Index idx, List<ColumnCondition> used, Set<ColumnCondition> exact) {
+        List<List<String>> prefixes = new ArrayList<>();
+        prefixes.add(new ArrayList<>());
+        ColumnCondition lower = null;
+        ColumnCondition upper = null;
+        for (IndexColumn indexColumn : idx.getIndexColumns()) {
+            Column column = indexColumn.column;
+            ColumnCondition eq = find(column, Kind.EQUAL);
+            if (eq != null) {
+                List<String> values = getDistinctValues(column, eq.values);
+                if (prefixes.size() * values.size() > MAX_RANGES) {
+                    break;
+                }
+                List<List<String>> newPrefixes = new ArrayList<>(prefixes.size() * values.size());
+                for (List<String> prefix : prefixes) {
+                    for (String v : values) {
+                        List<String> p = new ArrayList<>(prefix);
+                        p.add(v);
+                        newPrefixes.add(p);
+                    }
+                }
+                prefixes = newPrefixes;
+                used.add(eq);
+                // the index also returns the values that only differ in case or in trailing spaces,
+                // the filter must check them
+                if (eq.exact && !isIgnoreCaseOrFixed(column)) {
+                    exact.add(eq);
+                }
+                continue;
+            }
+            // the bounds of a descending column are in the reverse order in the index, and a case-insensitive
+            // or CHAR column is not ordered like the filter compares its values, so they are only used for
+            // equalities and prefixes
+            if ((indexColumn.sortType & SortOrder.DESCENDING) != 0) {
+                break;
+            }
+            if (isIgnoreCaseOrFixed(column)) {
+                if ((lower = find(column, Kind.PREFIX)) != null) {
+                    upper = lower;
+                    used.add(lower);
+                }
+                break;
+            }
+            ColumnCondition prefix = find(column, Kind.PREFIX);
+            if (prefix != null) {
+                lower = prefix;
+                upper = prefix;
+            } else {
+                lower = find(column, Kind.LOWER);
+                upper = find(column, Kind.UPPER);
+            }
+            if (lower != null) {
+                used.add(lower);
+                if (lower.exact) {
+                    exact.add(lower);
+                }
+            }
+            if (upper != null && upper != lower) {
+                used.add(upper);
+                // without a lower bound the range also returns the NULLs of this column
+                if (upper.exact && lower != null) {
+                    exact.add(upper);
+                }
+            }
+            break;
+        }
+        if (used.isEmpty()) {
+            return null;
+        }
+        // the ranges are replaced by a scan of the whole index when the value of a parameter can not be
+        // converted to the column type, see LealoneScanRange.bind, so the filter must check all the conditions
+        for (ColumnCondition c : used) {
+            if (c.hasParameter()) {
+                exact.clear();
+                break;
+            }
+        }
+        List<LealoneScanRange> list = new ArrayList<>(prefixes.size());
+        for (List<String> prefix : prefixes) {
+            List<String> start = new ArrayList<>(prefix);
+            List<String> end = new ArrayList<>(prefix);
+            if (lower != null) {
+                start.add(lower.values.get(0));
+            }
+            if (upper != null) {
+                end.add(upper.kind == Kind.PREFIX ? upper.values.get(0) + Character.MAX_VALUE
+                        : upper.values.get(upper.values.size() - 1));
+            }
+            list.add(new LealoneScanRange(start, end));
+        }
+        return list;
+    }
+
+    /**
+     * A case-insensitive or CHAR column does not compare its values like the operators of the plan,
+     * its index finds 'ABC' or 'abc  ' for 'abc'.
+     */
+    static boolean isIgnoreCaseOrFixed(Column column) {
+        return column.getType() == Value.STRING_IGNORECASE || column.getType() == Value.STRING_FIXED;
+    }
+
+    private ColumnCondition find(Column column, Kind kind) {
+        for (ColumnCondition c : conditions) {
+            if (c.kind == kind && c.columnName.equalsIgnoreCase(column.getName()) && !usedConditions.contains(c)
+                    && canConvert(column, c)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the values of the condition can be converted to the type of the column, a value that does not
+     * fit the column is left to the filter. A dynamic parameter is only known when the query is executed, its value
+     * is checked when the plan is bound, see LealoneScanRange.bind.
+     */
+    private static boolean canConvert(Column column, ColumnCondition c) {
+        if (c.kind == Kind.PREFIX) {
+            int type = column.getType();
+            return type == Value.STRING || type == Value.STRING_IGNORECASE || type == Value.STRING_FIXED;
+        }
+        for (String v : c.values) {
+            if (QueryParameters.isMarker(v)) {
+                continue;
+            }
+            try {
+                column.convert(ValueString.get(v));
+            } catch (DbException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the values of an IN-list that are the same value of the column, like 'a' and 'A' for a
+     * case-insensitive column, otherwise their key ranges would return the same rows twice.
+     */
+    private static List<String> getDistinctValues(Column column, List<String> values) {
+        if (values.size() == 1) {
+            return values;
+        }
+        Set<Value> converted = new HashSet<>(values.size());
+        List<String> distinct = new ArrayList<>(values.size());
+        for (String v : values) {
+            if (QueryParameters.isMarker(v) || converted.add(column.convert(ValueString.get(v)))) {
+                distinct.add(v);
+            }
+        }
+        return distinct;
+    }
+
+    private static enum Kind {
+        EQUAL,
+        LOWER,
+        UPPER,
+        PREFIX
+    }
+
+    private static class ColumnCondition {
+        final String columnName;
+        final Kind kind;
+        final List<String> values;
+        // false if the literal may be rounded when it is converted to the column type
+        final boolean exact;
+        int conjunct;
+
+        ColumnCondition(String columnName, Kind kind, List<String> values, boolean exact) {
+            this.columnName = columnName;
+            this.kind = kind;
+            this.values = values;
+            this.exact = exact;
+        }
+
+        boolean isEquality() {
+            return kind == Kind.EQUAL;
+        }
+
+        boolean hasParameter() {
+            for (String v : values) {
+                if (QueryParameters.isMarker(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class ConditionParser extends AbstractExprVisitor<ColumnCondition, Void, RuntimeException> {
+
+        @Override
+        public ColumnCondition visitFunctionCall(FunctionCall call, Void value) throws RuntimeException {
+            final String funcName = call.getName().toLowerCase();
+            switch (funcName) {
+            case "equal":
+            case "greater_than":
+            case "greater_than_or_equal_to":
+            case "less_than":
+            case "less_than_or_equal_to": {
+                if (call.args.size() != 2) {
+                    break;
+                }
+                LogicalExpression left = call.args.get(0);
+                LogicalExpression right = call.args.get(1);
+                boolean swapped = false;
+                if (!(left instanceof SchemaPath)) {
+                    LogicalExpression tmp = left;
+                    left = right;
+                    right = tmp;
+                    swapped = true;
+                }
+                String literal = getLiteral(right);
+                if (!(left instanceof SchemaPath) || literal == null) {
+                    break;
+                }
+                String column = ((SchemaPath) left).getRootSegmentPath();
+                List<String> values = new ArrayList<>(1);
+                values.add(literal);
+                // the column may round the literal when converting it, which still gives a wider range
+                boolean exact = isExactLiteral(right);
+                switch (swapped ? swap(funcName) : funcName) {
+                case "equal":
+                    return new ColumnCondition(column, Kind.EQUAL, values, exact);
+                case "greater_than":
+                    return new ColumnCondition(column, Kind.LOWER, values, false);
+                case "greater_than_or_equal_to":
+                    return new ColumnCondition(column, Kind.LOWER, values, exact);
+                case "less_than":
+                    return new ColumnCondition(column, Kind.UPPER, values, false);
+                default:
+                    return new ColumnCondition(column, Kind.UPPER, values, exact);
+                }
+            }
+            case "like": {
+                // only a constant prefix followed by a single trailing '%' and no escape character
+                if (call.args.size() != 2 || !(call.args.get(0) instanceof SchemaPath)
+                        || !(call.args.get(1) instanceof QuotedString)) {
+                    break;
+                }
+                String pattern = ((QuotedString) call.args.get(1)).getString();
+                int pos = pattern.indexOf('%');
+                if (pos <= 0 || pos != pattern.length() - 1 || pattern.indexOf('_') >= 0) {
+                    break;
+                }
+                List<String> values = new ArrayList<>(1);
+                values.add(pattern.substring(0, pos));
+                return new ColumnCondition(((SchemaPath) call.args.get(0)).getRootSegmentPath(), Kind.PREFIX,
+                        values, false);
+            }
+            case "booleanor": {
+                // an IN-list is an OR of equalities on the same column
+                String column = null;
+                Set<String> values = new LinkedHashSet<>();
+                boolean exact = true;
+                for (LogicalExpression arg : call.args) {
+                    ColumnCondition c = arg.accept(this, value);
+                    if (c == null || c.kind != Kind.EQUAL
+                            || column != null && !column.equalsIgnoreCase(c.columnName)) {
+                        return null;
+                    }
+                    column = c.columnName;
+                    values.addAll(c.values);
+                    exact &= c.exact;
+                }
+                if (column != null) {
+                    return new ColumnCondition(column, Kind.EQUAL, new ArrayList<>(values), exact);
+                }
+                break;
+            }
+            }
+            return null;
+        }
+
+        @Override
+        public ColumnCondition visitBooleanOperator(BooleanOperator op, Void value) throws RuntimeException {
+            return visitFunctionCall(op, value);
+        }
+
+        @Override
+        public ColumnCondition visitUnknown(LogicalExpression e, Void value) throws RuntimeException {
+            return null;
+        }
+
+        private static String swap(String funcName) {
+            switch (funcName) {
+            case "greater_than":
+                return "less_than";
+            case "greater_than_or_equal_to":
+                return "less_than_or_equal_to";
+            case "less_than":
+                return "greater_than";
+            case "less_than_or_equal_to":
+                return "greater_than_or_equal_to";
+            default:
+                return funcName;
+            }
+        }
+    }
+
+    private static boolean isExactLiteral(LogicalExpression e) {
+        // the type of a parameter is only known to be close to the type of the column
+        return getParameterIndex(e) < 0 && !(e instanceof FloatExpression || e instanceof DoubleExpression
+                || e instanceof VarDecimalExpression || e instanceof Decimal9Expression
+                || e instanceof Decimal18Expression || e instanceof Decimal28Expression
+                || e instanceof Decimal38Expression || e instanceof TimeStampExpression);
+    }
+
+    /**
+     * Returns the constant as a string that Lealone can convert to the column type, or null if it is not a constant.
+     */
+    static String getLiteral(LogicalExpression e) {
+        int parameterIndex = getParameterIndex(e);
+        if (parameterIndex >= 0) {
+            return QueryParameters.getMarker(parameterIndex);
+        } else if (e instanceof QuotedString) {
+            return ((QuotedString) e).getString();
+        } else if (e instanceof IntExpression) {
+            return Integer.toString(((IntExpression) e).getInt());
+        } else if (e instanceof LongExpression) {
+            return Long.toString(((LongExpression) e).getLong());
+        } else if (e instanceof FloatExpression) {
+            return Float.toString(((FloatExpression) e).getFloat());
+        } else if (e instanceof DoubleExpression) {
+            return Double.toString(((DoubleExpression) e).getDouble());
+        } else if (e instanceof BooleanExpression) {
+            return Boolean.toString(((BooleanExpression) e).getBoolean());
+        } else if (e instanceof VarDecimalExpression) {
+            return ((VarDecimalExpression) e).getBigDecimal().toPlainString();
+        } else if (e instanceof Decimal9Expression) {
+            Decimal9Expression d = (Decimal9Expression) e;
+            return BigDecimal.valueOf(d.getIntFromDecimal(), d.getScale()).toPlainString();
+        } else if (e instanceof Decimal18Expression) {
+            Decimal18Expression d = (Decimal18Expression) e;
+            return BigDecimal.valueOf(d.getLongFromDecimal(), d.getScale()).toPlainString();
+        } else if (e instanceof Decimal28Expression) {
+            return ((Decimal28Expression) e).getBigDecimal().toPlainString();
+        } else if (e instanceof Decimal38Expression) {
+            return ((Decimal38Expression) e).getBigDecimal().toPlainString();
+        } else if (e instanceof DateExpression) {
+            return LocalDate.ofEpochDay(Math.floorDiv(((DateExpression) e).getDate(), 24L * 60 * 60 * 1000))
+                    .toString();
+        } else if (e instanceof TimeExpression) {
+            return LocalTime.ofNanoOfDay(((TimeExpression) e).getTime() * 1000000L).format(TIME_FORMAT);
+        } else if (e instanceof TimeStampExpression) {
+            // the reader turns the timestamps of Lealone into millis with the default time zone, so the literal
+            // is compared with them as a time in the default time zone, the one Lealone parses the string with
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(((TimeStampExpression) e).getTimeStamp()),
+                    ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the dynamic parameter, or -1 if the expression is not a dynamic parameter.
+     * The value of the parameter is bound into the key ranges when the query is executed, see {@link QueryParameters}.
+     */
+    private static int getParameterIndex(LogicalExpression e) {
+        if (e instanceof CastExpression && ((CastExpression) e).getInput() instanceof FunctionCall) {
+            FunctionCall call = (FunctionCall) ((CastExpression) e).getInput();
+            if (QueryParameters.FUNCTION_NAME.equals(call.getName()) && call.args.size() == 1
+                    && call.args.get(0) instanceof IntExpression) {
+                return ((IntExpression) call.args.get(0)).getInt();
+            }
+        }
+        return -1;
+    }
+}
@@ -30,7 +30,9 @@ import org.lealone.hansql.common.expression.SchemaPath;
 import org.lealone.hansql.engine.storage.LealoneGroupScan;
 import org.lealone.hansql.exec.physical.base.GroupScan;
 import org.lealone.hansql.exec.physical.base.IndexGroupScan;
+import org.lealone.hansql.exec.physical.base.DbGroupScan;
 import org.lealone.hansql.exec.planner.cost.DrillCostBase;
+import org.lealone.hansql.exec.planner.cost.DrillCostBase.DrillCostFactory;
 import org.lealone.hansql.exec.planner.cost.PluginCost;
 import org.lealone.hansql.exec.planner.index.CollationContext;
 import org.lealone.hansql.exec.planner.index.DrillIndexDefinition;
@@ -38,10 +40,10 @@ import org.lealone.hansql.exec.planner.index.DrillIndexDescriptor;
 import org.lealone.hansql.exec.planner.index.FunctionalIndexInfo;
 import org.lealone.hansql.exec.planner.index.IndexDescriptor;
 import org.lealone.hansql.exec.planner.index.IndexProperties;
+import org.lealone.hansql.exec.planner.index.Statistics;
 import org.lealone.hansql.exec.planner.logical.DrillTable;
 import org.lealone.hansql.optimizer.plan.RelOptCost;
 import org.lealone.hansql.optimizer.plan.RelOptPlanner;
-import org.lealone.hansql.optimizer.rel.RelCollation;
 import org.lealone.hansql.optimizer.rel.RelNode;
 import org.lealone.hansql.optimizer.rel.RelFieldCollation.NullDirection;
 import org.lealone.hansql.optimizer.rex.RexNode;
@@ -73,19 +75,39 @@ public class LealoneIndexDescriptor extends DrillIndexDescriptor {
 
     @Override
     public double getRows(RelNode scan, RexNode indexCondition) {
-        // TODO: real implementation is to use Drill's stats implementation. for now return fake value 1.0
-        return 1.0;
+        double rowCount = new LealoneIndexStatistics(gs.getTable()).getRowCount(indexCondition, getIndexName(), scan);
+        return rowCount == Statistics.ROWCOUNT_UNKNOWN ? gs.getRowCount(null, scan) : rowCount;
     }
 
     @Override
     public RelOptCost getCost(IndexProperties indexProps, RelOptPlanner planner, int numProjectedFields,
             GroupScan primaryGroupScan) {
-        return new DrillCostBase.DrillCostFactory().makeZeroCost();
-    }
+        PluginCost pluginCostModel = getPluginCostModel();
+        DrillCostFactory costFactory = (DrillCostFactory) planner.getCostFactory();
+        double totalRows = indexProps.getTotalRows();
+        double leadRowCount = indexProps.getLeadingSelectivity() * totalRows;
+        double avgRowSize = indexProps.getAvgRowSize();
+        int blockSize = pluginCostModel.getBlockSize(primaryGroupScan);
+
+        // the index entries of the leading filters are read sequentially
+        double numBlocksIndex = Math.ceil((leadRowCount * avgRowSize) / blockSize);
+        double diskCost = numBlocksIndex * pluginCostModel.getSequentialBlockReadCost(primaryGroupScan);
+        if (!indexProps.isCovering()) {
+            // for the primary table join-back each row may belong to a different block, so in general
+            // num_blocks = num_rows; however, num_blocks cannot exceed the total number of blocks of the table
+            double totalBlocksPrimary = Math.ceil((((DbGroupScan) primaryGroupScan).getColumns().size()
+                    * pluginCostModel.getAverageColumnSize(primaryGroupScan) * totalRows) / blockSize);
+            double diskBlocksPrimary = Math.min(totalBlocksPrimary, leadRowCount);
+            diskCost += diskBlocksPrimary * pluginCostModel.getRandomBlockReadCost(primaryGroupScan);
+        }
 
-    @Override
-    public RelCollation getCollation() {
-        return null;
+        // cpu cost of remainder condition evaluation over the selected rows
+        double cpuCost = 0.0;
+        if (indexProps.getTotalRemainderFilter() != null) {
+            cpuCost = leadRowCount * DrillCostBase.COMPARE_CPU_COST;
+        }
+        double networkCost = 0.0;
+        return costFactory.makeCost(leadRowCount, cpuCost, diskCost, networkCost);
     }
 
     @Override
@@ -194,6 +216,6 @@ public class LealoneIndexDescriptor extends DrillIndexDescriptor {
 
     @Override
     public PluginCost getPluginCostModel() {
-        return null;
+        return LealoneCost.INSTANCE;
     }
 }
@@ -19,12 +19,18 @@ package org.lealone.hansql.engine.index;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import org.lealone.db.Database;
 import org.lealone.db.LealoneDatabase;
 import org.lealone.db.index.Index;
+import org.lealone.db.index.IndexColumn;
+import org.lealone.db.index.standard.StandardDelegateIndex;
 import org.lealone.db.index.standard.StandardSecondaryIndex;
+import org.lealone.db.result.SortOrder;
 import org.lealone.db.schema.Schema;
 import org.lealone.db.table.Column;
 import org.lealone.db.table.Table;
@@ -41,6 +47,8 @@ import org.lealone.hansql.exec.planner.index.IndexDescriptor;
 import org.lealone.hansql.exec.planner.index.IndexDiscoverBase;
 import org.lealone.hansql.exec.planner.index.IndexDefinition.IndexType;
 import org.lealone.hansql.exec.planner.logical.DrillTable;
+import org.lealone.hansql.optimizer.rel.RelFieldCollation;
+import org.lealone.hansql.optimizer.rel.RelFieldCollation.Direction;
 import org.lealone.hansql.optimizer.rel.RelFieldCollation.NullDirection;
 
 public class LealoneIndexDiscover extends IndexDiscoverBase {
@@ -61,21 +69,65 @@ public class LealoneIndexDiscover extends IndexDiscoverBase {
         Table table = schema.getTableOrView(null, spec.getTableName());
         HashSet<LealoneIndexDescriptor> indexes = new HashSet<>();
         for (Index index : table.getIndexes()) {
-            if (!(index instanceof StandardSecondaryIndex))
+            // the entries of a delegate index are the rows of the table, ordered by the primary key
+            boolean delegate = index instanceof StandardDelegateIndex;
+            if (!(index instanceof StandardSecondaryIndex) && !delegate)
                 continue;
             ArrayList<LogicalExpression> indexCols = new ArrayList<>();
             for (Column c : index.getColumns()) {
                 indexCols.add(SchemaPath.getSimplePath(c.getName()));
             }
-            CollationContext cc = new CollationContext(Collections.EMPTY_MAP, Collections.EMPTY_LIST);
+            ArrayList<LogicalExpression> nonIndexCols = indexCols;
+            if (delegate) {
+                nonIndexCols = new ArrayList<>();
+                for (Column c : table.getColumns()) {
+                    nonIndexCols.add(SchemaPath.getSimplePath(c.getName()));
+                }
+            }
+            CollationContext cc = buildCollationContext(index, indexCols);
             IndexType type = IndexType.NATIVE_SECONDARY_INDEX;
-            LealoneIndexDescriptor d = new LealoneIndexDescriptor(table, gs, indexCols, cc, indexCols,
+            LealoneIndexDescriptor d = new LealoneIndexDescriptor(table, gs, indexCols, cc, nonIndexCols,
                     Collections.EMPTY_LIST, index.getName(), table.getName(), type, NullDirection.FIRST);
             indexes.add(d);
         }
         return new LealoneIndexCollection(getOriginalScanRel(), indexes);
     }
 
+    /**
+     * The entries of an index are ordered by its columns, in the sort order of each column.
+     * The field index of a collation is the position of the column in the index.
+     */
+    private static CollationContext buildCollationContext(Index index, List<LogicalExpression> indexCols) {
+        IndexColumn[] columns = index.getIndexColumns();
+        Map<LogicalExpression, RelFieldCollation> collationMap = new HashMap<>();
+        List<RelFieldCollation> collations = new ArrayList<>(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            int sortType = columns[i].sortType;
+            Direction direction = (sortType & SortOrder.DESCENDING) != 0 ? Direction.DESCENDING
+                    : Direction.ASCENDING;
+            RelFieldCollation collation = new RelFieldCollation(i, direction,
+                    getNullDirection(columns[i].column, sortType, direction));
+            collations.add(collation);
+            collationMap.put(indexCols.get(i), collation);
+        }
+        return new CollationContext(collationMap, collations);
+    }
+
+    private static NullDirection getNullDirection(Column column, int sortType, Direction direction) {
+        if (!column.isNullable()) {
+            // there are no nulls to order, so the index satisfies the default null ordering of the query
+            return direction.defaultNullDirection();
+        }
+        if ((sortType & SortOrder.NULLS_FIRST) != 0) {
+            return NullDirection.FIRST;
+        }
+        if ((sortType & SortOrder.NULLS_LAST) != 0) {
+            return NullDirection.LAST;
+        }
+        // Lealone sorts nulls low by default
+        return direction == Direction.ASCENDING ? NullDirection.FIRST : NullDirection.LAST;
+    }
+
     @Override
     public DrillTable getNativeDrillTable(IndexDescriptor idxDesc) {
         return null;
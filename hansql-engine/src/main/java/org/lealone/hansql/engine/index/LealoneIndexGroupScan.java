@@ -26,6 +26,8 @@ import org.apache.drill.shaded.guava.com.google.common.collect.ListMultimap;
 import org.apache.drill.shaded.guava.com.google.common.collect.Lists;
 import org.lealone.db.Database;
 import org.lealone.db.LealoneDatabase;
+import org.lealone.db.index.Index;
+import org.lealone.db.index.standard.StandardDelegateIndex;
 import org.lealone.db.schema.Schema;
 import org.lealone.db.table.Table;
 import org.lealone.hansql.common.exceptions.ExecutionSetupException;
@@ -72,71 +74,46 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
     private List<LealoneWork> lealoneWorkList = Lists.newArrayList();
     private ListMultimap<Integer, LealoneWork> assignments;
     private List<EndpointAffinity> affinities;
-    private LealoneIndexTable indexTable;
 
     @JsonCreator
     public LealoneIndexGroupScan(@JsonProperty("scanSpec") LealoneScanSpec scanSpec,
             @JsonProperty("lealoneStoragePluginConfig") LealoneStoragePluginConfig lealoneStoragePluginConfig,
             @JsonProperty("columns") List<SchemaPath> columns, @JacksonInject StoragePluginRegistry pluginRegistry)
             throws IOException, ExecutionSetupException {
-        this((LealoneStoragePlugin) pluginRegistry.getPlugin(lealoneStoragePluginConfig), scanSpec, columns, null);
+        this((LealoneStoragePlugin) pluginRegistry.getPlugin(lealoneStoragePluginConfig), scanSpec, columns);
     }
 
+    /**
+     * @param scanSpec the spec of the scan, its index name is the secondary index to read
+     */
     public LealoneIndexGroupScan(LealoneStoragePlugin lealoneStoragePlugin, LealoneScanSpec scanSpec,
-            List<SchemaPath> columns, LealoneIndexTable indexTable) {
+            List<SchemaPath> columns) {
         super((String) null);
         this.lealoneStoragePlugin = lealoneStoragePlugin;
         this.scanSpec = scanSpec;
         this.columns = columns == null || columns.size() == 0 ? ALL_COLUMNS : columns;
-        this.indexTable = indexTable;
         init();
     }
 
+    /**
+     * The entries of a secondary index are not split, the whole index is read by one work unit.
+     */
     private void init() {
-        // String tableName = scanSpec.getTableName();
-        // Collection<DrillbitEndpoint> endpoints = lealoneStoragePlugin.getContext().getBits();
-        // Map<String,DrillbitEndpoint> endpointMap = Maps.newHashMap();
-        // for (DrillbitEndpoint endpoint : endpoints) {
-        // endpointMap.put(endpoint.getAddress(), endpoint);
-        // }
-        // try {
-        // List<LocatedTablet> locations =
-        // lealoneStoragePlugin.getClient().openTable(tableName).getTabletsLocations(10000);
-        // for (LocatedTablet tablet : locations) {
-        // LealoneWork work = new LealoneWork(tablet.getPartition().getPartitionKeyStart(),
-        // tablet.getPartition().getPartitionKeyEnd());
-        // for (Replica replica : tablet.getReplicas()) {
-        // String host = replica.getRpcHost();
-        // DrillbitEndpoint ep = endpointMap.get(host);
-        // if (ep != null) {
-        // work.getByteMap().add(ep, DEFAULT_TABLET_SIZE);
-        // }
-        // }
-        // lealoneWorkList.add(work);
-        // }
-        // } catch (Exception e) {
-        // throw new RuntimeException(e);
-        // }
+        lealoneWorkList = Lists.newArrayList();
+        assignments = null;
+        affinities = null;
+
+        LealoneWork work = new LealoneWork();
+        DrillbitEndpoint endpoint = lealoneStoragePlugin.getContext().getEndpoint();
+        if (endpoint != null) {
+            work.getByteMap().add(endpoint, DEFAULT_TABLET_SIZE);
+        }
+        lealoneWorkList.add(work);
     }
 
     private static class LealoneWork implements CompleteWork {
 
         private final EndpointByteMapImpl byteMap = new EndpointByteMapImpl();
-        private byte[] partitionKeyStart;
-        private byte[] partitionKeyEnd;
-
-        // public LealoneWork(byte[] partitionKeyStart, byte[] partitionKeyEnd) {
-        // this.partitionKeyStart = partitionKeyStart;
-        // this.partitionKeyEnd = partitionKeyEnd;
-        // }
-
-        public byte[] getPartitionKeyStart() {
-            return partitionKeyStart;
-        }
-
-        public byte[] getPartitionKeyEnd() {
-            return partitionKeyEnd;
-        }
 
         @Override
         public long getTotalBytes() {
@@ -156,9 +133,9 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
 
     /**
      * Private constructor, used for cloning.
-     * @param that The LealoneGroupScan to clone
+     * @param that The LealoneIndexGroupScan to clone
      */
-    public LealoneIndexGroupScan(LealoneIndexGroupScan that) {
+    private LealoneIndexGroupScan(LealoneIndexGroupScan that) {
         super(that);
         this.lealoneStoragePlugin = that.lealoneStoragePlugin;
         this.columns = that.columns;
@@ -166,7 +143,6 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
         this.filterPushedDown = that.filterPushedDown;
         this.lealoneWorkList = that.lealoneWorkList;
         this.assignments = that.assignments;
-        this.indexTable = that.indexTable;
     }
 
     @Override
@@ -176,6 +152,12 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
         return newScan;
     }
 
+    public LealoneIndexGroupScan clone(LealoneScanSpec scanSpec) {
+        LealoneIndexGroupScan newScan = new LealoneIndexGroupScan(this);
+        newScan.scanSpec = scanSpec;
+        return newScan;
+    }
+
     @Override
     public List<EndpointAffinity> getOperatorAffinity() {
         if (affinities == null) {
@@ -204,20 +186,31 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
 
         List<LealoneSubScanSpec> scanSpecList = Lists.newArrayList();
 
-        for (LealoneWork work : workList) {
-            scanSpecList.add(new LealoneSubScanSpec(scanSpec, getTableName(), work.getPartitionKeyStart(),
-                    work.getPartitionKeyEnd()));
+        for (int i = 0; i < workList.size(); i++) {
+            scanSpecList.add(new LealoneSubScanSpec(scanSpec, getTableName(), null, null));
         }
-        scanSpecList.add(new LealoneSubScanSpec(scanSpec, getTableName(), null, null));
-        return new LealoneSubScan(lealoneStoragePlugin, scanSpecList, this.columns, indexTable.getIndexName());
+        return new LealoneSubScan(lealoneStoragePlugin, scanSpecList, this.columns, scanSpec.getIndexName());
     }
 
-    // LealoneStoragePlugin plugin, LealoneStoragePluginConfig config,
-    // List<LealoneSubScanSpec> tabletInfoList, List<SchemaPath> columns
+    /**
+     * Uses the scale of {@link LealoneGroupScan#getScanStats()}, so the plans of the index scan and the table scan
+     * can be compared. An index entry only holds the index columns and the row key, so reading it is cheaper
+     * than reading the row.
+     */
     @Override
     public ScanStats getScanStats() {
-        long recordCount = 100000 * lealoneWorkList.size();
-        return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, recordCount, 0, recordCount);
+        Table table = getTable();
+        Index index = getIndex(table);
+        double rowCountApproximation = table.getRowCountApproximation();
+        double recordCount = rowCountApproximation * 100000;
+        if (scanSpec.hasRanges() && rowCountApproximation > 0) {
+            double rows = LealoneIndexStatistics.estimateRowCount(table, index, scanSpec.getRanges());
+            recordCount *= Math.min(1, rows / rowCountApproximation);
+        }
+        // the entries of a delegate index are the rows of the table
+        double entryWidth = index instanceof StandardDelegateIndex ? 1
+                : (index.getColumns().length + 1.0) / (table.getColumns().length + 1.0);
+        return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, recordCount, 1, recordCount * entryWidth);
     }
 
     @Override
@@ -232,6 +225,18 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
         return getLealoneScanSpec().getTableName();
     }
 
+    @JsonIgnore
+    public Table getTable() {
+        Database db = LealoneDatabase.getInstance().getDatabase(scanSpec.getDbName());
+        Schema schema = db.getSchema(null, scanSpec.getSchemaName());
+        return schema.getTableOrView(null, scanSpec.getTableName());
+    }
+
+    @JsonIgnore
+    public Index getIndex(Table table) {
+        return table.getSchema().getIndex(null, scanSpec.getIndexName());
+    }
+
     @Override
     public String getDigest() {
         return toString();
@@ -239,7 +244,7 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
 
     @Override
     public String toString() {
-        return "LealoneGroupScan [LealoneScanSpec=" + scanSpec + ", columns=" + columns + "]";
+        return "LealoneIndexGroupScan [LealoneScanSpec=" + scanSpec + ", columns=" + columns + "]";
     }
 
     @JsonProperty
@@ -269,6 +274,11 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
         this.filterPushedDown = true;
     }
 
+    @JsonIgnore
+    public boolean isFilterPushedDown() {
+        return filterPushedDown;
+    }
+
     /**
      * Empty constructor, do not use, only for testing.
      */
@@ -291,33 +301,29 @@ public class LealoneIndexGroupScan extends AbstractGroupScan implements IndexGro
 
     @Override
     public double getRowCount(RexNode condition, RelNode scanRel) {
-        Database db = LealoneDatabase.getInstance().getDatabase(scanSpec.getDbName());
-        Schema schema = db.getSchema(null, scanSpec.getSchemaName());
-        Table table = schema.getTableOrView(null, scanSpec.getTableName());
-        return table.getRowCountApproximation();
+        Table table = getTable();
+        double rowCount = new LealoneIndexStatistics(table).getRowCount(condition, scanSpec.getIndexName(), scanRel);
+        return rowCount == Statistics.ROWCOUNT_UNKNOWN ? table.getRowCountApproximation() : rowCount;
     }
 
     @Override
     public int getRowKeyOrdinal() {
-        // TODO Auto-generated method stub
-        return 0;
+        // the row key is not a column of the scan, only covering index scans are planned
+        return -1;
     }
 
     @Override
     public void setStatistics(Statistics statistics) {
-        // TODO Auto-generated method stub
-
+        // the row counts are estimated from the index, see getRowCount
     }
 
     @Override
     public void setColumns(List<SchemaPath> columns) {
-        // TODO Auto-generated method stub
-
+        this.columns = columns == null || columns.size() == 0 ? ALL_COLUMNS : columns;
     }
 
     @Override
     public void setParallelizationWidth(int width) {
-        // TODO Auto-generated method stub
-
+        // the index is read by one work unit
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Table;
+import org.lealone.hansql.common.expression.LogicalExpression;
+import org.lealone.hansql.engine.storage.LealoneScanRange;
+import org.lealone.hansql.exec.planner.common.DrillScanRelBase;
+import org.lealone.hansql.exec.planner.index.IndexCallContext;
+import org.lealone.hansql.exec.planner.index.IndexDescriptor;
+import org.lealone.hansql.exec.planner.index.Statistics;
+import org.lealone.hansql.exec.planner.logical.DrillOptiq;
+import org.lealone.hansql.exec.planner.logical.DrillParseContext;
+import org.lealone.hansql.exec.planner.physical.PrelUtil;
+import org.lealone.hansql.optimizer.plan.RelOptUtil;
+import org.lealone.hansql.optimizer.rel.RelNode;
+import org.lealone.hansql.optimizer.rel.metadata.RelMdUtil;
+import org.lealone.hansql.optimizer.rex.RexNode;
+
+/**
+ * Estimates the row count of a filter condition by probing the Lealone index for the key ranges of the condition.
+ * Conjuncts that can not be turned into key ranges fall back to the usual guessed selectivity.
+ */
+public class LealoneIndexStatistics implements Statistics {
+
+    // stop counting after this many index entries, probing has to stay cheap at planning time
+    private static final int MAX_PROBE_ROWS = 1000;
+
+    // the guessed selectivity of an equality on a dynamic parameter, like for an unknown equality predicate
+    private static final double EQUALITY_SELECTIVITY = 0.15;
+
+    private final Table table;
+
+    public LealoneIndexStatistics(Table table) {
+        this.table = table;
+    }
+
+    @Override
+    public boolean isStatsAvailable() {
+        return true;
+    }
+
+    @Override
+    public String buildUniqueIndexIdentifier(IndexDescriptor idx) {
+        return idx == null ? null : idx.getIndexName();
+    }
+
+    @Override
+    public double getRowCount(RexNode condition, String tabIdxName, RelNode scanRel) {
+        if (condition == null) {
+            return table.getRowCountApproximation();
+        }
+        List<Index> indexes;
+        if (tabIdxName == null) {
+            indexes = new ArrayList<>();
+            for (Index index : table.getIndexes()) {
+                if (!index.getIndexType().isScan()) {
+                    indexes.add(index);
+                }
+            }
+        } else {
+            Index index = table.getSchema().findIndex(null, tabIdxName);
+            if (index == null) {
+                return ROWCOUNT_UNKNOWN;
+            }
+            indexes = Collections.singletonList(index);
+        }
+
+        final DrillParseContext parseContext = new DrillParseContext(
+                PrelUtil.getPlannerSettings(scanRel.getCluster().getPlanner()));
+        final List<RexNode> conjuncts = RelOptUtil.conjunctions(condition);
+        final List<LogicalExpression> conditionExps = new ArrayList<>(conjuncts.size());
+        for (RexNode conjunct : conjuncts) {
+            conditionExps.add(DrillOptiq.toDrill(parseContext, scanRel, conjunct));
+        }
+        LealoneFilterBuilder filterBuilder = new LealoneFilterBuilder(conditionExps);
+        if (!filterBuilder.build(indexes)) {
+            return ROWCOUNT_UNKNOWN;
+        }
+        double rowCount = estimateRowCount(table, filterBuilder.getIndex(), filterBuilder.getRanges());
+        for (int i = 0, size = conjuncts.size(); i < size; i++) {
+            if (!filterBuilder.isConverted(i)) {
+                rowCount *= RelMdUtil.guessSelectivity(conjuncts.get(i));
+            }
+        }
+        return rowCount;
+    }
+
+    @Override
+    public double getLeadingRowCount(RexNode condition, String tabIdxName, DrillScanRelBase scanRel) {
+        return getRowCount(condition, tabIdxName, scanRel);
+    }
+
+    @Override
+    public double getAvgRowSize(String tabIdxName, boolean isIndexScan) {
+        return AVG_ROWSIZE_UNKNOWN;
+    }
+
+    @Override
+    public boolean initialize(RexNode condition, DrillScanRelBase scanRel, IndexCallContext context) {
+        return true;
+    }
+
+    /**
+     * Counts the index entries in the key ranges. Once more than {@link #MAX_PROBE_ROWS} entries have been seen
+     * the ranges are considered non-selective and half of the index is assumed, like for an unknown range predicate.
+     * The ranges of a query with dynamic parameters can not be probed, their row count is guessed.
+     */
+    public static double estimateRowCount(Table table, Index index, List<LealoneScanRange> ranges) {
+        for (LealoneScanRange range : ranges) {
+            if (range.hasParameters()) {
+                return guessRowCount(index, ranges);
+            }
+        }
+        ServerSession session = table.getDatabase().getSystemSession();
+        long count = 0;
+        for (LealoneScanRange range : LealoneScanRange.bind(table, index, ranges)) {
+            Cursor cursor = range.find(session, table, index);
+            while (cursor.next()) {
+                if (++count >= MAX_PROBE_ROWS) {
+                    return Math.max(count, index.getRowCountApproximation() * 0.5);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Guesses the row count of the key ranges from the equalities on the leading columns of the index:
+     * a unique lookup returns one row, each other equality keeps {@link #EQUALITY_SELECTIVITY} of the rows
+     * and a bound on the next column half of them.
+     */
+    private static double guessRowCount(Index index, List<LealoneScanRange> ranges) {
+        long indexRows = index.getRowCountApproximation();
+        boolean unique = index.getIndexType().isUnique() || index.getIndexType().isPrimaryKey();
+        double rowCount = 0;
+        for (LealoneScanRange range : ranges) {
+            List<String> start = range.getStart();
+            List<String> end = range.getEnd();
+            int equalities = 0;
+            while (equalities < start.size() && equalities < end.size()
+                    && start.get(equalities).equals(end.get(equalities))) {
+                equalities++;
+            }
+            if (unique && equalities == index.getColumns().length) {
+                rowCount += 1;
+                continue;
+            }
+            double rows = indexRows * Math.pow(EQUALITY_SELECTIVITY, equalities);
+            if (start.size() > equalities || end.size() > equalities) {
+                rows *= 0.5;
+            }
+            rowCount += rows;
+        }
+        return Math.min(rowCount, indexRows);
+    }
+}
@@ -24,17 +24,16 @@ import java.util.List;
 import org.apache.drill.shaded.guava.com.google.common.collect.Lists;
 import org.lealone.db.schema.Schema;
 import org.lealone.db.table.Column;
-import org.lealone.db.value.DataType;
 import org.lealone.hansql.common.expression.LogicalExpression;
 import org.lealone.hansql.common.expression.SchemaPath;
 import org.lealone.hansql.engine.storage.LealoneScanSpec;
 import org.lealone.hansql.engine.storage.LealoneStoragePlugin;
+import org.lealone.hansql.engine.storage.LealoneTable;
 import org.lealone.hansql.exec.physical.base.GroupScan;
 import org.lealone.hansql.exec.planner.logical.DynamicDrillTable;
 import org.lealone.hansql.exec.store.StoragePlugin;
 import org.lealone.hansql.optimizer.rel.type.RelDataType;
 import org.lealone.hansql.optimizer.rel.type.RelDataTypeFactory;
-import org.lealone.hansql.optimizer.sql.type.SqlTypeName;
 
 public class LealoneIndexTable extends DynamicDrillTable {
     // private final Schema schema;
@@ -64,27 +63,20 @@ public class LealoneIndexTable extends DynamicDrillTable {
         List<RelDataType> types = Lists.newArrayList();
         for (Column column : table.getColumns()) {
             names.add(column.getName());
-            RelDataType type = getSqlTypeFromLealoneType(typeFactory, column.getType());
-            type = typeFactory.createTypeWithNullability(type, column.isNullable());
-            types.add(type);
+            types.add(LealoneTable.getSqlType(typeFactory, column));
         }
 
         return typeFactory.createStructType(types, names);
     }
 
-    private RelDataType getSqlTypeFromLealoneType(RelDataTypeFactory typeFactory, int type) {
-        int sqlType = DataType.convertTypeToSQLType(type);
-        SqlTypeName typeName = SqlTypeName.getNameForJdbcType(sqlType);
-        return typeFactory.createSqlType(typeName);
-        // throw new UnsupportedOperationException("Unsupported type.");
-    }
-
     @Override
     public GroupScan getGroupScan() throws IOException {
         ArrayList<SchemaPath> indexCols = new ArrayList<>();
         for (LogicalExpression e : this.indexCols) {
             indexCols.add(SchemaPath.getSimplePath(e.toString()));
         }
-        return new LealoneIndexGroupScan((LealoneStoragePlugin) getPlugin(), scanSpec, indexCols, this);
+        LealoneScanSpec indexScanSpec = new LealoneScanSpec(scanSpec.getDbName(), scanSpec.getSchemaName(),
+                scanSpec.getTableName(), indexName, null);
+        return new LealoneIndexGroupScan((LealoneStoragePlugin) getPlugin(), indexScanSpec, indexCols);
     }
 }
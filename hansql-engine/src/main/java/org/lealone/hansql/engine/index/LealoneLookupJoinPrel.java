@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.engine.storage.LealoneLookupJoinPOP;
+import org.lealone.hansql.engine.storage.LealoneScanSpec;
+import org.lealone.hansql.exec.physical.base.PhysicalOperator;
+import org.lealone.hansql.exec.planner.cost.DrillCostBase;
+import org.lealone.hansql.exec.planner.cost.DrillCostBase.DrillCostFactory;
+import org.lealone.hansql.exec.planner.physical.PhysicalPlanCreator;
+import org.lealone.hansql.exec.planner.physical.Prel;
+import org.lealone.hansql.exec.planner.physical.PrelUtil;
+import org.lealone.hansql.exec.planner.physical.SinglePrel;
+import org.lealone.hansql.exec.record.BatchSchema.SelectionVectorMode;
+import org.lealone.hansql.optimizer.plan.RelOptCluster;
+import org.lealone.hansql.optimizer.plan.RelOptCost;
+import org.lealone.hansql.optimizer.plan.RelOptPlanner;
+import org.lealone.hansql.optimizer.plan.RelTraitSet;
+import org.lealone.hansql.optimizer.rel.RelNode;
+import org.lealone.hansql.optimizer.rel.RelWriter;
+import org.lealone.hansql.optimizer.rel.core.JoinRelType;
+import org.lealone.hansql.optimizer.rel.metadata.RelMetadataQuery;
+import org.lealone.hansql.optimizer.rel.type.RelDataType;
+
+/**
+ * Joins its input to a Lealone table by looking up the keys of each input batch in an index of the table.
+ * The output has the fields of the input followed by the projected columns of the table, in table order.
+ */
+public class LealoneLookupJoinPrel extends SinglePrel {
+
+    // the keys of an input batch are sorted before they are looked up
+    private static final int KEYS_PER_BATCH = 4096;
+
+    private final LealoneScanSpec scanSpec;
+    private final List<Integer> outerKeys;
+    private final List<SchemaPath> columns;
+    private final JoinRelType joinType;
+    private final double innerRowCount;
+    private final double joinRowCount;
+
+    /**
+     * @param scanSpec the inner table and the index that is probed
+     * @param outerKeys the fields of the input that match the leading columns of the index, in index order
+     * @param columns the columns of the inner table that are read, in table order
+     * @param innerRowCount the number of rows of the inner table
+     * @param joinRowCount the number of rows of the join
+     */
+    public LealoneLookupJoinPrel(RelOptCluster cluster, RelTraitSet traits, RelNode outer, RelDataType rowType,
+            LealoneScanSpec scanSpec, List<Integer> outerKeys, List<SchemaPath> columns, JoinRelType joinType,
+            double innerRowCount, double joinRowCount) {
+        super(cluster, traits, outer);
+        this.rowType = rowType;
+        this.scanSpec = scanSpec;
+        this.outerKeys = outerKeys;
+        this.columns = columns;
+        this.joinType = joinType;
+        this.innerRowCount = innerRowCount;
+        this.joinRowCount = joinRowCount;
+    }
+
+    @Override
+    public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+        return new LealoneLookupJoinPrel(getCluster(), traitSet, sole(inputs), rowType, scanSpec, outerKeys, columns,
+                joinType, innerRowCount, joinRowCount);
+    }
+
+    @Override
+    public PhysicalOperator getPhysicalOperator(PhysicalPlanCreator creator) throws IOException {
+        Prel child = (Prel) getInput();
+        PhysicalOperator childPOP = child.getPhysicalOperator(creator);
+
+        List<String> outerFields = child.getRowType().getFieldNames();
+        List<String> keys = new ArrayList<>(outerKeys.size());
+        for (int key : outerKeys) {
+            keys.add(outerFields.get(key));
+        }
+        // the columns of the table follow the fields of the input, with the names made unique by the join
+        List<String> outputNames = rowType.getFieldNames().subList(outerFields.size(), rowType.getFieldCount());
+        LealoneLookupJoinPOP pop = new LealoneLookupJoinPOP(childPOP, scanSpec, keys, columns,
+                new ArrayList<>(outputNames), joinType);
+        return creator.addMetadata(this, pop);
+    }
+
+    @Override
+    public double estimateRowCount(RelMetadataQuery mq) {
+        return joinRowCount;
+    }
+
+    /**
+     * One index descent per input row, each one is a random page read. A hash join instead pays for reading
+     * the whole inner table, so the lookups win when the input is small compared to the table.
+     */
+    @Override
+    public RelOptCost computeSelfCost(RelOptPlanner planner, RelMetadataQuery mq) {
+        if (PrelUtil.getSettings(getCluster()).useDefaultCosting()) {
+            return super.computeSelfCost(planner, mq).multiplyBy(.1);
+        }
+        final double outerRowCount = mq.getRowCount(getInput());
+        final int keySize = outerKeys.size();
+        final double sortCpuCost = outerRowCount * keySize * DrillCostBase.COMPARE_CPU_COST
+                * log2(Math.min(outerRowCount, KEYS_PER_BATCH));
+        final double probeCpuCost = outerRowCount * keySize * DrillCostBase.COMPARE_CPU_COST * log2(innerRowCount);
+        final double copyCpuCost = joinRowCount * getRowType().getFieldCount() * DrillCostBase.BASE_CPU_COST;
+        final double ioCost = outerRowCount * LealoneCost.INSTANCE.getRandomBlockReadCost(null);
+
+        DrillCostFactory costFactory = (DrillCostFactory) planner.getCostFactory();
+        return costFactory.makeCost(outerRowCount + joinRowCount, sortCpuCost + probeCpuCost + copyCpuCost, ioCost,
+                0);
+    }
+
+    private static double log2(double n) {
+        return Math.log(Math.max(2, n)) / Math.log(2);
+    }
+
+    @Override
+    public RelWriter explainTerms(RelWriter pw) {
+        return super.explainTerms(pw).item("table", scanSpec.getTableName()).item("index", scanSpec.getIndexName())
+                .item("keys", outerKeys).item("joinType", joinType);
+    }
+
+    @Override
+    public SelectionVectorMode getEncoding() {
+        return SelectionVectorMode.NONE;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.index;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lealone.db.index.Index;
+import org.lealone.db.table.Column;
+import org.lealone.db.table.Table;
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.engine.storage.LealoneGroupScan;
+import org.lealone.hansql.engine.storage.LealoneScanSpec;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.planner.logical.DrillJoinRel;
+import org.lealone.hansql.exec.planner.logical.DrillProjectRel;
+import org.lealone.hansql.exec.planner.logical.DrillScanRel;
+import org.lealone.hansql.exec.planner.logical.RelOptHelper;
+import org.lealone.hansql.exec.planner.physical.DrillDistributionTrait;
+import org.lealone.hansql.exec.planner.physical.FilterPrel;
+import org.lealone.hansql.exec.planner.physical.Prel;
+import org.lealone.hansql.exec.planner.physical.PrelUtil;
+import org.lealone.hansql.exec.planner.physical.ProjectPrel;
+import org.lealone.hansql.exec.store.StoragePluginOptimizerRule;
+import org.lealone.hansql.optimizer.plan.RelOptRuleCall;
+import org.lealone.hansql.optimizer.plan.RelOptRuleOperand;
+import org.lealone.hansql.optimizer.plan.RelOptUtil;
+import org.lealone.hansql.optimizer.plan.RelTraitSet;
+import org.lealone.hansql.optimizer.rel.RelNode;
+import org.lealone.hansql.optimizer.rel.core.JoinRelType;
+import org.lealone.hansql.optimizer.rel.type.RelDataType;
+import org.lealone.hansql.optimizer.rel.type.RelDataTypeFactory;
+import org.lealone.hansql.optimizer.rex.RexBuilder;
+import org.lealone.hansql.optimizer.rex.RexNode;
+import org.lealone.hansql.optimizer.sql.type.SqlTypeFamily;
+import org.lealone.hansql.optimizer.sql.type.SqlTypeName;
+import org.lealone.hansql.optimizer.sql.validate.SqlValidatorUtil;
+
+/**
+ * Plans <b>" select ... from t1 join t2 on t1.a = t2.pk "</b> as an index nested-loop join,
+ * when the right input is a Lealone table and the join keys match the leading columns of one of its indexes:
+ * <pre>
+ *    Project(join fields)
+ *         \
+ *    LealoneLookupJoin(t2, index, keys)
+ *         \
+ *         t1
+ * </pre>
+ * The table is not scanned, each batch of t1 is looked up in the index. The plan competes with the hash join
+ * of the same join on cost, see {@link LealoneLookupJoinPrel}. Only inner and left joins can be planned this way.
+ */
+public abstract class LealoneLookupJoinRule extends StoragePluginOptimizerRule {
+
+    private LealoneLookupJoinRule(RelOptRuleOperand operand, String description) {
+        super(operand, description);
+    }
+
+    public static final StoragePluginOptimizerRule JOIN_ON_SCAN = new LealoneLookupJoinRule(
+            RelOptHelper.some(DrillJoinRel.class, RelOptHelper.any(RelNode.class),
+                    RelOptHelper.any(DrillScanRel.class)),
+            "LealoneLookupJoinRule:Join_On_Scan") {
+
+        @Override
+        public void onMatch(RelOptRuleCall call) {
+            doOnMatch(call, call.rel(0), null, call.rel(2));
+        }
+
+        @Override
+        public boolean matches(RelOptRuleCall call) {
+            final DrillScanRel scan = call.rel(2);
+            return isLealoneTableScan(scan) && super.matches(call);
+        }
+    };
+
+    public static final StoragePluginOptimizerRule JOIN_ON_PROJ_ON_SCAN = new LealoneLookupJoinRule(
+            RelOptHelper.some(DrillJoinRel.class, RelOptHelper.any(RelNode.class),
+                    RelOptHelper.some(DrillProjectRel.class, RelOptHelper.any(DrillScanRel.class))),
+            "LealoneLookupJoinRule:Join_On_Proj_On_Scan") {
+
+        @Override
+        public void onMatch(RelOptRuleCall call) {
+            doOnMatch(call, call.rel(0), call.rel(2), call.rel(3));
+        }
+
+        @Override
+        public boolean matches(RelOptRuleCall call) {
+            final DrillScanRel scan = call.rel(3);
+            return isLealoneTableScan(scan) && super.matches(call);
+        }
+    };
+
+    private static boolean isLealoneTableScan(DrillScanRel scan) {
+        // the lookups would ignore the key ranges of a restricted scan
+        return scan.getGroupScan() instanceof LealoneGroupScan
+                && !((LealoneGroupScan) scan.getGroupScan()).getLealoneScanSpec().hasRanges();
+    }
+
+    protected void doOnMatch(RelOptRuleCall call, DrillJoinRel join, DrillProjectRel project, DrillScanRel scan) {
+        if (!PrelUtil.getPlannerSettings(call.getPlanner()).getOptions()
+                .getOption(ExecConstants.LEALONE_LOOKUP_JOIN_VALIDATOR)) {
+            return;
+        }
+        final JoinRelType joinType = join.getJoinType();
+        if (joinType != JoinRelType.INNER && joinType != JoinRelType.LEFT) {
+            return;
+        }
+        final RelNode outer = join.getLeft();
+        final RelNode inner = join.getRight();
+        final LealoneGroupScan groupScan = (LealoneGroupScan) scan.getGroupScan();
+        final Table table = groupScan.getTable();
+        if (table == null) {
+            return;
+        }
+
+        // the column of the table behind each field of the right input
+        final List<Column> innerColumns = new ArrayList<>();
+        for (int i = 0; i < inner.getRowType().getFieldCount(); i++) {
+            final Column column = LealoneAggregateToDirectScan.getColumn(table, scan, project, i);
+            if (column == null) {
+                return;
+            }
+            innerColumns.add(column);
+        }
+
+        final List<Integer> leftKeys = new ArrayList<>();
+        final List<Integer> rightKeys = new ArrayList<>();
+        final List<Boolean> filterNulls = new ArrayList<>();
+        final RexNode remaining = RelOptUtil.splitJoinCondition(outer, inner, join.getCondition(), leftKeys,
+                rightKeys, filterNulls);
+        // a null key is never looked up, so IS NOT DISTINCT FROM can not be answered
+        if (leftKeys.isEmpty() || filterNulls.contains(false)) {
+            return;
+        }
+
+        // pick the index with the longest prefix of columns matched by the keys, prefer unique lookups
+        Index index = null;
+        List<Integer> outerKeys = null;
+        for (Index idx : table.getIndexes()) {
+            if (idx.getIndexType().isScan()) {
+                continue;
+            }
+            final List<Integer> keys = new ArrayList<>();
+            for (Column column : idx.getColumns()) {
+                final int key = findOuterKey(outer, inner, innerColumns, leftKeys, rightKeys, column);
+                if (key < 0) {
+                    break;
+                }
+                keys.add(key);
+            }
+            if (keys.isEmpty()) {
+                continue;
+            }
+            if (index == null || keys.size() > outerKeys.size() || keys.size() == outerKeys.size()
+                    && isUniqueLookup(idx, keys.size()) && !isUniqueLookup(index, outerKeys.size())) {
+                index = idx;
+                outerKeys = keys;
+            }
+        }
+        if (index == null) {
+            return;
+        }
+        // the keys and conditions that are not answered by the index are filtered after the join,
+        // which only works for an inner join
+        final boolean residue = !remaining.isAlwaysTrue() || outerKeys.size() < leftKeys.size();
+        if (residue && joinType != JoinRelType.INNER) {
+            return;
+        }
+
+        // the reader returns the columns of the table in table order
+        final RelDataTypeFactory typeFactory = join.getCluster().getTypeFactory();
+        final List<SchemaPath> columns = new ArrayList<>();
+        final List<Column> readColumns = new ArrayList<>();
+        final List<RelDataType> types = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        for (Column column : table.getColumns()) {
+            final int field = innerColumns.indexOf(column);
+            if (field >= 0) {
+                columns.add(SchemaPath.getSimplePath(column.getName()));
+                readColumns.add(column);
+                types.add(inner.getRowType().getFieldList().get(field).getType());
+                names.add(column.getName());
+            }
+        }
+        final RelDataType rowType = SqlValidatorUtil.deriveJoinRowType(outer.getRowType(),
+                typeFactory.createStructType(types, names), joinType, typeFactory, null, Collections.emptyList());
+
+        final RelTraitSet traits = join.getTraitSet().plus(Prel.DRILL_PHYSICAL).plus(DrillDistributionTrait.SINGLETON);
+        final RelNode convertedOuter = convert(outer,
+                outer.getTraitSet().plus(Prel.DRILL_PHYSICAL).plus(DrillDistributionTrait.SINGLETON));
+        final LealoneScanSpec scanSpec = groupScan.getLealoneScanSpec();
+        final LealoneLookupJoinPrel lookupJoin = new LealoneLookupJoinPrel(join.getCluster(), traits, convertedOuter,
+                rowType, new LealoneScanSpec(scanSpec.getDbName(), scanSpec.getSchemaName(),
+                        scanSpec.getTableName(), index.getName(), null),
+                outerKeys, columns, joinType, table.getRowCountApproximation(),
+                call.getMetadataQuery().getRowCount(join));
+
+        // restore the fields of the join
+        final RexBuilder rexBuilder = join.getCluster().getRexBuilder();
+        final int outerFieldCount = outer.getRowType().getFieldCount();
+        final List<RexNode> expressions = new ArrayList<>(join.getRowType().getFieldCount());
+        for (int i = 0; i < outerFieldCount; i++) {
+            expressions.add(rexBuilder.makeInputRef(lookupJoin, i));
+        }
+        for (Column column : innerColumns) {
+            expressions.add(rexBuilder.makeInputRef(lookupJoin, outerFieldCount + readColumns.indexOf(column)));
+        }
+        RelNode result = new ProjectPrel(join.getCluster(), traits, lookupJoin, expressions, join.getRowType());
+        if (residue) {
+            result = new FilterPrel(join.getCluster(), traits, result, join.getCondition());
+        }
+        call.transformTo(result);
+    }
+
+    /**
+     * @return the field of the left input that is joined to the column, or -1 if there is none. A case-insensitive
+     *         or CHAR column is not looked up, the index would also return the rows the join condition rejects.
+     */
+    private static int findOuterKey(RelNode outer, RelNode inner, List<Column> innerColumns, List<Integer> leftKeys,
+            List<Integer> rightKeys, Column column) {
+        for (int i = 0; i < rightKeys.size(); i++) {
+            if (innerColumns.get(rightKeys.get(i)) == column && !LealoneFilterBuilder.isIgnoreCaseOrFixed(column)
+                    && isLookupType(outer.getRowType().getFieldList().get(leftKeys.get(i)).getType(),
+                            inner.getRowType().getFieldList().get(rightKeys.get(i)).getType())) {
+                return leftKeys.get(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The outer keys are converted to the types of the index columns, only integers and strings are looked up.
+     * A fractional or approximate number could only be looked up after a lossy conversion.
+     */
+    private static boolean isLookupType(RelDataType outerType, RelDataType innerType) {
+        final SqlTypeName outerTypeName = outerType.getSqlTypeName();
+        final SqlTypeName innerTypeName = innerType.getSqlTypeName();
+        if (SqlTypeName.INT_TYPES.contains(outerTypeName)) {
+            return SqlTypeName.INT_TYPES.contains(innerTypeName);
+        }
+        return outerTypeName.getFamily() == SqlTypeFamily.CHARACTER
+                && innerTypeName.getFamily() == SqlTypeFamily.CHARACTER;
+    }
+
+    private static boolean isUniqueLookup(Index index, int keyCount) {
+        return (index.getIndexType().isUnique() || index.getIndexType().isPrimaryKey())
+                && keyCount == index.getColumns().length;
+    }
+}
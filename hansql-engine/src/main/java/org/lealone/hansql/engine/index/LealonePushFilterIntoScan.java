@@ -17,12 +17,22 @@
  */
 package org.lealone.hansql.engine.index;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableList;
+import org.lealone.db.index.Index;
+import org.lealone.db.table.Table;
 import org.lealone.hansql.common.expression.LogicalExpression;
+import org.lealone.hansql.engine.storage.LealoneGroupScan;
+import org.lealone.hansql.engine.storage.LealoneScanSpec;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.physical.base.GroupScan;
 import org.lealone.hansql.exec.planner.logical.DrillOptiq;
 import org.lealone.hansql.exec.planner.logical.DrillParseContext;
 import org.lealone.hansql.exec.planner.logical.RelOptHelper;
 import org.lealone.hansql.exec.planner.physical.FilterPrel;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.exec.planner.physical.PrelUtil;
 import org.lealone.hansql.exec.planner.physical.ProjectPrel;
 import org.lealone.hansql.exec.planner.physical.ScanPrel;
@@ -30,8 +40,11 @@ import org.lealone.hansql.exec.store.StoragePluginOptimizerRule;
 import org.lealone.hansql.optimizer.plan.RelOptRuleCall;
 import org.lealone.hansql.optimizer.plan.RelOptRuleOperand;
 import org.lealone.hansql.optimizer.plan.RelOptUtil;
+import org.lealone.hansql.optimizer.plan.RelTraitSet;
+import org.lealone.hansql.optimizer.rel.RelCollations;
 import org.lealone.hansql.optimizer.rel.RelNode;
 import org.lealone.hansql.optimizer.rex.RexNode;
+import org.lealone.hansql.optimizer.rex.RexUtil;
 
 public abstract class LealonePushFilterIntoScan extends StoragePluginOptimizerRule {
 
@@ -41,25 +54,21 @@ public abstract class LealonePushFilterIntoScan extends StoragePluginOptimizerRu
 
     public static final StoragePluginOptimizerRule FILTER_ON_SCAN = new LealonePushFilterIntoScan(
             RelOptHelper.some(FilterPrel.class, RelOptHelper.any(ScanPrel.class)),
-            "MapRDBPushFilterIntoScan:Filter_On_Scan") {
+            "LealonePushFilterIntoScan:Filter_On_Scan") {
 
         @Override
         public void onMatch(RelOptRuleCall call) {
             final FilterPrel filter = call.rel(0);
             final ScanPrel scan = call.rel(1);
 
-            final RexNode condition = filter.getCondition();
-
-            if (scan.getGroupScan() instanceof LealoneIndexGroupScan) {
-                LealoneIndexGroupScan groupScan = (LealoneIndexGroupScan) scan.getGroupScan();
-                doPushFilterIntoGroupScan(call, filter, null, scan, groupScan, condition);
-            }
+            final List<RexNode> conjuncts = RelOptUtil.conjunctions(filter.getCondition());
+            doPushFilterIntoGroupScan(call, filter, null, scan, scan.getGroupScan(), conjuncts, conjuncts);
         }
 
         @Override
         public boolean matches(RelOptRuleCall call) {
             final ScanPrel scan = (ScanPrel) call.rel(1);
-            if (scan.getGroupScan() instanceof LealoneIndexGroupScan) {
+            if (isLealoneScan(scan.getGroupScan())) {
                 return super.matches(call);
             }
             return false;
@@ -68,7 +77,7 @@ public abstract class LealonePushFilterIntoScan extends StoragePluginOptimizerRu
 
     public static final StoragePluginOptimizerRule FILTER_ON_PROJECT = new LealonePushFilterIntoScan(
             RelOptHelper.some(FilterPrel.class, RelOptHelper.some(ProjectPrel.class, RelOptHelper.any(ScanPrel.class))),
-            "MapRDBPushFilterIntoScan:Filter_On_Project") {
+            "LealonePushFilterIntoScan:Filter_On_Project") {
 
         @Override
         public void onMatch(RelOptRuleCall call) {
@@ -77,68 +86,161 @@ public abstract class LealonePushFilterIntoScan extends StoragePluginOptimizerRu
             final ScanPrel scan = call.rel(2);
 
             // convert the filter to one that references the child of the project
-            final RexNode condition = RelOptUtil.pushPastProject(filter.getCondition(), project);
-
-            if (scan.getGroupScan() instanceof LealoneIndexGroupScan) {
-                LealoneIndexGroupScan groupScan = (LealoneIndexGroupScan) scan.getGroupScan();
-                doPushFilterIntoGroupScan(call, filter, project, scan, groupScan, condition);
+            final List<RexNode> conjuncts = RelOptUtil.conjunctions(filter.getCondition());
+            final List<RexNode> pushedConjuncts = new ArrayList<>(conjuncts.size());
+            for (RexNode conjunct : conjuncts) {
+                pushedConjuncts.add(RelOptUtil.pushPastProject(conjunct, project));
             }
+            doPushFilterIntoGroupScan(call, filter, project, scan, scan.getGroupScan(), conjuncts,
+                    pushedConjuncts);
         }
 
         @Override
         public boolean matches(RelOptRuleCall call) {
             final ScanPrel scan = call.rel(2);
-            if (scan.getGroupScan() instanceof LealoneIndexGroupScan) {
+            if (isLealoneScan(scan.getGroupScan())) {
                 return super.matches(call);
             }
             return false;
         }
     };
 
-    @SuppressWarnings("unused")
+    /**
+     * @param conjuncts the conjuncts of the filter condition
+     * @param pushedConjuncts the same conjuncts, rewritten to reference the columns of the scan
+     */
     protected void doPushFilterIntoGroupScan(final RelOptRuleCall call, final FilterPrel filter,
-            final ProjectPrel project, final ScanPrel scan, final LealoneIndexGroupScan groupScan,
-            final RexNode condition) {
-
-        // if (groupScan.isFilterPushedDown()) {
-        // /*
-        // * The rule can get triggered again due to the transformed "scan => filter" sequence
-        // * created by the earlier execution of this rule when we could not do a complete
-        // * conversion of Optiq Filter's condition to HBase Filter. In such cases, we rely upon
-        // * this flag to not do a re-processing of the rule on the already transformed call.
-        // */
-        // return;
-        // }
-
-        final LogicalExpression conditionExp = DrillOptiq
-                .toDrill(new DrillParseContext(PrelUtil.getPlannerSettings(call.getPlanner())), scan, condition);
-        // final MapRDBFilterBuilder maprdbFilterBuilder = new MapRDBFilterBuilder(groupScan, conditionExp);
-        // final HBaseScanSpec newScanSpec = maprdbFilterBuilder.parseTree();
-        // if (newScanSpec == null) {
-        // return; // no filter pushdown ==> No transformation.
-        // }
-
-        // Pass tableStats from old groupScan so we do not go and fetch stats (an expensive operation) again from MapR
-        // DB client.
-        final LealoneIndexGroupScan newGroupsScan = new LealoneIndexGroupScan(groupScan);
-        newGroupsScan.setFilterPushedDown(true);
-
-        final ScanPrel newScanPrel = new ScanPrel(scan.getCluster(), filter.getTraitSet(), newGroupsScan,
-                scan.getRowType(), scan.getTable());
+            final ProjectPrel project, final ScanPrel scan, final GroupScan groupScan,
+            final List<RexNode> conjuncts, final List<RexNode> pushedConjuncts) {
+
+        if (isFilterPushedDown(groupScan)) {
+            /*
+             * The rule can get triggered again due to the transformed "scan => filter" sequence
+             * created by the earlier execution of this rule when we could not do a complete
+             * conversion of Optiq Filter's condition to key ranges. In such cases, we rely upon
+             * this flag to not do a re-processing of the rule on the already transformed call.
+             */
+            return;
+        }
+
+        final DrillParseContext parseContext = new DrillParseContext(PrelUtil.getPlannerSettings(call.getPlanner()));
+        final List<LogicalExpression> conditionExps = new ArrayList<>(pushedConjuncts.size());
+        for (RexNode conjunct : pushedConjuncts) {
+            conditionExps.add(DrillOptiq.toDrill(parseContext, scan, conjunct));
+        }
+
+        final List<Index> indexes = getCandidateIndexes(groupScan);
+        final LealoneFilterBuilder filterBuilder = new LealoneFilterBuilder(conditionExps);
+        if (filterBuilder.build(indexes)) {
+            transform(call, filter, project, scan, groupScan, conjuncts, filterBuilder);
+        }
+
+        // an index merge scan competes with the scan of the best single index on cost
+        final PlannerSettings settings = PrelUtil.getPlannerSettings(call.getPlanner());
+        if (groupScan instanceof LealoneGroupScan
+                && settings.getOptions().getOption(ExecConstants.LEALONE_INDEX_MERGE_VALIDATOR)) {
+            final int maxIndexes = (int) settings.getMaxIndexesToIntersect();
+            final LealoneFilterBuilder intersection = new LealoneFilterBuilder(conditionExps);
+            if (intersection.buildIntersection(indexes, maxIndexes)) {
+                transform(call, filter, project, scan, groupScan, conjuncts, intersection);
+            }
+            final LealoneFilterBuilder union = new LealoneFilterBuilder(conditionExps);
+            if (union.buildUnion(indexes, maxIndexes)) {
+                transform(call, filter, project, scan, groupScan, conjuncts, union);
+            }
+        }
+    }
+
+    private static void transform(final RelOptRuleCall call, final FilterPrel filter, final ProjectPrel project,
+            final ScanPrel scan, final GroupScan groupScan, final List<RexNode> conjuncts,
+            final LealoneFilterBuilder filterBuilder) {
+        final GroupScan newGroupsScan = cloneWithRanges(groupScan, filterBuilder);
+
+        final ScanPrel newScanPrel = new ScanPrel(scan.getCluster(), getTraitSet(filter, filterBuilder),
+                newGroupsScan, scan.getRowType(), scan.getTable());
 
         // Depending on whether is a project in the middle, assign either scan or copy of project to childRel.
         final RelNode childRel = project == null ? newScanPrel
-                : project.copy(project.getTraitSet(), ImmutableList.of((RelNode) newScanPrel));
-
-        // if (maprdbFilterBuilder.isAllExpressionsConverted()) {
-        // /*
-        // * Since we could convert the entire filter condition expression into an HBase filter,
-        // * we can eliminate the filter operator altogether.
-        // */
-        // call.transformTo(childRel);
-        // } else {
-        // call.transformTo(filter.copy(filter.getTraitSet(), ImmutableList.of(childRel)));
-        // }
+                : project.copy(getTraitSet(project, filterBuilder), ImmutableList.of((RelNode) newScanPrel));
+
+        final List<RexNode> residue = new ArrayList<>(conjuncts.size());
+        for (int i = 0, size = conjuncts.size(); i < size; i++) {
+            if (!filterBuilder.isConverted(i)) {
+                residue.add(conjuncts.get(i));
+            }
+        }
+
+        if (residue.isEmpty()) {
+            /*
+             * Since we could convert the entire filter condition expression into key ranges,
+             * we can eliminate the filter operator altogether.
+             */
+            call.transformTo(childRel);
+        } else {
+            final RexNode newCondition = RexUtil.composeConjunction(filter.getCluster().getRexBuilder(), residue,
+                    false);
+            call.transformTo(filter.copy(getTraitSet(filter, filterBuilder), childRel, newCondition));
+        }
+    }
+
+    /**
+     * The key ranges of an IN-list are read one after the other, not in the order of the index,
+     * so the rows of several ranges lose the collation of an index scan. An index merge scan returns
+     * the rows in the order of their row keys.
+     */
+    private static RelTraitSet getTraitSet(RelNode rel, LealoneFilterBuilder filterBuilder) {
+        RelTraitSet traitSet = rel.getTraitSet();
+        if (filterBuilder.getRanges().size() > 1 || !filterBuilder.getMergedIndexes().isEmpty()) {
+            traitSet = traitSet.replace(RelCollations.EMPTY);
+        }
+        return traitSet;
+    }
+
+    private static boolean isLealoneScan(GroupScan groupScan) {
+        return groupScan instanceof LealoneGroupScan || groupScan instanceof LealoneIndexGroupScan;
+    }
+
+    private static boolean isFilterPushedDown(GroupScan groupScan) {
+        if (groupScan instanceof LealoneIndexGroupScan) {
+            return ((LealoneIndexGroupScan) groupScan).isFilterPushedDown();
+        }
+        return ((LealoneGroupScan) groupScan).isFilterPushedDown();
     }
 
+    private static GroupScan cloneWithRanges(GroupScan groupScan, LealoneFilterBuilder filterBuilder) {
+        if (groupScan instanceof LealoneIndexGroupScan) {
+            LealoneIndexGroupScan indexGroupScan = (LealoneIndexGroupScan) groupScan;
+            LealoneIndexGroupScan newGroupScan = indexGroupScan
+                    .clone(newScanSpec(indexGroupScan.getLealoneScanSpec(), filterBuilder));
+            newGroupScan.setFilterPushedDown(true);
+            return newGroupScan;
+        }
+        LealoneGroupScan tableGroupScan = (LealoneGroupScan) groupScan;
+        LealoneGroupScan newGroupScan = tableGroupScan
+                .clone(newScanSpec(tableGroupScan.getLealoneScanSpec(), filterBuilder));
+        newGroupScan.setFilterPushedDown(true);
+        return newGroupScan;
+    }
+
+    private static LealoneScanSpec newScanSpec(LealoneScanSpec scanSpec, LealoneFilterBuilder filterBuilder) {
+        return new LealoneScanSpec(scanSpec.getDbName(), scanSpec.getSchemaName(), scanSpec.getTableName(),
+                filterBuilder.getIndex().getName(), filterBuilder.getRanges(), filterBuilder.getMergedRanges(),
+                filterBuilder.isUnion());
+    }
+
+    private static List<Index> getCandidateIndexes(GroupScan groupScan) {
+        if (groupScan instanceof LealoneIndexGroupScan) {
+            // an index scan can only be restricted to the key ranges of its own index
+            LealoneIndexGroupScan indexGroupScan = (LealoneIndexGroupScan) groupScan;
+            return ImmutableList.of(indexGroupScan.getIndex(indexGroupScan.getTable()));
+        }
+        Table table = ((LealoneGroupScan) groupScan).getTable();
+        List<Index> indexes = new ArrayList<>();
+        for (Index index : table.getIndexes()) {
+            if (!index.getIndexType().isScan()) {
+                indexes.add(index);
+            }
+        }
+        return indexes;
+    }
 }
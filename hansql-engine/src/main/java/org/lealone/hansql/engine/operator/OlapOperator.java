@@ -17,11 +17,13 @@
  */
 package org.lealone.hansql.engine.operator;
 
+import org.lealone.common.exceptions.DbException;
 import org.lealone.db.result.LocalResult;
 import org.lealone.db.session.ServerSession;
 import org.lealone.db.session.SessionStatus;
 import org.lealone.hansql.engine.HanEngine;
 import org.lealone.hansql.engine.server.HanClientConnection;
+import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.SqlExecutor;
 import org.lealone.hansql.optimizer.schema.SchemaPlus;
 import org.lealone.net.NetNode;
@@ -33,6 +35,12 @@ public class OlapOperator implements Operator {
     private Select select;
     private LocalResult localResult;
     private SqlExecutor sqlExecutor;
+    private HanClientConnection clientConnection;
+    // the query runs on the OLAP thread pool, this operator only collects its rows
+    private boolean isolated;
+    private volatile boolean completed;
+    // the failure of the query, thrown on the thread of the session
+    private volatile Throwable failure;
 
     public OlapOperator(Select select, LocalResult localResult) {
         this.select = select;
@@ -45,19 +53,43 @@ public class OlapOperator implements Operator {
         String sql = select.getSQL();
         HanEngine hanEngine = HanEngine.getInstance();
         SchemaPlus rootSchema = hanEngine.getRootSchema(session, sql, true, true);
-        HanClientConnection clientConnection = new HanClientConnection(rootSchema, session, hanEngine,
+        clientConnection = new HanClientConnection(rootSchema, session, hanEngine,
                 NetNode.getLocalTcpNode().getInetSocketAddress(), localResult, res -> {
+                    failure = res.getCause();
+                    completed = true;
                     session.setStatus(SessionStatus.STATEMENT_COMPLETED);
                     session.getTransactionListener().wakeUp();
                 });
         clientConnection.setCursor(select.getTableFilter().getCursor());
+        isolated = clientConnection.getSession().getOptions()
+                .getOption(ExecConstants.OLAP_ISOLATED_EXECUTION_VALIDATOR);
+        clientConnection.setIsolated(isolated);
         sqlExecutor = hanEngine.createSqlExecutor(clientConnection, sql);
-        sqlExecutor.start();
+        if (isolated) {
+            // neither the planning nor the execution holds the scheduler thread of the session
+            hanEngine.getDrillbitContext().getOlapExecutor().execute(sqlExecutor);
+        } else {
+            sqlExecutor.start();
+            checkFailure();
+            // a query with exchanges runs its root fragment on the OLAP thread pool too
+            isolated = sqlExecutor.isIsolated();
+        }
     }
 
     @Override
     public void run() {
-        sqlExecutor.yieldableRun();
+        if (isolated) {
+            clientConnection.drainPendingResults();
+        } else {
+            sqlExecutor.yieldableRun();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw DbException.convert(failure);
+        }
     }
 
     @Override
@@ -66,6 +98,13 @@ public class OlapOperator implements Operator {
 
     @Override
     public boolean isStopped() {
+        if (failure != null) {
+            // run() throws it
+            return false;
+        }
+        if (isolated) {
+            return completed && !clientConnection.hasPendingResults();
+        }
         return sqlExecutor.isStopped();
     }
 
@@ -18,7 +18,9 @@
 package org.lealone.hansql.engine.server;
 
 import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.lealone.db.Database;
 import org.lealone.db.async.AsyncHandler;
 import org.lealone.db.async.AsyncResult;
 import org.lealone.db.index.Cursor;
@@ -26,6 +28,8 @@ import org.lealone.db.result.LocalResult;
 import org.lealone.db.result.Result;
 import org.lealone.db.session.ServerSession;
 import org.lealone.hansql.engine.HanEngine;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.SqlExecutor;
 import org.lealone.hansql.exec.physical.impl.materialize.QueryWritableBatch;
 import org.lealone.hansql.exec.proto.UserBitShared.QueryResult;
 import org.lealone.hansql.exec.proto.UserBitShared.UserCredentials;
@@ -41,8 +45,17 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
     private final SocketAddress remoteAddress;
     private final AsyncHandler<AsyncResult<Result>> asyncHandler;
     private final LocalResult localResult;
+    // the batches of a HanSQL result are sent as whole vectors, see HanColumnarBatch
+    private final boolean columnar;
+    private final boolean compressed;
 
     private Cursor cursor;
+    private HanStreamingResult streamingResult;
+    private SqlExecutor streamingExecutor;
+    private boolean resultSent;
+    // the batches of an isolated OLAP query, waiting for the thread of the session
+    private ConcurrentLinkedQueue<HanResult> pendingResults;
+    private volatile int pendingRowCount;
 
     public HanClientConnection(SchemaPlus schema, ServerSession serverSession, HanEngine engine,
             SocketAddress remoteAddress, LocalResult localResult, AsyncHandler<AsyncResult<Result>> asyncHandler) {
@@ -54,9 +67,15 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
                 // .setSupportComplexTypes(inbound.getSupportComplexTypes())
                 .build();
         session.setDefaultSchema(schema);
+        // the schemas of an OLAP query are not the ones of a HanSQL query, see HanEngine.getRootSchema
+        Database db = serverSession.getDatabase();
+        session.setSchemaVersion(db.getShortName() + ":" + db.getModificationMetaId() + ":"
+                + serverSession.getCurrentSchemaName() + (localResult != null ? ":olap" : ""));
         this.remoteAddress = remoteAddress;
         this.asyncHandler = asyncHandler;
         this.localResult = localResult;
+        columnar = localResult == null && session.getOptions().getOption(ExecConstants.RESULT_COLUMNAR_VALIDATOR);
+        compressed = session.getOptions().getOption(ExecConstants.RESULT_COLUMNAR_COMPRESSION_VALIDATOR);
     }
 
     public ServerSession getServerSession() {
@@ -76,14 +95,86 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
         this.cursor = cursor;
     }
 
+    /**
+     * The root fragment of the query is run by the thread that reads the result, the result is handed to the client
+     * as soon as the first batch is produced, instead of once the query ends. Only a forward only result can be
+     * streamed, see {@link #startStreaming()}.
+     */
+    public void setStreaming(SqlExecutor sqlExecutor) {
+        streamingResult = localResult == null ? new HanStreamingResult(sqlExecutor) : null;
+        streamingExecutor = sqlExecutor;
+    }
+
+    /**
+     * Runs the root fragment of a streamed query until its first batch gives the columns of the result, then hands
+     * the result to the client. Called by the thread of the session once the query is started.
+     */
+    public void startStreaming() {
+        if (streamingResult == null) {
+            return;
+        }
+        while (!resultSent && !streamingExecutor.isStopped()) {
+            streamingExecutor.yieldableRun();
+        }
+    }
+
+    /**
+     * The OLAP query runs on the OLAP thread pool. Its batches are queued and the session is woken up,
+     * only the thread of the session adds their rows to the local result, see {@link #drainPendingResults()}.
+     * <p>
+     * The root fragment of a streamed query does not run on the thread that reads the result then, its batches
+     * are kept until the query ends, as the ones of a scrollable result.
+     */
+    @Override
+    public void setIsolated(boolean isolated) {
+        pendingResults = isolated && localResult != null ? new ConcurrentLinkedQueue<>() : null;
+        if (isolated) {
+            streamingResult = null;
+        }
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return streamingResult != null && streamingResult.isFull();
+    }
+
+    /**
+     * Adds the rows of the queued batches to the local result, called by the thread of the session.
+     */
+    public void drainPendingResults() {
+        HanResult result;
+        while ((result = pendingResults.poll()) != null) {
+            while (result.next()) {
+                localResult.addRow(result.current);
+            }
+        }
+    }
+
+    public boolean hasPendingResults() {
+        return pendingResults != null && !pendingResults.isEmpty();
+    }
+
     @Override
     public void sendResult(QueryResult result) {
         // logger.info("sendResult");
-        AsyncResult<Result> ar = new AsyncResult<>();
+        RuntimeException cause = null;
         if (result != null && result.getQueryState() == QueryResult.QueryState.FAILED) {
-            ar.setCause(new RuntimeException(result.getErrorList().get(0).getMessage()));
+            cause = new RuntimeException(result.getErrorList().get(0).getMessage());
+        }
+        if (streamingResult != null) {
+            streamingResult.finish(cause);
+            if (resultSent) {
+                return;
+            }
+            resultSent = true;
+        }
+        AsyncResult<Result> ar = new AsyncResult<>();
+        if (cause != null) {
+            ar.setCause(cause);
+        } else if (localResult != null) {
+            ar.setResult(localResult);
         } else {
-            ar.setResult(localResult == null ? batchResult : localResult);
+            ar.setResult(streamingResult != null ? streamingResult : batchResult);
         }
         asyncHandler.handle(ar);
     }
@@ -100,8 +191,14 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
 
     @Override
     public void sendData(RecordBatch data) {
-        HanResult result = new HanResult(data);
-        if (localResult == null) {
+        HanResult result = columnar ? HanColumnarBatch.toResult(data, compressed) : new HanResult(data);
+        if (streamingResult != null) {
+            stream(result);
+        } else if (pendingResults != null) {
+            pendingResults.add(result);
+            pendingRowCount += result.getRowCount();
+            serverSession.getTransactionListener().wakeUp();
+        } else if (localResult == null) {
             batchResult.addResult(result);
         } else {
             while (result.next()) {
@@ -110,6 +207,18 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
         }
     }
 
+    private void stream(HanResult result) {
+        if (!streamingResult.add(result)) {
+            throw new IllegalStateException("The result was closed before the end of the query");
+        }
+        if (!resultSent) {
+            resultSent = true;
+            AsyncResult<Result> ar = new AsyncResult<>();
+            ar.setResult(streamingResult);
+            asyncHandler.handle(ar);
+        }
+    }
+
     public org.lealone.db.result.Result getResult() {
         return batchResult;
     }
@@ -121,6 +230,9 @@ public class HanClientConnection implements org.lealone.hansql.exec.session.User
 
     @Override
     public int getRowCount() {
+        if (pendingResults != null) {
+            return pendingRowCount;
+        }
         return localResult == null ? batchResult.getRowCount() : localResult.getRowCount();
     }
 }
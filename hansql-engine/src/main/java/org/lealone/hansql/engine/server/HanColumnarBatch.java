@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueBytes;
+import org.lealone.hansql.common.types.TypeProtos.MinorType;
+import org.lealone.hansql.common.types.Types;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.exception.SchemaChangeException;
+import org.lealone.hansql.exec.proto.UserBitShared.RecordBatchDef;
+import org.lealone.hansql.exec.record.BatchSchema;
+import org.lealone.hansql.exec.record.MaterializedField;
+import org.lealone.hansql.exec.record.RecordBatch;
+import org.lealone.hansql.exec.record.RecordBatchLoader;
+import org.lealone.hansql.exec.record.VectorWrapper;
+import org.lealone.hansql.exec.vector.ValueVector;
+
+import com.google.protobuf.CodedInputStream;
+
+import io.netty.buffer.DrillBuf;
+
+/**
+ * The columnar encoding of the batches of a HanSQL result, see {@link ExecConstants#RESULT_COLUMNAR}.
+ * <p>
+ * A batch is sent as one row with one binary column. The row holds a flag byte, the length of the payload and
+ * the payload, deflated if the flag says so. The payload is the length of the batch definition, the definition,
+ * which gives the type, the value count and the buffer lengths of every vector, and the buffers of the vectors
+ * one after the other: the null bitmaps, the offsets and the data. The client loads the vectors of the batch
+ * from them with {@link #decode(byte[], RecordBatchLoader)}, no value is converted on either side.
+ */
+public final class HanColumnarBatch {
+
+    public static final String COLUMN_NAME = "BATCH";
+
+    private static final byte COMPRESSED = 1;
+    private static final BatchSchema SCHEMA = BatchSchema.newBuilder()
+            .addField(MaterializedField.create(COLUMN_NAME, Types.required(MinorType.VARBINARY))).build();
+
+    private HanColumnarBatch() {
+    }
+
+    /**
+     * Returns a result with one row that holds the encoded batch.
+     */
+    static HanResult toResult(RecordBatch batch, boolean compress) {
+        return new HanResult(SCHEMA, new Value[] { ValueBytes.getNoCopy(encode(batch, compress)) });
+    }
+
+    public static byte[] encode(RecordBatch batch, boolean compress) {
+        final int recordCount = batch.getRecordCount();
+        final RecordBatchDef.Builder def = RecordBatchDef.newBuilder().setRecordCount(recordCount)
+                .setCarriesTwoByteSelectionVector(false);
+        final List<DrillBuf> buffers = new ArrayList<>();
+        int dataLength = 0;
+        for (VectorWrapper<?> vw : batch) {
+            final ValueVector vector = vw.getValueVector();
+            def.addField(vector.getMetadata());
+            if (recordCount > 0) {
+                for (DrillBuf buf : vector.getBuffers(false)) {
+                    buffers.add(buf);
+                    dataLength += buf.readableBytes();
+                }
+            }
+        }
+        final byte[] defBytes = def.build().toByteArray();
+        final ByteBuffer payload = ByteBuffer.allocate(4 + defBytes.length + dataLength);
+        payload.putInt(defBytes.length).put(defBytes);
+        for (DrillBuf buf : buffers) {
+            final int n = buf.readableBytes();
+            buf.getBytes(buf.readerIndex(), payload.array(), payload.position(), n);
+            payload.position(payload.position() + n);
+        }
+        final byte[] bytes = compress ? deflate(payload.array()) : payload.array();
+        return ByteBuffer.allocate(5 + bytes.length).put(compress ? COMPRESSED : 0).putInt(payload.capacity())
+                .put(bytes).array();
+    }
+
+    /**
+     * Loads an encoded batch into the vectors of the loader, the rows are read from them.
+     *
+     * @return whether the schema changed since the previous batch
+     */
+    public static boolean decode(byte[] bytes, RecordBatchLoader loader) throws SchemaChangeException {
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        final boolean compressed = (in.get() & COMPRESSED) != 0;
+        final int length = in.getInt();
+        final byte[] payload;
+        int offset;
+        if (compressed) {
+            payload = inflate(bytes, in.position(), length);
+            offset = 0;
+        } else {
+            payload = bytes;
+            offset = in.position();
+        }
+        final int defLength = ByteBuffer.wrap(payload, offset, 4).getInt();
+        offset += 4;
+        final RecordBatchDef def;
+        try {
+            def = RecordBatchDef.parseFrom(CodedInputStream.newInstance(payload, offset, defLength));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid columnar batch", e);
+        }
+        offset += defLength;
+        final int dataLength = length - 4 - defLength;
+        if (dataLength == 0) {
+            return loader.load(def, new DrillBuf[0]);
+        }
+        final DrillBuf buf = loader.allocator().buffer(dataLength);
+        try {
+            buf.setBytes(0, payload, offset, dataLength);
+            buf.writerIndex(dataLength);
+            return loader.load(def, buf);
+        } finally {
+            // the vectors hold their own references
+            buf.release();
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            final byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length) {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            final byte[] data = new byte[length];
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                final int r = inflater.inflate(data, n, length - n);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated columnar batch");
+                }
+                n += r;
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid columnar batch", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -18,9 +18,14 @@
 package org.lealone.hansql.engine.server;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 
 import org.lealone.db.result.Result;
@@ -43,65 +48,29 @@ import org.lealone.db.value.ValueTimestamp;
 import org.lealone.hansql.common.types.TypeProtos;
 import org.lealone.hansql.common.types.Types;
 import org.lealone.hansql.common.types.TypeProtos.MajorType;
+import org.lealone.hansql.exec.expr.holders.VarCharHolder;
 import org.lealone.hansql.exec.record.BatchSchema;
 import org.lealone.hansql.exec.record.RecordBatch;
 import org.lealone.hansql.exec.record.VectorWrapper;
+import org.lealone.hansql.exec.vector.BigIntVector;
+import org.lealone.hansql.exec.vector.BitVector;
+import org.lealone.hansql.exec.vector.DateVector;
+import org.lealone.hansql.exec.vector.Float4Vector;
+import org.lealone.hansql.exec.vector.Float8Vector;
+import org.lealone.hansql.exec.vector.IntVector;
+import org.lealone.hansql.exec.vector.NullableVector;
+import org.lealone.hansql.exec.vector.SmallIntVector;
+import org.lealone.hansql.exec.vector.TimeStampVector;
+import org.lealone.hansql.exec.vector.TimeVector;
+import org.lealone.hansql.exec.vector.TinyIntVector;
 import org.lealone.hansql.exec.vector.ValueVector;
 import org.lealone.hansql.exec.vector.ValueVector.Accessor;
-import org.lealone.hansql.exec.vector.accessor.InvalidAccessException;
-import org.lealone.hansql.exec.vector.accessor.SqlAccessor;
+import org.lealone.hansql.exec.vector.VarBinaryVector;
+import org.lealone.hansql.exec.vector.VarCharVector;
 
 public class HanResult implements Result {
 
-    // SqlAccessor直接访问ValueVector
-    static class HanSqlAccessor {
-        final SqlAccessor accessor;
-        final int valueType;
-
-        public HanSqlAccessor(SqlAccessor accessor, int valueType) {
-            this.accessor = accessor;
-            this.valueType = valueType;
-        }
-
-        Value getValue(int rowOffset) throws InvalidAccessException {
-            if (accessor.isNull(rowOffset))
-                return ValueNull.INSTANCE;
-
-            switch (valueType) {
-            case Value.BOOLEAN:
-                return accessor.getBoolean(rowOffset) ? ValueBoolean.TRUE : ValueBoolean.FALSE;
-            case Value.BYTE:
-                return ValueByte.get(accessor.getByte(rowOffset));
-            case Value.SHORT:
-                return ValueShort.get(accessor.getShort(rowOffset));
-            case Value.INT:
-                return ValueInt.get(accessor.getInt(rowOffset));
-            case Value.LONG:
-                return ValueLong.get(accessor.getLong(rowOffset));
-            case Value.DECIMAL:
-                return ValueDecimal.get(accessor.getBigDecimal(rowOffset));
-            case Value.DOUBLE:
-                return ValueDouble.get(accessor.getDouble(rowOffset));
-            case Value.FLOAT:
-                return ValueFloat.get(accessor.getFloat(rowOffset));
-            case Value.TIME:
-                return ValueTime.get(accessor.getTime(rowOffset));
-            case Value.DATE:
-                return ValueDate.get(accessor.getDate(rowOffset));
-            case Value.TIMESTAMP:
-                return ValueTimestamp.get(accessor.getTimestamp(rowOffset));
-            case Value.BYTES:
-                return ValueBytes.get(accessor.getBytes(rowOffset));
-            case Value.STRING:
-            case Value.STRING_IGNORECASE:
-            case Value.STRING_FIXED:
-                return ValueString.get(accessor.getString(rowOffset));
-            // 从BLOB到ENUM全转成字节
-            default:
-                return ValueBytes.get(accessor.getBytes(rowOffset));
-            }
-        }
-    }
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
 
     static class HanAccessor {
         final Accessor accessor;
@@ -115,7 +84,11 @@ public class HanResult implements Result {
         Value getValue(int rowOffset) {
             if (accessor.isNull(rowOffset))
                 return ValueNull.INSTANCE;
+            return getNonNullValue(rowOffset);
+        }
 
+        // 通用的转换，通过getObject得到装箱后的值
+        Value getNonNullValue(int rowOffset) {
             switch (valueType) {
             case Value.BOOLEAN:
                 return (Boolean) accessor.getObject(rowOffset) ? ValueBoolean.TRUE : ValueBoolean.FALSE;
@@ -152,6 +125,137 @@ public class HanResult implements Result {
         }
     }
 
+    // 常用类型直接从ValueVector读取原始类型的值，不经过getObject装箱，
+    // ValueInt、ValueLong等的get方法会复用小的值
+    static HanAccessor create(ValueVector vector, int valueType) {
+        final Accessor acc = vector.getAccessor();
+        final ValueVector values = vector instanceof NullableVector ? ((NullableVector) vector).getValuesVector()
+                : vector;
+        switch (vector.getField().getType().getMinorType()) {
+        case BIT: {
+            final BitVector.Accessor a = ((BitVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return a.get(rowOffset) != 0 ? ValueBoolean.TRUE : ValueBoolean.FALSE;
+                }
+            };
+        }
+        case TINYINT: {
+            final TinyIntVector.Accessor a = ((TinyIntVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueByte.get(a.get(rowOffset));
+                }
+            };
+        }
+        case SMALLINT: {
+            final SmallIntVector.Accessor a = ((SmallIntVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueShort.get(a.get(rowOffset));
+                }
+            };
+        }
+        case INT: {
+            final IntVector.Accessor a = ((IntVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueInt.get(a.get(rowOffset));
+                }
+            };
+        }
+        case BIGINT: {
+            final BigIntVector.Accessor a = ((BigIntVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueLong.get(a.get(rowOffset));
+                }
+            };
+        }
+        case FLOAT4: {
+            final Float4Vector.Accessor a = ((Float4Vector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueFloat.get(a.get(rowOffset));
+                }
+            };
+        }
+        case FLOAT8: {
+            final Float8Vector.Accessor a = ((Float8Vector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueDouble.get(a.get(rowOffset));
+                }
+            };
+        }
+        // 日期时间类型的向量保存的是UTC的毫秒数，表示的是本地时间，不做时区转换
+        case DATE: {
+            final DateVector.Accessor a = ((DateVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    long days = Math.floorDiv(a.get(rowOffset), MILLIS_PER_DAY);
+                    return ValueDate.get(Date.valueOf(LocalDate.ofEpochDay(days)));
+                }
+            };
+        }
+        case TIME: {
+            final TimeVector.Accessor a = ((TimeVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    int millis = a.get(rowOffset);
+                    Time time = Time.valueOf(LocalTime.ofSecondOfDay(millis / 1000));
+                    return ValueTime.get(new Time(time.getTime() + millis % 1000));
+                }
+            };
+        }
+        case TIMESTAMP: {
+            final TimeStampVector.Accessor a = ((TimeStampVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    long millis = a.get(rowOffset);
+                    LocalDateTime t = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                            (int) Math.floorMod(millis, 1000L) * 1000000, ZoneOffset.UTC);
+                    return ValueTimestamp.get(Timestamp.valueOf(t));
+                }
+            };
+        }
+        case VARCHAR: {
+            // 直接从缓冲区解码，不需要中间的byte[]和Text
+            final VarCharVector.Accessor a = ((VarCharVector) values).getAccessor();
+            final VarCharHolder holder = new VarCharHolder();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    a.get(rowOffset, holder);
+                    int length = holder.end - holder.start;
+                    return ValueString.get(holder.buffer.toString(holder.start, length, StandardCharsets.UTF_8));
+                }
+            };
+        }
+        case VARBINARY: {
+            final VarBinaryVector.Accessor a = ((VarBinaryVector) values).getAccessor();
+            return new HanAccessor(acc, valueType) {
+                @Override
+                Value getNonNullValue(int rowOffset) {
+                    return ValueBytes.get(a.get(rowOffset));
+                }
+            };
+        }
+        default:
+            return new HanAccessor(acc, valueType);
+        }
+    }
+
     // private final RecordBatch data;
     BatchSchema schema;
     int columnCount;
@@ -161,6 +265,15 @@ public class HanResult implements Result {
     Value[] current;
     ArrayList<Value[]> rows = new ArrayList<>();
 
+    // 只有一个BYTES列、一条记录的结果，记录是编码后的整个批，见HanColumnarBatch
+    HanResult(BatchSchema schema, Value[] row) {
+        this.schema = schema;
+        columnCount = 1;
+        accessors = new HanAccessor[] { new HanAccessor(null, Value.BYTES) };
+        rowCount = 1;
+        rows.add(row);
+    }
+
     public HanResult(RecordBatch data) {
         // this.data = data;
         schema = data.getSchema();
@@ -179,19 +292,17 @@ public class HanResult implements Result {
             // int valueType = DataType.convertSQLTypeToValueType(jdbcTypeId);
 
             final ValueVector vector = vw.getValueVector();
-            final Accessor acc = vector.getAccessor();
-            // if (data.getRecordCount() > 0)
-            // acc.getObject(0);
             MajorType majorType = vector.getField().getType();
             final String sqlTypeName = Types.getSqlTypeName(majorType);
             final int jdbcTypeId = Types.getJdbcTypeCode(sqlTypeName);
             int valueType = DataType.convertSQLTypeToValueType(jdbcTypeId);
 
-            accessors[column++] = new HanAccessor(acc, valueType);
+            accessors[column++] = create(vector, valueType);
         }
         // 提前获取所有记录，否则ValueVector内部会发生变化，延迟获取时会导致错误的值
         rowCount = data.getRecordCount();
         if (rowCount > 0) {
+            rows.ensureCapacity(rowCount);
             for (int r = 0; r < rowCount; r++) {
                 Value[] row = new Value[columnCount];
                 for (int c = 0; c < columnCount; c++) {
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.server;
+
+import java.util.ArrayDeque;
+
+import org.lealone.common.exceptions.DbException;
+import org.lealone.db.result.Result;
+import org.lealone.db.value.Value;
+import org.lealone.hansql.exec.SqlExecutor;
+
+/**
+ * A forward only result that is read while the query is still running.
+ * <p>
+ * The root fragment of the query runs on the thread that reads the result, only when the rows already produced
+ * have all been read. It stops once the queued rows fill the fetch size of the client, see
+ * {@link HanClientConnection#isBlocked()}, so only about one fetch of rows is kept in memory and no thread waits
+ * for the other one. The row count is unknown until the query ends.
+ */
+public class HanStreamingResult implements Result {
+
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
+    private final ArrayDeque<HanResult> queue = new ArrayDeque<>();
+    private final SqlExecutor sqlExecutor;
+    // gives the metadata of the columns
+    private HanResult first;
+    private HanResult current;
+    private int bufferedRows;
+    private int rowId = -1;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+    private boolean finished;
+    private boolean closed;
+    private Throwable failure;
+
+    HanStreamingResult(SqlExecutor sqlExecutor) {
+        this.sqlExecutor = sqlExecutor;
+    }
+
+    /**
+     * Queues a batch, called by the root fragment on the thread that reads the result.
+     *
+     * @return false if the result was closed, the query does not need to go on
+     */
+    boolean add(HanResult result) {
+        if (first == null) {
+            first = result;
+        }
+        if (closed) {
+            return false;
+        }
+        if (result.getRowCount() > 0) {
+            queue.add(result);
+            bufferedRows += result.getRowCount();
+        }
+        return true;
+    }
+
+    /**
+     * @param cause the failure of the query, or null if it succeeded
+     */
+    void finish(Throwable cause) {
+        finished = true;
+        failure = cause;
+    }
+
+    /**
+     * @return true if the queued rows fill the fetch size, the root fragment stops until they are read
+     */
+    boolean isFull() {
+        return bufferedRows >= fetchSize;
+    }
+
+    @Override
+    public boolean next() {
+        if (current != null && current.next()) {
+            rowId++;
+            return true;
+        }
+        while (queue.isEmpty() && !finished && !closed) {
+            // runs the root fragment until it queues the next rows, it returns at the end of its time slice too
+            sqlExecutor.yieldableRun();
+        }
+        current = queue.poll();
+        if (current == null) {
+            if (failure != null) {
+                throw DbException.convert(failure);
+            }
+            return false;
+        }
+        bufferedRows -= current.getRowCount();
+        current.next();
+        rowId++;
+        return true;
+    }
+
+    @Override
+    public Value[] currentRow() {
+        return current == null ? null : current.currentRow();
+    }
+
+    @Override
+    public void reset() {
+        throw DbException.getUnsupportedException("reset of a forward only result");
+    }
+
+    @Override
+    public int getRowId() {
+        return rowId;
+    }
+
+    @Override
+    public int getVisibleColumnCount() {
+        return first.getVisibleColumnCount();
+    }
+
+    @Override
+    public int getRowCount() {
+        return -1;
+    }
+
+    @Override
+    public boolean needToClose() {
+        return true;
+    }
+
+    /**
+     * Stops the query if the client closes the result before its end, the operators of the root fragment release
+     * their memory.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        bufferedRows = 0;
+        if (!finished) {
+            sqlExecutor.stop();
+        }
+    }
+
+    @Override
+    public String getAlias(int i) {
+        return first.getAlias(i);
+    }
+
+    @Override
+    public String getSchemaName(int i) {
+        return first.getSchemaName(i);
+    }
+
+    @Override
+    public String getTableName(int i) {
+        return first.getTableName(i);
+    }
+
+    @Override
+    public String getColumnName(int i) {
+        return first.getColumnName(i);
+    }
+
+    @Override
+    public int getColumnType(int i) {
+        return first.getColumnType(i);
+    }
+
+    @Override
+    public long getColumnPrecision(int i) {
+        return first.getColumnPrecision(i);
+    }
+
+    @Override
+    public int getColumnScale(int i) {
+        return first.getColumnScale(i);
+    }
+
+    @Override
+    public int getDisplaySize(int i) {
+        return first.getDisplaySize(i);
+    }
+
+    @Override
+    public boolean isAutoIncrement(int i) {
+        return first.isAutoIncrement(i);
+    }
+
+    @Override
+    public int getNullable(int i) {
+        return first.getNullable(i);
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+}
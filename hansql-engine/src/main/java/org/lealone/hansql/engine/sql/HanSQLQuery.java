@@ -17,7 +17,11 @@
  */
 package org.lealone.hansql.engine.sql;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.lealone.db.async.AsyncHandler;
 import org.lealone.db.async.AsyncResult;
@@ -25,23 +29,32 @@ import org.lealone.db.result.Result;
 import org.lealone.db.result.ResultTarget;
 import org.lealone.db.session.ServerSession;
 import org.lealone.db.session.SessionStatus;
+import org.lealone.db.value.Value;
 import org.lealone.hansql.engine.HanEngine;
 import org.lealone.hansql.engine.server.HanClientConnection;
+import org.lealone.hansql.exec.SqlExecutor;
+import org.lealone.hansql.exec.planner.QueryParameters;
 import org.lealone.hansql.optimizer.schema.SchemaPlus;
 import org.lealone.net.NetNode;
 import org.lealone.sql.SQLStatement;
 import org.lealone.sql.StatementBase;
 import org.lealone.sql.executor.YieldableBase;
+import org.lealone.sql.expression.Parameter;
 import org.lealone.sql.query.YieldableQueryBase;
 
 public class HanSQLQuery extends StatementBase {
 
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
     private final String sql;
 
     public HanSQLQuery(ServerSession session, String sql) {
         super(session);
         this.sql = sql;
         parameters = new ArrayList<>();
+        for (int i = 0, count = countParameters(sql); i < count; i++) {
+            parameters.add(new Parameter(i));
+        }
     }
 
     @Override
@@ -66,9 +79,116 @@ public class HanSQLQuery extends StatementBase {
         return new YieldableHanSQLQuery(this, maxRows, scrollable, asyncHandler, null);
     }
 
+    /**
+     * Counts the ? markers, the question marks in literals, quoted identifiers and comments are skipped.
+     */
+    private static int countParameters(String sql) {
+        int count = 0;
+        for (int i = 0, length = sql.length(); i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                count++;
+            } else {
+                i = skip(sql, i);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the last character of the literal, quoted identifier or comment that starts at i,
+     * or i if none starts there.
+     */
+    private static int skip(String sql, int i) {
+        char c = sql.charAt(i);
+        int end = i;
+        if (c == '\'' || c == '"' || c == '`') {
+            end = sql.indexOf(c, i + 1);
+        } else if (c == '-' && sql.startsWith("--", i)) {
+            end = sql.indexOf('\n', i);
+        } else if (c == '/' && sql.startsWith("/*", i)) {
+            end = sql.indexOf("*/", i + 2);
+            if (end >= 0) {
+                end++;
+            }
+        }
+        return end < 0 ? sql.length() : end;
+    }
+
+    /**
+     * Returns the values of the parameters, and the query with the values inlined as SQL literals
+     * for the queries that can not be planned with the markers.
+     */
+    private QueryParameters getQueryParameters() {
+        if (parameters.isEmpty()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(parameters.size());
+        for (Parameter p : parameters) {
+            p.checkSet();
+            values.add(toString(p.getValue()));
+        }
+        StringBuilder buff = new StringBuilder(sql.length());
+        int index = 0;
+        for (int i = 0, length = sql.length(); i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                buff.append(toLiteral(parameters.get(index++).getValue()));
+            } else {
+                int end = skip(sql, i);
+                buff.append(sql, i, Math.min(end + 1, length));
+                i = end;
+            }
+        }
+        return new QueryParameters(values, buff.toString());
+    }
+
+    private static String toString(Value v) {
+        switch (v.getType()) {
+        case Value.NULL:
+        case Value.BYTES:
+            return null;
+        case Value.TIMESTAMP:
+            // the wall clock time in the default time zone, as the timestamp literals of the key ranges,
+            // Lealone parses the string in the same time zone when it converts it to the column type
+            return LocalDateTime.ofInstant(v.getTimestamp().toInstant(), ZoneId.systemDefault())
+                    .format(TIMESTAMP_FORMAT);
+        default:
+            return v.getString();
+        }
+    }
+
+    private static String toLiteral(Value v) {
+        switch (v.getType()) {
+        case Value.NULL:
+            return "NULL";
+        case Value.BOOLEAN:
+            return v.getBoolean() ? "TRUE" : "FALSE";
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.DOUBLE:
+        case Value.FLOAT:
+            return v.getString();
+        case Value.DATE:
+            return "DATE '" + v.getString() + "'";
+        case Value.TIME:
+            return "TIME '" + v.getString() + "'";
+        case Value.TIMESTAMP:
+            return "TIMESTAMP '" + toString(v) + "'";
+        case Value.BYTES:
+            return v.getSQL();
+        default:
+            return "'" + v.getString().replace("'", "''") + "'";
+        }
+    }
+
     private static class YieldableHanSQLQuery extends YieldableQueryBase {
 
         private final HanSQLQuery select;
+        private final boolean scrollable;
         // private final ResultTarget target;
         private Result result;
 
@@ -76,6 +196,7 @@ public class HanSQLQuery extends StatementBase {
                 AsyncHandler<AsyncResult<Result>> asyncHandler, ResultTarget target) {
             super(select, maxRows, scrollable, asyncHandler);
             this.select = select;
+            this.scrollable = scrollable;
             // this.target = target;
         }
 
@@ -110,7 +231,17 @@ public class HanSQLQuery extends StatementBase {
                         session.setStatus(SessionStatus.STATEMENT_COMPLETED);
                         session.getTransactionListener().wakeUp();
                     });
-            hanEngine.submitWork(clientConnection, sql);
+            clientConnection.getSession().setQueryParameters(select.getQueryParameters());
+            if (scrollable) {
+                // a scrollable result is read again from the start, so it is kept in memory
+                hanEngine.submitWork(clientConnection, sql);
+                return;
+            }
+            // the root fragment runs on the thread of the session, each time the client reads the rows it produced
+            SqlExecutor sqlExecutor = hanEngine.createSqlExecutor(clientConnection, sql);
+            clientConnection.setStreaming(sqlExecutor);
+            sqlExecutor.start();
+            clientConnection.startStreaming();
         }
     }
 }
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueNull;
+import org.lealone.hansql.exec.vector.BigIntVector;
+import org.lealone.hansql.exec.vector.BitVector;
+import org.lealone.hansql.exec.vector.Float4Vector;
+import org.lealone.hansql.exec.vector.Float8Vector;
+import org.lealone.hansql.exec.vector.IntVector;
+import org.lealone.hansql.exec.vector.NullableBigIntVector;
+import org.lealone.hansql.exec.vector.NullableBitVector;
+import org.lealone.hansql.exec.vector.NullableFloat4Vector;
+import org.lealone.hansql.exec.vector.NullableFloat8Vector;
+import org.lealone.hansql.exec.vector.NullableIntVector;
+import org.lealone.hansql.exec.vector.NullableSmallIntVector;
+import org.lealone.hansql.exec.vector.NullableTinyIntVector;
+import org.lealone.hansql.exec.vector.NullableVarCharVector;
+import org.lealone.hansql.exec.vector.SmallIntVector;
+import org.lealone.hansql.exec.vector.TinyIntVector;
+import org.lealone.hansql.exec.vector.ValueVector;
+import org.lealone.hansql.exec.vector.VarCharVector;
+
+/**
+ * Decodes one column of a batch of rows into its value vector.
+ * <p>
+ * The values of a batch are gathered column by column first, so each vector is filled by a tight,
+ * type specialized loop instead of being touched once per row. Columns without a decoder are copied
+ * row by row by the generated {@link LealoneCopier}. A NOT NULL column has a required vector, its
+ * loop has no null check.
+ */
+abstract class LealoneColumnDecoder {
+
+    /**
+     * Decodes the first <code>count</code> values into the vector, a NULL is left unset.
+     */
+    abstract void decode(Value[] values, int count);
+
+    /**
+     * @return the decoder of the column, or null when its type is only supported by the copier
+     */
+    static LealoneColumnDecoder create(int jdbcType, ValueVector vector) {
+        switch (jdbcType) {
+        case java.sql.Types.TINYINT:
+            if (vector instanceof NullableTinyIntVector)
+                return new TinyIntDecoder(((NullableTinyIntVector) vector).getMutator(), null);
+            if (vector instanceof TinyIntVector)
+                return new TinyIntDecoder(null, ((TinyIntVector) vector).getMutator());
+            break;
+        case java.sql.Types.SMALLINT:
+            if (vector instanceof NullableSmallIntVector)
+                return new SmallIntDecoder(((NullableSmallIntVector) vector).getMutator(), null);
+            if (vector instanceof SmallIntVector)
+                return new SmallIntDecoder(null, ((SmallIntVector) vector).getMutator());
+            break;
+        case java.sql.Types.INTEGER:
+            if (vector instanceof NullableIntVector)
+                return new IntDecoder(((NullableIntVector) vector).getMutator(), null);
+            if (vector instanceof IntVector)
+                return new IntDecoder(null, ((IntVector) vector).getMutator());
+            break;
+        case java.sql.Types.BIGINT:
+            if (vector instanceof NullableBigIntVector)
+                return new BigIntDecoder(((NullableBigIntVector) vector).getMutator(), null);
+            if (vector instanceof BigIntVector)
+                return new BigIntDecoder(null, ((BigIntVector) vector).getMutator());
+            break;
+        case java.sql.Types.FLOAT:
+            if (vector instanceof NullableFloat4Vector)
+                return new Float4Decoder(((NullableFloat4Vector) vector).getMutator(), null);
+            if (vector instanceof Float4Vector)
+                return new Float4Decoder(null, ((Float4Vector) vector).getMutator());
+            break;
+        case java.sql.Types.DOUBLE:
+        case java.sql.Types.REAL:
+            if (vector instanceof NullableFloat8Vector)
+                return new Float8Decoder(((NullableFloat8Vector) vector).getMutator(), null);
+            if (vector instanceof Float8Vector)
+                return new Float8Decoder(null, ((Float8Vector) vector).getMutator());
+            break;
+        case java.sql.Types.BOOLEAN:
+        case java.sql.Types.BIT:
+            if (vector instanceof NullableBitVector)
+                return new BitDecoder(((NullableBitVector) vector).getMutator(), null);
+            if (vector instanceof BitVector)
+                return new BitDecoder(null, ((BitVector) vector).getMutator());
+            break;
+        case java.sql.Types.CHAR:
+        case java.sql.Types.VARCHAR:
+        case java.sql.Types.NCHAR:
+        case java.sql.Types.NVARCHAR:
+            if (vector instanceof NullableVarCharVector)
+                return new VarCharDecoder(((NullableVarCharVector) vector).getMutator(), null);
+            if (vector instanceof VarCharVector)
+                return new VarCharDecoder(null, ((VarCharVector) vector).getMutator());
+            break;
+        default:
+        }
+        return null;
+    }
+
+    private static class TinyIntDecoder extends LealoneColumnDecoder {
+        private final NullableTinyIntVector.Mutator nullable;
+        private final TinyIntVector.Mutator required;
+
+        TinyIntDecoder(NullableTinyIntVector.Mutator nullable, TinyIntVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getByte());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getByte());
+                }
+            }
+        }
+    }
+
+    private static class SmallIntDecoder extends LealoneColumnDecoder {
+        private final NullableSmallIntVector.Mutator nullable;
+        private final SmallIntVector.Mutator required;
+
+        SmallIntDecoder(NullableSmallIntVector.Mutator nullable, SmallIntVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getShort());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getShort());
+                }
+            }
+        }
+    }
+
+    private static class IntDecoder extends LealoneColumnDecoder {
+        private final NullableIntVector.Mutator nullable;
+        private final IntVector.Mutator required;
+
+        IntDecoder(NullableIntVector.Mutator nullable, IntVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getInt());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getInt());
+                }
+            }
+        }
+    }
+
+    private static class BigIntDecoder extends LealoneColumnDecoder {
+        private final NullableBigIntVector.Mutator nullable;
+        private final BigIntVector.Mutator required;
+
+        BigIntDecoder(NullableBigIntVector.Mutator nullable, BigIntVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getLong());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getLong());
+                }
+            }
+        }
+    }
+
+    private static class Float4Decoder extends LealoneColumnDecoder {
+        private final NullableFloat4Vector.Mutator nullable;
+        private final Float4Vector.Mutator required;
+
+        Float4Decoder(NullableFloat4Vector.Mutator nullable, Float4Vector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getFloat());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getFloat());
+                }
+            }
+        }
+    }
+
+    private static class Float8Decoder extends LealoneColumnDecoder {
+        private final NullableFloat8Vector.Mutator nullable;
+        private final Float8Vector.Mutator required;
+
+        Float8Decoder(NullableFloat8Vector.Mutator nullable, Float8Vector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getDouble());
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getDouble());
+                }
+            }
+        }
+    }
+
+    private static class BitDecoder extends LealoneColumnDecoder {
+        private final NullableBitVector.Mutator nullable;
+        private final BitVector.Mutator required;
+
+        BitDecoder(NullableBitVector.Mutator nullable, BitVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            if (required != null) {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    required.setSafe(i, v.getBoolean() ? 1 : 0);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    Value v = values[i];
+                    if (v != ValueNull.INSTANCE)
+                        nullable.setSafe(i, v.getBoolean() ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    private static class VarCharDecoder extends LealoneColumnDecoder {
+        private final NullableVarCharVector.Mutator nullable;
+        private final VarCharVector.Mutator required;
+        private byte[] scratch = new byte[256];
+
+        VarCharDecoder(NullableVarCharVector.Mutator nullable, VarCharVector.Mutator required) {
+            this.nullable = nullable;
+            this.required = required;
+        }
+
+        @Override
+        void decode(Value[] values, int count) {
+            for (int i = 0; i < count; i++) {
+                Value v = values[i];
+                if (v != ValueNull.INSTANCE) {
+                    String s = v.getString();
+                    if (scratch.length < s.length() * 3) {
+                        scratch = new byte[Math.max(s.length() * 3, scratch.length * 2)];
+                    }
+                    int length = LealoneCopierTemplate.encode(s, scratch);
+                    if (required != null)
+                        required.setSafe(i, scratch, 0, length);
+                    else
+                        nullable.setSafe(i, scratch, 0, length);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.TimeZone;
+
+import javax.inject.Named;
+
+import org.lealone.common.util.DateTimeUtils;
+import org.lealone.db.result.SearchRow;
+import org.lealone.hansql.exec.exception.SchemaChangeException;
+import org.lealone.hansql.exec.vector.ValueVector;
+
+public abstract class LealoneCopierTemplate implements LealoneCopier {
+
+    // Lealone converts temporal values with the default time zone too
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+
+    // reused for the UTF-8 bytes of every string value
+    protected byte[] scratch = new byte[256];
+
+    @Override
+    public void setup(ValueVector[] vectors) throws SchemaChangeException {
+        doSetup(vectors);
+    }
+
+    @Override
+    public void copy(SearchRow row, int index) {
+        doEval(row, index);
+    }
+
+    /**
+     * Encodes the string as UTF-8 into {@link #scratch}.
+     *
+     * @return the number of bytes written
+     */
+    protected int encode(String s) {
+        final int length = s.length();
+        if (scratch.length < length * 3) {
+            scratch = new byte[Math.max(length * 3, scratch.length * 2)];
+        }
+        return encode(s, scratch);
+    }
+
+    /**
+     * Encodes the string as UTF-8 into the buffer, which must hold at least three bytes per char.
+     *
+     * @return the number of bytes written
+     */
+    static int encode(String s, byte[] buff) {
+        final int length = s.length();
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buff[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buff[pos++] = (byte) (0xc0 | (c >> 6));
+                buff[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buff[pos++] = (byte) (0xf0 | (cp >> 18));
+                buff[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buff[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buff[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                buff[pos++] = '?'; // unpaired surrogate, same as String.getBytes
+            } else {
+                buff[pos++] = (byte) (0xe0 | (c >> 12));
+                buff[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buff[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Same as ValueDate.getDate().getTime(), without creating the java.sql.Date.
+     */
+    protected static long dateToMillis(long dateValue) {
+        return localToUtc(DateTimeUtils.absoluteDayFromDateValue(dateValue) * DateTimeUtils.MILLIS_PER_DAY);
+    }
+
+    /**
+     * Same as ValueTime.getTime().getTime(), without creating the java.sql.Time.
+     */
+    protected static int timeToMillis(long nanos) {
+        return (int) localToUtc(nanos / 1000000);
+    }
+
+    /**
+     * Same as ValueTimestamp.getTimestamp().getTime(), without creating the java.sql.Timestamp.
+     */
+    protected static long timestampToMillis(long dateValue, long timeNanos) {
+        return localToUtc(DateTimeUtils.absoluteDayFromDateValue(dateValue) * DateTimeUtils.MILLIS_PER_DAY
+                + timeNanos / 1000000);
+    }
+
+    private static long localToUtc(long localMillis) {
+        return localMillis - TIME_ZONE.getOffset(localMillis - TIME_ZONE.getRawOffset());
+    }
+
+    public abstract void doSetup(@Named("vectors") ValueVector[] vectors) throws SchemaChangeException;
+
+    public abstract void doEval(@Named("row") SearchRow row, @Named("index") int index);
+}
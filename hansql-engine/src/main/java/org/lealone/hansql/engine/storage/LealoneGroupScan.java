@@ -24,14 +24,19 @@ import org.apache.drill.shaded.guava.com.google.common.annotations.VisibleForTes
 import org.apache.drill.shaded.guava.com.google.common.base.Preconditions;
 import org.apache.drill.shaded.guava.com.google.common.collect.ListMultimap;
 import org.apache.drill.shaded.guava.com.google.common.collect.Lists;
+import org.apache.drill.shaded.guava.com.google.common.primitives.Longs;
 import org.lealone.db.Database;
 import org.lealone.db.LealoneDatabase;
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
 import org.lealone.db.schema.Schema;
+import org.lealone.db.session.ServerSession;
 import org.lealone.db.table.Table;
 import org.lealone.hansql.common.exceptions.ExecutionSetupException;
 import org.lealone.hansql.common.expression.SchemaPath;
 import org.lealone.hansql.common.logical.StoragePluginConfig;
 import org.lealone.hansql.engine.index.LealoneIndexDiscover;
+import org.lealone.hansql.engine.index.LealoneIndexStatistics;
 import org.lealone.hansql.engine.storage.LealoneSubScan.LealoneSubScanSpec;
 import org.lealone.hansql.exec.physical.EndpointAffinity;
 import org.lealone.hansql.exec.physical.base.AbstractDbGroupScan;
@@ -39,13 +44,11 @@ import org.lealone.hansql.exec.physical.base.GroupScan;
 import org.lealone.hansql.exec.physical.base.PhysicalOperator;
 import org.lealone.hansql.exec.physical.base.ScanStats;
 import org.lealone.hansql.exec.physical.base.ScanStats.GroupScanProperty;
-import org.lealone.hansql.exec.planner.common.DrillScanRelBase;
-import org.lealone.hansql.exec.planner.index.IndexCallContext;
 import org.lealone.hansql.exec.planner.index.IndexCollection;
-import org.lealone.hansql.exec.planner.index.IndexDescriptor;
 import org.lealone.hansql.exec.planner.index.IndexDiscover;
 import org.lealone.hansql.exec.planner.index.IndexDiscoverFactory;
 import org.lealone.hansql.exec.planner.index.Statistics;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
 import org.lealone.hansql.exec.store.StoragePluginRegistry;
 import org.lealone.hansql.exec.store.schedule.AffinityCreator;
@@ -66,6 +69,8 @@ import com.fasterxml.jackson.annotation.JsonTypeName;
 public class LealoneGroupScan extends AbstractDbGroupScan {
     static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneGroupScan.class);
     private static final long DEFAULT_TABLET_SIZE = 1000;
+    // don't split small tables, the overhead of a minor fragment is bigger than the scan itself
+    private static final long MIN_ROWS_PER_PARTITION = 64 * 1024;
 
     private LealoneStoragePlugin lealoneStoragePlugin;
     private List<SchemaPath> columns;
@@ -77,50 +82,100 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
     private List<EndpointAffinity> affinities;
 
     private double rowCountApproximation;
+    private int partitions = 1;
 
     @JsonCreator
     public LealoneGroupScan(@JsonProperty("scanSpec") LealoneScanSpec scanSpec,
             @JsonProperty("lealoneStoragePluginConfig") LealoneStoragePluginConfig lealoneStoragePluginConfig,
-            @JsonProperty("columns") List<SchemaPath> columns, @JacksonInject StoragePluginRegistry pluginRegistry)
-            throws IOException, ExecutionSetupException {
-        this((LealoneStoragePlugin) pluginRegistry.getPlugin(lealoneStoragePluginConfig), scanSpec, columns);
+            @JsonProperty("columns") List<SchemaPath> columns, @JsonProperty("partitions") int partitions,
+            @JacksonInject StoragePluginRegistry pluginRegistry) throws IOException, ExecutionSetupException {
+        // the key ranges are not serialized, a plan read again, e.g. from the plan cache, splits the current rows
+        this((LealoneStoragePlugin) pluginRegistry.getPlugin(lealoneStoragePluginConfig), scanSpec, columns,
+                partitions);
     }
 
     public LealoneGroupScan(LealoneStoragePlugin lealoneStoragePlugin, LealoneScanSpec scanSpec,
             List<SchemaPath> columns) {
+        this(lealoneStoragePlugin, scanSpec, columns, 1);
+    }
+
+    public LealoneGroupScan(LealoneStoragePlugin lealoneStoragePlugin, LealoneScanSpec scanSpec,
+            List<SchemaPath> columns, int partitions) {
         super((String) null);
         this.lealoneStoragePlugin = lealoneStoragePlugin;
         this.scanSpec = scanSpec;
         this.columns = columns == null || columns.size() == 0 ? ALL_COLUMNS : columns;
+        this.partitions = Math.max(1, partitions);
         init();
         rowCountApproximation = getRowCountApproximation();
     }
 
+    /**
+     * Splits the row key space of the table into key ranges of equal span, one work unit per range.
+     * The ranges only hold about the same number of rows when the row keys are dense, as the ones
+     * generated by Lealone are, a table with gaps in its row keys gets uneven partitions.
+     * A scan restricted to the key ranges of a pushed down filter is not split.
+     */
     private void init() {
-        // String tableName = scanSpec.getTableName();
-        // Collection<DrillbitEndpoint> endpoints = lealoneStoragePlugin.getContext().getBits();
-        // Map<String,DrillbitEndpoint> endpointMap = Maps.newHashMap();
-        // for (DrillbitEndpoint endpoint : endpoints) {
-        // endpointMap.put(endpoint.getAddress(), endpoint);
-        // }
-        // try {
-        // List<LocatedTablet> locations =
-        // lealoneStoragePlugin.getClient().openTable(tableName).getTabletsLocations(10000);
-        // for (LocatedTablet tablet : locations) {
-        // LealoneWork work = new LealoneWork(tablet.getPartition().getPartitionKeyStart(),
-        // tablet.getPartition().getPartitionKeyEnd());
-        // for (Replica replica : tablet.getReplicas()) {
-        // String host = replica.getRpcHost();
-        // DrillbitEndpoint ep = endpointMap.get(host);
-        // if (ep != null) {
-        // work.getByteMap().add(ep, DEFAULT_TABLET_SIZE);
-        // }
-        // }
-        // lealoneWorkList.add(work);
-        // }
-        // } catch (Exception e) {
-        // throw new RuntimeException(e);
-        // }
+        lealoneWorkList = Lists.newArrayList();
+        assignments = null;
+        affinities = null;
+
+        Table table = getTable();
+        long maxPartitions = Math.min(partitions, table.getRowCountApproximation() / MIN_ROWS_PER_PARTITION);
+        List<Long> bounds = null;
+        if (maxPartitions > 1 && !scanSpec.hasRanges()) {
+            bounds = getPartitionBounds(table, (int) maxPartitions);
+        }
+        if (bounds == null) {
+            lealoneWorkList.add(new LealoneWork(null, null));
+        } else {
+            // the first and the last range are open, so rows added after planning are not lost
+            for (int i = 0, size = bounds.size(); i <= size; i++) {
+                Long start = i == 0 ? null : bounds.get(i - 1);
+                Long end = i == size ? null : bounds.get(i) - 1;
+                lealoneWorkList.add(new LealoneWork(toBytes(start), toBytes(end)));
+            }
+        }
+        DrillbitEndpoint endpoint = lealoneStoragePlugin.getContext().getEndpoint();
+        if (endpoint != null) {
+            for (LealoneWork work : lealoneWorkList) {
+                work.getByteMap().add(endpoint, DEFAULT_TABLET_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Returns the start keys of the 2nd to the last partition, using the first and the last row key
+     * of the scan index, or null if the table can not be split.
+     */
+    private static List<Long> getPartitionBounds(Table table, int maxPartitions) {
+        ServerSession session = table.getDatabase().getSystemSession();
+        Index index = table.getScanIndex(session);
+        if (!index.canGetFirstOrLast()) {
+            return null;
+        }
+        Cursor first = index.findFirstOrLast(session, true);
+        Cursor last = index.findFirstOrLast(session, false);
+        if (!first.next() || !last.next()) {
+            return null;
+        }
+        long min = first.get().getKey();
+        long max = last.get().getKey();
+        long span = max - min;
+        if (span <= 0) { // also catches an overflow
+            return null;
+        }
+        long step = span / maxPartitions + 1;
+        List<Long> bounds = Lists.newArrayList();
+        for (long key = min + step; key <= max && key > min; key += step) {
+            bounds.add(key);
+        }
+        return bounds.isEmpty() ? null : bounds;
+    }
+
+    private static byte[] toBytes(Long key) {
+        return key == null ? null : Longs.toByteArray(key);
     }
 
     private static class LealoneWork implements CompleteWork {
@@ -129,10 +184,10 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
         private byte[] partitionKeyStart;
         private byte[] partitionKeyEnd;
 
-        // public LealoneWork(byte[] partitionKeyStart, byte[] partitionKeyEnd) {
-        // this.partitionKeyStart = partitionKeyStart;
-        // this.partitionKeyEnd = partitionKeyEnd;
-        // }
+        public LealoneWork(byte[] partitionKeyStart, byte[] partitionKeyEnd) {
+            this.partitionKeyStart = partitionKeyStart;
+            this.partitionKeyEnd = partitionKeyEnd;
+        }
 
         public byte[] getPartitionKeyStart() {
             return partitionKeyStart;
@@ -171,6 +226,7 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
         this.lealoneWorkList = that.lealoneWorkList;
         this.assignments = that.assignments;
         this.rowCountApproximation = that.rowCountApproximation;
+        this.partitions = that.partitions;
     }
 
     @Override
@@ -180,6 +236,13 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
         return newScan;
     }
 
+    public LealoneGroupScan clone(LealoneScanSpec scanSpec) {
+        LealoneGroupScan newScan = new LealoneGroupScan(this);
+        newScan.scanSpec = scanSpec;
+        newScan.init();
+        return newScan;
+    }
+
     @Override
     public List<EndpointAffinity> getOperatorAffinity() {
         if (affinities == null) {
@@ -212,7 +275,6 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
             scanSpecList.add(new LealoneSubScanSpec(scanSpec, getTableName(), work.getPartitionKeyStart(),
                     work.getPartitionKeyEnd()));
         }
-        scanSpecList.add(new LealoneSubScanSpec(scanSpec, getTableName(), null, null));
         return new LealoneSubScan(lealoneStoragePlugin, scanSpecList, this.columns, null);
     }
 
@@ -222,9 +284,55 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
     public ScanStats getScanStats() {
         // long recordCount = 100000 * 1;// lealoneWorkList.size();
         double recordCount = rowCountApproximation * 100000;
+        if (scanSpec.isIndexMerge() && rowCountApproximation > 0) {
+            return getIndexMergeScanStats(recordCount);
+        }
+        if (scanSpec.hasRanges() && rowCountApproximation > 0) {
+            // the scan only reads the key ranges of the pushed down filter
+            Table table = getTable();
+            Index index = table.getSchema().findIndex(null, scanSpec.getIndexName());
+            if (index != null) {
+                double rows = LealoneIndexStatistics.estimateRowCount(table, index, scanSpec.getRanges());
+                recordCount *= Math.min(1, rows / rowCountApproximation);
+            }
+        }
         return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, recordCount, 1, recordCount);
     }
 
+    /**
+     * The row count approximation of the table, the key ranges are not estimated, that reads the indexes.
+     */
+    @Override
+    public double getRowCountApproximation(PlannerSettings settings) {
+        return rowCountApproximation;
+    }
+
+    /**
+     * The index entries of each key range are read to collect the row keys, then only the rows of the merged keys.
+     * The conditions of the indexes are assumed to be independent.
+     */
+    private ScanStats getIndexMergeScanStats(double tableRecordCount) {
+        Table table = getTable();
+        double entries = 0;
+        double selectivity = scanSpec.isUnion() ? 0 : 1;
+        List<LealoneIndexRanges> indexRanges = Lists.newArrayList();
+        indexRanges.add(new LealoneIndexRanges(scanSpec.getIndexName(), scanSpec.getRanges()));
+        indexRanges.addAll(scanSpec.getMergedRanges());
+        for (LealoneIndexRanges r : indexRanges) {
+            Index index = table.getSchema().findIndex(null, r.getIndexName());
+            if (index == null) {
+                return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, tableRecordCount, 1, tableRecordCount);
+            }
+            double fraction = Math.min(1, LealoneIndexStatistics.estimateRowCount(table, index, r.getRanges())
+                    / rowCountApproximation);
+            double entryWidth = (index.getColumns().length + 1.0) / (table.getColumns().length + 1.0);
+            entries += tableRecordCount * fraction * entryWidth;
+            selectivity = scanSpec.isUnion() ? Math.min(1, selectivity + fraction) : selectivity * fraction;
+        }
+        double recordCount = tableRecordCount * selectivity;
+        return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, recordCount, 1, recordCount + entries);
+    }
+
     @Override
     @JsonIgnore
     public PhysicalOperator getNewWithChildren(List<PhysicalOperator> children) {
@@ -258,17 +366,17 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
         return lealoneStoragePlugin.getConfig();
     }
 
-    @Override
-    public boolean supportsRestrictedScan() {
-        return true;
-    }
-
     @Override
     @JsonProperty
     public List<SchemaPath> getColumns() {
         return columns;
     }
 
+    @JsonProperty
+    public int getPartitions() {
+        return partitions;
+    }
+
     @JsonProperty
     public LealoneScanSpec getLealoneScanSpec() {
         return scanSpec;
@@ -329,56 +437,24 @@ public class LealoneGroupScan extends AbstractDbGroupScan {
 
     @Override
     public double getRowCount(RexNode condition, RelNode scanRel) {
-        return getRowCountApproximation();
+        double rowCount = getStatistics().getRowCount(condition, null, scanRel);
+        return rowCount == Statistics.ROWCOUNT_UNKNOWN ? getRowCountApproximation() : rowCount;
     }
 
     private double getRowCountApproximation() {
+        return getTable().getRowCountApproximation();
+    }
+
+    @JsonIgnore
+    public Table getTable() {
         Database db = LealoneDatabase.getInstance().getDatabase(scanSpec.getDbName());
         Schema schema = db.getSchema(null, scanSpec.getSchemaName());
-        Table table = schema.getTableOrView(null, scanSpec.getTableName());
-        return table.getRowCountApproximation();
+        return schema.getTableOrView(null, scanSpec.getTableName());
     }
 
     @Override
     public Statistics getStatistics() {
-        return new Statistics() {
-
-            @Override
-            public boolean isStatsAvailable() {
-                // TODO Auto-generated method stub
-                return false;
-            }
-
-            @Override
-            public String buildUniqueIndexIdentifier(IndexDescriptor idx) {
-                // TODO Auto-generated method stub
-                return null;
-            }
-
-            @Override
-            public double getRowCount(RexNode condition, String tabIdxName, RelNode scanRel) {
-                // TODO Auto-generated method stub
-                return 0;
-            }
-
-            @Override
-            public double getLeadingRowCount(RexNode condition, String tabIdxName, DrillScanRelBase scanRel) {
-                // TODO Auto-generated method stub
-                return 0;
-            }
-
-            @Override
-            public double getAvgRowSize(String tabIdxName, boolean isIndexScan) {
-                // TODO Auto-generated method stub
-                return 0;
-            }
-
-            @Override
-            public boolean initialize(RexNode condition, DrillScanRelBase scanRel, IndexCallContext context) {
-                // TODO Auto-generated method stub
-                return false;
-            }
-        };
+        return new LealoneIndexStatistics(getTable());
     }
 
     @Override
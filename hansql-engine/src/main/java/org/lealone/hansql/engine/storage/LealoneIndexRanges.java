@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Table;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The key ranges of one of the indexes whose row keys are intersected or united by an index merge scan,
+ * see {@link LealoneScanSpec#isIndexMerge()}.
+ */
+public class LealoneIndexRanges {
+
+    // 8 MB of row keys per index, a bigger index merge falls back to another scan, see LealoneRecordReader
+    public static final int MAX_MERGED_KEYS = 1024 * 1024;
+
+    private final String indexName;
+    private final List<LealoneScanRange> ranges;
+
+    @JsonCreator
+    public LealoneIndexRanges(@JsonProperty("indexName") String indexName,
+            @JsonProperty("ranges") List<LealoneScanRange> ranges) {
+        this.indexName = indexName;
+        this.ranges = ranges;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public List<LealoneScanRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns the sorted and distinct row keys of the index entries in the given key ranges.
+     * Only the index entries are read, not the rows.
+     *
+     * @return the row keys, or null if the key ranges hold more than maxKeys index entries
+     */
+    public static long[] collectKeys(ServerSession session, Table table, Index index,
+            List<LealoneScanRange> ranges, int maxKeys) {
+        long[] keys = new long[64];
+        int count = 0;
+        for (LealoneScanRange range : ranges) {
+            Cursor cursor = range.find(session, table, index);
+            while (cursor.next()) {
+                if (count == maxKeys) {
+                    return null;
+                }
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, (int) Math.min(count * 2L, maxKeys));
+                }
+                keys[count++] = cursor.getSearchRow().getKey();
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || keys[i] != keys[distinct - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    /**
+     * Returns the keys that are in both sorted arrays.
+     */
+    public static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length;) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the keys that are in any of the sorted arrays, sorted and without duplicates.
+     */
+    public static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            long key;
+            if (j >= b.length || i < a.length && a[i] < b[j]) {
+                key = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                key = b[j++];
+            } else {
+                key = a[i++];
+                j++;
+            }
+            result[count++] = key;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public String toString() {
+        return indexName + ranges;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lealone.common.exceptions.DbException;
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
+import org.lealone.db.result.SearchRow;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Column;
+import org.lealone.db.table.Table;
+import org.lealone.db.value.CompareMode;
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueInt;
+import org.lealone.db.value.ValueLong;
+import org.lealone.db.value.ValueNull;
+import org.lealone.db.value.ValueString;
+import org.lealone.hansql.common.exceptions.ExecutionSetupException;
+import org.lealone.hansql.common.exceptions.UserException;
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.exec.exception.OutOfMemoryException;
+import org.lealone.hansql.exec.exception.SchemaChangeException;
+import org.lealone.hansql.exec.ops.FragmentContext;
+import org.lealone.hansql.exec.physical.impl.ScanBatch;
+import org.lealone.hansql.exec.record.AbstractRecordBatch;
+import org.lealone.hansql.exec.record.BatchSchema;
+import org.lealone.hansql.exec.record.BatchSchema.SelectionVectorMode;
+import org.lealone.hansql.exec.record.RecordBatch;
+import org.lealone.hansql.exec.record.TypedFieldId;
+import org.lealone.hansql.exec.record.VectorWrapper;
+import org.lealone.hansql.exec.vector.ValueVector;
+import org.lealone.hansql.optimizer.rel.core.JoinRelType;
+
+/**
+ * Joins the incoming batches to a Lealone table through an index of the table.
+ * <p>
+ * The keys of a whole incoming batch are collected, sorted and deduplicated first, so each distinct key is
+ * looked up once and the index is walked in key order. The matched rows are then emitted in the order of
+ * the incoming rows, the columns of the table are copied by a {@link LealoneRecordReader} that reads them
+ * from the matches instead of a cursor. A row without a match is dropped by an inner join, a left join
+ * emits it with nulls for the columns of the table.
+ */
+public class LealoneLookupJoinBatch extends AbstractRecordBatch<LealoneLookupJoinPOP> {
+    static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneLookupJoinBatch.class);
+
+    private final RecordBatch outer;
+    private final Table table;
+    private final ServerSession session;
+    private final Index index;
+    // the index columns that are matched by the outer keys, a prefix of the index columns
+    private final Column[] keyColumns;
+    private final CompareMode compareMode;
+    private final boolean leftJoin;
+    private final LealoneRecordReader reader;
+    // the row of a left join that has no match, all the columns are null
+    private final SearchRow nullRow;
+
+    private IterOutcome outerUpstream = IterOutcome.NONE;
+    private BatchSchema outerSchema;
+    private ValueVector[] outerKeyVectors;
+    private ValueVector[] outerVectors;
+    private ValueVector[] outputVectors;
+    private boolean hasPendingOuterBatch;
+
+    // the joined rows of the current outer batch, in the order of the outer rows
+    private int[] pairOuterRows = new int[0];
+    private SearchRow[] pairInnerRows = new SearchRow[0];
+    private int pairCount;
+    private int pairIndex;
+
+    // the outer row of each row that was handed to the reader for the current output batch
+    private int[] outputOuterRows = new int[0];
+    private int outputCount;
+    private int recordCount;
+
+    public LealoneLookupJoinBatch(LealoneLookupJoinPOP config, FragmentContext context, RecordBatch outer,
+            Table table, ServerSession session) throws OutOfMemoryException {
+        super(config, context, true);
+        this.outer = outer;
+        this.table = table;
+        this.session = session;
+        this.index = table.getSchema().getIndex(session, config.getScanSpec().getIndexName());
+        this.keyColumns = Arrays.copyOf(index.getColumns(), config.getOuterKeys().size());
+        this.compareMode = table.getDatabase().getCompareMode();
+        this.leftJoin = config.getJoinType() == JoinRelType.LEFT;
+
+        Map<String, String> outputNames = new HashMap<>();
+        List<SchemaPath> columns = config.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            outputNames.put(columns.get(i).getRootSegmentPath().toUpperCase(), config.getOutputNames().get(i));
+        }
+        reader = new LealoneRecordReader(table, columns, outputNames, leftJoin, this::nextInnerRow);
+
+        nullRow = table.getTemplateRow();
+        for (Column column : table.getColumns()) {
+            nullRow.setValue(column.getColumnId(), ValueNull.INSTANCE);
+        }
+    }
+
+    @Override
+    public int getRecordCount() {
+        if (state == BatchState.DONE) {
+            return 0;
+        }
+        return recordCount;
+    }
+
+    @Override
+    protected void buildSchema() throws SchemaChangeException {
+        outerUpstream = next(outer);
+        switch (outerUpstream) {
+        case NONE:
+            state = BatchState.DONE;
+            return;
+        case STOP:
+            state = BatchState.STOP;
+            return;
+        case OUT_OF_MEMORY:
+            state = BatchState.OUT_OF_MEMORY;
+            return;
+        default:
+            break;
+        }
+
+        container.clear();
+        outerSchema = outer.getSchema();
+        List<ValueVector> out = new ArrayList<>();
+        for (VectorWrapper<?> w : outer) {
+            out.add(container.addOrGet(w.getField()));
+        }
+        outputVectors = out.toArray(new ValueVector[out.size()]);
+        bindOuterVectors();
+
+        // the reader adds the vectors of the table columns after the outer ones
+        try {
+            reader.setup(oContext, new ScanBatch.Mutator(oContext, oContext.getAllocator(), container));
+        } catch (ExecutionSetupException e) {
+            throw new SchemaChangeException(e);
+        }
+        container.buildSchema(SelectionVectorMode.NONE);
+        container.setRecordCount(0);
+        hasPendingOuterBatch = true;
+    }
+
+    @Override
+    public IterOutcome innerNext() {
+        try {
+            while (pairIndex >= pairCount) {
+                if (hasPendingOuterBatch) {
+                    hasPendingOuterBatch = false;
+                } else {
+                    outerUpstream = next(outer);
+                    switch (outerUpstream) {
+                    case NONE:
+                    case STOP:
+                    case OUT_OF_MEMORY:
+                        state = BatchState.DONE;
+                        return outerUpstream;
+                    case NOT_YET:
+                        return outerUpstream;
+                    case OK_NEW_SCHEMA:
+                        if (!outer.getSchema().isEquivalent(outerSchema)) {
+                            throw UserException.unsupportedError()
+                                    .message("The input of a Lealone lookup join can not change its schema.")
+                                    .build(logger);
+                        }
+                        bindOuterVectors();
+                        break;
+                    default:
+                        break;
+                    }
+                }
+                lookup();
+            }
+            produceOutput();
+            return IterOutcome.OK;
+        } catch (SchemaChangeException e) {
+            throw UserException.unsupportedError(e)
+                    .message("The input of a Lealone lookup join can not change its schema.").build(logger);
+        } finally {
+            if (state == BatchState.FIRST) {
+                state = BatchState.NOT_FIRST;
+            }
+        }
+    }
+
+    /**
+     * Binds the vectors of the outer batch, they may be replaced by each new schema of the outer input.
+     */
+    private void bindOuterVectors() throws SchemaChangeException {
+        List<ValueVector> in = new ArrayList<>();
+        for (VectorWrapper<?> w : outer) {
+            in.add(w.getValueVector());
+        }
+        outerVectors = in.toArray(new ValueVector[in.size()]);
+
+        List<String> outerKeys = popConfig.getOuterKeys();
+        outerKeyVectors = new ValueVector[outerKeys.size()];
+        for (int i = 0; i < outerKeyVectors.length; i++) {
+            TypedFieldId id = outer.getValueVectorId(SchemaPath.getSimplePath(outerKeys.get(i)));
+            if (id == null) {
+                throw new SchemaChangeException("The join key " + outerKeys.get(i) + " is not in the input");
+            }
+            outerKeyVectors[i] = outerVectors[id.getFieldIds()[0]];
+        }
+    }
+
+    /**
+     * Looks up the keys of the current outer batch, a key is looked up only once however often it occurs.
+     */
+    private void lookup() {
+        final int rowCount = outer.getRecordCount();
+        final Comparator<OuterKey> comparator = (a, b) -> compareKeys(a.values, b.values);
+        @SuppressWarnings("unchecked")
+        List<SearchRow>[] matches = new List[rowCount];
+        int matchCount = 0;
+        try {
+            List<OuterKey> keys = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                Value[] key = getKey(i);
+                if (key != null) {
+                    keys.add(new OuterKey(key, i));
+                }
+            }
+            Collections.sort(keys, comparator);
+
+            OuterKey last = null;
+            List<SearchRow> lastMatches = null;
+            for (OuterKey key : keys) {
+                if (last == null || comparator.compare(last, key) != 0) {
+                    last = key;
+                    lastMatches = find(key.values);
+                }
+                matches[key.row] = lastMatches;
+                matchCount += lastMatches.size();
+            }
+        } catch (DbException e) {
+            throw UserException.dataReadError(e).message("Failure while attempting to read from database.")
+                    .addContext("table", table.getName()).build(logger);
+        }
+
+        int capacity = leftJoin ? matchCount + rowCount : matchCount;
+        if (pairOuterRows.length < capacity) {
+            pairOuterRows = new int[capacity];
+            pairInnerRows = new SearchRow[capacity];
+        }
+        pairCount = 0;
+        pairIndex = 0;
+        for (int i = 0; i < rowCount; i++) {
+            List<SearchRow> rows = matches[i];
+            if (rows == null || rows.isEmpty()) {
+                if (leftJoin) {
+                    pairOuterRows[pairCount] = i;
+                    pairInnerRows[pairCount++] = nullRow;
+                }
+                continue;
+            }
+            for (SearchRow row : rows) {
+                pairOuterRows[pairCount] = i;
+                pairInnerRows[pairCount++] = row;
+            }
+        }
+    }
+
+    /**
+     * @return the values of the join key of the outer row, or null when the row can not match: one of them is
+     *         null or does not fit the index column
+     */
+    private Value[] getKey(int row) {
+        Value[] key = new Value[keyColumns.length];
+        for (int i = 0; i < key.length; i++) {
+            ValueVector vector = outerKeyVectors[i];
+            Object o = vector.getAccessor().getObject(row);
+            if (o == null) {
+                return null; // a null key matches no row
+            }
+            Value v;
+            switch (vector.getField().getType().getMinorType()) {
+            case TINYINT:
+            case SMALLINT:
+            case INT:
+                v = ValueInt.get(((Number) o).intValue());
+                break;
+            case BIGINT:
+                v = ValueLong.get(((Number) o).longValue());
+                break;
+            case VARCHAR:
+            case VAR16CHAR:
+                v = ValueString.get(o.toString());
+                break;
+            default:
+                // the rule only plans integer and string keys
+                throw new UnsupportedOperationException("Unsupported join key type " + vector.getField().getType());
+            }
+            try {
+                key[i] = keyColumns[i].convert(v);
+            } catch (DbException e) {
+                return null; // out of the range of the index column, no row has this key
+            }
+        }
+        return key;
+    }
+
+    private int compareKeys(Value[] a, Value[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int c = a[i].compareTo(b[i], compareMode);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private List<SearchRow> find(Value[] key) {
+        SearchRow keyRow = table.getTemplateRow();
+        for (int i = 0; i < key.length; i++) {
+            keyRow.setValue(keyColumns[i].getColumnId(), key[i]);
+        }
+        Cursor cursor = index.find(session, keyRow, keyRow);
+        List<SearchRow> rows = new ArrayList<>(1);
+        while (cursor.next()) {
+            rows.add(cursor.get());
+        }
+        return rows;
+    }
+
+    /**
+     * Hands the joined rows to the reader, recording the outer row of each one.
+     */
+    private SearchRow nextInnerRow() {
+        if (pairIndex >= pairCount) {
+            return null;
+        }
+        if (outputCount == outputOuterRows.length) {
+            outputOuterRows = Arrays.copyOf(outputOuterRows, Math.max(1024, outputCount * 2));
+        }
+        outputOuterRows[outputCount++] = pairOuterRows[pairIndex];
+        return pairInnerRows[pairIndex++];
+    }
+
+    private void produceOutput() {
+        reader.allocate(null);
+        for (ValueVector v : outputVectors) {
+            v.allocateNew();
+        }
+        outputCount = 0;
+        final int count = reader.next();
+        for (int i = 0; i < outputVectors.length; i++) {
+            ValueVector from = outerVectors[i];
+            ValueVector to = outputVectors[i];
+            for (int j = 0; j < count; j++) {
+                to.copyEntry(j, from, outputOuterRows[j]);
+            }
+            to.getMutator().setValueCount(count);
+        }
+        container.setRecordCount(count);
+        recordCount = count;
+    }
+
+    private static class OuterKey {
+        final Value[] values;
+        final int row;
+
+        OuterKey(Value[] values, int row) {
+            this.values = values;
+            this.row = row;
+        }
+    }
+
+    @Override
+    protected void killIncoming(boolean sendUpstream) {
+        outer.kill(sendUpstream);
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (Exception e) {
+            logger.warn("Failure while closing the reader of {}", table.getName(), e);
+        }
+        pairInnerRows = null;
+        super.close();
+    }
+
+    @Override
+    public void dump() {
+        logger.error("LealoneLookupJoinBatch[container={}, outer={}, table={}, index={}, pairCount={}, pairIndex={}]",
+                container, outer, table.getName(), index.getName(), pairCount, pairIndex);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.List;
+
+import org.apache.drill.shaded.guava.com.google.common.base.Preconditions;
+import org.lealone.db.Database;
+import org.lealone.db.LealoneDatabase;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Table;
+import org.lealone.hansql.common.exceptions.ExecutionSetupException;
+import org.lealone.hansql.engine.server.HanClientConnection;
+import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
+import org.lealone.hansql.exec.physical.impl.BatchCreator;
+import org.lealone.hansql.exec.record.CloseableRecordBatch;
+import org.lealone.hansql.exec.record.RecordBatch;
+
+public class LealoneLookupJoinBatchCreator implements BatchCreator<LealoneLookupJoinPOP> {
+    @Override
+    public CloseableRecordBatch getBatch(ExecutorFragmentContext context, LealoneLookupJoinPOP config,
+            List<RecordBatch> children) throws ExecutionSetupException {
+        Preconditions.checkArgument(children.size() == 1);
+        LealoneScanSpec scanSpec = config.getScanSpec();
+        // the lookups use the session of the connection, so they see the same snapshot as the scans
+        HanClientConnection conn = (HanClientConnection) context.getUserDataTunnel().getConnection();
+        Database db = LealoneDatabase.getInstance().getDatabase(scanSpec.getDbName());
+        ServerSession session = conn.getServerSession();
+        if (session == null) {
+            session = db.getSystemSession();
+        }
+        Table table = db.getSchema(session, scanSpec.getSchemaName()).findTableOrView(session,
+                scanSpec.getTableName());
+        if (table == null) {
+            throw new ExecutionSetupException("Table " + scanSpec.getTableName() + " not found");
+        }
+        return new LealoneLookupJoinBatch(config, context, children.get(0), table, session);
+    }
+}
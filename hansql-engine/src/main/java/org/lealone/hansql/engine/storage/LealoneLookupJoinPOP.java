@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.List;
+
+import org.apache.drill.shaded.guava.com.google.common.base.Preconditions;
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.exec.physical.base.AbstractSingle;
+import org.lealone.hansql.exec.physical.base.PhysicalOperator;
+import org.lealone.hansql.exec.physical.base.PhysicalVisitor;
+import org.lealone.hansql.exec.proto.UserBitShared.CoreOperatorType;
+import org.lealone.hansql.optimizer.rel.core.JoinRelType;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+
+/**
+ * Joins its child to a Lealone table by looking up the join keys of each incoming batch in an index of the table.
+ * The outer keys are the fields of the child that match the leading columns of the index, in the order of the index.
+ */
+@JsonTypeName("lealone-lookup-join")
+public class LealoneLookupJoinPOP extends AbstractSingle {
+
+    private final LealoneScanSpec scanSpec;
+    private final List<String> outerKeys;
+    private final List<SchemaPath> columns;
+    private final List<String> outputNames;
+    private final JoinRelType joinType;
+
+    /**
+     * @param scanSpec the inner table, the index name is the index that is probed
+     * @param columns the columns of the inner table that are read
+     * @param outputNames the names of the output fields of the columns
+     */
+    @JsonCreator
+    public LealoneLookupJoinPOP(@JsonProperty("child") PhysicalOperator child,
+            @JsonProperty("scanSpec") LealoneScanSpec scanSpec, @JsonProperty("outerKeys") List<String> outerKeys,
+            @JsonProperty("columns") List<SchemaPath> columns, @JsonProperty("outputNames") List<String> outputNames,
+            @JsonProperty("joinType") JoinRelType joinType) {
+        super(child);
+        Preconditions.checkArgument(joinType == JoinRelType.INNER || joinType == JoinRelType.LEFT,
+                "Unsupported join type %s", joinType);
+        Preconditions.checkArgument(columns.size() == outputNames.size());
+        this.scanSpec = scanSpec;
+        this.outerKeys = outerKeys;
+        this.columns = columns;
+        this.outputNames = outputNames;
+        this.joinType = joinType;
+    }
+
+    @Override
+    protected PhysicalOperator getNewWithChild(PhysicalOperator child) {
+        return new LealoneLookupJoinPOP(child, scanSpec, outerKeys, columns, outputNames, joinType);
+    }
+
+    @Override
+    public <T, X, E extends Throwable> T accept(PhysicalVisitor<T, X, E> physicalVisitor, X value) throws E {
+        return physicalVisitor.visitOp(this, value);
+    }
+
+    @JsonProperty
+    public LealoneScanSpec getScanSpec() {
+        return scanSpec;
+    }
+
+    @JsonProperty
+    public List<String> getOuterKeys() {
+        return outerKeys;
+    }
+
+    @JsonProperty
+    public List<SchemaPath> getColumns() {
+        return columns;
+    }
+
+    @JsonProperty
+    public List<String> getOutputNames() {
+        return outputNames;
+    }
+
+    @JsonProperty
+    public JoinRelType getJoinType() {
+        return joinType;
+    }
+
+    @Override
+    public int getOperatorType() {
+        return CoreOperatorType.NESTED_LOOP_JOIN_VALUE;
+    }
+}
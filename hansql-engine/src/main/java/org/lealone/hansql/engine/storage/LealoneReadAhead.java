@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.lealone.db.result.SearchRow;
+import org.lealone.hansql.exec.ops.OperatorStats;
+
+/**
+ * Reads the rows of a Lealone scan ahead on a scan thread.
+ * <p>
+ * Each task of the scan executor reads one chunk of rows and hands it to a bounded queue, then submits
+ * the next task if the queue has room. When the queue is full no task is pending, the fragment thread
+ * submits the next one after it took a chunk out. So a scan thread never waits for the fragment, and
+ * the few scan threads are shared by all the scans. The fragment thread copies the rows into the value
+ * vectors, the vectors are only touched by the fragment thread.
+ * <p>
+ * The fragment thread waits for the next chunk, so the read-ahead is only used by fragments that may
+ * block, see {@link org.lealone.hansql.exec.ops.FragmentContext.ExecutorState#canBlock()}.
+ */
+class LealoneReadAhead implements Runnable {
+    static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneReadAhead.class);
+
+    /**
+     * The rows to read ahead, only called from the scan thread once the read-ahead is started.
+     */
+    interface RowSource {
+        /**
+         * @return the next row, or null at the end of the scan
+         */
+        SearchRow next();
+    }
+
+    // marks the end of the scan, a failure of the producer is in failure
+    private static final SearchRow[] END = new SearchRow[0];
+
+    private final RowSource source;
+    // the cursors of the session are read one thread at a time, see LealoneRecordReader.readRows
+    private final Object lock;
+    private final int chunkRows;
+    // one more slot than the chunks, so END always fits
+    private final BlockingQueue<SearchRow[]> queue;
+    private final OperatorStats stats;
+    // true while a task is submitted or running, there is at most one
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean ended;
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+    private ExecutorService executor;
+    private volatile Future<?> future;
+
+    private SearchRow[] chunk;
+    private int chunkIndex;
+
+    LealoneReadAhead(RowSource source, Object lock, int chunkRows, int chunks, OperatorStats stats) {
+        this.source = source;
+        this.lock = lock;
+        this.chunkRows = chunkRows;
+        this.queue = new ArrayBlockingQueue<>(chunks + 1);
+        this.stats = stats;
+    }
+
+    void start(ExecutorService executor) {
+        this.executor = executor;
+        schedule();
+    }
+
+    /**
+     * Submits the task that reads the next chunk, unless one is pending or the queue is full.
+     */
+    private void schedule() {
+        if (ended || stopped || queue.remainingCapacity() <= 1 || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            future = executor.submit(this);
+        } catch (RuntimeException e) {
+            scheduled.set(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!stopped) {
+                readChunk();
+            }
+        } catch (Throwable t) {
+            failure = t;
+            end();
+        } finally {
+            scheduled.set(false);
+        }
+        // the fragment thread may have taken a chunk out while this task was running
+        schedule();
+    }
+
+    private void readChunk() {
+        SearchRow[] rows = new SearchRow[chunkRows];
+        int count = 0;
+        synchronized (lock) {
+            while (count < chunkRows) {
+                SearchRow row = source.next();
+                if (row == null) {
+                    break;
+                }
+                rows[count++] = row;
+            }
+        }
+        // there is room, only this task adds to the queue
+        if (count > 0) {
+            queue.offer(rows);
+        }
+        if (count < chunkRows) {
+            end();
+        }
+    }
+
+    private void end() {
+        ended = true;
+        queue.offer(END);
+    }
+
+    /**
+     * @return the next row, or null at the end of the scan
+     */
+    SearchRow next() {
+        if (chunk == null || chunkIndex >= chunk.length || chunk[chunkIndex] == null) {
+            if (chunk == END) {
+                return null;
+            }
+            stats.startWait();
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the rows of the Lealone scan", e);
+            } finally {
+                stats.stopWait();
+            }
+            chunkIndex = 0;
+            if (chunk == END) {
+                if (failure != null) {
+                    if (failure instanceof RuntimeException) {
+                        throw (RuntimeException) failure;
+                    }
+                    throw new IllegalStateException("Failure while reading ahead the Lealone scan", failure);
+                }
+                return null;
+            }
+            schedule();
+        }
+        return chunk[chunkIndex++];
+    }
+
+    /**
+     * Stops reading ahead and waits for a running task, so the cursor is not read after the scan is closed.
+     */
+    void close() {
+        stopped = true;
+        Future<?> f = future;
+        if (f != null && !f.cancel(false)) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.debug("Failure while reading ahead the Lealone scan", e);
+            }
+        }
+        queue.clear();
+        chunk = null;
+    }
+}
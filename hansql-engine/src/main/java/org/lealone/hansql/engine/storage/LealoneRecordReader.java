@@ -17,135 +17,177 @@
  */
 package org.lealone.hansql.engine.storage;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.math.BigDecimal;
-import java.sql.Date;
-import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import org.apache.drill.shaded.guava.com.google.common.base.Charsets;
 import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableList;
 import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableMap;
+import org.apache.drill.shaded.guava.com.google.common.primitives.Ints;
+import org.apache.drill.shaded.guava.com.google.common.primitives.Longs;
+import org.lealone.common.exceptions.DbException;
 import org.lealone.db.Database;
 import org.lealone.db.LealoneDatabase;
 import org.lealone.db.index.Cursor;
 import org.lealone.db.index.Index;
-import org.lealone.db.result.Row;
+import org.lealone.db.result.SearchRow;
 import org.lealone.db.session.ServerSession;
 import org.lealone.db.table.Column;
 import org.lealone.db.table.Table;
 import org.lealone.db.value.DataType;
+import org.lealone.db.value.Value;
+import org.lealone.db.value.ValueDate;
+import org.lealone.db.value.ValueNull;
+import org.lealone.db.value.ValueTime;
+import org.lealone.db.value.ValueTimestamp;
 import org.lealone.hansql.common.exceptions.ExecutionSetupException;
 import org.lealone.hansql.common.exceptions.UserException;
-import org.lealone.hansql.common.types.TypeProtos;
+import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.common.types.TypeProtos.DataMode;
 import org.lealone.hansql.common.types.TypeProtos.MajorType;
 import org.lealone.hansql.common.types.TypeProtos.MinorType;
 import org.lealone.hansql.engine.server.HanClientConnection;
+import org.lealone.hansql.engine.storage.LealoneSubScan.LealoneSubScanSpec;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.exception.ClassTransformationException;
+import org.lealone.hansql.exec.exception.OutOfMemoryException;
 import org.lealone.hansql.exec.exception.SchemaChangeException;
+import org.lealone.hansql.exec.expr.ClassGenerator;
+import org.lealone.hansql.exec.expr.CodeGenerator;
 import org.lealone.hansql.exec.expr.TypeHelper;
 import org.lealone.hansql.exec.ops.ExchangeFragmentContext;
 import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
+import org.lealone.hansql.exec.ops.FragmentContext;
+import org.lealone.hansql.exec.ops.MetricDef;
 import org.lealone.hansql.exec.ops.OperatorContext;
 import org.lealone.hansql.exec.physical.impl.OutputMutator;
 import org.lealone.hansql.exec.record.MaterializedField;
 import org.lealone.hansql.exec.store.AbstractRecordReader;
-import org.lealone.hansql.exec.vector.NullableBigIntVector;
-import org.lealone.hansql.exec.vector.NullableBitVector;
-import org.lealone.hansql.exec.vector.NullableDateVector;
-import org.lealone.hansql.exec.vector.NullableFloat4Vector;
-import org.lealone.hansql.exec.vector.NullableFloat8Vector;
-import org.lealone.hansql.exec.vector.NullableIntVector;
-import org.lealone.hansql.exec.vector.NullableTimeStampVector;
-import org.lealone.hansql.exec.vector.NullableTimeVector;
-import org.lealone.hansql.exec.vector.NullableVarBinaryVector;
-import org.lealone.hansql.exec.vector.NullableVarCharVector;
-import org.lealone.hansql.exec.vector.NullableVarDecimalVector;
+import org.lealone.hansql.exec.vector.AllocationHelper;
 import org.lealone.hansql.exec.vector.ValueVector;
+import org.lealone.hansql.exec.vector.VariableWidthVector;
+
+import com.sun.codemodel.JBlock;
+import com.sun.codemodel.JClass;
+import com.sun.codemodel.JCodeModel;
+import com.sun.codemodel.JExpr;
+import com.sun.codemodel.JExpression;
+import com.sun.codemodel.JMethod;
+import com.sun.codemodel.JMod;
+import com.sun.codemodel.JOp;
+import com.sun.codemodel.JVar;
 
 @SuppressWarnings("unchecked")
 public class LealoneRecordReader extends AbstractRecordReader {
     static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneRecordReader.class);
 
-    private static class ResultSet {
-        Row row;
+    public enum Metric implements MetricDef {
+        BATCH_ROW_LIMIT, // the number of rows the next batch may hold
+        AVG_ROW_BYTES; // the estimated width of a row
 
-        public void setRow(Row row) {
-            this.row = row;
-        }
-
-        boolean wasNull() {
-            return row == null;
-        }
-
-        boolean getBoolean(int columnIndex) {
-            return row.getValue(columnIndex).getBoolean();
-        }
-
-        int getInt(int columnIndex) {
-            return row.getValue(columnIndex).getInt();
-        }
-
-        long getLong(int columnIndex) {
-            return row.getValue(columnIndex).getLong();
-        }
-
-        float getFloat(int columnIndex) {
-            return row.getValue(columnIndex).getFloat();
-        }
-
-        double getDouble(int columnIndex) {
-            return row.getValue(columnIndex).getDouble();
-        }
-
-        BigDecimal getBigDecimal(int columnIndex) {
-            return row.getValue(columnIndex).getBigDecimal();
-        }
-
-        String getString(int columnIndex) {
-            return row.getValue(columnIndex).getString();
-        }
-
-        byte[] getBytes(int columnIndex) {
-            return row.getValue(columnIndex).getBytes();
-        }
-
-        Date getDate(int columnIndex) {
-            return row.getValue(columnIndex).getDate();
-        }
-
-        Time getTime(int columnIndex) {
-            return row.getValue(columnIndex).getTime();
-        }
-
-        Timestamp getTimestamp(int columnIndex) {
-            return row.getValue(columnIndex).getTimestamp();
+        @Override
+        public int metricId() {
+            return ordinal();
         }
     }
 
     private static final ImmutableMap<Integer, MinorType> JDBC_TYPE_MAPPINGS;
-    private final ResultSet resultSet = new ResultSet();
+    // the row count of a batch must fit in the two byte indexes of a selection vector
+    private static final int MAX_RECORDS_PER_BATCH = Character.MAX_VALUE;
+    // keep the generated methods small enough to be JIT compiled
+    private static final int COLUMNS_PER_METHOD = 64;
+
     private final String storagePluginName;
     private ImmutableList<ValueVector> vectors;
-    private ImmutableList<Copier<?>> copiers;
+    private LealoneCopier copier;
+    // the columns decoded a batch at a time, the values are gathered per column before decoding
+    private LealoneColumnDecoder[] decoders;
+    private int[] decodedColumns;
+    private Value[][] decodedValues;
+
+    // The batches are sized from a byte budget, the widths of the variable width columns
+    // are re-estimated from the rows read so far.
+    private OperatorContext operatorContext;
+    private long batchByteLimit;
+    private int batchRowLimit;
+    private int[] columnWidths;
+    private long[] columnBytes;
+    private long rowsRead;
+
+    // reads the rows ahead on a scan thread when store.lealone.read_ahead_batches is set
+    private LealoneReadAhead readAhead;
     private final Table table;
     private Cursor cursor;
     private final LealoneSubScan subScanConfig;
-
-    public LealoneRecordReader(ExecutorFragmentContext context, LealoneScanSpec scanSpec, LealoneSubScan subScanConfig,
-            String storagePluginName) {
+    private final LealoneScanSpec scanSpec;
+    // the row key range of this partition of the table, null means unbounded
+    private final Long startKey;
+    private final Long endKey;
+
+    // the session of the connection, shared by all the fragments of the query
+    private ServerSession session;
+    // only used when the scan is restricted to the key ranges of a pushed down filter
+    private Index index;
+    private List<LealoneScanRange> ranges;
+    private int rangeIndex;
+
+    // only used by an index merge scan, the merged row keys of the indexes, read from the scan index in key order
+    private long[] rowKeys;
+    private int rowKeyIndex;
+    private Index scanIndex;
+
+    // the entries of a secondary index hold all the projected columns, so they are read without the rows
+    private boolean covering;
+
+    // only used when the rows are looked up by another operator, see LealoneLookupJoinBatch
+    private LealoneReadAhead.RowSource rowSource;
+    private Map<String, String> outputNames;
+    private boolean nullable;
+
+    public LealoneRecordReader(ExecutorFragmentContext context, LealoneSubScanSpec subScanSpec,
+            LealoneSubScan subScanConfig, String storagePluginName) {
         this.storagePluginName = storagePluginName;
+        LealoneScanSpec scanSpec = subScanSpec.getScanSpec();
         HanClientConnection conn = (HanClientConnection) context.getUserDataTunnel().getConnection();
         Database db = LealoneDatabase.getInstance().getDatabase(scanSpec.getDbName());
         table = db.getSchema(conn.getServerSession(), scanSpec.getSchemaName()).findTableOrView(conn.getServerSession(),
                 scanSpec.getTableName());
         this.subScanConfig = subScanConfig;
+        this.scanSpec = scanSpec;
+        startKey = toKey(subScanSpec.getStartKey());
+        endKey = toKey(subScanSpec.getEndKey());
+        setColumns(subScanConfig.getColumns());
+    }
+
+    /**
+     * Creates a reader that copies the rows returned by the given source instead of scanning the table.
+     *
+     * @param outputNames the names of the vectors by the upper case names of the columns
+     * @param nullable true if the vectors of the NOT NULL columns must also hold nulls
+     */
+    LealoneRecordReader(Table table, List<SchemaPath> columns, Map<String, String> outputNames, boolean nullable,
+            LealoneReadAhead.RowSource rowSource) {
+        this.storagePluginName = null;
+        this.table = table;
+        this.subScanConfig = null;
+        this.scanSpec = null;
+        this.startKey = null;
+        this.endKey = null;
+        this.outputNames = outputNames;
+        this.nullable = nullable;
+        this.rowSource = rowSource;
+        setColumns(columns);
     }
 
     static {
         JDBC_TYPE_MAPPINGS = (ImmutableMap<Integer, MinorType>) (Object) ImmutableMap.builder()
                 .put(java.sql.Types.DOUBLE, MinorType.FLOAT8).put(java.sql.Types.FLOAT, MinorType.FLOAT4)
-                .put(java.sql.Types.TINYINT, MinorType.INT).put(java.sql.Types.SMALLINT, MinorType.INT)
+                .put(java.sql.Types.TINYINT, MinorType.TINYINT).put(java.sql.Types.SMALLINT, MinorType.SMALLINT)
                 .put(java.sql.Types.INTEGER, MinorType.INT).put(java.sql.Types.BIGINT, MinorType.BIGINT)
 
                 .put(java.sql.Types.CHAR, MinorType.VARCHAR).put(java.sql.Types.VARCHAR, MinorType.VARCHAR)
@@ -157,7 +199,7 @@ public class LealoneRecordReader extends AbstractRecordReader {
                 .put(java.sql.Types.VARBINARY, MinorType.VARBINARY)
                 .put(java.sql.Types.LONGVARBINARY, MinorType.VARBINARY).put(java.sql.Types.BLOB, MinorType.VARBINARY)
 
-                .put(java.sql.Types.NUMERIC, MinorType.FLOAT8).put(java.sql.Types.DECIMAL, MinorType.VARDECIMAL)
+                .put(java.sql.Types.NUMERIC, MinorType.VARDECIMAL).put(java.sql.Types.DECIMAL, MinorType.VARDECIMAL)
                 .put(java.sql.Types.REAL, MinorType.FLOAT8)
 
                 .put(java.sql.Types.DATE, MinorType.DATE).put(java.sql.Types.TIME, MinorType.TIME)
@@ -186,90 +228,226 @@ public class LealoneRecordReader extends AbstractRecordReader {
 
     }
 
-    private Copier<?> getCopier(int jdbcType, int offset, ResultSet result, ValueVector v) {
-
-        switch (jdbcType) {
-        case java.sql.Types.BIGINT:
-            return new BigIntCopier(offset, result, (NullableBigIntVector.Mutator) v.getMutator());
-        case java.sql.Types.FLOAT:
-            return new Float4Copier(offset, result, (NullableFloat4Vector.Mutator) v.getMutator());
-        case java.sql.Types.DOUBLE:
-        case java.sql.Types.NUMERIC:
-        case java.sql.Types.REAL:
-            return new Float8Copier(offset, result, (NullableFloat8Vector.Mutator) v.getMutator());
-        case java.sql.Types.TINYINT:
-        case java.sql.Types.SMALLINT:
-        case java.sql.Types.INTEGER:
-            return new IntCopier(offset, result, (NullableIntVector.Mutator) v.getMutator());
-        case java.sql.Types.CHAR:
-        case java.sql.Types.VARCHAR:
-        case java.sql.Types.LONGVARCHAR:
-        case java.sql.Types.CLOB:
-        case java.sql.Types.NCHAR:
-        case java.sql.Types.NVARCHAR:
-        case java.sql.Types.LONGNVARCHAR:
-            return new VarCharCopier(offset, result, (NullableVarCharVector.Mutator) v.getMutator());
-        case java.sql.Types.VARBINARY:
-        case java.sql.Types.LONGVARBINARY:
-        case java.sql.Types.BLOB:
-            return new VarBinaryCopier(offset, result, (NullableVarBinaryVector.Mutator) v.getMutator());
-        case java.sql.Types.DATE:
-            return new DateCopier(offset, result, (NullableDateVector.Mutator) v.getMutator());
-        case java.sql.Types.TIME:
-            return new TimeCopier(offset, result, (NullableTimeVector.Mutator) v.getMutator());
-        case java.sql.Types.TIMESTAMP:
-            return new TimeStampCopier(offset, result, (NullableTimeStampVector.Mutator) v.getMutator());
-        case java.sql.Types.BOOLEAN:
-        case java.sql.Types.BIT:
-            return new BitCopier(offset, result, (NullableBitVector.Mutator) v.getMutator());
-        case java.sql.Types.DECIMAL:
-            return new DecimalCopier(offset, result, (NullableVarDecimalVector.Mutator) v.getMutator());
-        default:
-            throw new IllegalArgumentException("Unknown how to handle vector.");
+    /**
+     * Generates a copier for the projected columns, so that each row is copied by one monomorphic call
+     * instead of a virtual call per column.
+     */
+    private LealoneCopier generateCopier(FragmentContext context, List<Integer> columnIndexes,
+            List<Integer> jdbcTypes, ValueVector[] vectors) throws SchemaChangeException {
+        final ClassGenerator<LealoneCopier> cg = CodeGenerator.getRoot(LealoneCopier.TEMPLATE_DEFINITION,
+                context.getOptions());
+        final JCodeModel model = cg.getModel();
+        final JBlock setupBlock = cg.getSetupBlock();
+        final JBlock evalBlock = cg.getEvalBlock();
+        JBlock block = null;
+        JVar row = null;
+        JVar index = null;
+
+        for (int i = 0; i < vectors.length; i++) {
+            if (i % COLUMNS_PER_METHOD == 0) {
+                JMethod method = cg.clazz.method(JMod.PRIVATE, model.VOID, "copyColumns" + i / COLUMNS_PER_METHOD);
+                row = method.param(SearchRow.class, "row");
+                index = method.param(model.INT, "index");
+                block = method.body();
+                evalBlock.invoke(method).arg(JExpr.direct("row")).arg(JExpr.direct("index"));
+            }
+            JClass mutatorType = model.ref(vectors[i].getMutator().getClass());
+            JVar mutator = cg.declareClassField("mutator", mutatorType);
+            JExpression vector = JExpr.direct("vectors").component(JExpr.lit(i));
+            setupBlock.assign(mutator, JExpr.cast(mutatorType, vector.invoke("getMutator")));
+
+            JVar value = block.decl(model.ref(Value.class), "v" + i,
+                    row.invoke("getValue").arg(JExpr.lit(columnIndexes.get(i))));
+            // a NULL is not set, the nullable vector keeps it as null, a NOT NULL column needs no check
+            final MajorType type = vectors[i].getField().getType();
+            JBlock notNull = type.getMode() == DataMode.OPTIONAL
+                    ? block._if(value.ne(model.ref(ValueNull.class).staticRef("INSTANCE")))._then()
+                    : block;
+            JExpression v;
+            switch (jdbcTypes.get(i)) {
+            case java.sql.Types.BIGINT:
+                v = value.invoke("getLong");
+                break;
+            case java.sql.Types.FLOAT:
+                v = value.invoke("getFloat");
+                break;
+            case java.sql.Types.DOUBLE:
+            case java.sql.Types.REAL:
+                v = value.invoke("getDouble");
+                break;
+            case java.sql.Types.TINYINT:
+                v = value.invoke("getByte");
+                break;
+            case java.sql.Types.SMALLINT:
+                v = value.invoke("getShort");
+                break;
+            case java.sql.Types.INTEGER:
+                v = value.invoke("getInt");
+                break;
+            case java.sql.Types.CHAR:
+            case java.sql.Types.VARCHAR:
+            case java.sql.Types.LONGVARCHAR:
+            case java.sql.Types.CLOB:
+            case java.sql.Types.NCHAR:
+            case java.sql.Types.NVARCHAR:
+            case java.sql.Types.LONGNVARCHAR: {
+                // encode first, it may replace the scratch buffer
+                JVar length = notNull.decl(model.INT, "len" + i, JExpr.invoke("encode").arg(value.invoke("getString")));
+                notNull.add(mutator.invoke("setSafe").arg(index).arg(JExpr.ref("scratch")).arg(JExpr.lit(0))
+                        .arg(length));
+                continue;
+            }
+            case java.sql.Types.VARBINARY:
+            case java.sql.Types.LONGVARBINARY:
+            case java.sql.Types.BLOB: {
+                JVar bytes = notNull.decl(model.ref(byte[].class), "b" + i, value.invoke("getBytesNoCopy"));
+                notNull.add(mutator.invoke("setSafe").arg(index).arg(bytes).arg(JExpr.lit(0))
+                        .arg(bytes.ref("length")));
+                continue;
+            }
+            case java.sql.Types.DATE:
+                JExpression date = JExpr.cast(model.ref(ValueDate.class), value);
+                v = JExpr.invoke("dateToMillis").arg(date.invoke("getDateValue"));
+                break;
+            case java.sql.Types.TIME:
+                JExpression time = JExpr.cast(model.ref(ValueTime.class), value);
+                v = JExpr.invoke("timeToMillis").arg(time.invoke("getNanos"));
+                break;
+            case java.sql.Types.TIMESTAMP: {
+                JVar ts = notNull.decl(model.ref(ValueTimestamp.class), "ts" + i,
+                        JExpr.cast(model.ref(ValueTimestamp.class), value));
+                v = JExpr.invoke("timestampToMillis").arg(ts.invoke("getDateValue")).arg(ts.invoke("getTimeNanos"));
+                break;
+            }
+            case java.sql.Types.BOOLEAN:
+            case java.sql.Types.BIT:
+                v = JOp.cond(value.invoke("getBoolean"), JExpr.lit(1), JExpr.lit(0));
+                break;
+            case java.sql.Types.NUMERIC:
+            case java.sql.Types.DECIMAL:
+                // the vector stores the unscaled value, so it must have the scale of the column
+                v = value.invoke("getBigDecimal").invoke("setScale").arg(JExpr.lit(type.getScale()))
+                        .arg(model.ref(RoundingMode.class).staticRef("HALF_UP"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown how to handle vector.");
+            }
+            notNull.add(mutator.invoke("setSafe").arg(index).arg(v));
+        }
+
+        try {
+            CodeGenerator<LealoneCopier> codeGen = cg.getCodeGenerator();
+            codeGen.plainJavaCapable(true);
+            codeGen.preferPlainJava(true); // generated code calls the template helpers
+            LealoneCopier copier = context.getImplementationClass(codeGen);
+            copier.setup(vectors);
+            return copier;
+        } catch (ClassTransformationException | IOException e) {
+            throw new SchemaChangeException("Failure while attempting to load generated class", e);
+        }
+    }
+
+    @Override
+    protected List<SchemaPath> getDefaultColumnsToRead() {
+        // A skip query (e.g. COUNT(*)) needs no columns at all, only the number of rows.
+        return ImmutableList.of();
+    }
+
+    private Set<String> getProjectedColumnNames() {
+        if (isStarQuery()) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (SchemaPath path : getColumns()) {
+            names.add(path.getRootSegmentPath().toUpperCase());
+        }
+        return names;
+    }
+
+    private void openCursor(OperatorContext operatorContext) {
+        ServerSession session = null;
+        Cursor cursor = null;
+        if (operatorContext.getFragmentContext() instanceof ExchangeFragmentContext) {
+            HanClientConnection conn = (HanClientConnection) ((ExchangeFragmentContext) operatorContext
+                    .getFragmentContext()).getUserDataTunnel().getConnection();
+            session = conn.getServerSession();
+            cursor = conn.getCursor();
+        }
+        if (session == null)
+            session = table.getDatabase().getSystemSession();
+        this.session = session;
+        synchronized (session) {
+            openCursor(session, cursor);
+        }
+    }
+
+    private void openCursor(ServerSession session, Cursor cursor) {
+        if (scanSpec.isIndexMerge() && (rowKeys = mergeRowKeys(session)) != null) {
+            rowKeyIndex = 0;
+            scanIndex = table.getScanIndex(session);
+        } else if (scanSpec.isIndexMerge() && scanSpec.isUnion()) {
+            // too many row keys to merge, the filter above the scan still checks the whole OR
+            cursor = table.getScanIndex(session).find(session, null, null);
+        } else if (scanSpec.hasRanges()) {
+            // the cursor of the connection does not know about the key ranges, open our own ones,
+            // an intersection with too many row keys only reads the key ranges of its first index,
+            // the filter above the scan still checks the conditions of the other indexes
+            index = table.getSchema().getIndex(session, scanSpec.getIndexName());
+            ranges = LealoneScanRange.bind(table, index, scanSpec.getRanges());
+            rangeIndex = 0;
+            cursor = openRange(0);
+        } else if (startKey != null || endKey != null) {
+            // All the partitions of a scan use the session of the connection, so they see the same snapshot,
+            // the reads of the partitions are serialized on the session, see readRows.
+            Index scanIndex = table.getScanIndex(session);
+            cursor = scanIndex.find(session, getKeyRow(startKey), getKeyRow(endKey));
+        } else if (subScanConfig.getIndexName() != null) {
+            // an index scan, the cursor of the connection reads the rows of the table
+            Index index = table.getSchema().getIndex(session, subScanConfig.getIndexName());
+            cursor = index.find(session, null, null);
+            covering = isCovering(index);
+        } else if (cursor == null) {
+            cursor = table.getScanIndex(session).find(session, null, null);
+        }
+        this.cursor = cursor;
+        if (index != null) {
+            covering = isCovering(index);
         }
     }
 
     @Override
     public void setup(OperatorContext operatorContext, OutputMutator output) throws ExecutionSetupException {
+        this.operatorContext = operatorContext;
+        batchByteLimit = operatorContext.getFragmentContext().getOptions()
+                .getOption(ExecConstants.OUTPUT_BATCH_SIZE_VALIDATOR);
         try {
-            ServerSession session = null;
-            Cursor cursor = null;
-            if (operatorContext.getFragmentContext() instanceof ExchangeFragmentContext) {
-                HanClientConnection conn = (HanClientConnection) ((ExchangeFragmentContext) operatorContext
-                        .getFragmentContext()).getUserDataTunnel().getConnection();
-                session = conn.getServerSession();
-                cursor = conn.getCursor();
+            if (rowSource == null) {
+                openCursor(operatorContext);
             }
-            if (cursor == null) {
-                Index index;
-                if (subScanConfig.getIndexName() == null)
-                    index = table.getScanIndex(session);
-                else
-                    index = table.getSchema().getIndex(session, subScanConfig.getIndexName());
-
-                if (session == null)
-                    session = table.getDatabase().getSystemSession();
-                cursor = index.find(session, null, null);
-            }
-            this.cursor = cursor;
 
-            // final int columns = meta.getColumnCount();
+            // Only materialize the columns that were projected, a null set means all columns.
+            final Set<String> projected = getProjectedColumnNames();
             Column[] columns = table.getColumns();
             final int columnLength = columns.length;
             ImmutableList.Builder<ValueVector> vectorBuilder = ImmutableList.builder();
-            ImmutableList.Builder<Copier<?>> copierBuilder = ImmutableList.builder();
+            List<Integer> columnIndexes = new ArrayList<>();
+            List<Integer> jdbcTypes = new ArrayList<>();
+            List<Integer> widths = new ArrayList<>();
 
             for (int i = 0; i < columnLength; i++) {
                 Column meta = columns[i];
                 final String name = meta.getName();
+                if (projected != null && !projected.contains(name.toUpperCase())) {
+                    continue;
+                }
                 final int jdbcType = DataType.convertTypeToSQLType(meta.getType());
-                final int width = (int) meta.getPrecision();
-                final int scale = meta.getScale();
+                int width = (int) meta.getPrecision();
+                int scale = meta.getScale();
                 MinorType minorType = JDBC_TYPE_MAPPINGS.get(jdbcType);
                 if (minorType == null) {
 
                     logger.warn("Ignoring column that is unsupported.", UserException.unsupportedError().message(
-                            "A column you queried has a data type that is not currently supported by the JDBC storage plugin. "
+                            "A column you queried has a data type that is not currently supported by the Lealone storage plugin. "
                                     + "The column's name was %s and its JDBC data type was %s. ",
                             name, nameFromType(jdbcType)).addContext("column Name", name)
                             .addContext("plugin", storagePluginName).build(logger));
@@ -277,45 +455,95 @@ public class LealoneRecordReader extends AbstractRecordReader {
                     continue;
                 }
 
-                final MajorType type = MajorType.newBuilder().setMode(TypeProtos.DataMode.OPTIONAL)
-                        .setMinorType(minorType).setScale(scale).setPrecision(width).build();
-                final MaterializedField field = MaterializedField.create(name, type);
+                if (minorType == MinorType.VARDECIMAL) {
+                    width = LealoneTable.getDecimalPrecision(meta);
+                    scale = LealoneTable.getDecimalScale(meta);
+                }
+
+                // NOT NULL columns get REQUIRED vectors, so no bits vector has to be filled and checked
+                final DataMode mode = meta.isNullable() || nullable ? DataMode.OPTIONAL : DataMode.REQUIRED;
+                final MajorType type = MajorType.newBuilder().setMode(mode).setMinorType(minorType)
+                        .setScale(scale).setPrecision(width).build();
+                final String outputName = outputNames == null ? name : outputNames.get(name.toUpperCase());
+                final MaterializedField field = MaterializedField.create(outputName, type);
                 final Class<? extends ValueVector> clazz = TypeHelper.getValueVectorClass(minorType, type.getMode());
                 ValueVector vector = output.addField(field, clazz);
                 vectorBuilder.add(vector);
-                copierBuilder.add(getCopier(jdbcType, i, resultSet, vector));
-
+                columnIndexes.add(i);
+                jdbcTypes.add(jdbcType);
+                widths.add(estimateWidth(type));
             }
 
             vectors = vectorBuilder.build();
-            copiers = copierBuilder.build();
+            columnWidths = Ints.toArray(widths);
+            columnBytes = new long[columnWidths.length];
+            updateBatchRowLimit();
+
+            // Decode the columns of the common types a batch at a time,
+            // fall back to the generated row copier for the other ones.
+            List<LealoneColumnDecoder> decoderList = new ArrayList<>();
+            List<Integer> decodedList = new ArrayList<>();
+            List<Integer> copiedColumns = new ArrayList<>();
+            List<Integer> copiedTypes = new ArrayList<>();
+            List<ValueVector> copiedVectors = new ArrayList<>();
+            for (int i = 0; i < vectors.size(); i++) {
+                LealoneColumnDecoder decoder = LealoneColumnDecoder.create(jdbcTypes.get(i), vectors.get(i));
+                if (decoder != null) {
+                    decoderList.add(decoder);
+                    decodedList.add(columnIndexes.get(i));
+                } else {
+                    copiedColumns.add(columnIndexes.get(i));
+                    copiedTypes.add(jdbcTypes.get(i));
+                    copiedVectors.add(vectors.get(i));
+                }
+            }
+            decoders = decoderList.toArray(new LealoneColumnDecoder[decoderList.size()]);
+            decodedColumns = Ints.toArray(decodedList);
+            decodedValues = new Value[decoders.length][batchRowLimit];
+            if (!copiedVectors.isEmpty()) {
+                copier = generateCopier(operatorContext.getFragmentContext(), copiedColumns, copiedTypes,
+                        copiedVectors.toArray(new ValueVector[copiedVectors.size()]));
+            }
 
+            // nothing to read ahead for a skip query, the rows are only counted,
+            // the rows of a row source are only ready when the fragment thread asks for them,
+            // and a fragment on the scheduler thread can not wait for the scan thread
+            int readAheadChunks = (int) operatorContext.getFragmentContext().getOptions()
+                    .getOption(ExecConstants.LEALONE_READ_AHEAD_BATCHES_VALIDATOR);
+            if (readAheadChunks > 0 && !vectors.isEmpty() && rowSource == null
+                    && operatorContext.getFragmentContext().getExecutorState().canBlock()) {
+                readAhead = new LealoneReadAhead(this::readRow, session, batchRowLimit, readAheadChunks,
+                        operatorContext.getStats());
+                readAhead.start(operatorContext.getScanExecutor());
+            }
         } catch (SchemaChangeException e) {
             throw UserException.dataReadError(e)
-                    .message("The JDBC storage plugin failed while trying setup the SQL query. ")
+                    .message("The Lealone storage plugin failed while trying to set up the table scan. ")
                     .addContext("plugin", storagePluginName).build(logger);
         }
     }
 
     @Override
     public int next() {
-        int counter = 0;
-        Boolean b = true;
+        if (copier == null && decoders.length == 0) {
+            return skip();
+        }
+        if (decodedValues.length > 0 && decodedValues[0].length < batchRowLimit) {
+            decodedValues = new Value[decoders.length][batchRowLimit];
+        }
+        int counter;
         try {
-            while (counter < 4095 && b) { // loop at 4095 since nullables use one more than record count and we
-                                          // allocate on powers of two.
-                b = cursor.next();
-                if (!b) {
-                    break;
+            if (readAhead == null && session != null) {
+                synchronized (session) {
+                    counter = readRows();
                 }
-                Row row = cursor.get();
-                resultSet.setRow(row);
-                for (Copier<?> c : copiers) {
-                    c.copy(counter);
-                }
-                counter++;
+            } else {
+                counter = readRows();
+            }
+            for (int i = 0; i < decoders.length; i++) {
+                decoders[i].decode(decodedValues[i], counter);
             }
-        } catch (SQLException e) {
+        } catch (DbException e) {
             throw UserException.dataReadError(e).message("Failure while attempting to read from database.")
                     .addContext("plugin", storagePluginName).build(logger);
         }
@@ -323,213 +551,220 @@ public class LealoneRecordReader extends AbstractRecordReader {
         for (ValueVector vv : vectors) {
             vv.getMutator().setValueCount(counter > 0 ? counter : 0);
         }
+        if (counter > 0) {
+            updateColumnWidths(counter);
+        }
 
         return counter > 0 ? counter : 0;
     }
 
-    @Override
-    public void close() throws Exception {
+    /**
+     * Reads the rows of the next batch, the values of the decoded columns are gathered and decoded later.
+     * The fragments of a query run on their own threads but share the session of the connection,
+     * so the callers hold its lock while the cursors are read.
+     */
+    private int readRows() {
+        int counter = 0;
+        while (counter < batchRowLimit) {
+            SearchRow row = readAhead != null ? readAhead.next() : readRow();
+            if (row == null) {
+                break;
+            }
+            for (int i = 0; i < decodedColumns.length; i++) {
+                decodedValues[i][counter] = row.getValue(decodedColumns[i]);
+            }
+            if (copier != null) {
+                copier.copy(row, counter);
+            }
+            counter++;
+        }
+        return counter;
     }
 
     @Override
-    public String toString() {
-        return "LealoneRecordReader[Plugin=" + storagePluginName + "]";
-    }
-
-    private abstract class Copier<T extends ValueVector.Mutator> {
-        protected final int columnIndex;
-        protected final ResultSet result;
-        protected final T mutator;
-
-        public Copier(int columnIndex, ResultSet result, T mutator) {
-            super();
-            this.columnIndex = columnIndex;
-            this.result = result;
-            this.mutator = mutator;
+    public void allocate(Map<String, ValueVector> vectorMap) throws OutOfMemoryException {
+        // Allocate the whole batch up front, so setSafe does not have to grow the vectors while copying.
+        for (int i = 0; i < vectors.size(); i++) {
+            AllocationHelper.allocate(vectors.get(i), batchRowLimit, columnWidths[i]);
         }
-
-        abstract void copy(int index) throws SQLException;
     }
 
-    private class IntCopier extends Copier<NullableIntVector.Mutator> {
-        public IntCopier(int offset, ResultSet set, NullableIntVector.Mutator mutator) {
-            super(offset, set, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            mutator.setSafe(index, result.getInt(columnIndex));
-            if (result.wasNull()) {
-                mutator.setNull(index);
-            }
+    private static int estimateWidth(MajorType type) {
+        int width;
+        switch (type.getMinorType()) {
+        case VARCHAR:
+        case VARBINARY:
+        case VARDECIMAL:
+            // the offset of the value, and the declared length when it is smaller than the default estimate
+            width = 4 + (type.getPrecision() > 0 ? Math.min(type.getPrecision(), TypeHelper.WIDTH_ESTIMATE)
+                    : TypeHelper.WIDTH_ESTIMATE);
+            break;
+        default:
+            width = TypeHelper.getSize(type);
         }
+        return type.getMode() == DataMode.OPTIONAL ? width + 1 : width;
     }
 
-    private class BigIntCopier extends Copier<NullableBigIntVector.Mutator> {
-        public BigIntCopier(int offset, ResultSet set, NullableBigIntVector.Mutator mutator) {
-            super(offset, set, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            mutator.setSafe(index, result.getLong(columnIndex));
-            if (result.wasNull()) {
-                mutator.setNull(index);
+    /**
+     * Re-estimates the widths of the variable width columns from the rows read so far.
+     */
+    private void updateColumnWidths(int count) {
+        rowsRead += count;
+        for (int i = 0; i < columnWidths.length; i++) {
+            ValueVector vv = vectors.get(i);
+            if (vv instanceof VariableWidthVector) {
+                columnBytes[i] += vv.getPayloadByteCount(count);
+                columnWidths[i] = (int) Math.max(1, (columnBytes[i] + rowsRead - 1) / rowsRead);
             }
         }
-
+        updateBatchRowLimit();
     }
 
-    private class Float4Copier extends Copier<NullableFloat4Vector.Mutator> {
-
-        public Float4Copier(int columnIndex, ResultSet result, NullableFloat4Vector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            mutator.setSafe(index, result.getFloat(columnIndex));
-            if (result.wasNull()) {
-                mutator.setNull(index);
-            }
+    private void updateBatchRowLimit() {
+        long rowWidth = 0;
+        int maxColumnWidth = 1;
+        for (int width : columnWidths) {
+            rowWidth += width;
+            maxColumnWidth = Math.max(maxColumnWidth, width);
         }
+        long limit = rowWidth == 0 ? MAX_RECORDS_PER_BATCH : batchByteLimit / rowWidth;
+        // a vector must also fit in a single buffer
+        limit = Math.min(limit, ValueVector.MAX_BUFFER_SIZE / maxColumnWidth);
+        batchRowLimit = (int) Math.max(1, Math.min(limit, MAX_RECORDS_PER_BATCH));
 
+        operatorContext.getStats().setLongStat(Metric.BATCH_ROW_LIMIT, batchRowLimit);
+        operatorContext.getStats().setLongStat(Metric.AVG_ROW_BYTES, rowWidth);
     }
 
-    private class Float8Copier extends Copier<NullableFloat8Vector.Mutator> {
-
-        public Float8Copier(int columnIndex, ResultSet result, NullableFloat8Vector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            mutator.setSafe(index, result.getDouble(columnIndex));
-            if (result.wasNull()) {
-                mutator.setNull(index);
+    /**
+     * No column is projected, so only count the rows without fetching or copying them.
+     */
+    private int skip() {
+        if (session != null) {
+            synchronized (session) {
+                return skipRows();
             }
-
         }
-
+        return skipRows();
     }
 
-    private class DecimalCopier extends Copier<NullableVarDecimalVector.Mutator> {
-
-        public DecimalCopier(int columnIndex, ResultSet result, NullableVarDecimalVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            BigDecimal decimal = result.getBigDecimal(columnIndex);
-            if (decimal != null) {
-                mutator.setSafe(index, decimal);
-            }
+    private int skipRows() {
+        int counter = 0;
+        while (counter < batchRowLimit && (rowSource != null ? rowSource.next() != null : nextRow())) {
+            counter++;
         }
-
+        return counter;
     }
 
-    private class VarCharCopier extends Copier<NullableVarCharVector.Mutator> {
-
-        public VarCharCopier(int columnIndex, ResultSet result, NullableVarCharVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
+    private SearchRow readRow() {
+        if (rowSource != null) {
+            return rowSource.next();
         }
-
-        @Override
-        void copy(int index) throws SQLException {
-            String val = resultSet.getString(columnIndex);
-            if (val != null) {
-                byte[] record = val.getBytes(Charsets.UTF_8);
-                mutator.setSafe(index, record, 0, record.length);
-            }
+        if (!nextRow()) {
+            return null;
         }
-
+        return covering ? cursor.getSearchRow() : cursor.get();
     }
 
-    private class VarBinaryCopier extends Copier<NullableVarBinaryVector.Mutator> {
-
-        public VarBinaryCopier(int columnIndex, ResultSet result, NullableVarBinaryVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            byte[] record = result.getBytes(columnIndex);
-            if (record != null) {
-                mutator.setSafe(index, record, 0, record.length);
+    /**
+     * Checks whether the entries of the index hold all the projected columns,
+     * so the scan can read them without looking up the rows of the table.
+     */
+    private boolean isCovering(Index index) {
+        if (index.getIndexType().isScan()) {
+            return false;
+        }
+        final Set<String> projected = getProjectedColumnNames();
+        if (projected == null) {
+            return false;
+        }
+        for (Column column : table.getColumns()) {
+            if (projected.contains(column.getName().toUpperCase()) && index.getColumnIndex(column) < 0) {
+                return false;
             }
         }
-
+        return true;
     }
 
-    private class DateCopier extends Copier<NullableDateVector.Mutator> {
-
-        // private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-
-        public DateCopier(int columnIndex, ResultSet result, NullableDateVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            Date date = result.getDate(columnIndex);
-            if (date != null) {
-                mutator.setSafe(index, date.getTime());
+    /**
+     * Intersects or unites the sorted row keys of the key ranges of each index. The intersection stops
+     * early once no key is left.
+     *
+     * @return the merged row keys, or null if an index has more than {@link LealoneIndexRanges#MAX_MERGED_KEYS}
+     */
+    private long[] mergeRowKeys(ServerSession session) {
+        final int maxKeys = LealoneIndexRanges.MAX_MERGED_KEYS;
+        Index first = table.getSchema().getIndex(session, scanSpec.getIndexName());
+        long[] keys = LealoneIndexRanges.collectKeys(session, table, first,
+                LealoneScanRange.bind(table, first, scanSpec.getRanges()), maxKeys);
+        for (LealoneIndexRanges indexRanges : scanSpec.getMergedRanges()) {
+            if (keys == null || keys.length == 0 && !scanSpec.isUnion()) {
+                break;
+            }
+            Index index = table.getSchema().getIndex(session, indexRanges.getIndexName());
+            long[] other = LealoneIndexRanges.collectKeys(session, table, index,
+                    LealoneScanRange.bind(table, index, indexRanges.getRanges()), maxKeys);
+            if (other == null) {
+                return null;
             }
+            keys = scanSpec.isUnion() ? LealoneIndexRanges.union(keys, other)
+                    : LealoneIndexRanges.intersect(keys, other);
         }
-
+        return keys;
     }
 
-    private class TimeCopier extends Copier<NullableTimeVector.Mutator> {
-
-        // private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-
-        public TimeCopier(int columnIndex, ResultSet result, NullableTimeVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
+    /**
+     * Moves to the next row, continuing with the next key range when the current one is exhausted.
+     */
+    private boolean nextRow() {
+        if (rowKeys != null) {
+            // a row may have been removed since its key was read from the index
+            while (rowKeyIndex < rowKeys.length) {
+                SearchRow keyRow = getKeyRow(rowKeys[rowKeyIndex++]);
+                cursor = scanIndex.find(session, keyRow, keyRow);
+                if (cursor.next()) {
+                    return true;
+                }
+            }
+            return false;
         }
-
-        @Override
-        void copy(int index) throws SQLException {
-            Time time = result.getTime(columnIndex);
-            if (time != null) {
-                mutator.setSafe(index, (int) time.getTime());
+        while (!cursor.next()) {
+            if (index == null || ++rangeIndex >= ranges.size()) {
+                return false;
             }
-
+            cursor = openRange(rangeIndex);
         }
-
+        return true;
     }
 
-    private class TimeStampCopier extends Copier<NullableTimeStampVector.Mutator> {
-
-        // private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-
-        public TimeStampCopier(int columnIndex, ResultSet result, NullableTimeStampVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
-        }
-
-        @Override
-        void copy(int index) throws SQLException {
-            Timestamp stamp = result.getTimestamp(columnIndex);
-            if (stamp != null) {
-                mutator.setSafe(index, stamp.getTime());
-            }
+    private Cursor openRange(int i) {
+        return ranges.get(i).find(session, table, index);
+    }
 
+    private SearchRow getKeyRow(Long key) {
+        if (key == null) {
+            return null;
         }
-
+        SearchRow row = table.getTemplateRow();
+        row.setKey(key);
+        return row;
     }
 
-    private class BitCopier extends Copier<NullableBitVector.Mutator> {
+    private static Long toKey(byte[] bytes) {
+        return bytes == null ? null : Longs.fromByteArray(bytes);
+    }
 
-        public BitCopier(int columnIndex, ResultSet result, NullableBitVector.Mutator mutator) {
-            super(columnIndex, result, mutator);
+    @Override
+    public void close() throws Exception {
+        if (readAhead != null) {
+            readAhead.close();
+            readAhead = null;
         }
+        decodedValues = null;
+    }
 
-        @Override
-        void copy(int index) throws SQLException {
-            mutator.setSafe(index, result.getBoolean(columnIndex) ? 1 : 0);
-            if (result.wasNull()) {
-                mutator.setNull(index);
-            }
-        }
+    @Override
+    public String toString() {
+        return "LealoneRecordReader[Plugin=" + storagePluginName + "]";
     }
 }
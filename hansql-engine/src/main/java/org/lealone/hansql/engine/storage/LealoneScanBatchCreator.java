@@ -43,7 +43,7 @@ public class LealoneScanBatchCreator implements BatchCreator<LealoneSubScan> {
                 // columns = GroupScan.ALL_COLUMNS;
                 // }
 
-                RecordReader reader = new LealoneRecordReader(context, scanSpec.getScanSpec(), config, null);
+                RecordReader reader = new LealoneRecordReader(context, scanSpec, config, null);
                 readers.add(reader);
             } catch (Exception e1) {
                 throw new ExecutionSetupException(e1);
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.lealone.common.exceptions.DbException;
+import org.lealone.db.index.Cursor;
+import org.lealone.db.index.Index;
+import org.lealone.db.result.SearchRow;
+import org.lealone.db.session.ServerSession;
+import org.lealone.db.table.Column;
+import org.lealone.db.table.Table;
+import org.lealone.db.value.ValueString;
+import org.lealone.hansql.exec.planner.QueryParameters;
+import org.lealone.hansql.exec.planner.QueryParameters.ValueDeserializer;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+/**
+ * An inclusive key range on the leading columns of a Lealone index.
+ * The values are kept as strings and converted to the index column types by the reader,
+ * an empty start or end means the range is unbounded on that side.
+ */
+public class LealoneScanRange {
+
+    private final List<String> start;
+    private final List<String> end;
+
+    // a value may be the marker of a dynamic parameter, it is replaced by the value when the plan is read
+    @JsonCreator
+    public LealoneScanRange(
+            @JsonProperty("start") @JsonDeserialize(contentUsing = ValueDeserializer.class) List<String> start,
+            @JsonProperty("end") @JsonDeserialize(contentUsing = ValueDeserializer.class) List<String> end) {
+        this.start = start == null ? Collections.emptyList() : start;
+        this.end = end == null ? Collections.emptyList() : end;
+    }
+
+    public List<String> getStart() {
+        return start;
+    }
+
+    public List<String> getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns true if a value is a dynamic parameter, it is only known when the query is executed.
+     */
+    public boolean hasParameters() {
+        for (String v : start) {
+            if (QueryParameters.isMarker(v)) {
+                return true;
+            }
+        }
+        for (String v : end) {
+            if (QueryParameters.isMarker(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that the values of the ranges can be converted to the types of the index columns. The literals were
+     * checked when the query was planned, but the value of a dynamic parameter is only known now. If one can not be
+     * converted the ranges are replaced by a scan of the whole index, the filter above the scan still checks all
+     * the conditions of ranges with parameters.
+     *
+     * @return the ranges, or a single unbounded range
+     */
+    public static List<LealoneScanRange> bind(Table table, Index index, List<LealoneScanRange> ranges) {
+        // the values of the parameters are already in place, all the values are converted again
+        for (LealoneScanRange range : ranges) {
+            try {
+                getSearchRow(table, index, range.start);
+                getSearchRow(table, index, range.end);
+            } catch (DbException e) {
+                return Collections.singletonList(new LealoneScanRange(null, null));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Opens a cursor on the given index that returns the rows of this range.
+     */
+    public Cursor find(ServerSession session, Table table, Index index) {
+        return index.find(session, getSearchRow(table, index, start), getSearchRow(table, index, end));
+    }
+
+    private static SearchRow getSearchRow(Table table, Index index, List<String> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        SearchRow row = table.getTemplateRow();
+        Column[] indexColumns = index.getColumns();
+        for (int i = 0, size = values.size(); i < size; i++) {
+            Column column = indexColumns[i];
+            row.setValue(column.getColumnId(), column.convert(ValueString.get(values.get(i))));
+        }
+        return row;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "]";
+    }
+}
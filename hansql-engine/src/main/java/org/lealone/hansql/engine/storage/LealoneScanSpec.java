@@ -17,7 +17,11 @@
  */
 package org.lealone.hansql.engine.storage;
 
+import java.util.Collections;
+import java.util.List;
+
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class LealoneScanSpec {
@@ -25,13 +29,36 @@ public class LealoneScanSpec {
     private final String dbName;
     private final String schemaName;
     private final String tableName;
+    // the index that the key ranges apply to, null means the scan index of the table
+    private final String indexName;
+    private final List<LealoneScanRange> ranges;
+    // the key ranges of more indexes, the rows are the ones whose row keys are in the key ranges
+    // of all the indexes (or of any of them for a union)
+    private final List<LealoneIndexRanges> mergedRanges;
+    private final boolean union;
+
+    public LealoneScanSpec(String dbName, String schemaName, String tableName) {
+        this(dbName, schemaName, tableName, null, null);
+    }
+
+    public LealoneScanSpec(String dbName, String schemaName, String tableName, String indexName,
+            List<LealoneScanRange> ranges) {
+        this(dbName, schemaName, tableName, indexName, ranges, null, false);
+    }
 
     @JsonCreator
     public LealoneScanSpec(@JsonProperty("dbName") String dbName, @JsonProperty("schemaName") String schemaName,
-            @JsonProperty("tableName") String tableName) {
+            @JsonProperty("tableName") String tableName, @JsonProperty("indexName") String indexName,
+            @JsonProperty("ranges") List<LealoneScanRange> ranges,
+            @JsonProperty("mergedRanges") List<LealoneIndexRanges> mergedRanges,
+            @JsonProperty("union") boolean union) {
         this.dbName = dbName;
         this.schemaName = schemaName;
         this.tableName = tableName;
+        this.indexName = indexName;
+        this.ranges = ranges == null ? Collections.emptyList() : ranges;
+        this.mergedRanges = mergedRanges == null ? Collections.emptyList() : mergedRanges;
+        this.union = union;
     }
 
     public String getDbName() {
@@ -45,4 +72,41 @@ public class LealoneScanSpec {
     public String getTableName() {
         return tableName;
     }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public List<LealoneScanRange> getRanges() {
+        return ranges;
+    }
+
+    public List<LealoneIndexRanges> getMergedRanges() {
+        return mergedRanges;
+    }
+
+    public boolean isUnion() {
+        return union;
+    }
+
+    @JsonIgnore
+    public boolean hasRanges() {
+        return !ranges.isEmpty();
+    }
+
+    /**
+     * Returns true if the row keys of several indexes are merged before the rows are read.
+     */
+    @JsonIgnore
+    public boolean isIndexMerge() {
+        return !mergedRanges.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "LealoneScanSpec [dbName=" + dbName + ", schemaName=" + schemaName + ", tableName=" + tableName
+                + (indexName == null ? "" : ", indexName=" + indexName)
+                + (ranges.isEmpty() ? "" : ", ranges=" + ranges)
+                + (mergedRanges.isEmpty() ? "" : (union ? ", union=" : ", intersect=") + mergedRanges) + "]";
+    }
 }
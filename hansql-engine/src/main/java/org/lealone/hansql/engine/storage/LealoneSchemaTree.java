@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.engine.storage;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.lealone.db.Constants;
+import org.lealone.db.Database;
+import org.lealone.db.schema.Schema;
+import org.lealone.db.table.Table;
+import org.lealone.hansql.exec.store.AbstractSchema;
+import org.lealone.hansql.optimizer.schema.CalciteSchema;
+import org.lealone.hansql.optimizer.schema.SchemaPlus;
+
+/**
+ * The Calcite schemas of the schemas of a Lealone database. A tree is built once per modification meta id
+ * of the database and shared by all the sessions, see {@link LealoneStoragePlugin#getSchemaTree(Database)}.
+ * <p>
+ * The tree does not hold the tables, they are looked up in the Lealone schema each time the planner asks for one,
+ * so a query does not visit all the tables of the database. A {@link LealoneTable} is created by each lookup,
+ * because the planner keeps the options and the group scan of a query on it.
+ * The Calcite schemas are created without caches, so the tree is not modified once it has been built.
+ */
+public class LealoneSchemaTree {
+
+    private final long modificationMetaId;
+    private final SchemaPlus rootSchema;
+    private final SchemaPlus mainSchema;
+
+    LealoneSchemaTree(LealoneStoragePlugin plugin, Database db, long modificationMetaId) {
+        this.modificationMetaId = modificationMetaId;
+        String dbName = db.getShortName();
+        SchemaPlus root = CalciteSchema.createRootSchema(false, false, "").plus();
+        SchemaPlus main = null;
+        for (Schema schema : db.getAllSchemas()) {
+            final String schemaName = schema.getName();
+            final LealoneTablesSchema tables = new LealoneTablesSchema(plugin, dbName, schema);
+            final SchemaPlus subSchema;
+            if (schemaName.equalsIgnoreCase(Constants.SCHEMA_MAIN)) {
+                main = CalciteSchema.createRootSchema(tables, false, false, Constants.SCHEMA_MAIN).plus();
+                subSchema = main;
+            } else {
+                subSchema = CalciteSchema.createRootSchema(tables, false, false, schemaName).plus();
+            }
+            root.add(schemaName, subSchema);
+        }
+        if (main == null) {
+            main = CalciteSchema.createRootSchema(false, false, Constants.SCHEMA_MAIN).plus();
+        }
+        this.rootSchema = root;
+        this.mainSchema = main;
+    }
+
+    public long getModificationMetaId() {
+        return modificationMetaId;
+    }
+
+    /**
+     * Returns the schema that holds all the schemas of the database.
+     */
+    public SchemaPlus getRootSchema() {
+        return rootSchema;
+    }
+
+    /**
+     * Returns the schema of the tables of the MAIN schema.
+     */
+    public SchemaPlus getMainSchema() {
+        return mainSchema;
+    }
+
+    private static class LealoneTablesSchema extends AbstractSchema {
+
+        private final LealoneStoragePlugin plugin;
+        private final String dbName;
+        private final Schema inner;
+
+        LealoneTablesSchema(LealoneStoragePlugin plugin, String dbName, Schema schema) {
+            super(Collections.emptyList(), schema.getName());
+            this.plugin = plugin;
+            this.dbName = dbName;
+            this.inner = schema;
+        }
+
+        @Override
+        public String getTypeName() {
+            return LealoneStoragePluginConfig.NAME;
+        }
+
+        @Override
+        public org.lealone.hansql.optimizer.schema.Table getTable(String name) {
+            Table table = inner.findTableOrView(null, name);
+            if (table == null) {
+                // unquoted identifiers are upper case in Lealone, the queries may use lower case names
+                table = inner.findTableOrView(null, name.toUpperCase());
+                if (table == null) {
+                    table = inner.findTableOrView(null, name.toLowerCase());
+                }
+            }
+            if (table == null) {
+                return null;
+            }
+            return new LealoneTable(table, plugin, new LealoneScanSpec(dbName, inner.getName(), table.getName()));
+        }
+
+        @Override
+        public Set<String> getTableNames() {
+            Set<String> names = new HashSet<>();
+            for (Table t : inner.getAllTablesAndViews()) {
+                names.add(t.getName().toUpperCase());
+                names.add(t.getName().toLowerCase());
+            }
+            return names;
+        }
+    }
+}
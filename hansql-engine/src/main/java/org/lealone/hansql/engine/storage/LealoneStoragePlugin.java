@@ -24,17 +24,21 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.drill.shaded.guava.com.google.common.base.Joiner;
 import org.apache.drill.shaded.guava.com.google.common.collect.ImmutableSet;
-import org.lealone.db.Constants;
 import org.lealone.db.Database;
 import org.lealone.db.LealoneDatabase;
 import org.lealone.db.schema.Schema;
 import org.lealone.db.table.Table;
 import org.lealone.hansql.common.JSONOptions;
+import org.lealone.hansql.engine.index.LealoneAggregateToDirectScan;
+import org.lealone.hansql.engine.index.LealoneLookupJoinRule;
 import org.lealone.hansql.engine.index.LealonePushFilterIntoScan;
+import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.context.DrillbitContext;
+import org.lealone.hansql.exec.context.options.SessionOptionManager;
 import org.lealone.hansql.exec.ops.OptimizerRulesContext;
 import org.lealone.hansql.exec.planner.PlannerPhase;
 import org.lealone.hansql.exec.store.AbstractSchema;
@@ -42,7 +46,6 @@ import org.lealone.hansql.exec.store.AbstractStoragePlugin;
 import org.lealone.hansql.exec.store.SchemaConfig;
 import org.lealone.hansql.exec.store.SystemPlugin;
 import org.lealone.hansql.optimizer.plan.RelOptRule;
-import org.lealone.hansql.optimizer.schema.CalciteSchema;
 import org.lealone.hansql.optimizer.schema.SchemaPlus;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -55,6 +58,8 @@ public class LealoneStoragePlugin extends AbstractStoragePlugin {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LealoneStoragePlugin.class);
 
     private final LealoneStoragePluginConfig config;
+    // the schema trees of the databases by the short names of the databases
+    private final ConcurrentHashMap<String, LealoneSchemaTree> schemaTrees = new ConcurrentHashMap<>();
 
     public LealoneStoragePlugin(DrillbitContext context) throws IOException {
         this(new LealoneStoragePluginConfig(), context, LealoneStoragePluginConfig.NAME);
@@ -88,6 +93,15 @@ public class LealoneStoragePlugin extends AbstractStoragePlugin {
         return new LealoneGroupScan(this, scanSpec, null);
     }
 
+    @Override
+    public LealoneGroupScan getPhysicalScan(String userName, JSONOptions selection, SessionOptionManager options)
+            throws IOException {
+        LealoneScanSpec scanSpec = selection.getListWith(new ObjectMapper(), new TypeReference<LealoneScanSpec>() {
+        });
+        int partitions = options == null ? 1 : (int) options.getLong(ExecConstants.LEALONE_SCAN_PARTITIONS);
+        return new LealoneGroupScan(this, scanSpec, null, partitions);
+    }
+
     @Override
     @JsonIgnore
     public Set<? extends RelOptRule> getOptimizerRules(OptimizerRulesContext optimizerContext, PlannerPhase phase) {
@@ -98,7 +112,12 @@ public class LealoneStoragePlugin extends AbstractStoragePlugin {
             return ImmutableSet.of();
         case PHYSICAL:
             final ImmutableSet<RelOptRule> indexRules = ImmutableSet.<RelOptRule> builder()
-                    .add(LealonePushFilterIntoScan.FILTER_ON_SCAN).build();
+                    .add(LealonePushFilterIntoScan.FILTER_ON_SCAN).add(LealonePushFilterIntoScan.FILTER_ON_PROJECT)
+                    .add(LealoneAggregateToDirectScan.getAggOnScan(optimizerContext))
+                    .add(LealoneAggregateToDirectScan.getAggOnProjOnScan(optimizerContext))
+                    .add(LealoneLookupJoinRule.JOIN_ON_SCAN)
+                    .add(LealoneLookupJoinRule.JOIN_ON_PROJ_ON_SCAN)
+                    .build();
             return indexRules;
         case LOGICAL:
         case JOIN_PLANNING:
@@ -290,23 +309,17 @@ public class LealoneStoragePlugin extends AbstractStoragePlugin {
         // schemaFactory.registerSchemas(config, parent);
     }
 
-    public void registerSchema(SchemaPlus parent, String dbName, SchemaPlus defaultSchema) {
-        Database db = LealoneDatabase.getInstance().getDatabase(dbName);
-        for (Schema schema : db.getAllSchemas()) {
-            final String schemaName = schema.getName();
-            final SchemaPlus subSchema;
-            if (schemaName.equalsIgnoreCase(Constants.SCHEMA_MAIN)) {
-                subSchema = defaultSchema;
-            } else {
-                subSchema = CalciteSchema.createRootSchema(false, true, schemaName).plus();
-            }
-            for (Table table : schema.getAllTablesAndViews()) {
-                LealoneTable t = new LealoneTable(table, this,
-                        new LealoneScanSpec(dbName, schemaName, table.getName()));
-                subSchema.add(table.getName().toUpperCase(), t);
-                subSchema.add(table.getName().toLowerCase(), t);
-            }
-            parent.add(schemaName, subSchema);
+    /**
+     * Returns the schema tree of the database, it is rebuilt after a CREATE, DROP or ALTER has changed
+     * the modification meta id of the database. Two sessions may both rebuild a stale tree, one of them wins.
+     */
+    public LealoneSchemaTree getSchemaTree(Database db) {
+        long modificationMetaId = db.getModificationMetaId();
+        LealoneSchemaTree tree = schemaTrees.get(db.getShortName());
+        if (tree == null || tree.getModificationMetaId() != modificationMetaId) {
+            tree = new LealoneSchemaTree(this, db, modificationMetaId);
+            schemaTrees.put(db.getShortName(), tree);
         }
+        return tree;
     }
 }
@@ -24,12 +24,16 @@ import org.lealone.db.table.Column;
 import org.lealone.db.table.Table;
 import org.lealone.db.value.DataType;
 import org.lealone.hansql.exec.planner.logical.DynamicDrillTable;
+import org.lealone.hansql.exec.planner.types.DrillRelDataTypeSystem;
 import org.lealone.hansql.optimizer.rel.type.RelDataType;
 import org.lealone.hansql.optimizer.rel.type.RelDataTypeFactory;
 import org.lealone.hansql.optimizer.sql.type.SqlTypeName;
 
 public class LealoneTable extends DynamicDrillTable {
 
+    private static final int MAX_DECIMAL_PRECISION = DrillRelDataTypeSystem.DRILL_REL_DATATYPE_SYSTEM
+            .getMaxNumericPrecision();
+
     private final Table table;
 
     public LealoneTable(Table table, LealoneStoragePlugin plugin, LealoneScanSpec scanSpec) {
@@ -43,17 +47,33 @@ public class LealoneTable extends DynamicDrillTable {
         List<RelDataType> types = Lists.newArrayList();
         for (Column column : table.getColumns()) {
             names.add(column.getName());
-            RelDataType type = getSqlTypeFromLealoneType(typeFactory, column.getType());
-            type = typeFactory.createTypeWithNullability(type, column.isNullable());
-            types.add(type);
+            types.add(getSqlType(typeFactory, column));
         }
 
         return typeFactory.createStructType(types, names);
     }
 
-    private RelDataType getSqlTypeFromLealoneType(RelDataTypeFactory typeFactory, int type) {
-        int sqlType = DataType.convertTypeToSQLType(type);
+    public static RelDataType getSqlType(RelDataTypeFactory typeFactory, Column column) {
+        int sqlType = DataType.convertTypeToSQLType(column.getType());
         SqlTypeName typeName = SqlTypeName.getNameForJdbcType(sqlType);
-        return typeFactory.createSqlType(typeName);
+        RelDataType type;
+        if (typeName == SqlTypeName.DECIMAL)
+            type = typeFactory.createSqlType(typeName, getDecimalPrecision(column), getDecimalScale(column));
+        else
+            type = typeFactory.createSqlType(typeName);
+        return typeFactory.createTypeWithNullability(type, column.isNullable());
+    }
+
+    public static int getDecimalPrecision(Column column) {
+        return (int) Math.min(column.getPrecision(), MAX_DECIMAL_PRECISION);
+    }
+
+    /**
+     * Lealone allows larger decimals than the engine, an unbounded decimal keeps half of the digits for the fraction.
+     */
+    public static int getDecimalScale(Column column) {
+        int precision = getDecimalPrecision(column);
+        int scale = column.getScale();
+        return scale <= precision ? Math.max(scale, 0) : precision / 2;
     }
 }
@@ -282,6 +282,8 @@ public final class ExecConstants {
     public static final String SCAN_THREADPOOL_SIZE = "drill.exec.scan.threadpool_size";
     // The size of the thread pool used by a scan to decode the data. Used by Parquet
     public static final String SCAN_DECODE_THREADPOOL_SIZE = "drill.exec.scan.decode_threadpool_size";
+    // The size of the thread pool that runs the OLAP queries of Lealone, 0 uses the number of cores.
+    public static final String OLAP_THREADPOOL_SIZE = "drill.exec.olap.threadpool_size";
 
     /**
      * Currently if a query is cancelled, but one of the fragments reports the status as FAILED instead of CANCELLED or
@@ -562,6 +564,48 @@ public final class ExecConstants {
             KAFKA_POLL_TIMEOUT, Long.MAX_VALUE, new OptionDescription(
                     "Amount of time in milliseconds allotted to the Kafka client to fetch messages from the Kafka cluster; default value is 200."));
 
+    public static final String LEALONE_SCAN_PARTITIONS = "store.lealone.scan_partitions";
+    public static final LongValidator LEALONE_SCAN_PARTITIONS_VALIDATOR = new RangeLongValidator(
+            LEALONE_SCAN_PARTITIONS, 1, 1024, new OptionDescription(
+                    "Maximum number of key ranges a Lealone table scan is split into, each range is read by its own minor fragment on the OLAP thread pool."
+                            + " The fragments share the session of the connection and read their cursors one at a time, so only the operators above the scan run in parallel."
+                            + " Default is 1."));
+
+    public static final String LEALONE_READ_AHEAD_BATCHES = "store.lealone.read_ahead_batches";
+    public static final LongValidator LEALONE_READ_AHEAD_BATCHES_VALIDATOR = new RangeLongValidator(
+            LEALONE_READ_AHEAD_BATCHES, 0, 64, new OptionDescription(
+                    "Number of row chunks a Lealone table scan reads ahead on a scan thread while the fragment processes the previous ones. 0 reads the rows on the fragment thread, as does a fragment that runs on a scheduler thread of Lealone. Default is 0."));
+
+    public static final String LEALONE_LOOKUP_JOIN = "store.lealone.enable_lookup_join";
+    public static final BooleanValidator LEALONE_LOOKUP_JOIN_VALIDATOR = new BooleanValidator(
+            LEALONE_LOOKUP_JOIN, new OptionDescription(
+                    "Lets the planner join an input to a Lealone table by looking up the keys of each input batch in an index of the table, instead of scanning it. Default is false."));
+
+    public static final String LEALONE_INDEX_MERGE = "store.lealone.enable_index_merge";
+    public static final BooleanValidator LEALONE_INDEX_MERGE_VALIDATOR = new BooleanValidator(
+            LEALONE_INDEX_MERGE, new OptionDescription(
+                    "Lets the planner restrict a Lealone table scan to the intersection or union of the row keys found in several indexes, when the filter has conditions on the columns of more than one index. Default is false."));
+
+    public static final String OLAP_ISOLATED_EXECUTION = "exec.olap.isolated_execution";
+    public static final BooleanValidator OLAP_ISOLATED_EXECUTION_VALIDATOR = new BooleanValidator(
+            OLAP_ISOLATED_EXECUTION, new OptionDescription(
+                    "Runs the OLAP queries of Lealone on the OLAP thread pool, the scheduler thread of the session only collects their rows. Otherwise they run on the scheduler thread. Default is false."));
+
+    public static final String OLAP_TIME_SLICE = "exec.olap.time_slice_ms";
+    public static final LongValidator OLAP_TIME_SLICE_VALIDATOR = new RangeLongValidator(
+            OLAP_TIME_SLICE, 0, 60000, new OptionDescription(
+                    "Milliseconds an OLAP query of Lealone runs on the scheduler thread before it yields to the other sessions. Hash aggregates, hash join builds and external sorts yield between two incoming batches or merge steps. 0 never yields. Default is 0."));
+
+    public static final String RESULT_COLUMNAR = "exec.result.columnar";
+    public static final BooleanValidator RESULT_COLUMNAR_VALIDATOR = new BooleanValidator(RESULT_COLUMNAR,
+            new OptionDescription(
+                    "Sends each batch of a HanSQL result as one row with one binary column, that holds the whole vectors of the batch with their null bitmaps, offsets and data buffers. The client decodes it with HanColumnarBatch. Default is false."));
+
+    public static final String RESULT_COLUMNAR_COMPRESSION = "exec.result.columnar_compression";
+    public static final BooleanValidator RESULT_COLUMNAR_COMPRESSION_VALIDATOR = new BooleanValidator(
+            RESULT_COLUMNAR_COMPRESSION, new OptionDescription(
+                    "Compresses the batches of a columnar HanSQL result. Default is false."));
+
     public static final String HIVE_OPTIMIZE_PARQUET_SCAN_WITH_NATIVE_READER = "store.hive.parquet.optimize_scan_with_native_reader";
     public static final OptionValidator HIVE_OPTIMIZE_PARQUET_SCAN_WITH_NATIVE_READER_VALIDATOR = new BooleanValidator(
             HIVE_OPTIMIZE_PARQUET_SCAN_WITH_NATIVE_READER, new OptionDescription(
@@ -22,12 +22,15 @@ import static org.lealone.hansql.exec.context.FailureUtils.EXIT_CODE_HEAP_OOM;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.lealone.hansql.common.DeferredException;
 import org.lealone.hansql.common.EventProcessor;
 import org.lealone.hansql.common.exceptions.UserException;
+import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.context.FailureUtils;
 import org.lealone.hansql.exec.exception.OutOfMemoryException;
 import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
@@ -39,10 +42,13 @@ import org.lealone.hansql.exec.proto.BitControl.PlanFragment;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
 import org.lealone.hansql.exec.proto.ExecProtos.FragmentHandle;
 import org.lealone.hansql.exec.proto.UserBitShared.FragmentState;
+import org.lealone.hansql.exec.proto.UserBitShared.QueryResult;
+import org.lealone.hansql.exec.proto.UserBitShared.QueryResult.QueryState;
 import org.lealone.hansql.exec.proto.helper.QueryIdHelper;
 import org.lealone.hansql.exec.session.UserClientConnection;
 import org.lealone.hansql.exec.testing.ControlsInjector;
 import org.lealone.hansql.exec.testing.ControlsInjectorFactory;
+import org.lealone.hansql.exec.work.batch.LocalExchange;
 import org.lealone.sql.query.Select;
 
 /**
@@ -94,7 +100,7 @@ import org.lealone.sql.query.Select;
  *   </ol>
  * </p>
  */
-class FragmentExecutor {
+class FragmentExecutor implements LocalExchange.Fragment {
 
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(FragmentExecutor.class);
     private static final ControlsInjector injector = ControlsInjectorFactory.getInjector(FragmentExecutor.class);
@@ -117,7 +123,10 @@ class FragmentExecutor {
 
     // Thread that is currently executing the Fragment. Value is null if the fragment hasn't started running or finished
     private final AtomicReference<Thread> myThreadRef = new AtomicReference<>(null);
+    // null if this is not the root fragment
     private final UserClientConnection clientConnection;
+    private LocalExchange exchange;
+    private boolean finished;
 
     /**
      * Create a FragmentExecutor where we already have a root operator in memory.
@@ -168,6 +177,28 @@ class FragmentExecutor {
         }
     }
 
+    /**
+     * Receiver Finished message. The downstream receiver no longer needs anymore data.
+     */
+    @Override
+    public void receivingFragmentFinished(final FragmentHandle handle) {
+        eventProcessor.receiverFinished(handle);
+    }
+
+    /**
+     * Connects this fragment to the other fragments of the query, which all run in this drillbit.
+     */
+    void setExchange(LocalExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    /**
+     * Runs a fragment that is not the root fragment of the query.
+     */
+    void submit(Executor executor) {
+        executor.execute(() -> execute(false));
+    }
+
     private void cleanup(FragmentState state) {
         if (root != null && fragmentState.get() == FragmentState.FAILED) {
             root.dumpBatches();
@@ -175,17 +206,72 @@ class FragmentExecutor {
 
         closeOutResources();
         updateState(state);
+
+        if (exchange != null) {
+            exchange.fragmentFinished(fragmentContext.getHandle(),
+                    fragmentState.get() == FragmentState.FAILED ? deferredException.getException() : null);
+        }
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (clientConnection != null) {
+            clientConnection.sendResult(fragmentState.get() == FragmentState.FAILED ? getFailedResult() : null);
+        }
+        // Don't process any more termination requests, we are done.
+        eventProcessor.terminate();
+        // Clear the interrupt flag if it is set.
+        Thread.interrupted();
+        cleanup(FragmentState.FINISHED);
+    }
+
+    private QueryResult getFailedResult() {
+        final UserException e = UserException.systemError(deferredException.getException()).build(logger);
+        return QueryResult.newBuilder().setQueryId(fragmentContext.getHandle().getQueryId())
+                .setQueryState(QueryState.FAILED).addError(e.getOrCreatePBError(false)).build();
     }
 
     private Runnable yieldableFragment;
     private Select select;
+    // 0 if the fragment never yields
+    private long timeSliceNanos;
+    private long timeSliceEnd;
+    // the thread of the time slice, the threads an operator starts for its inputs never yield
+    private Thread sliceThread;
+    // the number of operators on the stack that can not take NOT_YET from their inputs
+    private int yieldDisabled;
+    // true if the fragment runs on the scheduler thread of Lealone
+    private volatile boolean onSchedulerThread;
 
     public void setSelect(Select select) {
         this.select = select;
     }
 
     public void run() {
-        yieldableFragment.run();
+        try {
+            yieldableFragment.run();
+        } catch (OutOfMemoryError | OutOfMemoryException e) {
+            if (FailureUtils.isDirectMemoryOOM(e)) {
+                fail(UserException.memoryError(e).build(logger));
+            } else {
+                // we have a heap out of memory error. The JVM is unstable, exit.
+                FailureUtils.unrecoverableFailure(e, "Unable to handle out of memory condition in FragmentExecutor.",
+                        EXIT_CODE_HEAP_OOM);
+            }
+            finish();
+        } catch (Throwable t) {
+            // execute() is not on the stack anymore, the fragment fails here
+            fail(t);
+            finish();
+        }
+    }
+
+    private boolean shouldYield() {
+        return timeSliceNanos > 0 && yieldDisabled == 0 && Thread.currentThread() == sliceThread
+                && System.nanoTime() - timeSliceEnd >= 0;
     }
 
     public void execute(boolean isStarting) {
@@ -195,6 +281,7 @@ class FragmentExecutor {
             return;
         }
 
+        onSchedulerThread = isStarting;
         // final String originalThreadName = myThread.getName();
         final FragmentHandle fragmentHandle = fragmentContext.getHandle();
         // final String newThreadName = QueryIdHelper.getExecutorThreadName(fragmentHandle);
@@ -223,9 +310,16 @@ class FragmentExecutor {
 
             injector.injectChecked(fragmentContext.getExecutionControls(), "fragment-execution", IOException.class);
 
+            // only a fragment that runs on the scheduler thread of Lealone gives the thread back
+            if (isStarting) {
+                timeSliceNanos = TimeUnit.MILLISECONDS
+                        .toNanos(fragmentContext.getOptions().getOption(ExecConstants.OLAP_TIME_SLICE_VALIDATOR));
+            }
             yieldableFragment = new Runnable() {
                 @Override
                 public void run() {
+                    timeSliceEnd = System.nanoTime() + timeSliceNanos;
+                    sliceThread = Thread.currentThread();
                     while (shouldContinue()) {
                         // Fragment is not cancelled
 
@@ -242,10 +336,15 @@ class FragmentExecutor {
 
                         if (select != null && select.setCurrentRowNumber(clientConnection.getRowCount()))
                             return;
+
+                        if (onSchedulerThread && clientConnection != null && clientConnection.isBlocked())
+                            return;
+
+                        // the operators may have returned NOT_YET, the next run() goes on where they stopped
+                        if (shouldYield())
+                            return;
                     }
-                    clientConnection.sendResult(null);
-                    eventProcessor.terminate();
-                    cleanup(FragmentState.FINISHED);
+                    finish();
                 }
             };
             if (!isStarting)
@@ -258,8 +357,10 @@ class FragmentExecutor {
                 FailureUtils.unrecoverableFailure(e, "Unable to handle out of memory condition in FragmentExecutor.",
                         EXIT_CODE_HEAP_OOM);
             }
+            finish();
         } catch (Throwable t) {
             fail(t);
+            finish();
         } finally {
             // // Don't process any more termination requests, we are done.
             // eventProcessor.terminate();
@@ -406,6 +507,26 @@ class FragmentExecutor {
             return FragmentExecutor.this.shouldContinue();
         }
 
+        @Override
+        public boolean shouldYield() {
+            return FragmentExecutor.this.shouldYield();
+        }
+
+        @Override
+        public void disableYield() {
+            yieldDisabled++;
+        }
+
+        @Override
+        public void enableYield() {
+            yieldDisabled--;
+        }
+
+        @Override
+        public boolean canBlock() {
+            return !onSchedulerThread;
+        }
+
         @Override
         public void fail(final Throwable t) {
             FragmentExecutor.this.fail(t);
@@ -454,9 +575,9 @@ class FragmentExecutor {
             sendEvent(new FragmentEvent(EventType.CANCEL_AND_FINISH, null));
         }
 
-        // void receiverFinished(FragmentHandle handle) {
-        // sendEvent(new FragmentEvent(EventType.RECEIVER_FINISHED, handle));
-        // }
+        void receiverFinished(FragmentHandle handle) {
+            sendEvent(new FragmentEvent(EventType.RECEIVER_FINISHED, handle));
+        }
 
         /**
          * Tell the {@link FragmentEventProcessor} not to process anymore events. This keeps stray cancellation requests
@@ -18,8 +18,10 @@
 package org.lealone.hansql.exec;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
 import org.apache.drill.shaded.guava.com.google.common.collect.Lists;
 import org.lealone.hansql.common.exceptions.ExecutionSetupException;
@@ -27,6 +29,7 @@ import org.lealone.hansql.common.exceptions.UserException;
 import org.lealone.hansql.common.logical.LogicalPlan;
 import org.lealone.hansql.common.logical.PlanProperties.Generator.ResultMode;
 import org.lealone.hansql.exec.context.DrillbitContext;
+import org.lealone.hansql.exec.context.options.OptionList;
 import org.lealone.hansql.exec.exception.OptimizerException;
 import org.lealone.hansql.exec.ops.FragmentContextImpl;
 import org.lealone.hansql.exec.ops.QueryContext;
@@ -42,6 +45,8 @@ import org.lealone.hansql.exec.proto.BitControl.PlanFragment;
 import org.lealone.hansql.exec.proto.ExecProtos.FragmentHandle;
 import org.lealone.hansql.exec.proto.ExecProtos.ServerPreparedStatementState;
 import org.lealone.hansql.exec.proto.UserBitShared.QueryId;
+import org.lealone.hansql.exec.proto.UserBitShared.QueryResult;
+import org.lealone.hansql.exec.proto.UserBitShared.QueryResult.QueryState;
 import org.lealone.hansql.exec.proto.UserProtos.PreparedStatementHandle;
 import org.lealone.hansql.exec.proto.UserProtos.RunQuery;
 import org.lealone.hansql.exec.proto.helper.QueryIdHelper;
@@ -50,6 +55,8 @@ import org.lealone.hansql.exec.testing.ControlsInjector;
 import org.lealone.hansql.exec.testing.ControlsInjectorFactory;
 import org.lealone.hansql.exec.util.Pointer;
 import org.lealone.hansql.exec.work.QueryWorkUnit;
+import org.lealone.hansql.exec.work.QueryWorkUnit.MinorFragmentDefn;
+import org.lealone.hansql.exec.work.batch.LocalExchange;
 import org.lealone.hansql.exec.work.exception.SqlExecutorException;
 import org.lealone.hansql.exec.work.exception.SqlExecutorSetupException;
 import org.lealone.hansql.exec.work.filter.RuntimeFilterRouter;
@@ -86,7 +93,7 @@ public class SqlExecutor implements Runnable {
         this.queryId = queryId;
         this.queryIdString = QueryIdHelper.getQueryId(queryId);
         this.queryRequest = queryRequest;
-        this.queryContext = new QueryContext(connection.getSession(), drillbitContext, queryId);
+        this.queryContext = new QueryContext(connection.getSession(), connection, drillbitContext, queryId);
         this.drillbitContext = drillbitContext;
         this.clientConnection = connection;
 
@@ -157,6 +164,16 @@ public class SqlExecutor implements Runnable {
             }
             injector.injectChecked(queryContext.getExecutionControls(), "run-try-end", SqlExecutorException.class);
         } catch (Exception ex) {
+            if (!rootStarted) {
+                // the root fragment reports the end of the query, without it the client must be told here
+                failed = true;
+                final UserException e = ex instanceof UserException ? (UserException) ex
+                        : UserException.systemError(ex).build(logger);
+                clientConnection.sendResult(QueryResult.newBuilder().setQueryId(queryId)
+                        .setQueryState(QueryState.FAILED).addError(e.getOrCreatePBError(false)).build());
+            } else {
+                logger.warn("Query {} failed after its root fragment was started", queryIdString, ex);
+            }
         } finally {
             // restore the thread's original name
             currentThread.setName(originalName);
@@ -178,10 +195,12 @@ public class SqlExecutor implements Runnable {
             runtimeFilterRouter = new RuntimeFilterRouter(work, drillbitContext);
             runtimeFilterRouter.collectRuntimeFilterParallelAndControlInfo();
         }
-        work.applyPlan(drillbitContext.getPlanReader());
+        // all the fragments are run in this drillbit, they are not converted into JSON and read back
+        work.applyLocalPlan();
         logWorkUnit(work);
 
-        executeQuery(work.getFragments(), work.getRootFragment(), work.getRootOperator(), isStarting);
+        executeQuery(work.getMinorFragmentDefns(), work.getRootFragment(), work.getRootOperator(),
+                work.getRootFragmentDefn().options(), isStarting);
     }
 
     private static void validatePlan(PhysicalPlan plan) throws SqlExecutorSetupException {
@@ -202,15 +221,100 @@ public class SqlExecutor implements Runnable {
     }
 
     private FragmentExecutor fragmentExecutor;
+    // set once the root fragment runs, from then on it ends the query and reports its failures
+    private volatile boolean rootStarted;
+    // set when the query failed before its root fragment was started
+    private volatile boolean failed;
+    // set when the root fragment was started on the OLAP thread pool instead of the calling thread
+    private volatile boolean isolated;
 
-    private void executeQuery(List<PlanFragment> planFragments, PlanFragment rootPlanFragment,
-            FragmentRoot rootOperator, boolean isStarting) throws ExecutionSetupException {
-        FragmentContextImpl rootContext = new FragmentContextImpl(drillbitContext, rootPlanFragment, queryContext,
-                clientConnection, drillbitContext.getFunctionImplementationRegistry());
+    /**
+     * Runs all the fragments of the query in this drillbit. The other fragments are run by the OLAP fragment pool
+     * and exchange their batches with the root fragment through a {@link LocalExchange}. The root fragment runs on
+     * the calling thread, unless that is the scheduler thread of Lealone and the root fragment has to wait for the
+     * other fragments.
+     *
+     * @param fragments the fragments other than the root fragment, their root operator and options are read from
+     *            their JSON when they are null
+     * @param rootOptions the options of the root fragment, or null if they are read from its options JSON
+     */
+    private void executeQuery(List<MinorFragmentDefn> fragments, PlanFragment rootPlanFragment,
+            FragmentRoot rootOperator, OptionList rootOptions, boolean isStarting) throws ExecutionSetupException {
+        FragmentContextImpl rootContext = newFragmentContext(rootPlanFragment, rootOptions, clientConnection);
         fragmentExecutor = new FragmentExecutor(rootContext, rootPlanFragment, rootOperator, clientConnection);
+        if (!fragments.isEmpty()) {
+            LocalExchange exchange = new LocalExchange();
+            rootContext.setExchange(exchange);
+            fragmentExecutor.setExchange(exchange);
+            exchange.register(rootPlanFragment.getHandle(), null, rootContext.getBuffers());
+
+            List<FragmentExecutor> executors = new ArrayList<>(fragments.size());
+            for (MinorFragmentDefn defn : fragments) {
+                FragmentContextImpl context = newFragmentContext(defn.fragment(), defn.options(), null);
+                FragmentExecutor executor = new FragmentExecutor(context, defn.fragment(), defn.root(), null);
+                context.setExchange(exchange);
+                executor.setExchange(exchange);
+                exchange.register(defn.fragment().getHandle(), executor, context.getBuffers());
+                executors.add(executor);
+            }
+            rootStarted = true;
+            if (isStarting) {
+                // the receivers of the root fragment wait for the batches of the other fragments, they must not hold
+                // the scheduler thread of Lealone, so the root fragment runs on the OLAP thread pool instead
+                isolated = true;
+                clientConnection.setIsolated(true);
+                drillbitContext.getOlapExecutor().execute(() -> executeFragments(executors));
+            } else {
+                executeFragments(executors);
+            }
+            return;
+        }
+        rootStarted = true;
         fragmentExecutor.execute(isStarting);
     }
 
+    /**
+     * Starts the other fragments on the OLAP fragment pool and runs the root fragment on this thread.
+     * <p>
+     * A fragment waits for the batches of the fragments below it and for the room in the buffers of the fragments
+     * above it, so all the fragments of a query must run at the same time. The threads of the pool are reserved for
+     * all of them before one is started, waiting for the fragments of other queries to finish. The root fragments
+     * of those queries run on their own threads, so they make progress. A query with more fragments than the pool
+     * has threads runs them on the executor of the drillbit.
+     */
+    private void executeFragments(List<FragmentExecutor> executors) {
+        final Semaphore threads = drillbitContext.getOlapFragmentThreads();
+        final int count = executors.size();
+        final Executor executor;
+        if (count <= drillbitContext.getNumOlapFragmentThreads()) {
+            threads.acquireUninterruptibly(count);
+            final Executor pool = drillbitContext.getOlapFragmentExecutor();
+            executor = task -> pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    threads.release();
+                }
+            });
+        } else {
+            logger.debug("Query {} has {} fragments, more than the OLAP fragment threads", queryIdString, count);
+            executor = drillbitContext.getExecutor();
+        }
+        for (FragmentExecutor fragment : executors) {
+            fragment.submit(executor);
+        }
+        fragmentExecutor.execute(false);
+    }
+
+    private FragmentContextImpl newFragmentContext(PlanFragment fragment, OptionList options,
+            UserClientConnection connection) throws ExecutionSetupException {
+        return options == null
+                ? new FragmentContextImpl(drillbitContext, fragment, queryContext, connection,
+                        drillbitContext.getFunctionImplementationRegistry())
+                : new FragmentContextImpl(drillbitContext, fragment, options, queryContext, connection,
+                        drillbitContext.getFunctionImplementationRegistry());
+    }
+
     private void parseAndRunLogicalPlan(String json) throws ExecutionSetupException {
         LogicalPlan logicalPlan;
         try {
@@ -291,7 +395,7 @@ public class SqlExecutor implements Runnable {
         // need to set QueryId, MinorFragment for incoming Fragments
         PlanFragment rootFragment = null;
         boolean isFirst = true;
-        List<PlanFragment> planFragments = Lists.newArrayList();
+        List<MinorFragmentDefn> planFragments = Lists.newArrayList();
         for (PlanFragment myFragment : fragmentsList) {
             FragmentHandle handle = myFragment.getHandle();
             // though we have new field in the FragmentHandle - parentQueryId
@@ -305,7 +409,7 @@ public class SqlExecutor implements Runnable {
                 rootFragment = newFragment;
                 isFirst = false;
             } else {
-                planFragments.add(newFragment);
+                planFragments.add(new MinorFragmentDefn(newFragment, null, null));
             }
         }
 
@@ -319,7 +423,7 @@ public class SqlExecutor implements Runnable {
                     String.format("Unable to parse FragmentRoot from fragment: %s", rootFragment.getFragmentJson()));
         }
 
-        executeQuery(planFragments, rootFragment, rootOperator, false);
+        executeQuery(planFragments, rootFragment, rootOperator, null, false);
     }
 
     /**
@@ -365,12 +469,33 @@ public class SqlExecutor implements Runnable {
         run(true);
     }
 
+    /**
+     * Returns true if the root fragment runs on the OLAP thread pool, {@link #yieldableRun()} must not be called
+     * then, the results are sent by that thread.
+     */
+    public boolean isIsolated() {
+        return isolated;
+    }
+
     public void yieldableRun() {
-        fragmentExecutor.run();
+        if (!failed) {
+            fragmentExecutor.run();
+        }
     }
 
     public boolean isStopped() {
-        return fragmentExecutor.isCompleted();
+        return failed || fragmentExecutor.isCompleted();
+    }
+
+    /**
+     * Cancels a root fragment that runs on the thread of the client before its end, called by that thread.
+     * The fragment closes its operators in the last run.
+     */
+    public void stop() {
+        if (!isStopped()) {
+            fragmentExecutor.cancel();
+            yieldableRun();
+        }
     }
 
     public void setSelect(Select select) {
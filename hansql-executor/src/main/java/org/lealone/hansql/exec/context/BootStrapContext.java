@@ -22,6 +22,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -64,6 +65,10 @@ public class BootStrapContext implements AutoCloseable {
     private final ExecutorService executor;
     private final ExecutorService scanExecutor;
     private final ExecutorService scanDecodeExecutor;
+    private final ExecutorService olapExecutor;
+    private final ExecutorService olapFragmentExecutor;
+    private final Semaphore olapFragmentThreads;
+    private final int numOlapFragmentThreads;
     private final String hostName;
 
     public BootStrapContext(DrillConfig config, CaseInsensitiveMap<OptionDefinition> definitions,
@@ -101,6 +106,17 @@ public class BootStrapContext implements AutoCloseable {
         this.scanExecutor = Executors.newFixedThreadPool(scanThreadPoolSize, new NamedThreadFactory("scan-"));
         this.scanDecodeExecutor = Executors.newFixedThreadPool(scanDecodeThreadPoolSize,
                 new NamedThreadFactory("scan-decode-"));
+        // The OLAP queries of Lealone run on their own bounded pool, so a burst of them
+        // neither holds the scheduler threads of Lealone nor starts a thread per query.
+        final int numOlapThreads = config.getInt(ExecConstants.OLAP_THREADPOOL_SIZE);
+        this.olapExecutor = Executors.newFixedThreadPool(numOlapThreads > 0 ? numOlapThreads : numCores,
+                new NamedThreadFactory("olap-"));
+        // The fragments of a query other than the root one wait for each other, so they get a pool of their own,
+        // whose threads are reserved for all the fragments of a query before they are started, see SqlExecutor.
+        this.numOlapFragmentThreads = numOlapThreads > 0 ? numOlapThreads : numCores;
+        this.olapFragmentExecutor = Executors.newFixedThreadPool(numOlapFragmentThreads,
+                new NamedThreadFactory("olap-fragment-"));
+        this.olapFragmentThreads = new Semaphore(numOlapFragmentThreads);
     }
 
     private void login(final DrillConfig config) throws DrillbitStartupException {
@@ -175,6 +191,25 @@ public class BootStrapContext implements AutoCloseable {
         return scanDecodeExecutor;
     }
 
+    public ExecutorService getOlapExecutor() {
+        return olapExecutor;
+    }
+
+    public ExecutorService getOlapFragmentExecutor() {
+        return olapFragmentExecutor;
+    }
+
+    /**
+     * @return the threads of {@link #getOlapFragmentExecutor()} that are not reserved by a query
+     */
+    public Semaphore getOlapFragmentThreads() {
+        return olapFragmentThreads;
+    }
+
+    public int getNumOlapFragmentThreads() {
+        return numOlapFragmentThreads;
+    }
+
     public DrillConfig getConfig() {
         return config;
     }
@@ -232,6 +267,14 @@ public class BootStrapContext implements AutoCloseable {
             scanDecodeExecutor.shutdownNow();
         }
 
+        if (olapExecutor != null) {
+            olapExecutor.shutdownNow();
+        }
+
+        if (olapFragmentExecutor != null) {
+            olapFragmentExecutor.shutdownNow();
+        }
+
         try {
             AutoCloseables.close(allocator);
 
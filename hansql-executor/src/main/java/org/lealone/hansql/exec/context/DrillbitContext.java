@@ -21,6 +21,7 @@ import static org.apache.drill.shaded.guava.com.google.common.base.Preconditions
 
 import java.util.Collection;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
 
 import org.lealone.hansql.common.config.DrillConfig;
 import org.lealone.hansql.common.config.LogicalPlanPersistence;
@@ -33,6 +34,7 @@ import org.lealone.hansql.exec.expr.fn.registry.RemoteFunctionRegistry;
 import org.lealone.hansql.exec.memory.BufferAllocator;
 import org.lealone.hansql.exec.physical.impl.OperatorCreatorRegistry;
 import org.lealone.hansql.exec.planner.PhysicalPlanReader;
+import org.lealone.hansql.exec.planner.PlanCache;
 import org.lealone.hansql.exec.planner.sql.DrillOperatorTable;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
 import org.lealone.hansql.exec.store.SchemaFactory;
@@ -58,6 +60,7 @@ public class DrillbitContext implements AutoCloseable {
     // operator table for standard SQL operators and functions, Drill built-in UDFs
     private final DrillOperatorTable table;
     private final QueryProfileStoreContext profileStoreContext;
+    private final PlanCache planCache = new PlanCache();
 
     public DrillbitContext(DrillbitEndpoint endpoint, BootStrapContext context, ClusterCoordinator coord,
             PersistentStoreProvider provider) {
@@ -143,6 +146,10 @@ public class DrillbitContext implements AutoCloseable {
         return reader;
     }
 
+    public PlanCache getPlanCache() {
+        return planCache;
+    }
+
     public PersistentStoreProvider getStoreProvider() {
         return provider;
     }
@@ -171,6 +178,22 @@ public class DrillbitContext implements AutoCloseable {
         return context.getScanDecodeExecutor();
     }
 
+    public ExecutorService getOlapExecutor() {
+        return context.getOlapExecutor();
+    }
+
+    public ExecutorService getOlapFragmentExecutor() {
+        return context.getOlapFragmentExecutor();
+    }
+
+    public Semaphore getOlapFragmentThreads() {
+        return context.getOlapFragmentThreads();
+    }
+
+    public int getNumOlapFragmentThreads() {
+        return context.getNumOlapFragmentThreads();
+    }
+
     public LogicalPlanPersistence getLpPersistence() {
         return lpPersistence;
     }
@@ -19,6 +19,7 @@ package org.lealone.hansql.exec.context.options;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.lealone.hansql.common.map.CaseInsensitiveMap;
 
@@ -49,6 +50,28 @@ public class QueryOptionManager extends InMemoryOptionManager {
     return fallback.getDefault(optionName);
   }
 
+  /**
+   * Returns a key that is equal for two queries only if their options have the same values: the versions of the
+   * system and the session options and the options set for the query itself, which are usually none.
+   *
+   * @return the key, or null if a short lived session option is set, which can not be keyed
+   */
+  public String getVersionKey() {
+    final SessionOptionManager sessionOptions = getSessionOptionManager();
+    if (sessionOptions.hasShortLivedOptions()) {
+      return null;
+    }
+    final String key = sessionOptions.getSystemOptionManager().getVersion() + "." + sessionOptions.getVersion();
+    if (options.isEmpty()) {
+      return key;
+    }
+    final Map<String, Object> queryOptions = new TreeMap<>();
+    for (OptionValue option : options.values()) {
+      queryOptions.put(option.getName(), option.getValue());
+    }
+    return key + queryOptions;
+  }
+
   public SessionOptionManager getSessionOptionManager() {
     return (SessionOptionManager) fallback;
   }
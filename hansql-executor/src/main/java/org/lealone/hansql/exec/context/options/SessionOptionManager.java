@@ -19,6 +19,7 @@ package org.lealone.hansql.exec.context.options;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.drill.shaded.guava.com.google.common.base.Predicate;
@@ -40,6 +41,7 @@ public class SessionOptionManager extends InMemoryOptionManager {
 //  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SessionOptionManager.class);
 
   private final UserSession session;
+  private final AtomicLong version = new AtomicLong();
 
   /**
    * Map of short lived options. Key: option name, Value: [ start, end )
@@ -55,6 +57,7 @@ public class SessionOptionManager extends InMemoryOptionManager {
   @Override
   public void setLocalOptionHelper(final OptionValue value) {
     super.setLocalOptionHelper(value);
+    version.incrementAndGet();
     final String name = value.name;
     final OptionDefinition definition = getOptionDefinition(name); // if set, validator must exist.
     final OptionValidator validator = definition.getValidator();
@@ -83,12 +86,40 @@ public class SessionOptionManager extends InMemoryOptionManager {
       } else {
         options.remove(name);
         shortLivedOptions.remove(name);
+        version.incrementAndGet();
         return null; // fallback takes effect
       }
     }
     return value;
   }
 
+  @Override
+  public void deleteAllLocalOptions() {
+    super.deleteAllLocalOptions();
+    version.incrementAndGet();
+  }
+
+  @Override
+  public void deleteLocalOption(final String name) {
+    super.deleteLocalOption(name);
+    version.incrementAndGet();
+  }
+
+  /**
+   * @return a number that changes whenever an option of the session is set or reset,
+   *         see {@link QueryOptionManager#getVersionKey()}
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * @return true if a short lived option is set, its value depends on the number of the query
+   */
+  boolean hasShortLivedOptions() {
+    return !shortLivedOptions.isEmpty();
+  }
+
   private boolean withinRange(final String name) {
     final int queryNumber = session.getQueryCount();
     final ImmutablePair<Integer, Integer> pair = shortLivedOptions.get(name);
@@ -38,6 +38,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -121,6 +122,7 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
       new OptionDefinition(PlannerSettings.ENABLE_UNNEST_LATERAL),
       new OptionDefinition(PlannerSettings.FORCE_2PHASE_AGGR), // for testing
       new OptionDefinition(PlannerSettings.STATISTICS_USE),
+      new OptionDefinition(PlannerSettings.PLAN_CACHE_SIZE, new OptionMetaData(OptionValue.AccessibleScopes.SYSTEM, false, false)),
       new OptionDefinition(ExecConstants.HASHJOIN_NUM_PARTITIONS_VALIDATOR),
       new OptionDefinition(ExecConstants.HASHJOIN_MAX_MEMORY_VALIDATOR, new OptionMetaData(OptionValue.AccessibleScopes.SYSTEM, true, true)),
       new OptionDefinition(ExecConstants.HASHJOIN_NUM_ROWS_IN_BATCH_VALIDATOR),
@@ -197,6 +199,14 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
       new OptionDefinition(ExecConstants.KAFKA_RECORD_READER_VALIDATOR),
       new OptionDefinition(ExecConstants.KAFKA_POLL_TIMEOUT_VALIDATOR),
       new OptionDefinition(ExecConstants.KAFKA_READER_READ_NUMBERS_AS_DOUBLE_VALIDATOR),
+      new OptionDefinition(ExecConstants.LEALONE_SCAN_PARTITIONS_VALIDATOR),
+      new OptionDefinition(ExecConstants.LEALONE_READ_AHEAD_BATCHES_VALIDATOR),
+      new OptionDefinition(ExecConstants.OLAP_ISOLATED_EXECUTION_VALIDATOR),
+      new OptionDefinition(ExecConstants.OLAP_TIME_SLICE_VALIDATOR),
+      new OptionDefinition(ExecConstants.RESULT_COLUMNAR_VALIDATOR),
+      new OptionDefinition(ExecConstants.RESULT_COLUMNAR_COMPRESSION_VALIDATOR),
+      new OptionDefinition(ExecConstants.LEALONE_LOOKUP_JOIN_VALIDATOR),
+      new OptionDefinition(ExecConstants.LEALONE_INDEX_MERGE_VALIDATOR),
       new OptionDefinition(ExecConstants.HIVE_OPTIMIZE_PARQUET_SCAN_WITH_NATIVE_READER_VALIDATOR),
       new OptionDefinition(ExecConstants.HIVE_OPTIMIZE_MAPRDB_JSON_SCAN_WITH_NATIVE_READER_VALIDATOR),
       new OptionDefinition(ExecConstants.HIVE_READ_MAPRDB_JSON_TIMESTAMP_WITH_TIMEZONE_OFFSET_VALIDATOR),
@@ -297,6 +307,7 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
   }
 
   private final PersistentStoreConfig<PersistedOptionValue> config;
+  private final AtomicLong version = new AtomicLong();
 
   private final PersistentStoreProvider provider;
 
@@ -426,6 +437,14 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
     }
 
     options.put(name, value.toPersisted());
+    version.incrementAndGet();
+  }
+
+  /**
+   * @return a number that changes whenever an option is set or reset, see {@link QueryOptionManager#getVersionKey()}
+   */
+  public long getVersion() {
+    return version.get();
   }
 
   @Override
@@ -437,6 +456,7 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
   public void deleteLocalOption(final String name) {
     getOptionDefinition(name); // ensure option exists
     options.delete(name.toLowerCase());
+    version.incrementAndGet();
   }
 
   @Override
@@ -445,6 +465,7 @@ public class SystemOptionManager extends BaseOptionManager implements AutoClosea
     StreamSupport.stream(allOptions.spliterator(), false)
       .map(Entry::getKey)
       .forEach(name -> options.delete(name)); // should be lowercase
+    version.incrementAndGet();
   }
 
   private CaseInsensitiveMap<OptionValue> populateDefaultValues(Map<String, OptionDefinition> definitions, DrillConfig bootConfig) {
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.ops;
+
+import org.lealone.hansql.exec.proto.BitControl.FinishedReceiver;
+import org.lealone.hansql.exec.proto.BitData.FragmentRecordBatch;
+import org.lealone.hansql.exec.record.FragmentWritableBatch;
+import org.lealone.hansql.exec.work.batch.LocalExchange;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DrillBuf;
+
+/**
+ * Sends the batches of a fragment to the receiving fragments of the same query in this drillbit.
+ * <p>
+ * The batches are not serialized, the receivers get references of their buffers accounted to their own allocators.
+ * The buffers of the vectors are handed over as they are, the receivers load their vectors from them.
+ * A send returns once the batch is queued by all its receivers.
+ */
+public class AccountingDataTunnel {
+
+    private final LocalExchange exchange;
+
+    public AccountingDataTunnel(LocalExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    public void sendRecordBatch(FragmentWritableBatch batch) {
+        final FragmentRecordBatch header = batch.getHeader();
+        final DrillBuf[] body = getBody(batch.getBuffers());
+        try {
+            for (int receivingMinorFragmentId : header.getReceivingMinorFragmentIdList()) {
+                exchange.batchArrived(receivingMinorFragmentId, header, body);
+            }
+        } catch (InterruptedException e) {
+            // the fragment was cancelled, the batch is dropped
+            Thread.currentThread().interrupt();
+        } finally {
+            for (DrillBuf buf : body) {
+                buf.release();
+            }
+        }
+    }
+
+    public void informReceiverFinished(FinishedReceiver finishedReceiver) {
+        exchange.receiverFinished(finishedReceiver);
+    }
+
+    private static DrillBuf[] getBody(ByteBuf[] buffers) {
+        final DrillBuf[] body = new DrillBuf[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            body[i] = (DrillBuf) buffers[i];
+        }
+        return body;
+    }
+}
@@ -17,11 +17,24 @@
  */
 package org.lealone.hansql.exec.ops;
 
+import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
+import org.lealone.hansql.exec.work.batch.IncomingBuffers;
+
 /**
  * This provides the resources required by an exchange operator.
  */
 public interface ExchangeFragmentContext extends FragmentContext {
     void waitForSendComplete();
 
+    /**
+     * Returns the tunnel of the batches sent to the receiving fragments on the given drillbit.
+     */
+    AccountingDataTunnel getDataTunnel(DrillbitEndpoint endpoint);
+
     AccountingUserConnection getUserDataTunnel();
+
+    /**
+     * Returns the batches sent to the receivers of this fragment.
+     */
+    IncomingBuffers getBuffers();
 }
@@ -24,6 +24,7 @@ import org.lealone.hansql.exec.coord.ClusterCoordinator;
 import org.lealone.hansql.exec.memory.BufferAllocator;
 import org.lealone.hansql.exec.physical.impl.OperatorCreatorRegistry;
 import org.lealone.hansql.exec.planner.PhysicalPlanReader;
+import org.lealone.hansql.exec.planner.PlanCache;
 import org.lealone.hansql.exec.proto.CoordinationProtos;
 
 /**
@@ -51,5 +52,7 @@ public interface ExecutorFragmentContext extends RootFragmentContext {
 
     QueryProfileStoreContext getProfileStoreContext();
 
+    PlanCache getPlanCache();
+
     boolean isUserAuthenticationEnabled();
 }
@@ -198,6 +198,34 @@ public interface FragmentContext extends UdfUtilities, AutoCloseable {
      */
     boolean shouldContinue();
 
+    /**
+     * Tells long running operations that the time slice of the fragment is used up. An operation that can resume
+     * checks this between two steps, such as two incoming batches, and returns {@link
+     * org.lealone.hansql.exec.record.RecordBatch.IterOutcome#NOT_YET} so that the thread can run other work
+     * before the next call.
+     *
+     * @return True if the operation should return NOT_YET at its next safe point.
+     */
+    boolean shouldYield();
+
+    /**
+     * Called by an operator that can not take NOT_YET from an input before it asks the input for a batch,
+     * no operator of the fragment yields until the matching {@link #enableYield()}. The calls nest.
+     */
+    void disableYield();
+
+    /**
+     * Ends the matching {@link #disableYield()}.
+     */
+    void enableYield();
+
+    /**
+     * Tells operations whether they may wait for other threads, such as a scan thread that reads rows ahead.
+     *
+     * @return False if the fragment runs on a scheduler thread of Lealone, which must never wait.
+     */
+    boolean canBlock();
+
     /**
      * Inform the executor if a exception occurs and fragment should be failed.
      *
@@ -52,6 +52,7 @@ import org.lealone.hansql.exec.ops.QueryContext.SqlStatementType;
 import org.lealone.hansql.exec.physical.base.PhysicalOperator;
 import org.lealone.hansql.exec.physical.impl.OperatorCreatorRegistry;
 import org.lealone.hansql.exec.planner.PhysicalPlanReader;
+import org.lealone.hansql.exec.planner.PlanCache;
 import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.exec.proto.BitControl.PlanFragment;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
@@ -63,6 +64,8 @@ import org.lealone.hansql.exec.store.PartitionExplorer;
 import org.lealone.hansql.exec.store.SchemaConfig;
 import org.lealone.hansql.exec.testing.ExecutionControls;
 import org.lealone.hansql.exec.util.ImpersonationUtil;
+import org.lealone.hansql.exec.work.batch.IncomingBuffers;
+import org.lealone.hansql.exec.work.batch.LocalExchange;
 import org.lealone.hansql.exec.work.filter.RuntimeFilterWritable;
 import org.lealone.hansql.optimizer.schema.SchemaPlus;
 
@@ -119,6 +122,8 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
     private final SendingAccountor sendingAccountor = new SendingAccountor();
 
     private final AccountingUserConnection accountingUserConnection;
+    private IncomingBuffers buffers;
+    private AccountingDataTunnel dataTunnel;
     /** Stores constants and their holders by type */
     private final Map<String, Map<MinorType, ValueHolder>> constantValueHolderCache;
     private Map<Long, RuntimeFilterWritable> rfIdentifier2RFW = new ConcurrentHashMap<>();
@@ -150,6 +155,24 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
     public FragmentContextImpl(final DrillbitContext dbContext, final PlanFragment fragment,
             final QueryContext queryContext, final UserClientConnection connection,
             final FunctionImplementationRegistry funcRegistry) throws ExecutionSetupException {
+        this(dbContext, fragment, readOptions(dbContext, fragment), queryContext, connection, funcRegistry);
+    }
+
+    /**
+     * Create a FragmentContext instance for a root fragment that was planned in this drillbit,
+     * the options are given as they are instead of being read from the options JSON of the fragment.
+     *
+     * @param dbContext DrillbitContext.
+     * @param fragment Fragment implementation.
+     * @param options the options of the fragment.
+     * @param queryContext QueryContext.
+     * @param connection UserClientConnection.
+     * @param funcRegistry FunctionImplementationRegistry.
+     * @throws ExecutionSetupException
+     */
+    public FragmentContextImpl(final DrillbitContext dbContext, final PlanFragment fragment, final OptionList options,
+            final QueryContext queryContext, final UserClientConnection connection,
+            final FunctionImplementationRegistry funcRegistry) throws ExecutionSetupException {
         super(funcRegistry);
         this.context = dbContext;
         this.queryContext = queryContext;
@@ -161,17 +184,7 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
         logger.debug("Getting initial memory allocation of {}", fragment.getMemInitial());
         logger.debug("Fragment max allocation: {}", fragment.getMemMax());
 
-        final OptionList list;
-        if (!fragment.hasOptionsJson() || fragment.getOptionsJson().isEmpty()) {
-            list = new OptionList();
-        } else {
-            try {
-                list = dbContext.getLpPersistence().getMapper().readValue(fragment.getOptionsJson(), OptionList.class);
-            } catch (final Exception e) {
-                throw new ExecutionSetupException("Failure while reading plan options.", e);
-            }
-        }
-        fragmentOptions = new FragmentOptionManager(context.getOptionManager(), list);
+        fragmentOptions = new FragmentOptionManager(context.getOptionManager(), options);
 
         executionControls = new ExecutionControls(fragmentOptions, dbContext.getEndpoint());
 
@@ -211,6 +224,18 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
         this(dbContext, fragment, null, connection, funcRegistry);
     }
 
+    private static OptionList readOptions(DrillbitContext dbContext, PlanFragment fragment)
+            throws ExecutionSetupException {
+        if (!fragment.hasOptionsJson() || fragment.getOptionsJson().isEmpty()) {
+            return new OptionList();
+        }
+        try {
+            return dbContext.getLpPersistence().getMapper().readValue(fragment.getOptionsJson(), OptionList.class);
+        } catch (final Exception e) {
+            throw new ExecutionSetupException("Failure while reading plan options.", e);
+        }
+    }
+
     @Override
     public OptionManager getOptions() {
         return fragmentOptions;
@@ -231,6 +256,11 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
         return context.getProfileStoreContext();
     }
 
+    @Override
+    public PlanCache getPlanCache() {
+        return context.getPlanCache();
+    }
+
     @Override
     public void setExecutorState(final ExecutorState executorState) {
         Preconditions.checkArgument(this.executorState == null, "ExecutorState can only be set once.");
@@ -413,6 +443,25 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
         return context.getCompiler();
     }
 
+    /**
+     * Connects this fragment to the other fragments of the query, which all run in this drillbit.
+     */
+    public void setExchange(LocalExchange exchange) {
+        this.buffers = new IncomingBuffers(fragment, this);
+        this.dataTunnel = new AccountingDataTunnel(exchange);
+    }
+
+    @Override
+    public AccountingDataTunnel getDataTunnel(DrillbitEndpoint endpoint) {
+        Preconditions.checkState(dataTunnel != null, "The fragment is not connected to the other fragments");
+        return dataTunnel;
+    }
+
+    @Override
+    public IncomingBuffers getBuffers() {
+        return buffers;
+    }
+
     @Override
     public AccountingUserConnection getUserDataTunnel() {
         Preconditions.checkState(connection != null, "Only Root fragment can get UserDataTunnel");
@@ -482,7 +531,7 @@ public class FragmentContextImpl extends BaseFragmentContext implements Executor
 
         // Close the buffers before closing the operators; this is needed as buffer ownership
         // is attached to the receive operators.
-        // suppressingClose(buffers);
+        suppressingClose(buffers);
         closeNotConsumedRFWs();
         // close operator context
         for (OperatorContextImpl opContext : contexts) {
@@ -39,12 +39,15 @@ import org.lealone.hansql.exec.expr.fn.registry.RemoteFunctionRegistry;
 import org.lealone.hansql.exec.expr.holders.ValueHolder;
 import org.lealone.hansql.exec.memory.BufferAllocator;
 import org.lealone.hansql.exec.ops.BufferManager;
+import org.lealone.hansql.exec.planner.PhysicalPlanReader;
+import org.lealone.hansql.exec.planner.PlanCache;
 import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.exec.planner.sql.DrillOperatorTable;
 import org.lealone.hansql.exec.proto.BitControl.QueryContextInformation;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
 import org.lealone.hansql.exec.proto.UserBitShared.QueryId;
 import org.lealone.hansql.exec.proto.helper.QueryIdHelper;
+import org.lealone.hansql.exec.session.UserClientConnection;
 import org.lealone.hansql.exec.session.UserSession;
 import org.lealone.hansql.exec.store.PartitionExplorer;
 import org.lealone.hansql.exec.store.PartitionExplorerImpl;
@@ -66,6 +69,7 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
 
   private final DrillbitContext drillbitContext;
   private final UserSession session;
+  private final UserClientConnection connection;
   private final QueryId queryId;
   private final QueryOptionManager queryOptions;
   private final PlannerSettings plannerSettings;
@@ -80,6 +84,8 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
   private boolean skipProfileWrite;
   /** Stores constants and their holders by type */
   private final Map<String, Map<MinorType, ValueHolder>> constantValueHolderCache;
+  // set when the planner folds a function that reads the context, such as now() or current_user
+  private boolean contextInformationUsed;
   private SqlStatementType stmtType;
 
   /*
@@ -90,8 +96,14 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
   private DrillOperatorTable table;
 
   public QueryContext(final UserSession session, final DrillbitContext drillbitContext, QueryId queryId) {
+    this(session, null, drillbitContext, queryId);
+  }
+
+  public QueryContext(final UserSession session, final UserClientConnection connection,
+      final DrillbitContext drillbitContext, QueryId queryId) {
     this.drillbitContext = drillbitContext;
     this.session = session;
+    this.connection = connection;
     this.queryId = queryId;
     this.skipProfileWrite = false;
     queryOptions = new QueryOptionManager(session.getOptions());
@@ -146,6 +158,11 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
 
   public UserSession getSession() { return session; }
 
+  /**
+   * @return the connection the query was submitted on, or null when the query has no client
+   */
+  public UserClientConnection getConnection() { return connection; }
+
   @Override
   public BufferAllocator getAllocator() { return allocator; }
 
@@ -250,6 +267,14 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
     return drillbitContext.getProfileStoreContext();
   }
 
+  public PhysicalPlanReader getPlanReader() {
+    return drillbitContext.getPlanReader();
+  }
+
+  public PlanCache getPlanCache() {
+    return drillbitContext.getPlanCache();
+  }
+
   @Override
   public FunctionImplementationRegistry getFunctionRegistry() {
     return drillbitContext.getFunctionImplementationRegistry();
@@ -302,9 +327,26 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
 
   @Override
   public ContextInformation getContextInformation() {
+    contextInformationUsed = true;
     return contextInformation;
   }
 
+  /**
+   * @return true if the context information was read, the plan of the query then holds values
+   *         that only belong to this query
+   */
+  public boolean isContextInformationUsed() {
+    return contextInformationUsed;
+  }
+
+  /**
+   * Called by the rules that fold values read at planning time into the plan, such as a row count,
+   * so the plan is not reused by a later query.
+   */
+  public void setContextInformationUsed() {
+    contextInformationUsed = true;
+  }
+
   @Override
   public DrillBuf getManagedBuffer() {
     return bufferManager.getManagedBuffer();
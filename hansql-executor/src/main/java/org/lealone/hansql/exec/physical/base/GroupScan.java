@@ -89,6 +89,15 @@ public interface GroupScan extends Scan, HasAffinity {
   @JsonIgnore
   ScanStats getScanStats(PlannerSettings settings);
 
+  /**
+   * Returns the number of rows the scan reads, cheaper and coarser than {@link #getScanStats(PlannerSettings)},
+   * e.g. to check that a cached plan still fits the size of its tables.
+   */
+  @JsonIgnore
+  default double getRowCountApproximation(PlannerSettings settings) {
+    return getScanStats(settings).getRecordCount();
+  }
+
   /**
    * Returns a clone of GroupScan instance, except that the new GroupScan will use the provided list of columns .
    */
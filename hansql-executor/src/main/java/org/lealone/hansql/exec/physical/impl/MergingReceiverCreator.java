@@ -25,6 +25,8 @@ import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
 import org.lealone.hansql.exec.physical.config.MergingReceiverPOP;
 import org.lealone.hansql.exec.physical.impl.mergereceiver.MergingRecordBatch;
 import org.lealone.hansql.exec.record.RecordBatch;
+import org.lealone.hansql.exec.work.batch.IncomingBuffers;
+import org.lealone.hansql.exec.work.batch.RawBatchBuffer;
 
 public class MergingReceiverCreator implements BatchCreator<MergingReceiverPOP> {
     static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MergingReceiverCreator.class);
@@ -33,12 +35,12 @@ public class MergingReceiverCreator implements BatchCreator<MergingReceiverPOP>
     public MergingRecordBatch getBatch(ExecutorFragmentContext context, MergingReceiverPOP receiver,
             List<RecordBatch> children) throws ExecutionSetupException, OutOfMemoryException {
 
-        // assert children == null || children.isEmpty();
-        // IncomingBuffers bufHolder = context.getBuffers();
-        //
-        // assert bufHolder != null : "IncomingBuffers must be defined for any place a receiver is declared.";
-        // RawBatchBuffer[] buffers = bufHolder.getCollector(receiver.getOppositeMajorFragmentId()).getBuffers();
+        assert children == null || children.isEmpty();
+        IncomingBuffers bufHolder = context.getBuffers();
 
-        return new MergingRecordBatch(context, receiver, null);
+        assert bufHolder != null : "IncomingBuffers must be defined for any place a receiver is declared.";
+        RawBatchBuffer[] buffers = bufHolder.getCollector(receiver.getOppositeMajorFragmentId()).getBuffers();
+
+        return new MergingRecordBatch(context, receiver, buffers);
     }
 }
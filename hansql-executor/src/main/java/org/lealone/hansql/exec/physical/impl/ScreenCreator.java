@@ -139,6 +139,9 @@ public class ScreenCreator implements RootCreator<Screen> {
                 }
                 firstBatch = false;
 
+                return true;
+            case NOT_YET:
+                // an operator yielded, nothing to send yet
                 return true;
             default:
                 throw new UnsupportedOperationException();
@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.lealone.hansql.common.exceptions.ExecutionSetupException;
 import org.lealone.hansql.exec.exception.OutOfMemoryException;
+import org.lealone.hansql.exec.ops.AccountingDataTunnel;
 import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
 import org.lealone.hansql.exec.ops.MetricDef;
 import org.lealone.hansql.exec.ops.RootFragmentContext;
@@ -50,7 +51,7 @@ public class SingleSenderCreator implements RootCreator<SingleSender> {
         private final FragmentHandle oppositeHandle;
 
         private RecordBatch incoming;
-        // private AccountingDataTunnel tunnel;
+        private AccountingDataTunnel tunnel;
         private FragmentHandle handle;
         private int recMajor;
         private volatile boolean ok = true;
@@ -72,10 +73,9 @@ public class SingleSenderCreator implements RootCreator<SingleSender> {
             assert incoming != null;
             handle = context.getHandle();
             recMajor = config.getOppositeMajorFragmentId();
-            // tunnel = context.getDataTunnel(config.getDestination());
             oppositeHandle = handle.toBuilder().setMajorFragmentId(config.getOppositeMajorFragmentId())
                     .setMinorFragmentId(config.getOppositeMinorFragmentId()).build();
-            // tunnel = context.getDataTunnel(config.getDestination());
+            tunnel = context.getDataTunnel(config.getDestination());
             // tunnel.setTestInjectionControls(injector, context.getExecutionControls(), logger);
         }
 
@@ -109,7 +109,7 @@ public class SingleSenderCreator implements RootCreator<SingleSender> {
                         oppositeHandle.getMinorFragmentId(), sendSchema);
                 stats.startWait();
                 try {
-                    // tunnel.sendRecordBatch(b2);
+                    tunnel.sendRecordBatch(b2);
                 } finally {
                     stats.stopWait();
                 }
@@ -124,7 +124,7 @@ public class SingleSenderCreator implements RootCreator<SingleSender> {
                 updateStats(batch);
                 stats.startWait();
                 try {
-                    // tunnel.sendRecordBatch(batch);
+                    tunnel.sendRecordBatch(batch);
                 } finally {
                     stats.stopWait();
                 }
@@ -209,7 +209,13 @@ public class TopNBatch extends AbstractRecordBatch<TopN> {
           sv4 = new SelectionVector4(context.getAllocator(), 0);
           first = false;
         } else {
-          lastKnownOutcome = next(incoming);
+          // this operator does not yield, the upstream must not yield either
+          context.getExecutorState().disableYield();
+          try {
+            lastKnownOutcome = next(incoming);
+          } finally {
+            context.getExecutorState().enableYield();
+          }
         }
         if (lastKnownOutcome == OK && schema == null) {
           lastKnownOutcome = IterOutcome.OK_NEW_SCHEMA;
@@ -154,6 +154,7 @@ public abstract class HashAggTemplate implements HashAggregator {
   private boolean buildComplete = false;
   private boolean handlingSpills = false; // True once starting to process spill files
   private boolean handleEmit = false; // true after receiving an EMIT, till finish handling it
+  private boolean yielded = false; // true after returning NOT_YET, the next doWork() reads a batch before yielding again
 
   private OperatorStats stats = null;
   private HashTableStats htStats = new HashTableStats();
@@ -618,6 +619,17 @@ public abstract class HashAggTemplate implements HashAggregator {
         outcome = IterOutcome.NONE; // finished behaving like OK, now behave like NONE
       }
       else {
+        // The time slice of the fragment is used up. This batch is done, so the next call of doWork()
+        // goes on with the next batch. The slice is only renewed once the thread ran other work, a call
+        // that resumes after yielding processes a batch before it yields again, so the aggregation progresses
+        // even when the caller asks again at once
+        if (yielded) {
+          yielded = false;
+        } else if (context.getExecutorState().shouldYield()) {
+          yielded = true;
+          outcome = IterOutcome.NOT_YET;
+          return AggOutcome.RETURN_OUTCOME;
+        }
         //
         // Get the NEXT input batch, initially from the upstream, later (if there was a spill)
         // from one of the spill files (The spill case is handled differently here to avoid
@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.apache.drill.shaded.guava.com.google.common.collect.ArrayListMultimap;
 import org.lealone.hansql.exec.exception.OutOfMemoryException;
+import org.lealone.hansql.exec.ops.AccountingDataTunnel;
 import org.lealone.hansql.exec.ops.MetricDef;
 import org.lealone.hansql.exec.ops.RootFragmentContext;
 import org.lealone.hansql.exec.physical.MinorFragmentEndpoint;
@@ -30,6 +31,7 @@ import org.lealone.hansql.exec.proto.ExecProtos;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
 import org.lealone.hansql.exec.record.FragmentWritableBatch;
 import org.lealone.hansql.exec.record.RecordBatch;
+import org.lealone.hansql.exec.record.WritableBatch;
 
 /**
  * Broadcast Sender broadcasts incoming batches to all receivers (one or more).
@@ -40,7 +42,7 @@ public class BroadcastSenderRootExec extends BaseRootExec {
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(BroadcastSenderRootExec.class);
     private final BroadcastSender config;
     private final int[][] receivingMinorFragments;
-    // private final AccountingDataTunnel[] tunnels;
+    private final AccountingDataTunnel[] tunnels;
     private final ExecProtos.FragmentHandle handle;
     private volatile boolean ok;
     private final RecordBatch incoming;
@@ -72,7 +74,7 @@ public class BroadcastSenderRootExec extends BaseRootExec {
         int destCount = dests.keySet().size();
         int i = 0;
 
-        // this.tunnels = new AccountingDataTunnel[destCount];
+        this.tunnels = new AccountingDataTunnel[destCount];
         this.receivingMinorFragments = new int[destCount][];
         for (final DrillbitEndpoint ep : dests.keySet()) {
             List<Integer> minorsList = dests.get(ep);
@@ -82,7 +84,7 @@ public class BroadcastSenderRootExec extends BaseRootExec {
                 minorsArray[x++] = m;
             }
             receivingMinorFragments[i] = minorsArray;
-            // tunnels[i] = context.getDataTunnel(ep);
+            tunnels[i] = context.getDataTunnel(ep);
             i++;
         }
     }
@@ -96,45 +98,37 @@ public class BroadcastSenderRootExec extends BaseRootExec {
             throw new OutOfMemoryException();
         case STOP:
         case NONE:
-            // for (int i = 0; i < tunnels.length; ++i) {
-            // FragmentWritableBatch b2 = FragmentWritableBatch.getEmptyLast(
-            // handle.getQueryId(),
-            // handle.getMajorFragmentId(),
-            // handle.getMinorFragmentId(),
-            // config.getOppositeMajorFragmentId(),
-            // receivingMinorFragments[i]);
-            // stats.startWait();
-            // try {
-            // tunnels[i].sendRecordBatch(b2);
-            // } finally {
-            // stats.stopWait();
-            // }
-            // }
+            for (int i = 0; i < tunnels.length; ++i) {
+                FragmentWritableBatch b2 = FragmentWritableBatch.getEmptyLast(handle.getQueryId(),
+                        handle.getMajorFragmentId(), handle.getMinorFragmentId(),
+                        config.getOppositeMajorFragmentId(), receivingMinorFragments[i]);
+                stats.startWait();
+                try {
+                    tunnels[i].sendRecordBatch(b2);
+                } finally {
+                    stats.stopWait();
+                }
+            }
             return false;
 
         case OK_NEW_SCHEMA:
         case OK:
-            // WritableBatch writableBatch = incoming.getWritableBatch().transfer(oContext.getAllocator());
-            // if (tunnels.length > 1) {
-            // writableBatch.retainBuffers(tunnels.length - 1);
-            // }
-            // for (int i = 0; i < tunnels.length; ++i) {
-            // FragmentWritableBatch batch = new FragmentWritableBatch(
-            // false,
-            // handle.getQueryId(),
-            // handle.getMajorFragmentId(),
-            // handle.getMinorFragmentId(),
-            // config.getOppositeMajorFragmentId(),
-            // receivingMinorFragments[i],
-            // writableBatch);
-            // updateStats(batch);
-            // stats.startWait();
-            // try {
-            // tunnels[i].sendRecordBatch(batch);
-            // } finally {
-            // stats.stopWait();
-            // }
-            // }
+            WritableBatch writableBatch = incoming.getWritableBatch().transfer(oContext.getAllocator());
+            if (tunnels.length > 1) {
+                writableBatch.retainBuffers(tunnels.length - 1);
+            }
+            for (int i = 0; i < tunnels.length; ++i) {
+                FragmentWritableBatch batch = new FragmentWritableBatch(false, handle.getQueryId(),
+                        handle.getMajorFragmentId(), handle.getMinorFragmentId(),
+                        config.getOppositeMajorFragmentId(), receivingMinorFragments[i], writableBatch);
+                updateStats(batch);
+                stats.startWait();
+                try {
+                    tunnels[i].sendRecordBatch(batch);
+                } finally {
+                    stats.stopWait();
+                }
+            }
 
             return ok;
 
@@ -145,7 +139,7 @@ public class BroadcastSenderRootExec extends BaseRootExec {
     }
 
     public void updateStats(FragmentWritableBatch writableBatch) {
-        // stats.setLongStat(Metric.N_RECEIVERS, tunnels.length);
+        stats.setLongStat(Metric.N_RECEIVERS, tunnels.length);
         stats.addLongStat(Metric.BYTES_SENT, writableBatch.getByteCount());
     }
 }
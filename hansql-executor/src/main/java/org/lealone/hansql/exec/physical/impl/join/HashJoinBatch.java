@@ -156,6 +156,8 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
    */
   private ChainedHashTable baseHashTable;
   private MutableBoolean buildSideIsEmpty = new MutableBoolean(false);
+  // Set while the build phase yielded, see executeBuildPhase()
+  private HashJoinMemoryCalculator.BuildSidePartitioning suspendedBuildCalc;
   private MutableBoolean probeSideIsEmpty = new MutableBoolean(false);
   private boolean canSpill = true;
   private boolean wasKilled; // a kill was received, may need to clean spilled partns
@@ -458,26 +460,32 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
    * @return The {@link org.lealone.hansql.exec.record.RecordBatch.IterOutcome} for the left or right record batch.
    */
   private IterOutcome sniffNonEmptyBatch(IterOutcome curr, int inputIndex, RecordBatch recordBatch) {
-    while (true) {
-      if (recordBatch.getRecordCount() != 0) {
-        return curr;
-      }
-
-      curr = next(inputIndex, recordBatch);
-
-      switch (curr) {
-        case OK:
-          // We got a data batch
-          break;
-        case NOT_YET:
-          // We need to try again
-          break;
-        case EMIT:
-          throw new UnsupportedOperationException("We do not support " + EMIT);
-        default:
-          // Other cases are termination conditions
+    // The sniffing can not be resumed, the input must not yield while it is running
+    context.getExecutorState().disableYield();
+    try {
+      while (true) {
+        if (recordBatch.getRecordCount() != 0) {
           return curr;
+        }
+
+        curr = next(inputIndex, recordBatch);
+
+        switch (curr) {
+          case OK:
+            // We got a data batch
+            break;
+          case NOT_YET:
+            // We need to try again
+            break;
+          case EMIT:
+            throw new UnsupportedOperationException("We do not support " + EMIT);
+          default:
+            // Other cases are termination conditions
+            return curr;
+        }
       }
+    } finally {
+      context.getExecutorState().enableYield();
     }
   }
 
@@ -609,6 +617,11 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
 
             return IterOutcome.OK;
           }
+
+          // The probe side yielded before anything was produced, the probe goes on at the next call
+          if (hashJoinProbe.isProbeYielded()) {
+            return IterOutcome.NOT_YET;
+          }
         }
 
         // Free all partitions' in-memory data structures
@@ -928,73 +941,44 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
 
   /**
    *  Execute the BUILD phase; first read incoming and split rows into partitions;
-   *  may decide to spill some of the partitions
+   *  may decide to spill some of the partitions. Returns NOT_YET when it yields between two build batches,
+   *  the next call goes on from there
    *
    * @return Returns an {@link org.lealone.hansql.exec.record.RecordBatch.IterOutcome} if a termination condition is reached. Otherwise returns null.
    * @throws SchemaChangeException
    */
   public IterOutcome executeBuildPhase() throws SchemaChangeException {
-    if (buildSideIsEmpty.booleanValue()) {
-      // empty right
-      return null;
-    }
+    HashJoinMemoryCalculator.BuildSidePartitioning buildCalc = suspendedBuildCalc;
 
-    if ( skipHashTableBuild ) { // No hash table needed - then consume all the right upstream
-      killAndDrainRightUpstream();
-      return null;
-    }
-
-    HashJoinMemoryCalculator.BuildSidePartitioning buildCalc;
-
-    {
-      // Initializing build calculator
-      // Limit scope of these variables to this block
-      int maxBatchSize = spilledState.isFirstCycle()? RecordBatch.MAX_BATCH_ROW_COUNT: RECORDS_PER_BATCH;
-      boolean doMemoryCalculation = canSpill && !probeSideIsEmpty.booleanValue();
-      HashJoinMemoryCalculator calc = getCalculatorImpl();
-
-      calc.initialize(doMemoryCalculation);
-      buildCalc = calc.next();
-
-      buildCalc.initialize(spilledState.isFirstCycle(), true, // TODO Fix after growing hash values bug fixed
-        buildBatch,
-        probeBatch,
-        buildJoinColumns,
-        probeSideIsEmpty.booleanValue(),
-        allocator.getLimit(),
-        numPartitions,
-        RECORDS_PER_BATCH,
-        RECORDS_PER_BATCH,
-        maxBatchSize,
-        maxBatchSize,
-        batchMemoryManager.getOutputBatchSize(),
-        HashTable.DEFAULT_LOAD_FACTOR);
+    if (buildCalc != null) {
+      // The build phase yielded, go on with the build batch it stopped at
+      suspendedBuildCalc = null;
+      if (rightUpstream == IterOutcome.NOT_YET) {
+        rightUpstream = next(HashJoinHelper.RIGHT_INPUT, buildBatch);
+      }
+    } else {
+      if (buildSideIsEmpty.booleanValue()) {
+        // empty right
+        return null;
+      }
 
-      if (spilledState.isFirstCycle() && doMemoryCalculation) {
-        // Do auto tuning
-        buildCalc = partitionNumTuning(maxBatchSize, buildCalc);
+      if ( skipHashTableBuild ) { // No hash table needed - then consume all the right upstream
+        killAndDrainRightUpstream();
+        return null;
       }
-    }
 
-    if (spilledState.isFirstCycle()) {
-      // Do initial setup only on the first cycle
-      delayedSetup();
+      buildCalc = initializeBuildPhase();
     }
 
-    initializeBuild();
-
-    initializeRuntimeFilter();
-
-    // Make the calculator aware of our partitions
-    final HashJoinMemoryCalculator.PartitionStatSet partitionStatSet = new HashJoinMemoryCalculator.PartitionStatSet(partitions);
-    buildCalc.setPartitionStatSet(partitionStatSet);
-
     boolean moreData = true;
     while (moreData) {
       switch (rightUpstream) {
+      case NOT_YET:
+        // The build side yielded, so does the build phase
+        suspendedBuildCalc = buildCalc;
+        return IterOutcome.NOT_YET;
       case OUT_OF_MEMORY:
       case NONE:
-      case NOT_YET:
       case STOP:
         moreData = false;
         continue;
@@ -1051,6 +1035,13 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
       }
       // Get the next incoming record batch
       rightUpstream = next(HashJoinHelper.RIGHT_INPUT, buildBatch);
+
+      // The time slice of the fragment is used up, the next call partitions this batch
+      if ((rightUpstream == IterOutcome.OK || rightUpstream == OK_NEW_SCHEMA)
+          && context.getExecutorState().shouldYield()) {
+        suspendedBuildCalc = buildCalc;
+        return IterOutcome.NOT_YET;
+      }
     }
 
     if (spilledState.isFirstCycle() && enableRuntimeFilter) {
@@ -1132,6 +1123,61 @@ public class HashJoinBatch extends AbstractBinaryRecordBatch<HashJoinPOP> implem
     return null;
   }
 
+  /**
+   * Initializes the partitions and the memory calculator of a build phase.
+   *
+   * @return The calculator the build batches are partitioned with.
+   * @throws SchemaChangeException
+   */
+  private HashJoinMemoryCalculator.BuildSidePartitioning initializeBuildPhase() throws SchemaChangeException {
+    HashJoinMemoryCalculator.BuildSidePartitioning buildCalc;
+
+    {
+      // Initializing build calculator
+      // Limit scope of these variables to this block
+      int maxBatchSize = spilledState.isFirstCycle()? RecordBatch.MAX_BATCH_ROW_COUNT: RECORDS_PER_BATCH;
+      boolean doMemoryCalculation = canSpill && !probeSideIsEmpty.booleanValue();
+      HashJoinMemoryCalculator calc = getCalculatorImpl();
+
+      calc.initialize(doMemoryCalculation);
+      buildCalc = calc.next();
+
+      buildCalc.initialize(spilledState.isFirstCycle(), true, // TODO Fix after growing hash values bug fixed
+        buildBatch,
+        probeBatch,
+        buildJoinColumns,
+        probeSideIsEmpty.booleanValue(),
+        allocator.getLimit(),
+        numPartitions,
+        RECORDS_PER_BATCH,
+        RECORDS_PER_BATCH,
+        maxBatchSize,
+        maxBatchSize,
+        batchMemoryManager.getOutputBatchSize(),
+        HashTable.DEFAULT_LOAD_FACTOR);
+
+      if (spilledState.isFirstCycle() && doMemoryCalculation) {
+        // Do auto tuning
+        buildCalc = partitionNumTuning(maxBatchSize, buildCalc);
+      }
+    }
+
+    if (spilledState.isFirstCycle()) {
+      // Do initial setup only on the first cycle
+      delayedSetup();
+    }
+
+    initializeBuild();
+
+    initializeRuntimeFilter();
+
+    // Make the calculator aware of our partitions
+    final HashJoinMemoryCalculator.PartitionStatSet partitionStatSet = new HashJoinMemoryCalculator.PartitionStatSet(partitions);
+    buildCalc.setPartitionStatSet(partitionStatSet);
+
+    return buildCalc;
+  }
+
   private void setupOutputContainerSchema() {
 
     if (buildSchema != null && ! semiJoin ) {
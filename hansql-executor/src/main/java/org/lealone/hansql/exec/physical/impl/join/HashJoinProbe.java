@@ -44,6 +44,11 @@ public interface HashJoinProbe {
                           VectorContainer container, HashJoinBatch.HashJoinSpilledPartition[] spilledInners,
                           boolean buildSideIsEmpty, int numPartitions, int rightHVColPosition);
   int  probeAndProject() throws SchemaChangeException;
+  /**
+   * @return true if the last {@link #probeAndProject()} stopped because the probe side returned NOT_YET,
+   *         the next call asks the probe side again
+   */
+  boolean isProbeYielded();
   void changeToFinalProbeState();
   void setTargetOutputCount(int targetOutputCount);
   int getOutputCount();
@@ -61,6 +61,8 @@ public abstract class HashJoinProbeTemplate implements HashJoinProbe {
 
   // Number of records in the output container
   private int outputRecords;
+  // set when the probe side returned NOT_YET, the probe goes on at the next probeAndProject()
+  private boolean probeYielded;
 
   // Indicate if we should drain the next record from the probe side
   private boolean getNextRecord = true;
@@ -240,10 +242,14 @@ public abstract class HashJoinProbeTemplate implements HashJoinProbe {
         }
 
         IterOutcome leftUpstream = outgoingJoinBatch.next(HashJoinHelper.LEFT_INPUT, probeBatch);
+        if (leftUpstream == IterOutcome.NOT_YET) {
+          // The probe side yielded, the hash join returns what it has and asks it again at the next call
+          probeYielded = true;
+          return;
+        }
 
         switch (leftUpstream) {
           case NONE:
-          case NOT_YET:
           case STOP:
             recordsProcessed = 0;
             recordsToProcess = 0;
@@ -407,6 +413,7 @@ public abstract class HashJoinProbeTemplate implements HashJoinProbe {
   public int probeAndProject() throws SchemaChangeException {
 
     outputRecords = 0;
+    probeYielded = false;
 
     // When handling spilled partitions, the state becomes DONE at the end of each partition
     if ( probeState == ProbeState.DONE ) {
@@ -415,6 +422,9 @@ public abstract class HashJoinProbeTemplate implements HashJoinProbe {
 
     if (probeState == ProbeState.PROBE_PROJECT) {
       executeProbePhase();
+      if (probeYielded) {
+        return outputRecords;
+      }
     }
 
     if (probeState == ProbeState.PROJECT_RIGHT) {
@@ -448,6 +458,11 @@ public abstract class HashJoinProbeTemplate implements HashJoinProbe {
     return outputRecords;
   }
 
+  @Override
+  public boolean isProbeYielded() {
+    return probeYielded;
+  }
+
   @Override
   public void changeToFinalProbeState() {
     // We are done with the (left) probe phase.
@@ -177,10 +177,12 @@ public class NestedLoopJoinBatch extends AbstractBinaryRecordBatch<NestedLoopJoi
             break;
           case OUT_OF_MEMORY:
             return IterOutcome.OUT_OF_MEMORY;
+          case NOT_YET:
+            // the right side yielded, the next call goes on draining it
+            return IterOutcome.NOT_YET;
           case NONE:
           case STOP:
             //TODO we got a STOP, shouldn't we stop immediately ?
-          case NOT_YET:
             drainRight = false;
             break;
         }
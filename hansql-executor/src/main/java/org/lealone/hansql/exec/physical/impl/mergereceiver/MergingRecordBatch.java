@@ -81,6 +81,8 @@ import org.lealone.hansql.optimizer.rel.RelFieldCollation.Direction;
 import com.sun.codemodel.JConditional;
 import com.sun.codemodel.JExpr;
 
+import io.netty.buffer.DrillBuf;
+
 /**
  * The MergingRecordBatch merges pre-sorted record batches from remote senders.
  */
@@ -130,6 +132,9 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
         this.config = config;
         this.inputCounts = new long[config.getNumSenders()];
         this.outputCounts = new long[config.getNumSenders()];
+
+        // Register this operator's buffer allocator so that incoming buffers are owned by this allocator
+        context.getBuffers().getCollector(config.getOppositeMajorFragmentId()).setAllocator(oContext.getAllocator());
     }
 
     private RawFragmentBatch getNext(final int providerIndex) throws IOException {
@@ -279,7 +284,7 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
                 for (int i = 0; i < p; i++) {
                     RawFragmentBatch rawBatch = rawBatches.get(i);
                     if (rawBatch == null || rawBatch.getHeader().getDef().getFieldCount() == 0) {
-                        rawBatch = new RawFragmentBatch(dummyHeader, null);
+                        rawBatch = new RawFragmentBatch(dummyHeader, new DrillBuf[0]);
                         rawBatches.set(i, rawBatch);
                     }
                 }
@@ -303,7 +308,7 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
                 // initialize the incoming batchLoaders
                 final UserBitShared.RecordBatchDef rbd = batch.getHeader().getDef();
                 try {
-                    batchLoaders[i].load(rbd, batch.getBody());
+                    batchLoaders[i].load(rbd, batch.getBuffers());
                     // TODO: Clean: DRILL-2933: That load(...) no longer throws
                     // SchemaChangeException, so check/clean catch clause below.
                 } catch (final SchemaChangeException e) {
@@ -371,7 +376,7 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
                         final RawFragmentBatch batch = getNext(b);
                         incomingBatches[b] = batch;
                         if (batch != null) {
-                            batchLoaders[b].load(batch.getHeader().getDef(), batch.getBody());
+                            batchLoaders[b].load(batch.getHeader().getDef(), batch.getBuffers());
                         } else {
                             batchLoaders[b].clear();
                             batchLoaders[b] = null;
@@ -448,7 +453,7 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
 
                 final UserBitShared.RecordBatchDef rbd = incomingBatches[node.batchId].getHeader().getDef();
                 try {
-                    batchLoaders[node.batchId].load(rbd, incomingBatches[node.batchId].getBody());
+                    batchLoaders[node.batchId].load(rbd, incomingBatches[node.batchId].getBuffers());
                     // TODO: Clean: DRILL-2933: That load(...) no longer throws
                     // SchemaChangeException, so check/clean catch clause below.
                 } catch (final SchemaChangeException ex) {
@@ -595,8 +600,7 @@ public class MergingRecordBatch extends AbstractRecordBatch<MergingReceiverPOP>
                     .setMinorFragmentId(providingEndpoint.getId()).build();
             final FinishedReceiver finishedReceiver = FinishedReceiver.newBuilder().setReceiver(context.getHandle())
                     .setSender(sender).build();
-            // context.getController().getTunnel(providingEndpoint.getEndpoint())
-            // .informReceiverFinished(new OutcomeListener(), finishedReceiver);
+            context.getDataTunnel(providingEndpoint.getEndpoint()).informReceiverFinished(finishedReceiver);
         }
     }
 
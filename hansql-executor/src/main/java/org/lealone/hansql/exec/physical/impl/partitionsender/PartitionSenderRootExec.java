@@ -35,6 +35,7 @@ import org.lealone.hansql.exec.exception.SchemaChangeException;
 import org.lealone.hansql.exec.expr.ClassGenerator;
 import org.lealone.hansql.exec.expr.CodeGenerator;
 import org.lealone.hansql.exec.expr.ExpressionTreeMaterializer;
+import org.lealone.hansql.exec.ops.AccountingDataTunnel;
 import org.lealone.hansql.exec.ops.ExchangeFragmentContext;
 import org.lealone.hansql.exec.ops.MetricDef;
 import org.lealone.hansql.exec.ops.OperatorStats;
@@ -363,13 +364,13 @@ public class PartitionSenderRootExec extends BaseRootExec {
 
         FragmentHandle handle = context.getHandle();
         for (MinorFragmentEndpoint destination : popConfig.getDestinations()) {
-            // AccountingDataTunnel tunnel = context.getDataTunnel(destination.getEndpoint());
+            AccountingDataTunnel tunnel = context.getDataTunnel(destination.getEndpoint());
             FragmentWritableBatch writableBatch = FragmentWritableBatch.getEmptyBatchWithSchema(isLast,
                     handle.getQueryId(), handle.getMajorFragmentId(), handle.getMinorFragmentId(),
                     operator.getOppositeMajorFragmentId(), destination.getId(), schema);
             stats.startWait();
             try {
-                // tunnel.sendRecordBatch(writableBatch);
+                tunnel.sendRecordBatch(writableBatch);
             } finally {
                 stats.stopWait();
             }
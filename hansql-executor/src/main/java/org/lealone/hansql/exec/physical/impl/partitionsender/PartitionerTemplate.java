@@ -30,6 +30,7 @@ import org.lealone.hansql.exec.compile.sig.RuntimeOverridden;
 import org.lealone.hansql.exec.exception.SchemaChangeException;
 import org.lealone.hansql.exec.expr.ClassGenerator;
 import org.lealone.hansql.exec.memory.BufferAllocator;
+import org.lealone.hansql.exec.ops.AccountingDataTunnel;
 import org.lealone.hansql.exec.ops.ExchangeFragmentContext;
 import org.lealone.hansql.exec.ops.FragmentContext;
 import org.lealone.hansql.exec.ops.OperatorContext;
@@ -109,9 +110,9 @@ public abstract class PartitionerTemplate implements Partitioner {
             // create outgoingBatches only for subset of Destination Points
             if (fieldId >= start && fieldId < end) {
                 logger.debug("start: {}, count: {}, fieldId: {}", start, end, fieldId);
-                // outgoingBatches.add(newOutgoingRecordBatch(stats, popConfig,
-                // context.getDataTunnel(destination.getEndpoint()), context, oContext.getAllocator(),
-                // destination.getId()));
+                outgoingBatches.add(newOutgoingRecordBatch(stats, popConfig,
+                        context.getDataTunnel(destination.getEndpoint()), context, oContext.getAllocator(),
+                        destination.getId()));
             }
             fieldId++;
         }
@@ -145,7 +146,8 @@ public abstract class PartitionerTemplate implements Partitioner {
      */
 
     protected OutgoingRecordBatch newOutgoingRecordBatch(OperatorStats stats, HashPartitionSender operator,
-            Object tunnel, FragmentContext context, BufferAllocator allocator, int oppositeMinorFragmentId) {
+            AccountingDataTunnel tunnel, FragmentContext context, BufferAllocator allocator,
+            int oppositeMinorFragmentId) {
         return this.injectMembers(
                 new OutgoingRecordBatch(stats, operator, tunnel, context, allocator, oppositeMinorFragmentId));
     }
@@ -250,7 +252,7 @@ public abstract class PartitionerTemplate implements Partitioner {
 
     public class OutgoingRecordBatch implements PartitionOutgoingBatch, VectorAccessible {
 
-        // private final AccountingDataTunnel tunnel;
+        private final AccountingDataTunnel tunnel;
         private final HashPartitionSender operator;
         private final FragmentContext context;
         private final BufferAllocator allocator;
@@ -263,12 +265,12 @@ public abstract class PartitionerTemplate implements Partitioner {
         private int recordCount;
         private int totalRecords;
 
-        public OutgoingRecordBatch(OperatorStats stats, HashPartitionSender operator, Object tunnel,
+        public OutgoingRecordBatch(OperatorStats stats, HashPartitionSender operator, AccountingDataTunnel tunnel,
                 FragmentContext context, BufferAllocator allocator, int oppositeMinorFragmentId) {
             this.context = context;
             this.allocator = allocator;
             this.operator = operator;
-            // this.tunnel = tunnel;
+            this.tunnel = tunnel;
             this.stats = stats;
             this.oppositeMinorFragmentId = oppositeMinorFragmentId;
         }
@@ -349,7 +351,7 @@ public abstract class PartitionerTemplate implements Partitioner {
             updateStats(writableBatch);
             stats.startWait();
             try {
-                // tunnel.sendRecordBatch(writableBatch);
+                tunnel.sendRecordBatch(writableBatch);
             } finally {
                 stats.stopWait();
             }
@@ -145,6 +145,9 @@ public class ProducerConsumerBatch extends AbstractRecordBatch<ProducerConsumer>
               queue.put(wrapper);
               wrapper = null;
               break;
+            case NOT_YET:
+              // the producer runs on its own thread, the upstream never yields on it
+              break;
             default:
               throw new UnsupportedOperationException();
           }
@@ -99,7 +99,14 @@ public class SortBatch extends AbstractRecordBatch<Sort> {
 
     try{
       outer: while (true) {
-        IterOutcome upstream = incoming.next();
+        IterOutcome upstream;
+        // this sort does not yield, the upstream must not yield either
+        context.getExecutorState().disableYield();
+        try {
+          upstream = incoming.next();
+        } finally {
+          context.getExecutorState().enableYield();
+        }
         switch (upstream) {
         case NONE:
           break outer;
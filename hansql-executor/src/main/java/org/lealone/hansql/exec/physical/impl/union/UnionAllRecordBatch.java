@@ -127,6 +127,7 @@ public class UnionAllRecordBatch extends AbstractBinaryRecordBatch<UnionAll> {
         case NONE:
         case OUT_OF_MEMORY:
         case STOP:
+        case NOT_YET:
           return upstream;
         case OK_NEW_SCHEMA:
           return doWork(batchStatus, true);
@@ -397,6 +398,9 @@ public class UnionAllRecordBatch extends AbstractBinaryRecordBatch<UnionAll> {
           case STOP:
             batchStatusStack.pop();
             return Pair.of(outcome, topStatus);
+          case NOT_YET:
+            // the input yielded, the next call asks it again
+            return Pair.of(outcome, topStatus);
           case NONE:
             batchStatusStack.pop();
             if (batchStatusStack.isEmpty()) {
@@ -88,8 +88,8 @@ public class UnorderedReceiverBatch implements CloseableRecordBatch {
         this.stats.setLongStat(Metric.NUM_SENDERS, config.getNumSenders());
         this.config = config;
 
-        // // Register this operator's buffer allocator so that incoming buffers are owned by this allocator
-        // context.getBuffers().getCollector(config.getOppositeMajorFragmentId()).setAllocator(oContext.getAllocator());
+        // Register this operator's buffer allocator so that incoming buffers are owned by this allocator
+        context.getBuffers().getCollector(config.getOppositeMajorFragmentId()).setAllocator(oContext.getAllocator());
     }
 
     @Override
@@ -190,7 +190,7 @@ public class UnorderedReceiverBatch implements CloseableRecordBatch {
             }
 
             final RecordBatchDef rbd = batch.getHeader().getDef();
-            final boolean schemaChanged = batchLoader.load(rbd, batch.getBody());
+            final boolean schemaChanged = batchLoader.load(rbd, batch.getBuffers());
             // TODO: Clean: DRILL-2933: That load(...) no longer throws
             // SchemaChangeException, so check/clean catch clause below.
             stats.addLongStat(Metric.BYTES_RECEIVED, batch.getByteCount());
@@ -248,9 +248,7 @@ public class UnorderedReceiverBatch implements CloseableRecordBatch {
                     .setMinorFragmentId(providingEndpoint.getId()).build();
             final FinishedReceiver finishedReceiver = FinishedReceiver.newBuilder().setReceiver(context.getHandle())
                     .setSender(sender).build();
-            // context.getController()
-            // .getTunnel(providingEndpoint.getEndpoint())
-            // .informReceiverFinished(new OutcomeListener(), finishedReceiver);
+            context.getDataTunnel(providingEndpoint.getEndpoint()).informReceiverFinished(finishedReceiver);
         }
     }
 
@@ -24,6 +24,8 @@ import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
 import org.lealone.hansql.exec.physical.config.UnorderedReceiver;
 import org.lealone.hansql.exec.physical.impl.BatchCreator;
 import org.lealone.hansql.exec.record.RecordBatch;
+import org.lealone.hansql.exec.work.batch.IncomingBuffers;
+import org.lealone.hansql.exec.work.batch.RawBatchBuffer;
 
 public class UnorderedReceiverCreator implements BatchCreator<UnorderedReceiver> {
 
@@ -31,12 +33,12 @@ public class UnorderedReceiverCreator implements BatchCreator<UnorderedReceiver>
     public UnorderedReceiverBatch getBatch(ExecutorFragmentContext context, UnorderedReceiver receiver,
             List<RecordBatch> children) throws ExecutionSetupException {
         assert children == null || children.isEmpty();
-        // IncomingBuffers bufHolder = context.getBuffers();
-        // assert bufHolder != null : "IncomingBuffers must be defined for any place a receiver is declared.";
-        //
-        // RawBatchBuffer[] buffers = bufHolder.getCollector(receiver.getOppositeMajorFragmentId()).getBuffers();
-        // assert buffers.length == 1;
-        // RawBatchBuffer buffer = buffers[0];
-        return new UnorderedReceiverBatch(context, null, receiver);
+        IncomingBuffers bufHolder = context.getBuffers();
+        assert bufHolder != null : "IncomingBuffers must be defined for any place a receiver is declared.";
+
+        RawBatchBuffer[] buffers = bufHolder.getCollector(receiver.getOppositeMajorFragmentId()).getBuffers();
+        assert buffers.length == 1;
+        RawBatchBuffer buffer = buffers[0];
+        return new UnorderedReceiverBatch(context, buffer, receiver);
     }
 }
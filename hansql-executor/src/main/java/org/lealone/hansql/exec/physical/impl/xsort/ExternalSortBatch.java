@@ -319,7 +319,13 @@ public class ExternalSortBatch extends AbstractRecordBatch<ExternalSort> {
         if (first) {
           upstream = IterOutcome.OK_NEW_SCHEMA;
         } else {
-          upstream = next(incoming);
+          // this sort does not yield, the upstream must not yield either
+          context.getExecutorState().disableYield();
+          try {
+            upstream = next(incoming);
+          } finally {
+            context.getExecutorState().enableYield();
+          }
         }
         if (upstream == IterOutcome.OK && sorter == null) {
           upstream = IterOutcome.OK_NEW_SCHEMA;
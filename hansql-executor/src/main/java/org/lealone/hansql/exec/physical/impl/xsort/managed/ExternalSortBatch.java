@@ -19,6 +19,7 @@ package org.lealone.hansql.exec.physical.impl.xsort.managed;
 
 import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.EMIT;
 import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.NONE;
+import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.NOT_YET;
 import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.OK;
 import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.OK_NEW_SCHEMA;
 import static org.lealone.hansql.exec.record.RecordBatch.IterOutcome.STOP;
@@ -193,6 +194,14 @@ public class ExternalSortBatch extends AbstractRecordBatch<ExternalSort> {
   private enum SortState { START, LOAD, DELIVER, DONE }
   private SortState sortState = SortState.START;
 
+  /**
+   * The load phase yielded between two incoming batches, or the merge
+   * yielded between two steps. The next call goes on from there.
+   */
+
+  private boolean loadSuspended;
+  private boolean mergeSuspended;
+
   private SortConfig sortConfig;
 
   private SortImpl sortImpl;
@@ -314,7 +323,7 @@ public class ExternalSortBatch extends AbstractRecordBatch<ExternalSort> {
     case START:
       return load();
     case LOAD:
-      if (!this.retainInMemoryBatchesOnNone) {
+      if (!loadSuspended && !mergeSuspended && !this.retainInMemoryBatchesOnNone) {
         resetSortState();
       }
       return (sortState == SortState.DONE) ? NONE : load();
@@ -356,21 +365,41 @@ public class ExternalSortBatch extends AbstractRecordBatch<ExternalSort> {
     // Loop over all input batches
 
     IterOutcome result = OK;
-    for (;;) {
-      result = loadBatch();
+    if (mergeSuspended) {
+      mergeSuspended = false;
+      result = lastKnownOutcome;
+    } else {
+      loadSuspended = false;
+      for (;;) {
+        result = loadBatch();
 
-      // NONE/EMIT means all batches have been read at this record boundary
-      if (result == NONE || result == EMIT) {
-        break; }
+        // NONE/EMIT means all batches have been read at this record boundary
+        if (result == NONE || result == EMIT) {
+          break; }
 
-      // if result is STOP that means something went wrong.
+        // if result is STOP that means something went wrong.
 
-      if (result == STOP) {
-        return result; }
+        if (result == STOP) {
+          return result; }
+
+        // The upstream yielded, or the time slice of the fragment is used up.
+        // The next call reads the next batch.
+
+        if (result == NOT_YET || context.getExecutorState().shouldYield()) {
+          loadSuspended = true;
+          return NOT_YET; }
+      }
     }
 
     // Anything to actually sort?
     resultsIterator = sortImpl.startMerge();
+    if (resultsIterator == null) {
+
+      // The merge yielded between two steps
+
+      mergeSuspended = true;
+      return NOT_YET;
+    }
     if (! resultsIterator.next()) {
       // If there is no records to sort and we got NONE then just return NONE
       if (result == NONE) {
@@ -412,6 +441,7 @@ public class ExternalSortBatch extends AbstractRecordBatch<ExternalSort> {
     switch (lastKnownOutcome) {
     case NONE:
     case STOP:
+    case NOT_YET:
       return lastKnownOutcome;
     case OK_NEW_SCHEMA:
       firstBatchOfSchema = true;
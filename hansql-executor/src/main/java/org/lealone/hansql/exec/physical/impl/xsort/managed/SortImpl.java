@@ -418,6 +418,14 @@ public class SortImpl {
 
   public SortMetrics getMetrics() { return metrics; }
 
+  /**
+   * Merges the loaded batches.
+   *
+   * @return an iterator over the merged batches, or null if the merge yielded
+   * between two consolidation steps because the time slice of the fragment
+   * is used up. Call again to go on with the merge.
+   */
+
   public SortResults startMerge() {
     if (metrics.getInputRowCount() == 0) {
       return new EmptyResults(outputBatch);
@@ -556,6 +564,11 @@ public class SortImpl {
       default:
         throw new IllegalStateException("Unexpected action: " + task.action);
       }
+
+      // Runs are spilled now, so the next call comes back to this loop
+
+      if (context.getFragmentContext().getExecutorState().shouldYield()) {
+        return null; }
     }
 
     int mergeRowCount = memManager.getMergeBatchRowCount();
@@ -22,6 +22,7 @@ import java.util.Set;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.deser.std.StdDelegatingDeserializer;
@@ -96,6 +97,17 @@ public class PhysicalPlanReader {
     return physicalPlanReader.readValue(json);
   }
 
+  /**
+   * Reads a plan planned with the markers of the dynamic parameters, the values are bound into
+   * the operators that are read, the tree itself is not changed.
+   *
+   * @param parameters the values of the parameters, or null if the plan has no parameter
+   */
+  public PhysicalPlan readPhysicalPlan(JsonNode plan, QueryParameters parameters) throws IOException {
+    ObjectReader reader = parameters == null ? physicalPlanReader : parameters.bind(physicalPlanReader);
+    return reader.readValue(plan);
+  }
+
   public FragmentRoot readFragmentRoot(String json) throws IOException {
     logger.debug("Attempting to read {}", json);
     PhysicalOperator op = operatorReader.readValue(json);
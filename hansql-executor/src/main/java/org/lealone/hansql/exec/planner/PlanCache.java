@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.planner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.drill.shaded.guava.com.google.common.cache.Cache;
+import org.apache.drill.shaded.guava.com.google.common.cache.CacheBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The physical plans of the SQL queries, shared by all the sessions of a drillbit,
+ * so a query that is run again is neither parsed nor planned again, see {@link SqlPlanner}.
+ * <p>
+ * A plan is found by the normalized SQL text, the user, the versions of the options of the query and the schema
+ * version of the session. A DDL statement changes the schema version and setting an option changes the versions
+ * of the options, so the plans built before are not found anymore and are evicted as the least recently used ones. The plans are kept as JSON trees,
+ * because the parallelizer modifies the operators of the plan it is given, each query reads its own operators
+ * from the tree without parsing JSON text again.
+ * <p>
+ * A plan that holds values read when it was planned, such as the row count of a table answered by a direct scan,
+ * is not cached. The group scans of a plan are created again when it is read, so what they compute from the data,
+ * such as the key ranges of the partitions of a Lealone scan, is up to date.
+ * <p>
+ * The number of plans is limited by the planner.plan_cache_size option, 0, the default, disables the cache.
+ */
+public class PlanCache {
+
+    /**
+     * A plan of the cache.
+     */
+    static class Entry {
+        final JsonNode plan;
+        final String textPlan;
+        // the binary exponents of the row counts of the scans of the plan, in operator order
+        final int[] scanRowCountExponents;
+        // whether planning reset the query.max_rows option, because a limit could not be applied to the query
+        final boolean maxRowsReset;
+
+        Entry(JsonNode plan, String textPlan, int[] scanRowCountExponents, boolean maxRowsReset) {
+            this.plan = plan;
+            this.textPlan = textPlan;
+            this.scanRowCountExponents = scanRowCountExponents;
+            this.maxRowsReset = maxRowsReset;
+        }
+    }
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong stales = new AtomicLong();
+
+    private volatile Cache<String, Entry> cache;
+    private volatile long maxSize;
+
+    /**
+     * @return the plan of the key, or null if the plan is not cached
+     */
+    Entry get(String key, long maxSize) {
+        Cache<String, Entry> cache = getCache(maxSize);
+        Entry entry = cache == null ? null : cache.getIfPresent(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    void put(String key, Entry entry, long maxSize) {
+        Cache<String, Entry> cache = getCache(maxSize);
+        if (cache != null) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Drops a plan whose scans do not read about as many rows as when it was planned.
+     * Counted as a miss, the lookup was counted as a hit.
+     */
+    void invalidate(String key) {
+        Cache<String, Entry> cache = this.cache;
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+        hits.decrementAndGet();
+        misses.incrementAndGet();
+        stales.incrementAndGet();
+    }
+
+    private Cache<String, Entry> getCache(long maxSize) {
+        if (maxSize != this.maxSize) {
+            synchronized (this) {
+                if (maxSize != this.maxSize) {
+                    cache = maxSize <= 0 ? null
+                            : CacheBuilder.newBuilder().maximumSize(maxSize).<String, Entry> removalListener(n -> {
+                                if (n.wasEvicted()) {
+                                    evictions.incrementAndGet();
+                                }
+                            }).build();
+                    this.maxSize = maxSize;
+                }
+            }
+        }
+        return cache;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of plans that were planned again, because the row counts of their scans changed
+     */
+    public long getStales() {
+        return stales.get();
+    }
+
+    public long getSize() {
+        Cache<String, Entry> cache = this.cache;
+        return cache == null ? 0 : cache.size();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Collapses the white space outside of the literals and quoted identifiers,
+     * so queries that are only formatted differently share a plan.
+     */
+    public static String normalize(String sql) {
+        StringBuilder buff = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0, length = sql.length(); i < length; i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+            }
+            if (space) {
+                if (buff.length() > 0) {
+                    buff.append(' ');
+                }
+                space = false;
+            }
+            buff.append(c);
+        }
+        return buff.toString();
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.planner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.lealone.hansql.common.expression.AnyValueExpression;
+import org.lealone.hansql.common.expression.BooleanOperator;
+import org.lealone.hansql.common.expression.CastExpression;
+import org.lealone.hansql.common.expression.ConvertExpression;
+import org.lealone.hansql.common.expression.FunctionCall;
+import org.lealone.hansql.common.expression.IfExpression;
+import org.lealone.hansql.common.expression.IfExpression.IfCondition;
+import org.lealone.hansql.common.expression.LogicalExpression;
+import org.lealone.hansql.common.expression.ValueExpressions;
+import org.lealone.hansql.common.expression.ValueExpressions.IntExpression;
+import org.lealone.hansql.common.expression.visitors.AbstractExprVisitor;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * The values of the dynamic parameters (the ? markers) of a query, bound when the query is executed.
+ * <p>
+ * A query with parameters is planned with the markers, so its plan can be cached and reused with other values.
+ * The planner turns the i-th marker into a call of the {@link #FUNCTION_NAME} function with the argument i,
+ * cast to the type the validator derived for the parameter, and a storage plugin that pushes a condition
+ * on a parameter into a scan keeps {@link #getMarker(int)} in place of the value. The values are bound while
+ * the plan is read for execution, see {@link #bind(ObjectReader)}: the expressions are rewritten once they are
+ * parsed and the fields deserialized with a {@link ValueDeserializer} resolve their markers.
+ * <p>
+ * If the query can not be planned with the markers, the query with the values inlined as literals
+ * is planned instead.
+ */
+public class QueryParameters {
+
+    public static final String FUNCTION_NAME = "hansql_parameter";
+
+    private static final String MARKER_PREFIX = FUNCTION_NAME + "(";
+
+    private final List<String> values;
+    private final String literalSql;
+
+    /**
+     * @param values the values as strings, a value is null if it can only be inlined into the SQL text,
+     *               e.g. NULL or a binary value
+     * @param literalSql the query with the values inlined as SQL literals
+     */
+    public QueryParameters(List<String> values, String literalSql) {
+        this.values = values;
+        this.literalSql = literalSql;
+    }
+
+    public List<String> getValues() {
+        return values;
+    }
+
+    public String getLiteralSql() {
+        return literalSql;
+    }
+
+    /**
+     * @return true if all the values can be bound into a plan planned with the markers
+     */
+    public boolean isBindable() {
+        return !values.contains(null);
+    }
+
+    /**
+     * @return the value a pushed down condition on the i-th parameter keeps in place of the value
+     */
+    public static String getMarker(int index) {
+        return MARKER_PREFIX + index + ")";
+    }
+
+    public static boolean isMarker(String value) {
+        return getMarkerIndex(value) >= 0;
+    }
+
+    /**
+     * @return the index of the parameter of the marker, or -1 if the value is not a marker
+     */
+    private static int getMarkerIndex(String value) {
+        if (value == null || !value.startsWith(MARKER_PREFIX) || !value.endsWith(")")
+                || value.length() == MARKER_PREFIX.length() + 1) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = MARKER_PREFIX.length(), end = value.length() - 1; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9' || index > (Integer.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            index = index * 10 + c - '0';
+        }
+        return index;
+    }
+
+    /**
+     * Returns a reader of the plans that binds the values of this query into the plan it reads.
+     * The JSON of the plan is not changed, so a cached plan can be read with the values of every query.
+     */
+    public ObjectReader bind(ObjectReader reader) {
+        return reader.withAttribute(QueryParameters.class, this).withAttribute(LogicalExpression.De.REWRITER,
+                new Binder());
+    }
+
+    private String getValue(int index) {
+        if (index >= values.size()) {
+            throw new IllegalArgumentException("No value for the parameter " + (index + 1));
+        }
+        return values.get(index);
+    }
+
+    /**
+     * Deserializes a string of a plan that may be a marker, the marker is replaced by the value
+     * of the parameter when the plan is read with {@link #bind(ObjectReader)}.
+     */
+    @SuppressWarnings("serial")
+    public static class ValueDeserializer extends StdDeserializer<String> {
+
+        public ValueDeserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            String value = p.getValueAsString();
+            int index = getMarkerIndex(value);
+            if (index < 0) {
+                return value;
+            }
+            QueryParameters parameters = (QueryParameters) ctxt.getAttribute(QueryParameters.class);
+            return parameters == null ? value : parameters.getValue(index);
+        }
+    }
+
+    /**
+     * Replaces the calls of {@link #FUNCTION_NAME} by the values as string literals,
+     * the casts around the calls convert them to the types of the parameters.
+     */
+    private class Binder extends AbstractExprVisitor<LogicalExpression, Void, RuntimeException> {
+
+        @Override
+        public LogicalExpression visitFunctionCall(FunctionCall call, Void value) {
+            if (FUNCTION_NAME.equals(call.getName()) && call.args.size() == 1
+                    && call.args.get(0) instanceof IntExpression) {
+                String v = getValue(((IntExpression) call.args.get(0)).getInt());
+                return ValueExpressions.getChar(v, v.length());
+            }
+            return new FunctionCall(call.getName(), visitArgs(call.args), call.getPosition());
+        }
+
+        @Override
+        public LogicalExpression visitBooleanOperator(BooleanOperator op, Void value) {
+            return new BooleanOperator(op.getName(), visitArgs(op.args), op.getPosition());
+        }
+
+        @Override
+        public LogicalExpression visitIfExpression(IfExpression ifExpr, Void value) {
+            IfCondition condition = new IfCondition(ifExpr.ifCondition.condition.accept(this, null),
+                    ifExpr.ifCondition.expression.accept(this, null));
+            return IfExpression.newBuilder().setPosition(ifExpr.getPosition()).setIfCondition(condition)
+                    .setElse(ifExpr.elseExpression.accept(this, null)).setOutputType(ifExpr.outputType).build();
+        }
+
+        @Override
+        public LogicalExpression visitCastExpression(CastExpression e, Void value) {
+            return new CastExpression(e.getInput().accept(this, null), e.getMajorType(), e.getPosition());
+        }
+
+        @Override
+        public LogicalExpression visitConvertExpression(ConvertExpression e, Void value) {
+            return new ConvertExpression(e.getConvertFunction(), e.getEncodingType(), e.getInput().accept(this, null),
+                    e.getPosition());
+        }
+
+        @Override
+        public LogicalExpression visitAnyValueExpression(AnyValueExpression e, Void value) {
+            return new AnyValueExpression(e.getInput().accept(this, null), e.getPosition());
+        }
+
+        @Override
+        public LogicalExpression visitUnknown(LogicalExpression e, Void value) {
+            // a constant or a column, there is no parameter in it
+            return e;
+        }
+
+        private List<LogicalExpression> visitArgs(List<LogicalExpression> args) {
+            List<LogicalExpression> list = new ArrayList<>(args.size());
+            for (LogicalExpression arg : args) {
+                list.add(arg.accept(this, null));
+            }
+            return list;
+        }
+    }
+}
@@ -18,6 +18,8 @@
 package org.lealone.hansql.exec.planner;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -31,6 +33,8 @@ import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.ops.QueryContext;
 import org.lealone.hansql.exec.ops.QueryContext.SqlStatementType;
 import org.lealone.hansql.exec.physical.PhysicalPlan;
+import org.lealone.hansql.exec.physical.base.GroupScan;
+import org.lealone.hansql.exec.physical.base.PhysicalOperator;
 import org.lealone.hansql.exec.physical.config.Screen;
 import org.lealone.hansql.exec.planner.sql.QueryInputException;
 import org.lealone.hansql.exec.planner.sql.SqlConverter;
@@ -50,6 +54,7 @@ import org.lealone.hansql.exec.planner.sql.parser.DrillSqlDescribeTable;
 import org.lealone.hansql.exec.planner.sql.parser.SqlCreateTable;
 import org.lealone.hansql.exec.planner.sql.parser.SqlSchema;
 import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
+import org.lealone.hansql.exec.proto.UserBitShared.DrillPBError.ErrorType;
 import org.lealone.hansql.exec.store.direct.DirectGroupScan;
 import org.lealone.hansql.exec.store.pojo.PojoRecordReader;
 import org.lealone.hansql.exec.testing.ControlsInjector;
@@ -68,6 +73,8 @@ import org.lealone.hansql.optimizer.sql.parser.SqlParserPos;
 import org.lealone.hansql.optimizer.tools.RelConversionException;
 import org.lealone.hansql.optimizer.tools.ValidationException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 public class SqlPlanner {
 
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SqlPlanner.class);
@@ -112,6 +119,45 @@ public class SqlPlanner {
         }
     }
 
+    /**
+     * Converts sql query string into query physical plan.
+     * A query with dynamic parameters is planned with the parameter markers and the values are bound into the plan,
+     * if that fails the query with the values inlined is planned instead.
+     *
+     * @param context query context
+     * @param sql sql query
+     * @param textPlan text plan
+     * @return query physical plan
+     */
+    private static PhysicalPlan convertPlan(QueryContext context, String sql, Pointer<String> textPlan)
+            throws SqlExecutorSetupException, RelConversionException, IOException, ValidationException {
+        final QueryParameters parameters = context.getSession().getQueryParameters();
+        if (parameters == null) {
+            return convertPlan(context, sql, textPlan, null);
+        }
+        if (parameters.isBindable()) {
+            try {
+                return convertPlan(context, sql, textPlan, parameters);
+            } catch (ValidationException e) {
+                logger.debug("Failed to plan the query with its parameter markers, planning it with the values", e);
+            } catch (UserException e) {
+                if (!isParameterTypeError(e)) {
+                    throw e;
+                }
+                logger.debug("Failed to plan the query with its parameter markers, planning it with the values", e);
+            }
+        }
+        return convertPlan(context, parameters.getLiteralSql(), textPlan, null);
+    }
+
+    /**
+     * @return true if the error may be caused by a parameter marker, the validator can not derive the type
+     *         of a parameter or the type can not be cast to, the query may be planned with the values inlined
+     */
+    private static boolean isParameterTypeError(UserException e) {
+        return e.getErrorType() == ErrorType.VALIDATION || e.getErrorType() == ErrorType.PLAN;
+    }
+
     /**
      * Converts sql query string into query physical plan.
      * In case of any errors (that might occur due to missing function implementation),
@@ -123,13 +169,22 @@ public class SqlPlanner {
      * @param context query context
      * @param sql sql query
      * @param textPlan text plan
+     * @param parameters the values of the parameters of the query, or null if they are not bound into the plan
      * @return query physical plan
      */
-    private static PhysicalPlan convertPlan(QueryContext context, String sql, Pointer<String> textPlan)
+    private static PhysicalPlan convertPlan(QueryContext context, String sql, Pointer<String> textPlan,
+            QueryParameters parameters)
             throws SqlExecutorSetupException, RelConversionException, IOException, ValidationException {
+        final String cacheKey = getPlanCacheKey(context, sql);
+        if (cacheKey != null) {
+            final PhysicalPlan plan = getCachedPlan(context, cacheKey, textPlan, parameters);
+            if (plan != null) {
+                return plan;
+            }
+        }
         Pointer<String> textPlanCopy = textPlan == null ? null : new Pointer<>(textPlan.value);
         try {
-            return getQueryPlan(context, sql, textPlan);
+            return getQueryPlan(context, sql, textPlan, cacheKey, parameters);
         } catch (Exception e) {
             logger.trace("There was an error during conversion into physical plan. "
                     + "Will sync remote and local function registries if needed and retry "
@@ -139,7 +194,7 @@ public class SqlPlanner {
                 context.reloadDrillOperatorTable();
                 logger.trace(
                         "Local function registry was synchronized with remote. Trying to find function one more time.");
-                return getQueryPlan(context, sql, textPlanCopy);
+                return getQueryPlan(context, sql, textPlanCopy, cacheKey, parameters);
             }
             throw e;
         }
@@ -151,14 +206,18 @@ public class SqlPlanner {
      * @param context query context
      * @param sql sql query
      * @param textPlan text plan
+     * @param cacheKey the key the plan of a query is cached with, null if the plan is not cached
+     * @param parameters the values of the parameters of the query, or null if they are not bound into the plan
      * @return query physical plan
      */
-    private static PhysicalPlan getQueryPlan(QueryContext context, String sql, Pointer<String> textPlan)
+    private static PhysicalPlan getQueryPlan(QueryContext context, String sql, Pointer<String> textPlan,
+            String cacheKey, QueryParameters parameters)
             throws SqlExecutorSetupException, RelConversionException, IOException, ValidationException {
 
         final SqlConverter parser = new SqlConverter(context);
         injector.injectChecked(context.getExecutionControls(), "sql-parsing", SqlExecutorSetupException.class);
         SqlNode sqlNode = parser.parse(sql);
+        final boolean maxRowsSet = context.getOptions().getOption(ExecConstants.QUERY_MAX_ROWS).num_val > 0;
         sqlNode = checkAndApplyAutoLimit(sqlNode, context);
         final AbstractSqlHandler handler;
         final SqlHandlerConfig config = new SqlHandlerConfig(context, parser);
@@ -227,7 +286,103 @@ public class SqlPlanner {
             context.getOptions().setLocalOption(ExecConstants.RETURN_RESULT_SET_FOR_DDL, true);
         }
 
-        return handler.getPlan(sqlNode);
+        final PhysicalPlan plan = handler.getPlan(sqlNode);
+        JsonNode tree = null;
+        // only the plans of the queries are cached, the other statements are not run repeatedly
+        if (cacheKey != null && handler.getClass() == DefaultSqlHandler.class
+                && sqlNode.getKind().belongsTo(SqlKind.QUERY) && !context.isContextInformationUsed()
+                && !hasDirectScan(plan)) {
+            final boolean maxRowsReset = maxRowsSet
+                    && context.getOptions().getOption(ExecConstants.QUERY_MAX_ROWS).num_val == 0;
+            tree = context.getLpPersistence().getMapper().valueToTree(plan);
+            context.getPlanCache().put(cacheKey, new PlanCache.Entry(tree, textPlan == null ? null : textPlan.value,
+                    getScanRowCountExponents(context, plan), maxRowsReset),
+                    context.getPlannerSettings().getPlanCacheSize());
+        }
+        if (parameters != null) {
+            if (tree == null) {
+                tree = context.getLpPersistence().getMapper().valueToTree(plan);
+            }
+            return context.getPlanReader().readPhysicalPlan(tree, parameters);
+        }
+        return plan;
+    }
+
+    /**
+     * @return true if the plan reads values computed when it was planned, e.g. a row count, from a direct scan
+     */
+    private static boolean hasDirectScan(PhysicalPlan plan) {
+        for (PhysicalOperator op : plan.getSortedOperators(false)) {
+            if (op instanceof DirectGroupScan) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the key of the plan of the query in the plan cache, or null if the plan is not cached
+     */
+    private static String getPlanCacheKey(QueryContext context, String sql) {
+        final String schemaVersion = context.getSession().getSchemaVersion();
+        if (schemaVersion == null || context.getPlannerSettings().getPlanCacheSize() == 0) {
+            return null;
+        }
+        // the options of all the scopes are only compared by their versions, setting an option replans the queries
+        final String options = context.getOptions().getVersionKey();
+        if (options == null) {
+            return null;
+        }
+        return schemaVersion + '\n' + context.getQueryUserName() + '\n'
+                + context.getDrillOperatorTable().getFunctionRegistryVersion() + '\n' + options + '\n'
+                + PlanCache.normalize(sql);
+    }
+
+    private static PhysicalPlan getCachedPlan(QueryContext context, String cacheKey, Pointer<String> textPlan,
+            QueryParameters parameters) throws IOException {
+        final PlanCache cache = context.getPlanCache();
+        final PlanCache.Entry entry = cache.get(cacheKey, context.getPlannerSettings().getPlanCacheSize());
+        if (entry == null) {
+            return null;
+        }
+        // the plan is only read once, the row count approximations of its scans do not depend on the values
+        final PhysicalPlan plan = context.getPlanReader().readPhysicalPlan(entry.plan, parameters);
+        if (!Arrays.equals(entry.scanRowCountExponents, getScanRowCountExponents(context, plan))) {
+            // the tables grew or shrank, another plan may be cheaper now
+            cache.invalidate(cacheKey);
+            return null;
+        }
+        // the option changes planning would have made
+        if (entry.maxRowsReset) {
+            context.getOptions().setLocalOption(ExecConstants.QUERY_MAX_ROWS, 0);
+        }
+        if (!context.getOptions().getBoolean(ExecConstants.RETURN_RESULT_SET_FOR_DDL)) {
+            context.getOptions().setLocalOption(ExecConstants.RETURN_RESULT_SET_FOR_DDL, true);
+        }
+        context.setSQLStatementType(SqlStatementType.OTHER);
+        if (textPlan != null) {
+            textPlan.value = entry.textPlan;
+        }
+        return plan;
+    }
+
+    /**
+     * @return the binary exponents of the row counts of the scans of the plan, a plan is not reused
+     *         once the row count of one of its scans has doubled or halved
+     */
+    private static int[] getScanRowCountExponents(QueryContext context, PhysicalPlan plan) {
+        final List<Integer> exponents = new ArrayList<>();
+        for (PhysicalOperator op : plan.getSortedOperators(false)) {
+            if (op instanceof GroupScan) {
+                final double rowCount = ((GroupScan) op).getRowCountApproximation(context.getPlannerSettings());
+                exponents.add(Math.getExponent(Math.max(1, rowCount)));
+            }
+        }
+        final int[] result = new int[exponents.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = exponents.get(i);
+        }
+        return result;
     }
 
     private static SqlNode checkAndApplyAutoLimit(SqlNode sqlNode, QueryContext context) {
@@ -45,6 +45,7 @@ import org.lealone.hansql.common.types.Types;
 import org.lealone.hansql.common.types.TypeProtos.MajorType;
 import org.lealone.hansql.common.types.TypeProtos.MinorType;
 import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.planner.QueryParameters;
 import org.lealone.hansql.exec.planner.StarColumnHelper;
 import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.optimizer.rel.RelNode;
@@ -64,6 +65,7 @@ import org.lealone.hansql.optimizer.rex.RexRangeRef;
 import org.lealone.hansql.optimizer.rex.RexVisitorImpl;
 import org.lealone.hansql.optimizer.sql.SqlSyntax;
 import org.lealone.hansql.optimizer.sql.fun.SqlStdOperatorTable;
+import org.lealone.hansql.optimizer.sql.type.SqlTypeName;
 import org.lealone.hansql.optimizer.util.NlsString;
 import org.lealone.hansql.optimizer.util.TimeUnit;
 
@@ -319,7 +321,22 @@ public class DrillOptiq {
 
         @Override
         public LogicalExpression visitDynamicParam(RexDynamicParam dynamicParam) {
-            return doUnknown(dynamicParam);
+            // bound when the query is executed, see QueryParameters
+            final LogicalExpression param = FunctionCallFactory.createExpression(QueryParameters.FUNCTION_NAME,
+                    ExpressionPosition.UNKNOWN, ValueExpressions.getInt(dynamicParam.getIndex()));
+            final RelDataType type = dynamicParam.getType();
+            final MajorType castType;
+            if (type.getSqlTypeName() == SqlTypeName.VARCHAR || type.getSqlTypeName() == SqlTypeName.CHAR) {
+                // the value must not be truncated to the length of the column it is compared with
+                castType = Types.required(MinorType.VARCHAR).toBuilder().setPrecision(Types.MAX_VARCHAR_LENGTH)
+                        .build();
+            } else {
+                castType = getCastType(type);
+            }
+            if (castType == null) {
+                return doUnknown(dynamicParam);
+            }
+            return FunctionCallFactory.createCast(castType, ExpressionPosition.UNKNOWN, param);
         }
 
         @Override
@@ -334,12 +351,23 @@ public class DrillOptiq {
 
         private LogicalExpression getDrillCastFunctionFromOptiq(RexCall call) {
             LogicalExpression arg = call.getOperands().get(0).accept(this);
+            MajorType castType = getCastType(call.getType());
+            if (castType == null) {
+                return arg; // Type will be same as argument.
+            }
+            return FunctionCallFactory.createCast(castType, ExpressionPosition.UNKNOWN, arg);
+        }
+
+        /**
+         * @return the type a value is cast to, or null if the value keeps its type
+         */
+        private MajorType getCastType(RelDataType type) {
             MajorType castType;
 
-            switch (call.getType().getSqlTypeName().getName()) {
+            switch (type.getSqlTypeName().getName()) {
             case "VARCHAR":
             case "CHAR":
-                castType = Types.required(MinorType.VARCHAR).toBuilder().setPrecision(call.getType().getPrecision())
+                castType = Types.required(MinorType.VARCHAR).toBuilder().setPrecision(type.getPrecision())
                         .build();
                 break;
             case "INTEGER":
@@ -357,8 +385,8 @@ public class DrillOptiq {
                     throw UserException.unsupportedError().message(ExecConstants.DECIMAL_DISABLE_ERR_MSG).build(logger);
                 }
 
-                int precision = call.getType().getPrecision();
-                int scale = call.getType().getScale();
+                int precision = type.getPrecision();
+                int scale = type.getScale();
 
                 castType = TypeProtos.MajorType.newBuilder().setMinorType(MinorType.VARDECIMAL).setPrecision(precision)
                         .setScale(scale).build();
@@ -388,11 +416,11 @@ public class DrillOptiq {
                 castType = Types.required(MinorType.VARBINARY);
                 break;
             case "ANY":
-                return arg; // Type will be same as argument.
+                return null;
             default:
-                castType = Types.required(MinorType.valueOf(call.getType().getSqlTypeName().getName()));
+                castType = Types.required(MinorType.valueOf(type.getSqlTypeName().getName()));
             }
-            return FunctionCallFactory.createCast(castType, ExpressionPosition.UNKNOWN, arg);
+            return castType;
         }
 
         private LogicalExpression getDrillFunctionFromOptiqCall(RexCall call) {
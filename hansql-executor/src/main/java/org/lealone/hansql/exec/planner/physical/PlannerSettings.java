@@ -159,6 +159,10 @@ public class PlannerSettings implements Context{
           new OptionDescription("A factor that allows scaling the row count estimates returned from the storage/format plugin to compensate for under or over estimation."));
   // ------------------------------------------- Index planning related options END ----------------------------------------------------------------
 
+  public static final String PLAN_CACHE_SIZE_KEY = "planner.plan_cache_size";
+  public static final RangeLongValidator PLAN_CACHE_SIZE = new RangeLongValidator(PLAN_CACHE_SIZE_KEY, 0, Integer.MAX_VALUE,
+      new OptionDescription("Maximum number of physical plans of queries that are kept, so a query that is run again is not planned again. The least recently used plans are evicted first. 0 disables the cache. Default is 0."));
+
   public static final OptionValidator IDENTIFIER_MAX_LENGTH =
       new RangeLongValidator("planner.identifier_max_length", 128 /* A minimum length is needed because option names are identifiers themselves */,
                               Integer.MAX_VALUE,
@@ -465,6 +469,10 @@ public class PlannerSettings implements Context{
     return options.getOption(INDEX_MAX_INDEXES_TO_INTERSECT);
   }
 
+  public long getPlanCacheSize() {
+    return options.getOption(PLAN_CACHE_SIZE);
+  }
+
   public double getIndexStatsRowCountScalingFactor() {
     return options.getOption(INDEX_STATS_ROWCOUNT_SCALING_FACTOR);
   }
@@ -27,14 +27,17 @@ public class RawFragmentBatch {
     // private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RawFragmentBatch.class);
 
     private final FragmentRecordBatch header;
-    private final DrillBuf body;
+    private final DrillBuf[] buffers;
     private final AtomicBoolean ackSent = new AtomicBoolean(false);
 
-    public RawFragmentBatch(FragmentRecordBatch header, DrillBuf body) {
+    /**
+     * The batch holds its own reference of every buffer, until it is released.
+     */
+    public RawFragmentBatch(FragmentRecordBatch header, DrillBuf[] buffers) {
         this.header = header;
-        this.body = body;
-        if (body != null) {
-            body.retain(1);
+        this.buffers = buffers;
+        for (DrillBuf buf : buffers) {
+            buf.retain(1);
         }
     }
 
@@ -42,18 +45,21 @@ public class RawFragmentBatch {
         return header;
     }
 
-    public DrillBuf getBody() {
-        return body;
+    /**
+     * @return the buffers of the vectors in the order of the fields of the batch definition
+     */
+    public DrillBuf[] getBuffers() {
+        return buffers;
     }
 
     @Override
     public String toString() {
-        return "RawFragmentBatch [header=" + header + ", body=" + body + "]";
+        return "RawFragmentBatch [header=" + header + , buffers=" + buffers.length + "]";
     }
 
     public void release() {
-        if (body != null) {
-            body.release(1);
+        for (DrillBuf buf : buffers) {
+            buf.release(1);
         }
     }
 
@@ -68,7 +74,11 @@ public class RawFragmentBatch {
     }
 
     public long getByteCount() {
-        return body == null ? 0 : body.readableBytes();
+        long bytes = 0;
+        for (DrillBuf buf : buffers) {
+            bytes += buf.readableBytes();
+        }
+        return bytes;
     }
 
     public boolean isAckSent() {
@@ -41,6 +41,7 @@ import org.lealone.hansql.exec.record.MaterializedField;
 import org.lealone.hansql.exec.record.selection.SelectionVector2;
 import org.lealone.hansql.exec.record.selection.SelectionVector4;
 import org.lealone.hansql.exec.vector.AllocationHelper;
+import org.lealone.hansql.exec.vector.NullableVector;
 import org.lealone.hansql.exec.vector.UntypedNullVector;
 import org.lealone.hansql.exec.vector.ValueVector;
 
@@ -77,6 +78,26 @@ public class RecordBatchLoader implements VectorAccessible, Iterable<VectorWrapp
    *   TODO:  Clean:  DRILL-2933  load(...) never actually throws SchemaChangeException.
    */
   public boolean load(RecordBatchDef def, DrillBuf buf) throws SchemaChangeException {
+    return load(def, buf, null);
+  }
+
+  /**
+   * Load a record batch from the buffers of its vectors, as they were taken from the vectors of the sender.
+   * A vector is loaded from its own buffers without copying them, only the offsets and the data of a
+   * variable width vector are copied into one buffer, because the vector is loaded from one buffer.
+   *
+   * @param def
+   *          The definition for the record batch.
+   * @param buffers
+   *          The buffers of the vectors in the order of the fields, no buffers for a schema only batch.
+   * @return Whether the schema changed since the previous load.
+   * @throws SchemaChangeException
+   */
+  public boolean load(RecordBatchDef def, DrillBuf[] buffers) throws SchemaChangeException {
+    return load(def, null, buffers.length == 0 ? null : new BufferCursor(buffers));
+  }
+
+  private boolean load(RecordBatchDef def, DrillBuf buf, BufferCursor cursor) throws SchemaChangeException {
     if (logger.isTraceEnabled()) {
       logger.trace("Loading record batch with def {} and data {}", def, buf);
       logger.trace("Load, ThreadID: {}\n{}", Thread.currentThread().getId(), new StackTrace());
@@ -128,7 +149,7 @@ public class RecordBatchLoader implements VectorAccessible, Iterable<VectorWrapp
         }
 
         // Load the vector.
-        if (buf == null) {
+        if (buf == null && cursor == null) {
           // Buffers for untyped null vectors are always null and for the case
           // field value alone is sufficient to load the vector
           if (vector instanceof UntypedNullVector) {
@@ -137,6 +158,11 @@ public class RecordBatchLoader implements VectorAccessible, Iterable<VectorWrapp
           // Schema only
         } else if (field.getValueCount() == 0) {
           AllocationHelper.allocate(vector, 0, 0, 0);
+          if (cursor != null) {
+            cursor.skip(field.getBufferLength());
+          }
+        } else if (cursor != null) {
+          cursor.load(vector, field);
         } else {
           vector.load(field, buf.slice(bufOffset, field.getBufferLength()));
         }
@@ -172,6 +198,69 @@ public class RecordBatchLoader implements VectorAccessible, Iterable<VectorWrapp
     return schemaChanged;
   }
 
+  /**
+   * Walks the buffers of a batch loaded by {@link #load(RecordBatchDef, DrillBuf[])}.
+   * Empty buffers carry no bytes of any field, they are skipped.
+   */
+  private class BufferCursor {
+    private final DrillBuf[] buffers;
+    private int index;
+
+    BufferCursor(DrillBuf[] buffers) {
+      this.buffers = buffers;
+    }
+
+    void load(ValueVector vector, SerializedField field) {
+      if (vector instanceof NullableVector && field.getChildCount() == 2) {
+        // the bits and the values have their own buffers, the order of the children is the one of load(...)
+        final NullableVector nullable = (NullableVector) vector;
+        vector.clear();
+        load(nullable.getBitsVector(), field.getChild(0));
+        load(nullable.getValuesVector(), field.getChild(1));
+        return;
+      }
+      final int length = field.getBufferLength();
+      if (length == 0) {
+        vector.load(field, allocator.getEmpty());
+        return;
+      }
+      final DrillBuf first = nextBuffer();
+      if (first.readableBytes() == length) {
+        index++;
+        vector.load(field, first.slice(first.readerIndex(), length));
+        return;
+      }
+      final DrillBuf buf = allocator.buffer(length);
+      try {
+        int offset = 0;
+        while (offset < length) {
+          final DrillBuf b = nextBuffer();
+          index++;
+          buf.setBytes(offset, b, b.readerIndex(), b.readableBytes());
+          offset += b.readableBytes();
+        }
+        buf.writerIndex(length);
+        vector.load(field, buf);
+      } finally {
+        buf.release();
+      }
+    }
+
+    void skip(int length) {
+      while (length > 0) {
+        length -= nextBuffer().readableBytes();
+        index++;
+      }
+    }
+
+    private DrillBuf nextBuffer() {
+      while (buffers[index].readableBytes() == 0) {
+        index++;
+      }
+      return buffers[index];
+    }
+  }
+
   /**
    * Check if two schemas are the same. The schemas, given as lists, represent the
    * children of the original and new maps (AKA structures.)
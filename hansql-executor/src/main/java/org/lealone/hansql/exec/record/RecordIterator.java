@@ -23,6 +23,7 @@ import java.util.Map;
 import org.apache.drill.shaded.guava.com.google.common.collect.Range;
 import org.apache.drill.shaded.guava.com.google.common.collect.TreeRangeMap;
 import org.lealone.hansql.common.expression.SchemaPath;
+import org.lealone.hansql.exec.ops.FragmentContext;
 import org.lealone.hansql.exec.ops.OperatorContext;
 import org.lealone.hansql.exec.physical.impl.sort.RecordBatchData;
 import org.lealone.hansql.exec.record.RecordBatch.IterOutcome;
@@ -99,7 +100,14 @@ public class RecordIterator implements VectorAccessible {
     if (lastBatchRead) {
       return;
     }
-    lastOutcome = outgoing != null ? outgoing.next(inputIndex, incoming) : incoming.next();
+    // The join can not stop in the middle of its records, the input must not yield
+    FragmentContext.ExecutorState executorState = oContext.getFragmentContext().getExecutorState();
+    executorState.disableYield();
+    try {
+      lastOutcome = outgoing != null ? outgoing.next(inputIndex, incoming) : incoming.next();
+    } finally {
+      executorState.enableYield();
+    }
     if ((lastOutcome == IterOutcome.OK || lastOutcome == IterOutcome.OK_NEW_SCHEMA) && newBatchCallBack != null) {
       newBatchCallBack.update(inputIndex);
     }
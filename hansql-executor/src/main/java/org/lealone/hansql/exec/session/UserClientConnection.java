@@ -67,4 +67,19 @@ public interface UserClientConnection {
     }
 
     int getRowCount();
+
+    /**
+     * Called before the root fragment is handed from the thread of the client to another thread, the results
+     * are then sent from that thread.
+     */
+    default void setIsolated(boolean isolated) {
+    }
+
+    /**
+     * Returns true if the client has not read the rows sent so far. The root fragment that runs on the thread of
+     * the client then gives the thread back, it goes on when the client reads them.
+     */
+    default boolean isBlocked() {
+        return false;
+    }
 }
@@ -34,6 +34,7 @@ import org.lealone.hansql.common.config.DrillProperties;
 import org.lealone.hansql.exec.ExecConstants;
 import org.lealone.hansql.exec.context.options.OptionManager;
 import org.lealone.hansql.exec.context.options.SessionOptionManager;
+import org.lealone.hansql.exec.planner.QueryParameters;
 import org.lealone.hansql.exec.planner.physical.PlannerSettings;
 import org.lealone.hansql.exec.planner.sql.SchemaUtilites;
 import org.lealone.hansql.exec.planner.sql.handlers.SqlHandlerUtil;
@@ -59,6 +60,8 @@ public class UserSession implements AutoCloseable {
     private final AtomicInteger queryCount;
     private final String sessionId;
     private SchemaPlus defaultSchema;
+    private String schemaVersion;
+    private QueryParameters queryParameters;
 
     /** Stores list of temporary tables, key is original table name converted to lower case to achieve case-insensitivity,
      *  value is generated table name. **/
@@ -237,6 +240,33 @@ public class UserSession implements AutoCloseable {
         this.defaultSchema = defaultSchema;
     }
 
+    /**
+     * @return the version of the schemas the queries of the session are planned against,
+     *         or null if the plans of the session are not cached
+     */
+    public String getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * Sets the version of the schemas the queries of the session are planned against. It must change whenever
+     * a table or an index is created, altered or dropped, the plans of the previous version are not used anymore.
+     */
+    public void setSchemaVersion(String schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
+
+    /**
+     * @return the values of the dynamic parameters of the query of the session, or null if it has none
+     */
+    public QueryParameters getQueryParameters() {
+        return queryParameters;
+    }
+
+    public void setQueryParameters(QueryParameters queryParameters) {
+        this.queryParameters = queryParameters;
+    }
+
     /**
      * Set the option of a session level.
      * Note: Option's kind is automatically detected if such option exists.
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.store.sys;
+
+import java.util.Iterator;
+
+import org.lealone.hansql.exec.ops.ExecutorFragmentContext;
+import org.lealone.hansql.exec.planner.PlanCache;
+import org.lealone.hansql.exec.proto.CoordinationProtos.DrillbitEndpoint;
+import org.lealone.hansql.exec.store.pojo.NonNullable;
+
+/**
+ * The counters of the plan cache of the drillbit, see {@link PlanCache}.
+ */
+public class PlanCacheIterator implements Iterator<Object> {
+
+  private boolean beforeFirst = true;
+  private final ExecutorFragmentContext context;
+
+  public PlanCacheIterator(final ExecutorFragmentContext context) {
+    this.context = context;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return beforeFirst;
+  }
+
+  @Override
+  public Object next() {
+    if (!beforeFirst) {
+      throw new IllegalStateException();
+    }
+    beforeFirst = false;
+    final PlanCacheInfo info = new PlanCacheInfo();
+
+    final DrillbitEndpoint endpoint = context.getEndpoint();
+    info.hostname = endpoint.getAddress();
+    info.user_port = endpoint.getUserPort();
+
+    final PlanCache planCache = context.getPlanCache();
+    info.hits = planCache.getHits();
+    info.misses = planCache.getMisses();
+    info.stale_plans = planCache.getStales();
+    info.evictions = planCache.getEvictions();
+    info.size = planCache.getSize();
+    info.max_size = planCache.getMaxSize();
+    return info;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static class PlanCacheInfo {
+    @NonNullable
+    public String hostname;
+    public long user_port;
+    public long hits;
+    public long misses;
+    public long stale_plans;
+    public long evictions;
+    public long size;
+    public long max_size;
+  }
+}
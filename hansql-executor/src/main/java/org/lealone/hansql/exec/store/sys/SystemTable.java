@@ -26,7 +26,7 @@ import org.lealone.hansql.exec.store.sys.OptionIterator.OptionValueWrapper;
  * An enumeration of all tables in Drill's system ("sys") schema.
  * <p>
  *   OPTION, DRILLBITS and VERSION are local tables available on every Drillbit.
- *   MEMORY and THREADS are distributed tables with one record on every Drillbit.
+ *   MEMORY, PLAN_CACHE and THREADS are distributed tables with one record on every Drillbit.
  *   PROFILES and PROFILES_JSON are stored in local / distributed storage.
  * </p>
  */
@@ -89,6 +89,13 @@ public enum SystemTable {
     }
   },
 
+  PLAN_CACHE("plan_cache", true, PlanCacheIterator.PlanCacheInfo.class) {
+    @Override
+    public Iterator<Object> getIterator(final ExecutorFragmentContext context, final int maxRecords) {
+      return new PlanCacheIterator(context);
+    }
+  },
+
   PROFILES("profiles", false, ProfileInfoIterator.ProfileInfo.class) {
     @Override
     public Iterator<Object> getIterator(final ExecutorFragmentContext context, final int maxRecords) {
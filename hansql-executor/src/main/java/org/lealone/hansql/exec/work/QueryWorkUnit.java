@@ -73,6 +73,14 @@ public class QueryWorkUnit {
                 throw new SqlExecutorSetupException("Failure while trying to convert fragment into json.", e);
             }
         }
+
+        /**
+         * Returns the fragment without its plan and options JSON,
+         * for a fragment that is run in this drillbit from {@link #root()} and {@link #options()}.
+         */
+        public PlanFragment applyLocalPlan() {
+            return fragment;
+        }
     }
 
     private PlanFragment rootFragment; // for local
@@ -123,6 +131,19 @@ public class QueryWorkUnit {
         }
     }
 
+    /**
+     * Like {@link #applyPlan(PhysicalPlanReader)}, but the fragments are not converted into JSON,
+     * because they are all run in this drillbit from their root operators.
+     */
+    public void applyLocalPlan() {
+        assert rootFragment == null;
+        rootFragment = rootFragmentDefn.applyLocalPlan();
+        assert fragments.isEmpty();
+        for (MinorFragmentDefn defn : minorFragmentDefns) {
+            fragments.add(defn.applyLocalPlan());
+        }
+    }
+
     /**
      * Converts list of stored fragments into their string representation,
      * in case of exception returns text indicating that string was malformed.
@@ -153,12 +174,16 @@ public class QueryWorkUnit {
 
             String jsonString = "<<malformed JSON>>";
             stringBuilder.append("  fragment_json: ");
-            final ObjectMapper objectMapper = new ObjectMapper();
-            try {
-                final Object json = objectMapper.readValue(planFragment.getFragmentJson(), Object.class);
-                jsonString = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
-            } catch (final Exception e) {
-                // we've already set jsonString to a fallback value
+            if (!planFragment.hasFragmentJson()) {
+                jsonString = "<<not serialized, run locally>>";
+            } else {
+                final ObjectMapper objectMapper = new ObjectMapper();
+                try {
+                    final Object json = objectMapper.readValue(planFragment.getFragmentJson(), Object.class);
+                    jsonString = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(json);
+                } catch (final Exception e) {
+                    // we've already set jsonString to a fallback value
+                }
             }
             stringBuilder.append(jsonString);
         }
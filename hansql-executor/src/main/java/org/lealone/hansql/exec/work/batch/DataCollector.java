@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.work.batch;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lealone.hansql.exec.memory.BufferAllocator;
+import org.lealone.hansql.exec.proto.BitControl.Collector;
+import org.lealone.hansql.exec.proto.BitData.FragmentRecordBatch;
+
+import io.netty.buffer.DrillBuf;
+
+/**
+ * The buffers of the batches sent to one receiver by the minor fragments of the opposite major fragment.
+ * An unordered receiver reads the batches of all the senders from one buffer, a merging receiver
+ * reads them from one buffer per sender, in the order of the providing endpoints of the receiver.
+ */
+public class DataCollector implements AutoCloseable {
+
+    private final int oppositeMajorFragmentId;
+    // the index of the buffer of each sending minor fragment
+    private final Map<Integer, Integer> bufferIndexes = new HashMap<>();
+    private final RawBatchBuffer[] buffers;
+    private volatile BufferAllocator allocator;
+
+    public DataCollector(Collector collector, int bufferSizePerSender, BufferAllocator allocator) {
+        this.oppositeMajorFragmentId = collector.getOppositeMajorFragmentId();
+        this.allocator = allocator;
+        final List<Integer> incoming = collector.getIncomingMinorFragmentList();
+        if (collector.getSupportsOutOfOrder()) {
+            buffers = new RawBatchBuffer[] { new RawBatchBuffer(incoming.size(), bufferSizePerSender) };
+            for (Integer minorFragmentId : incoming) {
+                bufferIndexes.put(minorFragmentId, 0);
+            }
+        } else {
+            buffers = new RawBatchBuffer[incoming.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new RawBatchBuffer(1, bufferSizePerSender);
+                bufferIndexes.put(incoming.get(i), i);
+            }
+        }
+    }
+
+    public int getOppositeMajorFragmentId() {
+        return oppositeMajorFragmentId;
+    }
+
+    public RawBatchBuffer[] getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * Sets the allocator the received batches are accounted to, the receiving operator owns their buffers.
+     */
+    public void setAllocator(BufferAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return false if the batch was dropped, because the receiver does not need any more batches
+     */
+    public boolean batchArrived(FragmentRecordBatch header, DrillBuf[] body) throws InterruptedException {
+        final Integer index = bufferIndexes.get(header.getSendingMinorFragmentId());
+        if (index == null) {
+            throw new IllegalStateException("Unexpected batch from the minor fragment "
+                    + header.getSendingMinorFragmentId() + " of the major fragment " + oppositeMajorFragmentId);
+        }
+        return buffers[index].enqueue(header, body, allocator);
+    }
+
+    public void fail(Throwable cause) {
+        for (RawBatchBuffer buffer : buffers) {
+            buffer.fail(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (RawBatchBuffer buffer : buffers) {
+            buffer.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.work.batch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.ops.FragmentContext;
+import org.lealone.hansql.exec.proto.BitControl.Collector;
+import org.lealone.hansql.exec.proto.BitControl.PlanFragment;
+import org.lealone.hansql.exec.proto.BitData.FragmentRecordBatch;
+
+import io.netty.buffer.DrillBuf;
+
+/**
+ * The incoming batches of a fragment, one {@link DataCollector} per receiver of the fragment.
+ * The batches are accounted to the fragment until its receivers register their own allocators.
+ */
+public class IncomingBuffers implements AutoCloseable {
+
+    private final Map<Integer, DataCollector> collectors = new HashMap<>();
+
+    public IncomingBuffers(PlanFragment fragment, FragmentContext context) {
+        final int bufferSize = context.getConfig().getInt(ExecConstants.INCOMING_BUFFER_SIZE);
+        for (Collector collector : fragment.getCollectorList()) {
+            collectors.put(collector.getOppositeMajorFragmentId(),
+                    new DataCollector(collector, bufferSize, context.getAllocator()));
+        }
+    }
+
+    public DataCollector getCollector(int senderMajorFragmentId) {
+        return collectors.get(senderMajorFragmentId);
+    }
+
+    /**
+     * @return false if the batch was dropped, because the receiver does not need any more batches
+     */
+    public boolean batchArrived(FragmentRecordBatch header, DrillBuf[] body) throws InterruptedException {
+        final DataCollector collector = collectors.get(header.getSendingMajorFragmentId());
+        if (collector == null) {
+            throw new IllegalStateException(
+                    "No receiver for the batches of the major fragment " + header.getSendingMajorFragmentId());
+        }
+        return collector.batchArrived(header, body);
+    }
+
+    public void fail(Throwable cause) {
+        for (DataCollector collector : collectors.values()) {
+            collector.fail(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (DataCollector collector : collectors.values()) {
+            collector.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.work.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lealone.hansql.exec.proto.BitControl.FinishedReceiver;
+import org.lealone.hansql.exec.proto.BitData.FragmentRecordBatch;
+import org.lealone.hansql.exec.proto.ExecProtos.FragmentHandle;
+
+import io.netty.buffer.DrillBuf;
+
+/**
+ * Connects the minor fragments of a query that all run in this drillbit. The senders hand their batches
+ * to the {@link IncomingBuffers} of the receiving fragments, without serializing them.
+ * <p>
+ * When a fragment fails, the other fragments are cancelled and the receivers fail with the same cause,
+ * so the failure reaches the root fragment. When the root fragment finishes, the fragments still running
+ * are cancelled, their output is not needed anymore.
+ */
+public class LocalExchange {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LocalExchange.class);
+
+    /**
+     * A minor fragment of the query, as seen by the other fragments.
+     */
+    public interface Fragment {
+        void receivingFragmentFinished(FragmentHandle receiver);
+
+        void cancel();
+    }
+
+    private final Map<Long, IncomingBuffers> buffers = new ConcurrentHashMap<>();
+    private final Map<Long, Fragment> fragments = new ConcurrentHashMap<>();
+    private volatile Throwable failure;
+
+    private static long getKey(int majorFragmentId, int minorFragmentId) {
+        return ((long) majorFragmentId << 32) | minorFragmentId;
+    }
+
+    private static long getKey(FragmentHandle handle) {
+        return getKey(handle.getMajorFragmentId(), handle.getMinorFragmentId());
+    }
+
+    /**
+     * @param fragment null for the root fragment, it runs on the thread of the caller and is never cancelled,
+     *            it fails when it reads its incoming buffers
+     */
+    public void register(FragmentHandle handle, Fragment fragment, IncomingBuffers incomingBuffers) {
+        if (fragment != null) {
+            fragments.put(getKey(handle), fragment);
+        }
+        buffers.put(getKey(handle), incomingBuffers);
+    }
+
+    public IncomingBuffers getBuffers(FragmentHandle handle) {
+        return buffers.get(getKey(handle));
+    }
+
+    /**
+     * Hands a batch to the given receiving minor fragment, the receiver gets its own references of the buffers
+     * of the body.
+     * Waits while the buffer of the receiver is full.
+     *
+     * @return false if the batch was dropped, because the receiver does not need any more batches
+     */
+    public boolean batchArrived(int receivingMinorFragmentId, FragmentRecordBatch header, DrillBuf[] body)
+            throws InterruptedException {
+        final IncomingBuffers incomingBuffers = buffers
+                .get(getKey(header.getReceivingMajorFragmentId(), receivingMinorFragmentId));
+        if (incomingBuffers == null) {
+            throw new IllegalStateException("Unknown receiving fragment " + header.getReceivingMajorFragmentId()
+                    + ":" + receivingMinorFragmentId);
+        }
+        return incomingBuffers.batchArrived(header, body);
+    }
+
+    /**
+     * Tells a sender that the receiver does not need any more batches.
+     */
+    public void receiverFinished(FinishedReceiver finishedReceiver) {
+        final Fragment sender = fragments.get(getKey(finishedReceiver.getSender()));
+        if (sender != null) {
+            sender.receivingFragmentFinished(finishedReceiver.getReceiver());
+        }
+    }
+
+    /**
+     * @param failure the cause if the fragment failed, null otherwise
+     */
+    public void fragmentFinished(FragmentHandle handle, Throwable failure) {
+        final long key = getKey(handle);
+        if (failure != null) {
+            synchronized (this) {
+                if (this.failure != null) {
+                    return;
+                }
+                this.failure = failure;
+            }
+            logger.debug("Fragment {}:{} failed, cancelling the other fragments of the query",
+                    handle.getMajorFragmentId(), handle.getMinorFragmentId());
+            for (IncomingBuffers incomingBuffers : buffers.values()) {
+                incomingBuffers.fail(failure);
+            }
+            cancelOthers(key);
+        } else if (handle.getMajorFragmentId() == 0) {
+            cancelOthers(key);
+        }
+    }
+
+    private void cancelOthers(long key) {
+        for (Map.Entry<Long, Fragment> e : fragments.entrySet()) {
+            if (e.getKey() != key) {
+                e.getValue().cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.exec.work.batch;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import org.lealone.hansql.exec.memory.BufferAllocator;
+import org.lealone.hansql.exec.ops.FragmentContext;
+import org.lealone.hansql.exec.proto.BitData.FragmentRecordBatch;
+import org.lealone.hansql.exec.record.RawFragmentBatch;
+import org.lealone.hansql.exec.record.RawFragmentBatchProvider;
+
+import io.netty.buffer.DrillBuf;
+
+/**
+ * A bounded queue of the batches sent to a receiver by one or more sending fragments of the same query.
+ * A sender waits while the queue is full, so a slow receiver slows down its senders instead of buffering
+ * their whole output. The receiver gets null once all the senders have sent their last batch.
+ */
+public class RawBatchBuffer implements RawFragmentBatchProvider {
+
+    private final ArrayDeque<RawFragmentBatch> queue = new ArrayDeque<>();
+    private final int capacity;
+    // the senders that have not sent their last batch yet
+    private int streamCounter;
+    private boolean killed;
+    private Throwable failure;
+
+    public RawBatchBuffer(int fragmentCount, int bufferSizePerSender) {
+        this.streamCounter = fragmentCount;
+        this.capacity = Math.max(1, fragmentCount * bufferSizePerSender);
+    }
+
+    /**
+     * Queues a batch, the receiver gets its own references of the buffers of the body, accounted to the given
+     * allocator.
+     *
+     * @return false if the batch was dropped, because the receiver does not need any more batches
+     */
+    public synchronized boolean enqueue(FragmentRecordBatch header, DrillBuf[] body, BufferAllocator allocator)
+            throws InterruptedException {
+        while (!killed && queue.size() >= capacity) {
+            wait();
+        }
+        if (killed) {
+            return false;
+        }
+        final DrillBuf[] bufs = new DrillBuf[body.length];
+        for (int i = 0; i < body.length; i++) {
+            bufs[i] = body[i].retain(allocator);
+        }
+        queue.add(new RawFragmentBatch(header, bufs));
+        for (DrillBuf buf : bufs) {
+            // the batch holds its own reference
+            buf.release();
+        }
+        if (header.getIsLastBatch()) {
+            streamCounter--;
+        }
+        notifyAll();
+        return true;
+    }
+
+    @Override
+    public synchronized RawFragmentBatch getNext() throws IOException, InterruptedException {
+        while (queue.isEmpty() && streamCounter > 0 && !killed) {
+            wait();
+        }
+        if (failure != null) {
+            throw new IOException("A fragment of the query failed", failure);
+        }
+        final RawFragmentBatch batch = queue.poll();
+        if (batch != null) {
+            notifyAll();
+        }
+        return batch;
+    }
+
+    @Override
+    public void kill(FragmentContext context) {
+        kill();
+    }
+
+    /**
+     * Makes the receiver fail with the given cause instead of waiting for batches that will never be sent.
+     */
+    public synchronized void fail(Throwable cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        kill();
+    }
+
+    private synchronized void kill() {
+        killed = true;
+        for (RawFragmentBatch batch; (batch = queue.poll()) != null;) {
+            batch.release();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        kill();
+    }
+}
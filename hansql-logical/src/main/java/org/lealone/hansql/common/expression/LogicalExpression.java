@@ -49,6 +49,12 @@ public interface LogicalExpression extends Iterable<LogicalExpression>{
 
   @SuppressWarnings("serial")
   class De extends StdDeserializer<LogicalExpression> {
+    /**
+     * The deserialization attribute that holds a visitor rewriting the expressions as they are read,
+     * e.g. to bind the values of the dynamic parameters of a query into a cached plan.
+     */
+    public static final String REWRITER = "LogicalExpression.rewriter";
+
     DrillConfig config;
 
     public De(DrillConfig config) {
@@ -64,7 +70,11 @@ public interface LogicalExpression extends Iterable<LogicalExpression>{
         return null;
       }
 
-      return LogicalExpressionParser.parse(expr);
+      LogicalExpression e = LogicalExpressionParser.parse(expr);
+      @SuppressWarnings("unchecked")
+      ExprVisitor<LogicalExpression, Void, RuntimeException> rewriter =
+          (ExprVisitor<LogicalExpression, Void, RuntimeException>) ctxt.getAttribute(REWRITER);
+      return rewriter == null ? e : e.accept(rewriter, null);
     }
 
   }
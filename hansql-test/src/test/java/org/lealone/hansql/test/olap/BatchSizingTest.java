@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+
+public class BatchSizingTest extends OlapTestBase {
+
+    // 一个批次最多65535条记录
+    @Test
+    public void manyRows() throws Exception {
+        createTable("t_batch_rows", "id int primary key, f int");
+        insert("t_batch_rows", 70000, i -> i + ", " + (i % 100));
+
+        assertCount("SELECT count(*) FROM olap.t_batch_rows", 70000);
+        assertCount("SELECT sum(f) FROM olap.t_batch_rows", 700L * 99 * 100 / 2);
+        assertCount("SELECT max(id) FROM olap.t_batch_rows WHERE f = 99", 69999);
+    }
+
+    // 记录很宽时按内存预算减少每批的记录数
+    @Test
+    public void wideRows() throws Exception {
+        createTable("t_batch_wide", "id int primary key, s1 varchar, s2 varchar");
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+            buff.append('x');
+        String s = buff.toString();
+        insert("t_batch_wide", 3000, i -> i + ", '" + s + i + "', '" + s + "'");
+
+        long length = 0;
+        for (int i = 0; i < 3000; i++)
+            length += s.length() + Integer.toString(i).length();
+        assertCount("SELECT count(*) FROM olap.t_batch_wide", 3000);
+        assertCount("SELECT sum(length(s1)) FROM olap.t_batch_wide", length);
+        assertCount("SELECT sum(length(s2)) FROM olap.t_batch_wide", 3000L * s.length());
+    }
+}
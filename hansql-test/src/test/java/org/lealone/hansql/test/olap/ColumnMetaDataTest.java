@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+
+import org.junit.Test;
+
+public class ColumnMetaDataTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_metadata", "id int primary key, a int not null, b int, t tinyint, s smallint, "
+                + "n numeric(10, 3), d decimal(12, 2) not null");
+        insert("t_metadata", 10, i -> i + ", " + i + ", " + (i % 2 == 0 ? "null" : i) + ", " + i + ", " + (i * 10)
+                + ", " + i + ".125, " + i + ".5");
+
+        try (ResultSet rs = stmt.executeQuery("SELECT a, b, t, s, n, d FROM olap.t_metadata ORDER BY id")) {
+            ResultSetMetaData md = rs.getMetaData();
+            // NOT NULL的列不能为null
+            assertEquals(ResultSetMetaData.columnNoNulls, md.isNullable(1));
+            assertEquals(ResultSetMetaData.columnNullable, md.isNullable(2));
+            assertEquals(ResultSetMetaData.columnNoNulls, md.isNullable(6));
+            // 不再把TINYINT和SMALLINT变成INT，NUMERIC也不再变成DOUBLE
+            assertEquals(Types.INTEGER, md.getColumnType(1));
+            assertEquals(Types.TINYINT, md.getColumnType(3));
+            assertEquals(Types.SMALLINT, md.getColumnType(4));
+            assertEquals(Types.DECIMAL, md.getColumnType(5));
+            assertEquals(3, md.getScale(5));
+            assertEquals(2, md.getScale(6));
+
+            for (int i = 0; i < 10; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                rs.getInt(2);
+                assertEquals(i % 2 == 0, rs.wasNull());
+                assertEquals(i, rs.getByte(3));
+                assertEquals(i * 10, rs.getShort(4));
+                assertEquals(new BigDecimal(i + ".125"), rs.getBigDecimal(5));
+                assertEquals(new BigDecimal(i + ".50"), rs.getBigDecimal(6));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
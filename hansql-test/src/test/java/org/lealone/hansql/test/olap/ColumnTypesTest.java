@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+
+public class ColumnTypesTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_types", "id int primary key, i int, l bigint, s varchar(20), d double, "
+                + "n decimal(10, 2), b boolean, dt date, ts timestamp");
+        // 每隔3条记录的列都是null
+        insert("t_types", 200, i -> i % 3 == 0 ? i + ", null, null, null, null, null, null, null, null"
+                : i + ", " + i + ", " + (i * 100000000L) + ", 's" + i + "', " + (i / 4.0) + ", " + (i / 100.0) + ", "
+                        + (i % 2 == 0) + ", DATE '2020-01-" + (i % 28 + 1) + "', TIMESTAMP '2020-01-"
+                        + (i % 28 + 1) + " 10:" + (i % 60) + ":00.5'");
+
+        // 生成的复制器要和普通查询读到一样的值
+        assertSameRows("SELECT * FROM olap.t_types ORDER BY id", "SELECT * FROM t_types ORDER BY id");
+        assertSameRows("SELECT ts, s, id FROM olap.t_types WHERE i > 100 ORDER BY id",
+                "SELECT ts, s, id FROM t_types WHERE i > 100 ORDER BY id");
+        assertCount("SELECT count(i) FROM olap.t_types", 133);
+        assertCount("SELECT count(*) FROM olap.t_types WHERE b", 66);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.lealone.hansql.engine.server.HanColumnarBatch;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.memory.BufferAllocator;
+import org.lealone.hansql.exec.memory.RootAllocatorFactory;
+import org.lealone.hansql.exec.record.RecordBatchLoader;
+import org.lealone.hansql.exec.record.VectorWrapper;
+import org.lealone.hansql.exec.vector.ValueVector;
+
+public class ColumnarResultTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_columnar", "id int primary key, s varchar(20)");
+        insert("t_columnar", 10000, i -> i + ", " + (i % 3 == 0 ? "null" : "'s" + i + "'"));
+        setOption(ExecConstants.RESULT_COLUMNAR, true);
+
+        setOption(ExecConstants.RESULT_COLUMNAR_COMPRESSION, false);
+        assertColumnarRows(10000);
+        setOption(ExecConstants.RESULT_COLUMNAR_COMPRESSION, true);
+        assertColumnarRows(10000);
+    }
+
+    // 每条记录是一个批次，解码后检查向量里的值
+    private void assertColumnarRows(int rows) throws Exception {
+        try (BufferAllocator allocator = RootAllocatorFactory.newRoot(Long.MAX_VALUE);
+                ResultSet rs = stmt.executeQuery("SELECT id, s FROM olap.t_columnar ORDER BY id")) {
+            assertEquals(1, rs.getMetaData().getColumnCount());
+            assertEquals(HanColumnarBatch.COLUMN_NAME, rs.getMetaData().getColumnName(1));
+            RecordBatchLoader loader = new RecordBatchLoader(allocator);
+            try {
+                int id = 0;
+                while (rs.next()) {
+                    HanColumnarBatch.decode(rs.getBytes(1), loader);
+                    Iterator<VectorWrapper<?>> vectors = loader.iterator();
+                    ValueVector.Accessor ids = vectors.next().getValueVector().getAccessor();
+                    ValueVector.Accessor strings = vectors.next().getValueVector().getAccessor();
+                    assertFalse(vectors.hasNext());
+                    for (int r = 0; r < loader.getRecordCount(); r++, id++) {
+                        assertEquals(id, ((Number) ids.getObject(r)).intValue());
+                        if (id % 3 == 0)
+                            assertTrue(strings.isNull(r));
+                        else
+                            assertEquals("s" + id, strings.getObject(r).toString());
+                    }
+                }
+                assertEquals(rows, id);
+            } finally {
+                loader.clear();
+            }
+        }
+    }
+}
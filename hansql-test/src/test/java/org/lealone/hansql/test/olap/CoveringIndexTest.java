@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class CoveringIndexTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_covering", "id int primary key, a int, b varchar(20), c varchar(20)");
+        stmt.executeUpdate("CREATE INDEX t_covering_ab ON t_covering(a, b)");
+        insert("t_covering", 1000, i -> i + ", " + (i % 10) + ", 'b" + i + "', 'c" + i + "'");
+
+        // 只用到索引里的列，不需要回表
+        String sql = "SELECT b FROM olap.t_covering WHERE a = 3 ORDER BY b";
+        assertTrue(explain(sql).contains("indexName=T_COVERING_AB"));
+        assertSameRows(sql, "SELECT b FROM t_covering WHERE a = 3 ORDER BY b");
+        assertCount("SELECT count(b) FROM olap.t_covering WHERE a = 3", 100);
+
+        // 主键列也在索引里
+        assertSameRows("SELECT id, b FROM olap.t_covering WHERE a = 5 ORDER BY id",
+                "SELECT id, b FROM t_covering WHERE a = 5 ORDER BY id");
+
+        // 用到了索引之外的列时还要回表
+        assertSameRows("SELECT b, c FROM olap.t_covering WHERE a = 3 ORDER BY b",
+                "SELECT b, c FROM t_covering WHERE a = 3 ORDER BY b");
+
+        stmt.executeUpdate("UPDATE t_covering SET b = 'updated' WHERE id = 13");
+        try (ResultSet rs = stmt.executeQuery("SELECT b FROM olap.t_covering WHERE a = 3 AND b = 'updated'")) {
+            assertTrue(rs.next());
+            assertEquals("updated", rs.getString(1));
+            assertFalse(rs.next());
+        }
+        assertCount("SELECT count(*) FROM olap.t_covering WHERE a = 3 AND b = 'b13'", 0);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class IndexMergeTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_merge", "id int primary key, a int, b int");
+        stmt.executeUpdate("CREATE INDEX t_merge_a ON t_merge(a)");
+        stmt.executeUpdate("CREATE INDEX t_merge_b ON t_merge(b)");
+        insert("t_merge", 10000, i -> i + ", " + (i % 100) + ", " + (i % 73));
+        setOption(ExecConstants.LEALONE_INDEX_MERGE, true);
+
+        // 两个索引的交集
+        String and = "SELECT count(*) FROM olap.t_merge WHERE a = 5 AND b = 5";
+        String plan = explain(and);
+        assertTrue(plan, plan.contains("intersect="));
+        assertCount(and, 2);
+
+        // 两个索引的并集，同一条记录只能返回一次
+        String or = "SELECT count(*) FROM olap.t_merge WHERE a = 5 OR b = 5";
+        plan = explain(or);
+        assertTrue(plan, plan.contains("union="));
+        assertCount(or, 100 + 137 - 2);
+        assertSameRows("SELECT id, a, b FROM olap.t_merge WHERE a = 5 OR b = 5 ORDER BY id",
+                "SELECT id, a, b FROM t_merge WHERE a = 5 OR b = 5 ORDER BY id");
+
+        // 关掉后结果不变
+        setOption(ExecConstants.LEALONE_INDEX_MERGE, false);
+        assertCount(and, 2);
+        assertCount(or, 100 + 137 - 2);
+    }
+}
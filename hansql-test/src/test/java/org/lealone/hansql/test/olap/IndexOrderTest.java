@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class IndexOrderTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_order", "id int primary key, f int, s varchar(20)");
+        stmt.executeUpdate("CREATE INDEX t_order_f ON t_order(f)");
+        // f和id的顺序不一样
+        insert("t_order", 1000, i -> i + ", " + ((i * 7) % 1000) + ", 's" + i + "'");
+
+        assertOrdered("SELECT f FROM olap.t_order ORDER BY f", 1000, true);
+        assertOrdered("SELECT f FROM olap.t_order ORDER BY f DESC", 1000, false);
+        assertOrdered("SELECT f FROM olap.t_order WHERE f >= 100 ORDER BY f LIMIT 10", 10, true);
+        assertOrdered("SELECT f FROM olap.t_order ORDER BY f DESC LIMIT 10", 10, false);
+        assertOrdered("SELECT id FROM olap.t_order ORDER BY id DESC", 1000, false);
+        assertSameRows("SELECT f, s FROM olap.t_order WHERE f < 50 ORDER BY f",
+                "SELECT f, s FROM t_order WHERE f < 50 ORDER BY f");
+        assertSameRows("SELECT f, s FROM olap.t_order ORDER BY f DESC LIMIT 5",
+                "SELECT f, s FROM t_order ORDER BY f DESC LIMIT 5");
+    }
+
+    // 第一列要按顺序排列，并且返回指定的记录数
+    private void assertOrdered(String sql, int rows, boolean asc) throws Exception {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            Integer last = null;
+            int count = 0;
+            while (rs.next()) {
+                int v = rs.getInt(1);
+                if (last != null)
+                    assertTrue(sql, asc ? last < v : last > v);
+                last = v;
+                count++;
+            }
+            assertEquals(sql, rows, count);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+
+public class IndexRangeScanTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_range", "id int primary key, f int, name varchar(20)");
+        stmt.executeUpdate("CREATE INDEX t_range_f ON t_range(f)");
+        insert("t_range", 100, i -> i + ", " + i + ", 'n" + i + "'");
+
+        String sql = "SELECT count(*) FROM olap.t_range WHERE f >= 10 AND f < 20";
+        assertTrue(explain(sql).contains("indexName=T_RANGE_F"));
+        assertCount(sql, 10);
+        assertCount("SELECT count(*) FROM olap.t_range WHERE f IN (3, 5, 7, 1000)", 3);
+        assertCount("SELECT count(*) FROM olap.t_range WHERE name LIKE 'n1%'", 11);
+        // 索引范围之外的条件留在过滤条件里
+        assertCount("SELECT count(*) FROM olap.t_range WHERE f > 50 AND id < 60", 9);
+        assertCount("SELECT count(*) FROM olap.t_range WHERE f > 50 OR id < 10", 59);
+    }
+
+    // 降序索引列上的范围条件
+    @Test
+    public void descIndex() throws Exception {
+        createTable("t_desc", "id int primary key, f int");
+        stmt.executeUpdate("CREATE INDEX t_desc_f ON t_desc(f DESC)");
+        insert("t_desc", 10, i -> (i + 1) + ", " + (i + 1));
+
+        assertCount("SELECT count(*) FROM olap.t_desc WHERE f >= 3 AND f <= 5", 3);
+        assertCount("SELECT count(*) FROM olap.t_desc WHERE f > 8", 2);
+        assertCount("SELECT count(*) FROM olap.t_desc WHERE f < 3", 2);
+        assertCount("SELECT count(*) FROM olap.t_desc WHERE f = 7", 1);
+        // 不能转换成列类型的值留给过滤条件
+        assertCount("SELECT count(*) FROM olap.t_desc WHERE f < 3000000000", 10);
+    }
+
+    // 忽略大小写的索引列只返回过滤条件认为相等的值
+    @Test
+    public void ignoreCaseIndex() throws Exception {
+        createTable("t_ignorecase", "id int primary key, name varchar_ignorecase(20)");
+        stmt.executeUpdate("CREATE INDEX t_ignorecase_name ON t_ignorecase(name)");
+        stmt.executeUpdate("INSERT INTO t_ignorecase(id, name) VALUES(1, 'abc'), (2, 'ABC'), (3, 'abd')");
+
+        assertCount("SELECT count(*) FROM olap.t_ignorecase WHERE name = 'abc'", 1);
+        assertCount("SELECT count(*) FROM olap.t_ignorecase WHERE name IN ('abc', 'ABC')", 2);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+
+public class IndexSelectivityTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_selectivity", "id int primary key, a int, b int");
+        stmt.executeUpdate("CREATE INDEX t_selectivity_a ON t_selectivity(a)");
+        stmt.executeUpdate("CREATE UNIQUE INDEX t_selectivity_b ON t_selectivity(b)");
+        insert("t_selectivity", 2000, i -> i + ", " + (i % 2) + ", " + i);
+
+        // a只有两个不同的值，应该选择b上的唯一索引
+        String sql = "SELECT count(*) FROM olap.t_selectivity WHERE a = 1 AND b = 5";
+        String plan = explain(sql);
+        assertTrue(plan, plan.contains("indexName=T_SELECTIVITY_B"));
+        assertCount(sql, 1);
+        assertCount("SELECT count(*) FROM olap.t_selectivity WHERE a = 0 AND b = 5", 0);
+
+        // 范围越小越应该使用索引
+        plan = explain("SELECT count(*) FROM olap.t_selectivity WHERE a = 1 AND b BETWEEN 10 AND 20");
+        assertTrue(plan, plan.contains("indexName=T_SELECTIVITY_B"));
+        assertCount("SELECT count(*) FROM olap.t_selectivity WHERE a = 1 AND b BETWEEN 10 AND 20", 5);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class IsolatedExecutionTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_isolated", "id int primary key, g int, v int");
+        insert("t_isolated", 20000, i -> i + ", " + (i % 10) + ", " + i);
+        setOption(ExecConstants.OLAP_ISOLATED_EXECUTION, true);
+
+        // 查询在OLAP线程池中运行，调度线程只负责收取结果
+        assertCount("SELECT count(*) FROM olap.t_isolated", 20000);
+        assertCount("SELECT sum(v) FROM olap.t_isolated WHERE g = 3", sum(3));
+
+        // 普通查询的行数超过阈值后改用OlapOperator执行
+        stmt.executeUpdate("SET OLAP_OPERATOR_FACTORY_NAME 'olap'");
+        stmt.executeUpdate("SET OLAP_THRESHOLD 1");
+        try {
+            assertCount("SELECT count(*) FROM t_isolated WHERE v >= 0", 20000);
+            assertCount("SELECT sum(v) FROM t_isolated WHERE g = 3", sum(3));
+            assertSameRows("SELECT g, count(*) FROM olap.t_isolated GROUP BY g ORDER BY g",
+                    "SELECT g, count(*) FROM t_isolated GROUP BY g ORDER BY g");
+        } finally {
+            stmt.executeUpdate("SET OLAP_THRESHOLD 0");
+        }
+    }
+
+    // 计划失败时要返回错误，不能一直等待
+    @Test
+    public void failure() throws Exception {
+        setOption(ExecConstants.OLAP_ISOLATED_EXECUTION, true);
+        createTable("t_isolated_failure", "id int primary key");
+        try {
+            stmt.executeQuery("SELECT no_such_function(id) FROM olap.t_isolated_failure");
+            fail();
+        } catch (SQLException e) {
+            // 函数不存在
+        }
+        assertCount("SELECT count(*) FROM olap.t_isolated_failure", 0);
+    }
+
+    private static long sum(int g) {
+        long sum = 0;
+        for (int i = g; i < 20000; i += 10)
+            sum += i;
+        return sum;
+    }
+}
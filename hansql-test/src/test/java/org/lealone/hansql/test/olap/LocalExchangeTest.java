@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class LocalExchangeTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_exchange", "id int primary key, g varchar(20), v int");
+        insert("t_exchange", 20000, i -> i + ", " + (i % 11 == 0 ? "null" : "'g" + (i % 37) + "'") + ", " + i);
+        // 拆成多个片段，片段之间通过内存中的交换传递批次
+        setOption(ExecConstants.SLICE_TARGET, 1L);
+        setOption(ExecConstants.MAX_WIDTH_PER_NODE_KEY, 4L);
+        setOption(ExecConstants.LEALONE_SCAN_PARTITIONS, 4L);
+
+        String sql = "SELECT g, count(*), sum(v) FROM olap.t_exchange GROUP BY g ORDER BY g NULLS FIRST";
+        String expected = "SELECT g, count(*), sum(v) FROM t_exchange GROUP BY g ORDER BY g NULLS FIRST";
+        for (boolean isolated : new boolean[] { false, true }) {
+            setOption(ExecConstants.OLAP_ISOLATED_EXECUTION, isolated);
+            assertTrue(explain(sql).contains("Exchange"));
+            assertSameRows(sql, expected);
+            assertCount("SELECT count(*) FROM olap.t_exchange", 20000);
+            assertCount("SELECT sum(v) FROM olap.t_exchange WHERE g IS NULL", sumOfMultiplesOf11());
+        }
+    }
+
+    private static long sumOfMultiplesOf11() {
+        long sum = 0;
+        for (int i = 0; i < 20000; i += 11)
+            sum += i;
+        return sum;
+    }
+}
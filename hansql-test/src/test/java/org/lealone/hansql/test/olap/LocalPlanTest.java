@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
+
+public class LocalPlanTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_local_fact", "id int primary key, dim_id int, v int");
+        createTable("t_local_dim", "id int primary key, name varchar(20)");
+        insert("t_local_dim", 10, i -> i + ", 'd" + i + "'");
+        insert("t_local_fact", 1000, i -> i + ", " + (i % 10) + ", " + i);
+
+        String sql = "SELECT d.name, sum(f.v) AS s FROM olap.t_local_fact f JOIN olap.t_local_dim d"
+                + " ON f.dim_id = d.id GROUP BY d.name ORDER BY d.name";
+        String expected = "SELECT d.name, sum(f.v) AS s FROM t_local_fact f JOIN t_local_dim d"
+                + " ON f.dim_id = d.id GROUP BY d.name ORDER BY d.name";
+        // 不经过JSON的计划执行时不能修改计划对象，缓存的计划要能反复执行
+        for (long cacheSize : new long[] { 0, 16 }) {
+            setOption(PlannerSettings.PLAN_CACHE_SIZE_KEY, cacheSize);
+            for (int i = 0; i < 3; i++) {
+                assertSameRows(sql, expected);
+                assertCount("SELECT count(*) FROM olap.t_local_fact f JOIN olap.t_local_dim d ON f.dim_id = d.id"
+                        + " WHERE d.name = 'd3'", 100);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class LookupJoinTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_orders", "id int primary key, customer_id int, amount int");
+        createTable("t_customers", "id int primary key, name varchar(20)");
+        insert("t_customers", 100, i -> i + ", 'c" + i + "'");
+        // 有些订单找不到客户
+        insert("t_orders", 5000, i -> i + ", " + (i % 120) + ", " + (i % 10));
+
+        String[] queries = { "SELECT count(*) FROM olap.t_orders o JOIN olap.t_customers c ON o.customer_id = c.id",
+                "SELECT sum(o.amount) FROM olap.t_orders o JOIN olap.t_customers c ON o.customer_id = c.id"
+                        + " WHERE c.name LIKE 'c1%'",
+                "SELECT count(*) FROM olap.t_orders o LEFT JOIN olap.t_customers c ON o.customer_id = c.id"
+                        + " WHERE c.id IS NULL" };
+        // 索引嵌套循环连接和哈希连接的结果要一样
+        setOption(ExecConstants.LEALONE_LOOKUP_JOIN, false);
+        long[] expected = new long[queries.length];
+        for (int i = 0; i < queries.length; i++)
+            expected[i] = queryLong(queries[i]);
+        assertEquals(4180, expected[0]);
+        setOption(ExecConstants.LEALONE_LOOKUP_JOIN, true);
+        for (int i = 0; i < queries.length; i++)
+            assertCount(queries[i], expected[i]);
+    }
+
+    // 带小数和超出列范围的连接键不能匹配任何记录
+    @Test
+    public void fractionalLookupKeys() throws Exception {
+        createTable("t_outer", "id int primary key, k double, b bigint");
+        createTable("t_inner", "id int primary key, v varchar(20)");
+        stmt.executeUpdate("INSERT INTO t_outer(id, k, b) VALUES(1, 1.5, 3000000000), (2, 2.0, 2)");
+        stmt.executeUpdate("INSERT INTO t_inner(id, v) VALUES(1, 'v1'), (2, 'v2'), (3, 'v3')");
+
+        setOption(ExecConstants.LEALONE_LOOKUP_JOIN, true);
+        assertCount("SELECT count(*) FROM olap.t_outer o JOIN olap.t_inner i ON o.k = i.id", 1);
+        assertCount("SELECT count(*) FROM olap.t_outer o JOIN olap.t_inner i ON o.b = i.id", 1);
+        assertCount("SELECT count(*) FROM olap.t_outer o LEFT JOIN olap.t_inner i ON o.b = i.id", 2);
+    }
+}
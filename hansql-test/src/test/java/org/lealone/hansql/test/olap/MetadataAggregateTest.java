@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
+
+public class MetadataAggregateTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_metadata_agg", "id int primary key, f int");
+        stmt.executeUpdate("CREATE INDEX t_metadata_agg_f ON t_metadata_agg(f)");
+        insert("t_metadata_agg", 100, i -> i + ", " + (i % 2 == 0 ? "null" : i));
+
+        assertCount("SELECT count(*) FROM olap.t_metadata_agg", 100);
+        assertCount("SELECT min(id) FROM olap.t_metadata_agg", 0);
+        assertCount("SELECT max(id) FROM olap.t_metadata_agg", 99);
+        // 索引的端点上可能是null
+        assertCount("SELECT min(f) FROM olap.t_metadata_agg", 1);
+        assertCount("SELECT max(f) FROM olap.t_metadata_agg", 99);
+        assertCount("SELECT count(f) FROM olap.t_metadata_agg", 50);
+
+        stmt.executeUpdate("DELETE FROM t_metadata_agg WHERE id = 99 OR id = 1");
+        assertCount("SELECT count(*) FROM olap.t_metadata_agg", 98);
+        assertCount("SELECT min(f) FROM olap.t_metadata_agg", 3);
+        assertCount("SELECT max(f) FROM olap.t_metadata_agg", 97);
+    }
+
+    // 计划缓存打开时，新增记录后 count(*) 不能返回旧的值
+    @Test
+    public void countAfterInsert() throws Exception {
+        setOption(PlannerSettings.PLAN_CACHE_SIZE_KEY, 16L);
+        createTable("t_count", "id int primary key, f int");
+        stmt.executeUpdate("INSERT INTO t_count(id, f) VALUES(1, 1)");
+        String sql = "SELECT count(*) FROM olap.t_count";
+        assertCount(sql, 1);
+        stmt.executeUpdate("INSERT INTO t_count(id, f) VALUES(2, 2)");
+        assertCount(sql, 2);
+        stmt.executeUpdate("INSERT INTO t_count(id, f) VALUES(3, 3)");
+        assertCount(sql, 3);
+        assertCount("SELECT max(f) FROM olap.t_count", 3);
+    }
+}
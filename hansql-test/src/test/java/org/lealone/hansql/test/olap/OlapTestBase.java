@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.lealone.db.Constants;
+import org.lealone.hansql.engine.HanEngine;
+import org.lealone.hansql.exec.context.options.OptionManager;
+import org.lealone.hansql.test.TestBase;
+import org.lealone.hansql.test.start.HanSQLEngineStart;
+
+// 在同一个进程中启动 HanSQL，这样才能修改 OLAP 查询用到的系统选项
+public abstract class OlapTestBase extends TestBase {
+
+    private static boolean started;
+
+    @BeforeClass
+    public static synchronized void startHanSQL() {
+        if (started)
+            return;
+        started = true;
+        Thread server = new Thread(() -> {
+            try {
+                HanSQLEngineStart.main(null);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "HanSQLEngineStart");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    protected Connection conn;
+    protected Statement stmt;
+    // 测试修改过的系统选项和它们原来的值
+    private final Map<String, Object> oldOptions = new LinkedHashMap<>();
+
+    @Before
+    public void openConnection() throws Exception {
+        String url = "jdbc:lealone:tcp://localhost:" + Constants.DEFAULT_TCP_PORT + "/" + LEALONE;
+        for (int i = 0;; i++) {
+            try {
+                conn = DriverManager.getConnection(url, DEFAULT_USER, DEFAULT_PASSWORD);
+                break;
+            } catch (SQLException e) {
+                // 等待服务器启动
+                if (i >= 60)
+                    throw e;
+                Thread.sleep(500);
+            }
+        }
+        stmt = conn.createStatement();
+    }
+
+    @After
+    public void closeConnection() throws Exception {
+        OptionManager options = getOptionManager();
+        for (Map.Entry<String, Object> e : oldOptions.entrySet()) {
+            options.setLocalOption(e.getKey(), e.getValue());
+        }
+        oldOptions.clear();
+        stmt.close();
+        conn.close();
+    }
+
+    protected static OptionManager getOptionManager() {
+        return HanEngine.getInstance().getOptionManager();
+    }
+
+    // 测试结束后恢复成原来的值
+    protected void setOption(String name, Object value) {
+        OptionManager options = getOptionManager();
+        if (!oldOptions.containsKey(name))
+            oldOptions.put(name, options.getOption(name).getValue());
+        options.setLocalOption(name, value);
+    }
+
+    protected void createTable(String name, String columns) throws SQLException {
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + name);
+        stmt.executeUpdate("CREATE TABLE " + name + "(" + columns + ")");
+    }
+
+    // 每条记录的值由values(i)给出，i从0开始
+    protected void insert(String table, int rows, IntFunction<String> values) throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            if (sql.length() == 0)
+                sql.append("INSERT INTO ").append(table).append(" VALUES");
+            else
+                sql.append(',');
+            sql.append('(').append(values.apply(i)).append(')');
+            if ((i + 1) % 500 == 0 || i == rows - 1) {
+                stmt.executeUpdate(sql.toString());
+                sql.setLength(0);
+            }
+        }
+    }
+
+    protected long queryLong(String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            assertTrue(sql, rs.next());
+            return rs.getLong(1);
+        }
+    }
+
+    protected void assertCount(String sql, long expected) throws SQLException {
+        assertEquals(sql, expected, queryLong(sql));
+    }
+
+    // OLAP查询和普通查询返回的记录要完全一样，包括顺序
+    protected void assertSameRows(String olapSql, String sql) throws SQLException {
+        try (Statement stmt2 = conn.createStatement(); ResultSet rs1 = stmt.executeQuery(olapSql);
+                ResultSet rs2 = stmt2.executeQuery(sql)) {
+            int columnCount = rs2.getMetaData().getColumnCount();
+            assertEquals(olapSql, columnCount, rs1.getMetaData().getColumnCount());
+            int rows = 0;
+            while (rs2.next()) {
+                assertTrue(olapSql + " row " + rows, rs1.next());
+                for (int i = 1; i <= columnCount; i++) {
+                    assertEquals(olapSql + " row " + rows + " column " + i, rs2.getObject(i), rs1.getObject(i));
+                }
+                rows++;
+            }
+            assertFalse(olapSql, rs1.next());
+        }
+    }
+
+    // 返回OLAP查询的文本执行计划
+    protected String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (ResultSet rs = stmt.executeQuery("EXPLAIN PLAN FOR " + sql)) {
+            while (rs.next())
+                plan.append(rs.getString(1));
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+
+public class PageDecodingTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_pages", "id int primary key, f int, s varchar(20)");
+        // 记录数超过一个批次，也跨越多个页面
+        insert("t_pages", 10000, i -> i + ", " + (i % 7 == 0 ? "null" : i) + ", 's" + i + "'");
+
+        long sum = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (i % 7 != 0)
+                sum += i;
+        }
+        assertCount("SELECT count(*) FROM olap.t_pages", 10000);
+        assertCount("SELECT count(f) FROM olap.t_pages", 10000 - 1429);
+        assertCount("SELECT sum(f) FROM olap.t_pages", sum);
+        assertSameRows("SELECT id, f, s FROM olap.t_pages WHERE id >= 4090 AND id < 4110 ORDER BY id",
+                "SELECT id, f, s FROM t_pages WHERE id >= 4090 AND id < 4110 ORDER BY id");
+
+        // 修改和删除过的记录
+        stmt.executeUpdate("UPDATE t_pages SET f = 0 WHERE id < 100");
+        stmt.executeUpdate("DELETE FROM t_pages WHERE id >= 9000");
+        assertCount("SELECT count(*) FROM olap.t_pages", 9000);
+        assertSameRows("SELECT id, f, s FROM olap.t_pages WHERE id < 200 ORDER BY id",
+                "SELECT id, f, s FROM t_pages WHERE id < 200 ORDER BY id");
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class PartitionedScanTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_partitioned", "id int primary key, f int");
+        insert("t_partitioned", 1000, i -> i + ", " + (i % 10));
+
+        // 按主键范围分成多个扫描，结果要和不分区时一样
+        for (long partitions : new long[] { 1, 3, 8 }) {
+            setOption(ExecConstants.LEALONE_SCAN_PARTITIONS, partitions);
+            assertCount("SELECT count(*) FROM olap.t_partitioned", 1000);
+            assertCount("SELECT sum(id) FROM olap.t_partitioned", 999L * 1000 / 2);
+            assertCount("SELECT count(*) FROM olap.t_partitioned WHERE id >= 100 AND id < 400", 300);
+            assertCount("SELECT sum(f) FROM olap.t_partitioned WHERE id < 500", 45L * 50);
+            assertCount("SELECT count(*) FROM olap.t_partitioned WHERE f = 3", 100);
+        }
+    }
+
+    // 分区数比记录数还多
+    @Test
+    public void morePartitionsThanRows() throws Exception {
+        createTable("t_partitioned_small", "id int primary key, f int");
+        insert("t_partitioned_small", 5, i -> i + ", " + i);
+
+        setOption(ExecConstants.LEALONE_SCAN_PARTITIONS, 16L);
+        assertCount("SELECT count(*) FROM olap.t_partitioned_small", 5);
+        assertCount("SELECT sum(f) FROM olap.t_partitioned_small", 10);
+    }
+}
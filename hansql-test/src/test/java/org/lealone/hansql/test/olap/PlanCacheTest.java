@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
+
+public class PlanCacheTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        setOption(PlannerSettings.PLAN_CACHE_SIZE_KEY, 16L);
+        createTable("t_plan_cache", "id int primary key, a int");
+        insert("t_plan_cache", 100, i -> i + ", " + (i % 10));
+
+        // 只有空白和关键字大小写不同的SQL可以共用计划，常量不同时不能
+        assertCount("SELECT count(*) FROM olap.t_plan_cache WHERE a = 1", 10);
+        assertCount("select  count(*)  from olap.t_plan_cache where a = 1", 10);
+        assertCount("SELECT count(*) FROM olap.t_plan_cache WHERE a = 2 AND id < 50", 5);
+        assertCount("SELECT count(*) FROM olap.t_plan_cache WHERE a = 2 AND id < 10", 1);
+
+        // 缓存的计划要读到新增的记录
+        String sql = "SELECT sum(a) FROM olap.t_plan_cache";
+        assertCount(sql, 450);
+        insert("t_plan_cache", 10, i -> (100 + i) + ", 1");
+        assertCount(sql, 460);
+
+        // 选项改变后不能用旧的计划
+        setOption(ExecConstants.LEALONE_SCAN_PARTITIONS, 4L);
+        assertCount(sql, 460);
+        setOption(ExecConstants.LEALONE_SCAN_PARTITIONS, 1L);
+        assertCount(sql, 460);
+
+        // DDL之后不能用旧的计划
+        String all = "SELECT * FROM olap.t_plan_cache WHERE id = 1";
+        try (ResultSet rs = stmt.executeQuery(all)) {
+            assertEquals(2, rs.getMetaData().getColumnCount());
+        }
+        stmt.executeUpdate("ALTER TABLE t_plan_cache ADD COLUMN b int");
+        try (ResultSet rs = stmt.executeQuery(all)) {
+            assertEquals(3, rs.getMetaData().getColumnCount());
+        }
+        stmt.executeUpdate("CREATE INDEX t_plan_cache_a ON t_plan_cache(a)");
+        assertCount(sql, 460);
+        assertCount("SELECT count(*) FROM olap.t_plan_cache WHERE a = 1", 20);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.planner.physical.PlannerSettings;
+
+public class PreparedQueryTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        setOption(PlannerSettings.PLAN_CACHE_SIZE_KEY, 16L);
+        createTable("t_prepared", "id int primary key, a int, s varchar(20)");
+        stmt.executeUpdate("CREATE INDEX t_prepared_a ON t_prepared(a)");
+        insert("t_prepared", 1000, i -> i + ", " + (i % 10) + ", 's" + i + "'");
+
+        // 同一个计划用不同的参数值执行
+        try (PreparedStatement ps = conn
+                .prepareStatement("SELECT count(*) FROM olap.t_prepared WHERE a = ? AND id < ?")) {
+            for (int i = 0; i < 10; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, 100 * (i + 1));
+                assertCount(ps, 10 * (i + 1));
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT s FROM olap.t_prepared WHERE id = ?")) {
+            for (int i = 0; i < 1000; i += 111) {
+                ps.setInt(1, i);
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("s" + i, rs.getString(1));
+                    assertFalse(rs.next());
+                }
+            }
+        }
+        // 参数值不能转换成列的类型时由过滤条件处理
+        try (PreparedStatement ps = conn.prepareStatement("SELECT count(*) FROM olap.t_prepared WHERE a < ?")) {
+            ps.setLong(1, 3000000000L);
+            assertCount(ps, 1000);
+            ps.setString(1, "5");
+            assertCount(ps, 500);
+        }
+    }
+
+    // 默认时区不是UTC时，时间戳参数也要按默认时区的时间匹配
+    @Test
+    public void timestampInDefaultTimeZone() throws Exception {
+        TimeZone old = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        try {
+            createTable("t_prepared_ts", "id int primary key, ts timestamp");
+            stmt.executeUpdate("CREATE INDEX t_prepared_ts_ts ON t_prepared_ts(ts)");
+            insert("t_prepared_ts", 48,
+                    i -> i + ", TIMESTAMP '2020-06-0" + (1 + i / 24) + " " + (i % 24 < 10 ? "0" : "") + (i % 24)
+                            + ":00:00'");
+            // 两种查询都按默认时区解释参数值
+            try (PreparedStatement ps = conn
+                    .prepareStatement("SELECT count(*) FROM olap.t_prepared_ts WHERE ts = ?")) {
+                ps.setTimestamp(1, Timestamp.valueOf("2020-06-01 03:00:00"));
+                assertCount(ps, 1);
+                ps.setTimestamp(1, Timestamp.valueOf("2020-06-02 23:00:00"));
+                assertCount(ps, 1);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id FROM olap.t_prepared_ts WHERE ts >= ? AND ts < ? ORDER BY id")) {
+                ps.setTimestamp(1, Timestamp.valueOf("2020-06-01 06:00:00"));
+                ps.setTimestamp(2, Timestamp.valueOf("2020-06-01 09:00:00"));
+                try (ResultSet rs = ps.executeQuery()) {
+                    for (int i = 6; i < 9; i++) {
+                        assertTrue(rs.next());
+                        assertEquals(i, rs.getInt(1));
+                    }
+                    assertFalse(rs.next());
+                }
+            }
+        } finally {
+            TimeZone.setDefault(old);
+        }
+    }
+
+    private static void assertCount(PreparedStatement ps, long expected) throws Exception {
+        try (ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+            assertEquals(expected, rs.getLong(1));
+        }
+    }
+}
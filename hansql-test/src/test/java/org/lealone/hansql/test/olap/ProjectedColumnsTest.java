@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class ProjectedColumnsTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_projected", "id int primary key, a int, b varchar(20), c bigint, d double");
+        insert("t_projected", 100, i -> i + ", " + (i * 2) + ", 'b" + i + "', " + (i * 3L) + ", " + (i / 2.0));
+
+        // 只读取投影的列和过滤条件用到的列
+        try (ResultSet rs = stmt.executeQuery("SELECT b FROM olap.t_projected WHERE c >= 270 ORDER BY id")) {
+            for (int i = 90; i < 100; i++) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getMetaData().getColumnCount());
+                assertEquals("b" + i, rs.getString(1));
+            }
+            assertFalse(rs.next());
+        }
+        try (ResultSet rs = stmt.executeQuery("SELECT d, a FROM olap.t_projected WHERE id = 7")) {
+            assertTrue(rs.next());
+            assertEquals(3.5, rs.getDouble(1), 0);
+            assertEquals(14, rs.getInt(2));
+            assertFalse(rs.next());
+        }
+        // 没有投影任何列
+        assertCount("SELECT count(*) FROM olap.t_projected WHERE a < 20", 10);
+        assertCount("SELECT sum(c) FROM olap.t_projected", 3L * 99 * 100 / 2);
+    }
+}
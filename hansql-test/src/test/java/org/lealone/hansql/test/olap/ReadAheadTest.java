@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class ReadAheadTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_read_ahead", "id int primary key, f int");
+        insert("t_read_ahead", 20000, i -> i + ", " + (i % 10));
+        setOption(ExecConstants.LEALONE_READ_AHEAD_BATCHES, 2L);
+
+        // 可滚动的结果集在执行器线程里运行，这时才会预读
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+                ResultSet rs = stmt.executeQuery("SELECT id, f FROM olap.t_read_ahead ORDER BY id")) {
+            for (int i = 0; i < 20000; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+                assertEquals(i % 10, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+        }
+
+        // 预读线程读到的批次在查询提前结束时也要释放
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+                ResultSet rs = stmt.executeQuery("SELECT id FROM olap.t_read_ahead LIMIT 10")) {
+            int rows = 0;
+            while (rs.next())
+                rows++;
+            assertEquals(10, rows);
+        }
+
+        // 独立执行的查询也会预读
+        setOption(ExecConstants.OLAP_ISOLATED_EXECUTION, true);
+        assertCount("SELECT count(*) FROM olap.t_read_ahead", 20000);
+        assertCount("SELECT sum(f) FROM olap.t_read_ahead", 2000L * 45);
+    }
+}
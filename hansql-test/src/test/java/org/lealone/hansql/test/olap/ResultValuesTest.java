@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class ResultValuesTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_values", "id int primary key, t tinyint, sm smallint, i int, l bigint, r real, d double, "
+                + "n decimal(20, 4), b boolean, s varchar(20), dt date, tm time, ts timestamp, bin varbinary(10)");
+        insert("t_values", 300, i -> i % 5 == 0 ? i + ", null, null, null, null, null, null, null, null, null, null,"
+                + " null, null, null"
+                : i + ", " + (i % 100 - 50) + ", " + (i * 100 - 15000) + ", " + (-i) + ", " + (i * 10000000000L) + ", "
+                        + (i / 8.0) + ", " + (i / 3.0) + ", " + i + ".1234, " + (i % 2 == 0) + ", 's" + i + "', "
+                        + "DATE '2021-03-" + (i % 28 + 1) + "', TIME '12:" + (i % 60) + ":30', TIMESTAMP '2021-03-"
+                        + (i % 28 + 1) + " 23:59:" + (i % 60) + ".123', X'0102" + (i % 10) + "0'");
+
+        // 每种类型的向量转换成的值都要和普通查询的一样
+        assertSameRows("SELECT t, sm, i, l, r, d, n, b, s, dt, tm, ts FROM olap.t_values ORDER BY id",
+                "SELECT t, sm, i, l, r, d, n, b, s, dt, tm, ts FROM t_values ORDER BY id");
+
+        try (ResultSet rs = stmt.executeQuery("SELECT bin FROM olap.t_values ORDER BY id")) {
+            for (int i = 0; i < 300; i++) {
+                assertTrue(rs.next());
+                if (i % 5 == 0)
+                    assertNull(rs.getBytes(1));
+                else
+                    assertArrayEquals(new byte[] { 1, 2, (byte) ((i % 10) << 4) }, rs.getBytes(1));
+            }
+            assertFalse(rs.next());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class SchemaTreeTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_schema_tree", "id int primary key, a int");
+        insert("t_schema_tree", 10, i -> i + ", " + i);
+        assertCount("SELECT sum(a) FROM olap.t_schema_tree", 45);
+
+        // DDL之后要看到新的列
+        stmt.executeUpdate("ALTER TABLE t_schema_tree ADD COLUMN b int");
+        stmt.executeUpdate("UPDATE t_schema_tree SET b = a * 2");
+        assertCount("SELECT sum(b) FROM olap.t_schema_tree", 90);
+
+        // 重新创建的表列不一样
+        createTable("t_schema_tree", "id int primary key, c varchar(20)");
+        stmt.executeUpdate("INSERT INTO t_schema_tree(id, c) VALUES(1, 'c1')");
+        try (ResultSet rs = stmt.executeQuery("SELECT * FROM olap.t_schema_tree")) {
+            assertEquals(2, rs.getMetaData().getColumnCount());
+            assertTrue(rs.next());
+            assertEquals("c1", rs.getString(2));
+            assertFalse(rs.next());
+        }
+        try {
+            stmt.executeQuery("SELECT b FROM olap.t_schema_tree");
+            fail();
+        } catch (SQLException e) {
+            // 列已经不存在
+        }
+
+        // 删除后的表不能再查询，新建的表马上可以查询
+        stmt.executeUpdate("DROP TABLE t_schema_tree");
+        try {
+            stmt.executeQuery("SELECT count(*) FROM olap.t_schema_tree");
+            fail();
+        } catch (SQLException e) {
+            // 表已经不存在
+        }
+        createTable("t_schema_tree_new", "id int primary key");
+        stmt.executeUpdate("INSERT INTO t_schema_tree_new(id) VALUES(1)");
+        assertCount("SELECT count(*) FROM olap.t_schema_tree_new", 1);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+public class StreamingResultTest extends OlapTestBase {
+
+    @Test
+    public void run() throws Exception {
+        createTable("t_streaming", "id int primary key, s varchar(20)");
+        insert("t_streaming", 50000, i -> i + ", 's" + i + "'");
+
+        // 按fetchSize分批读取全部记录
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(100);
+            try (ResultSet rs = stmt.executeQuery("SELECT id, s FROM olap.t_streaming ORDER BY id")) {
+                for (int i = 0; i < 50000; i++) {
+                    assertTrue(rs.next());
+                    assertEquals(i, rs.getInt(1));
+                    assertEquals("s" + i, rs.getString(2));
+                }
+                assertFalse(rs.next());
+            }
+        }
+
+        // 没读完就关闭，查询要停止，连接还能继续使用
+        for (int n = 0; n < 3; n++) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(100);
+                try (ResultSet rs = stmt.executeQuery("SELECT id FROM olap.t_streaming")) {
+                    for (int i = 0; i < 150; i++)
+                        assertTrue(rs.next());
+                }
+            }
+            assertCount("SELECT count(*) FROM olap.t_streaming WHERE id < 1000", 1000);
+        }
+
+        // 可滚动的结果集还是一次读取全部记录
+        try (Statement stmt = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+                ResultSet rs = stmt.executeQuery("SELECT id FROM olap.t_streaming ORDER BY id")) {
+            assertTrue(rs.last());
+            assertEquals(49999, rs.getInt(1));
+            assertTrue(rs.first());
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lealone.hansql.test.olap;
+
+import org.junit.Test;
+import org.lealone.hansql.exec.ExecConstants;
+
+public class TimeSliceTest extends OlapTestBase {
+
+    // 每个时间片用完后都要让出线程，而且结果不能变
+    private void useTimeSlice() {
+        setOption(ExecConstants.OLAP_ISOLATED_EXECUTION, false);
+        setOption(ExecConstants.OLAP_TIME_SLICE, 1L);
+    }
+
+    // 哈希连接的探测端是哈希聚合
+    @Test
+    public void hashAggOnProbeSide() throws Exception {
+        createTable("t_big", "id int primary key, g int");
+        createTable("t_small", "g int primary key, name varchar(20)");
+        int rows = 20000;
+        int groups = 100;
+        insert("t_big", rows, i -> i + ", " + (i % groups));
+        insert("t_small", groups / 2, i -> (i * 2) + ", 'g" + (i * 2) + "'");
+
+        setOption(ExecConstants.LEALONE_LOOKUP_JOIN, false);
+        setOption("planner.enable_mergejoin", false);
+        setOption("planner.enable_streamagg", false);
+        useTimeSlice();
+        String sql = "SELECT sum(a.c) FROM (SELECT g, count(*) AS c FROM olap.t_big GROUP BY g) a"
+                + " JOIN olap.t_small s ON a.g = s.g";
+        assertCount(sql, rows / 2);
+    }
+
+    // TopN和排序在读完输入之前不能返回NOT_YET
+    @Test
+    public void sortAndTopN() throws Exception {
+        createTable("t_slice_sort", "id int primary key, v int");
+        insert("t_slice_sort", 30000, i -> i + ", " + ((i * 7919) % 30000));
+        useTimeSlice();
+
+        assertSameRows("SELECT v FROM olap.t_slice_sort ORDER BY v DESC LIMIT 10",
+                "SELECT v FROM t_slice_sort ORDER BY v DESC LIMIT 10");
+        assertSameRows("SELECT id, v FROM olap.t_slice_sort WHERE id < 3000 ORDER BY v",
+                "SELECT id, v FROM t_slice_sort WHERE id < 3000 ORDER BY v");
+    }
+
+    // 嵌套循环连接读取右边的输入时也会遇到NOT_YET
+    @Test
+    public void nestedLoopJoin() throws Exception {
+        createTable("t_slice_left", "id int primary key, v int");
+        createTable("t_slice_right", "id int primary key, v int");
+        insert("t_slice_left", 200, i -> i + ", " + i);
+        insert("t_slice_right", 20000, i -> i + ", " + (i % 100));
+
+        setOption(ExecConstants.LEALONE_LOOKUP_JOIN, false);
+        setOption("planner.enable_nljoin_for_scalar_only", false);
+        useTimeSlice();
+        assertCount("SELECT count(*) FROM olap.t_slice_left l JOIN olap.t_slice_right r ON l.v < r.v"
+                + " WHERE l.id < 10", 20000L * 10 - 200L * 55);
+    }
+}